@@ -0,0 +1,356 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An interlocking that queues trains at their entry sections instead of rejecting them, and lets them in as soon as
+ * the interlocking allows.
+ *
+ * A queued train waits until its entry section is free and its route's entry constraints are met. Every entry
+ * section has its own queue, ordered by priority and, among trains of equal priority, by arrival, so a queue is
+ * first in first out unless priorities are given. A queue lets in only its head: a train never overtakes one ahead
+ * of it in the same queue, even if its own route happens to be clear. The heads of the non-empty queues are tried
+ * after every call that moves trains, since only moves free sections and release constraints, so callers never poll.
+ *
+ * The caller learns of the admission through a future or a callback, either of which runs on the thread whose call
+ * let the train in, once the queues have been tried. Callbacks may move, add and queue trains; trains their moves let
+ * in are admitted before the call that ran them returns. The interlocking reports the number of trains waiting at
+ * each entry and a histogram of how long admitted trains waited, in nanoseconds.
+ *
+ * Trains added directly with addTrain do not wait in the queues, and may enter ahead of queued trains. Like the
+ * interlocking it extends, this class should be driven by one thread at a time.
+ */
+public class AdmissionInterlocking extends InterlockingImpl {
+    private final Topology topology;
+    private final Set<String> queuedNames = new HashSet<>();
+    private final List<PriorityQueue<Waiting>> queues;
+    private final int[] busy;
+    private final boolean[] isBusy;
+    private int busyCount;
+    private final ArrayList<Waiting> ready = new ArrayList<>();
+    private boolean admitting;
+    private boolean retry;
+    private long sequence;
+    private long admitted;
+    private final Histogram waitTimes = new Histogram();
+
+    /**
+     * Creates an admission interlocking on the corridor described in the README.
+     */
+    public AdmissionInterlocking() {
+        this(Topology.corridor());
+    }
+
+    /**
+     * Creates an admission interlocking on a network topology.
+     *
+     * @param topology The sections, routes, constraints and priority rules of the network.
+     */
+    public AdmissionInterlocking(Topology topology) {
+        super(topology);
+        this.topology = topology;
+        int sections = topology.sectionCount();
+        queues = new ArrayList<>(Collections.nCopies(sections, null));
+        busy = new int[sections];
+        isBusy = new boolean[sections];
+    }
+
+    /**
+     * Queues a train for entry in first in, first out order.
+     *
+     * @param trainName               The name of the train.
+     * @param entryTrackSection       The entry track section for the train.
+     * @param destinationTrackSection The destination track section for the train.
+     * @return A future completed once the train has entered, or cancelled if the interlocking is reset first.
+     * @throws IllegalArgumentException If there is no such route, or the name is in service or already queued.
+     */
+    public CompletableFuture<Void> queueTrain(String trainName, int entryTrackSection, int destinationTrackSection)
+            throws IllegalArgumentException {
+        return queueTrain(trainName, entryTrackSection, destinationTrackSection, 0);
+    }
+
+    /**
+     * Queues a train for entry ahead of the waiting trains of lower priority. A train whose future is cancelled is
+     * dropped when it reaches the head of its queue; {@link #dequeueTrain(String)} drops it at once.
+     *
+     * @param trainName               The name of the train.
+     * @param entryTrackSection       The entry track section for the train.
+     * @param destinationTrackSection The destination track section for the train.
+     * @param priority                The train's priority; higher priorities enter first.
+     * @return A future completed once the train has entered, or cancelled if the interlocking is reset first.
+     * @throws IllegalArgumentException If there is no such route, or the name is in service or already queued.
+     */
+    public CompletableFuture<Void> queueTrain(String trainName, int entryTrackSection, int destinationTrackSection,
+                                              int priority) throws IllegalArgumentException {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        queue(trainName, entryTrackSection, destinationTrackSection, priority, null, future);
+        return future;
+    }
+
+    /**
+     * Queues a train for entry ahead of the waiting trains of lower priority, and calls back once it has entered.
+     * The callback runs on the thread whose call let the train in, and is dropped if the interlocking is reset first.
+     *
+     * @param trainName               The name of the train.
+     * @param entryTrackSection       The entry track section for the train.
+     * @param destinationTrackSection The destination track section for the train.
+     * @param priority                The train's priority; higher priorities enter first.
+     * @param onAdmitted              The callback to run once the train has entered.
+     * @throws IllegalArgumentException If there is no such route, or the name is in service or already queued.
+     */
+    public void queueTrain(String trainName, int entryTrackSection, int destinationTrackSection, int priority,
+                           Runnable onAdmitted) throws IllegalArgumentException {
+        queue(trainName, entryTrackSection, destinationTrackSection, priority, onAdmitted, null);
+    }
+
+    private void queue(String trainName, int entryTrackSection, int destinationTrackSection, int priority,
+                       Runnable callback, CompletableFuture<Void> future) throws IllegalArgumentException {
+        if (topology.route(entryTrackSection, destinationTrackSection) == -1) {
+            throw new IllegalArgumentException("Invalid train path.");
+        }
+        if (queuedNames.contains(trainName) || trainStatus(trainName) == Status.OK) {
+            throw new IllegalArgumentException("Train name already in use.");
+        }
+        int entry = topology.sectionIndex(entryTrackSection);
+        Waiting waiting = new Waiting(trainName, entryTrackSection, destinationTrackSection, priority, sequence++,
+                System.nanoTime(), callback, future);
+        if (queues.get(entry) == null) {
+            queues.set(entry, new PriorityQueue<>());
+        }
+        queues.get(entry).add(waiting);
+        queuedNames.add(trainName);
+        if (!isBusy[entry]) {
+            isBusy[entry] = true;
+            busy[busyCount++] = entry;
+        }
+        admit();
+    }
+
+    /**
+     * Takes a train out of its queue.
+     *
+     * @param trainName The name of the train.
+     * @return True if the train was waiting, false if it was not queued.
+     */
+    public boolean dequeueTrain(String trainName) {
+        for (int i = 0; i < busyCount; i++) {
+            for (Waiting waiting : queues.get(busy[i])) {
+                if (waiting.trainName.equals(trainName)) {
+                    queues.get(busy[i]).remove(waiting);
+                    queuedNames.remove(trainName);
+                    if (waiting.future != null) {
+                        waiting.future.cancel(false);
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of trains waiting to enter at a section.
+     *
+     * @param entryTrackSection The entry track section.
+     * @return The queue length.
+     * @throws IllegalArgumentException If the section does not exist.
+     */
+    public int getQueueLength(int entryTrackSection) throws IllegalArgumentException {
+        int index = topology.sectionIndex(entryTrackSection);
+        if (index == -1) {
+            throw new IllegalArgumentException("Track section does not exist");
+        }
+        return queues.get(index) == null ? 0 : queues.get(index).size();
+    }
+
+    /**
+     * Gets the number of trains waiting to enter at any section.
+     *
+     * @return The total length of the queues.
+     */
+    public int getQueued() {
+        return queuedNames.size();
+    }
+
+    /**
+     * Gets the number of queued trains that have been let in.
+     *
+     * @return The number of admissions.
+     */
+    public long getAdmitted() {
+        return admitted;
+    }
+
+    /**
+     * Gets the distribution of the time admitted trains spent in their queues.
+     *
+     * @return The histogram of waiting times, in nanoseconds.
+     */
+    public Histogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    @Override
+    public Status tryAddTrain(String trainName, int entryTrackSection, int destinationTrackSection) {
+        //A queued train keeps its name, so a direct entry cannot take it in the meantime
+        if (queuedNames.contains(trainName)) {
+            return topology.route(entryTrackSection, destinationTrackSection) == -1 ? Status.UNKNOWN_ROUTE
+                    : Status.NAME_IN_USE;
+        }
+        return super.tryAddTrain(trainName, entryTrackSection, destinationTrackSection);
+    }
+
+    @Override
+    public int moveTrains(String[] trainNames) throws IllegalArgumentException {
+        int moved = super.moveTrains(trainNames);
+        if (moved > 0) {
+            admit();
+        }
+        return moved;
+    }
+
+    @Override
+    public int tryMoveTrains(String[] trainNames, Status[] outcomes) {
+        int moved = super.tryMoveTrains(trainNames, outcomes);
+        if (moved > 0) {
+            admit();
+        }
+        return moved;
+    }
+
+    /**
+     * Lets in the trains that can enter, then tells their callers. Callbacks and futures run only once the queues have
+     * been tried, so a caller that moves trains from them cannot change the queues being walked; a call made from them
+     * asks for another pass instead of admitting trains itself.
+     *
+     * @throws RuntimeException The first exception thrown by a callback or future, once all of them have run.
+     */
+    private void admit() {
+        if (admitting) {
+            retry = true;
+            return;
+        }
+        admitting = true;
+        RuntimeException failure = null;
+        try {
+            do {
+                retry = false;
+                letIn();
+                for (int i = 0; i < ready.size(); i++) {
+                    Waiting waiting = ready.get(i);
+                    try {
+                        if (waiting.callback != null) {
+                            waiting.callback.run();
+                        } else {
+                            waiting.future.complete(null);
+                        }
+                    } catch (RuntimeException e) {
+                        if (failure == null) {
+                            failure = e;
+                        } else {
+                            failure.addSuppressed(e);
+                        }
+                    }
+                }
+                ready.clear();
+            } while (retry);
+        } finally {
+            admitting = false;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    //Lets in the head of each non-empty queue whose route is clear, and the next head after it, until none can enter
+    private void letIn() {
+        for (int i = 0; i < busyCount; i++) {
+            int entry = busy[i];
+            PriorityQueue<Waiting> queue = queues.get(entry);
+            while (!queue.isEmpty()) {
+                Waiting head = queue.peek();
+                if (head.future != null && head.future.isCancelled()) {
+                    queue.poll();
+                    queuedNames.remove(head.trainName);
+                    continue;
+                }
+                if (super.tryAddTrain(head.trainName, head.entry, head.destination) != Status.OK) {
+                    break;
+                }
+                queue.poll();
+                queuedNames.remove(head.trainName);
+                admitted++;
+                waitTimes.record(Math.max(0, System.nanoTime() - head.queuedAt));
+                ready.add(head);
+            }
+            if (queue.isEmpty()) {
+                isBusy[entry] = false;
+                busy[i--] = busy[--busyCount];
+            }
+        }
+    }
+
+    /**
+     * Returns the interlocking to its initial state and empties the queues, cancelling the futures of the trains
+     * still waiting, and of trains let in whose callers have not yet been told. The admission statistics are cleared
+     * too.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        for (Waiting waiting : ready) {
+            if (waiting.future != null) {
+                waiting.future.cancel(false);
+            }
+        }
+        ready.clear();
+        for (int i = 0; i < busyCount; i++) {
+            for (Waiting waiting : queues.get(busy[i])) {
+                if (waiting.future != null) {
+                    waiting.future.cancel(false);
+                }
+            }
+            queues.get(busy[i]).clear();
+            isBusy[busy[i]] = false;
+        }
+        busyCount = 0;
+        queuedNames.clear();
+        admitted = 0;
+        waitTimes.clear();
+    }
+
+    private static final class Waiting implements Comparable<Waiting> {
+        final String trainName;
+        final int entry;
+        final int destination;
+        final int priority;
+        final long sequence;
+        final long queuedAt;
+        final Runnable callback;
+        final CompletableFuture<Void> future;
+
+        Waiting(String trainName, int entry, int destination, int priority, long sequence, long queuedAt,
+                Runnable callback, CompletableFuture<Void> future) {
+            this.trainName = trainName;
+            this.entry = entry;
+            this.destination = destination;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.queuedAt = queuedAt;
+            this.callback = callback;
+            this.future = future;
+        }
+
+        @Override
+        public int compareTo(Waiting other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
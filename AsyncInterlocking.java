@@ -0,0 +1,374 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * An asynchronous front end that lets any number of client threads drive one interlocking without locking it.
+ *
+ * Requests are written as commands into a ring of preallocated slots, and a single writer thread takes them out in
+ * order and applies them to an {@link InterlockingImpl} that no other thread touches. Producers claim a slot by
+ * advancing a shared sequence number, fill it in and publish it by storing the sequence in the slot; the writer
+ * drains every published command it finds before reporting its progress back to the producers, so a burst of
+ * commands costs one hand-off rather than one per command. A producer that finds the ring full waits for the writer
+ * to catch up, which bounds both memory and queueing delay.
+ *
+ * Results come back in one of two ways. The future-returning methods mirror {@link Interlocking}, including its
+ * exceptions, and allocate a future per call. The callback methods use the non-throwing tryAddTrain and
+ * tryMoveTrains, and allocate nothing when the caller reuses its callback and arrays. Callbacks run on the writer
+ * thread and should return quickly; an exception thrown by a callback is discarded so that one client cannot stop
+ * the writer.
+ *
+ * Commands are applied one at a time in the order their slots were claimed, so the outcome is the same as issuing
+ * them one after another on a single thread. In particular, consecutive moveTrains calls are not merged, since a
+ * priority train in a later call must not overtake the trains of an earlier one. An array passed to moveTrains must
+ * not be changed until the call has completed.
+ */
+public class AsyncInterlocking implements AutoCloseable {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final long CLOSED = Long.MIN_VALUE;
+    private static final int SPINS = 1000;
+
+    private static final int ADD = 0;
+    private static final int MOVE = 1;
+    private static final int SECTION = 2;
+    private static final int TRAIN = 3;
+    private static final int TRY_ADD = 4;
+    private static final int TRY_MOVE = 5;
+
+    private final InterlockingImpl interlocking;
+    private final Slot[] slots;
+    private final int mask;
+    private final int reportMask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean sleeping;
+
+    /**
+     * Starts an asynchronous interlocking on the corridor described in the README.
+     */
+    public AsyncInterlocking() {
+        this(new InterlockingImpl(), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Starts an asynchronous interlocking on a network topology.
+     *
+     * @param topology The network topology.
+     */
+    public AsyncInterlocking(Topology topology) {
+        this(new InterlockingImpl(topology), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Starts an asynchronous front end for an interlocking. The interlocking must not be used directly afterwards.
+     *
+     * @param interlocking The interlocking to drive; its move order and other settings are kept.
+     * @param capacity     The number of command slots, rounded up to a power of two.
+     */
+    public AsyncInterlocking(InterlockingImpl interlocking, int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        }
+        this.interlocking = interlocking;
+        int size = Integer.highestOneBit(capacity * 2 - 1);
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot(i - size);
+        }
+        mask = size - 1;
+        reportMask = Math.max(1, size / 4) - 1;
+        writer = new Thread(this::run, "interlocking-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Adds a train.
+     *
+     * @param trainName              The name of the train.
+     * @param entryTrackSection      The entry track section for the train.
+     * @param destinationTrackSection The destination track section for the train.
+     * @return A future completed once the train has been added, or completed exceptionally as addTrain would throw.
+     * @throws IllegalStateException If the interlocking has been closed.
+     */
+    public CompletableFuture<Void> addTrain(String trainName, int entryTrackSection, int destinationTrackSection)
+            throws IllegalStateException {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        long sequence = claim();
+        Slot slot = slots[(int) sequence & mask];
+        slot.type = ADD;
+        slot.name = trainName;
+        slot.entry = entryTrackSection;
+        slot.destination = destinationTrackSection;
+        slot.future = future;
+        publish(slot, sequence);
+        return future;
+    }
+
+    /**
+     * Moves a list of trains.
+     *
+     * @param trainNames The names of the trains to move.
+     * @return A future holding the number of trains moved, or completed exceptionally as moveTrains would throw.
+     * @throws IllegalStateException If the interlocking has been closed.
+     */
+    public CompletableFuture<Integer> moveTrains(String[] trainNames) throws IllegalStateException {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        long sequence = claim();
+        Slot slot = slots[(int) sequence & mask];
+        slot.type = MOVE;
+        slot.names = trainNames;
+        slot.future = future;
+        publish(slot, sequence);
+        return future;
+    }
+
+    /**
+     * Gets the name of the train occupying a track section, once every earlier command has been applied.
+     *
+     * @param trackSection The track section to query.
+     * @return A future holding the name of the occupying train or null, or completed exceptionally if the section
+     * does not exist.
+     * @throws IllegalStateException If the interlocking has been closed.
+     */
+    public CompletableFuture<String> getSection(int trackSection) throws IllegalStateException {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        long sequence = claim();
+        Slot slot = slots[(int) sequence & mask];
+        slot.type = SECTION;
+        slot.entry = trackSection;
+        slot.future = future;
+        publish(slot, sequence);
+        return future;
+    }
+
+    /**
+     * Gets the track section of a train, once every earlier command has been applied.
+     *
+     * @param trainName The name of the train.
+     * @return A future holding the train's track section or -1 if it has left, or completed exceptionally if the
+     * train does not exist.
+     * @throws IllegalStateException If the interlocking has been closed.
+     */
+    public CompletableFuture<Integer> getTrain(String trainName) throws IllegalStateException {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        long sequence = claim();
+        Slot slot = slots[(int) sequence & mask];
+        slot.type = TRAIN;
+        slot.name = trainName;
+        slot.future = future;
+        publish(slot, sequence);
+        return future;
+    }
+
+    /**
+     * Adds a train without throwing on rejection.
+     *
+     * @param trainName              The name of the train.
+     * @param entryTrackSection      The entry track section for the train.
+     * @param destinationTrackSection The destination track section for the train.
+     * @param callback               Receives the outcome on the writer thread.
+     * @throws IllegalStateException If the interlocking has been closed.
+     */
+    public void tryAddTrain(String trainName, int entryTrackSection, int destinationTrackSection,
+                            Consumer<Status> callback) throws IllegalStateException {
+        long sequence = claim();
+        Slot slot = slots[(int) sequence & mask];
+        slot.type = TRY_ADD;
+        slot.name = trainName;
+        slot.entry = entryTrackSection;
+        slot.destination = destinationTrackSection;
+        slot.callback = callback;
+        publish(slot, sequence);
+    }
+
+    /**
+     * Moves a list of trains without throwing for trains that are not in service.
+     *
+     * @param trainNames The names of the trains to move.
+     * @param outcomes   An array receiving the outcome of each train before the callback runs, or null.
+     * @param callback   Receives the number of trains moved on the writer thread.
+     * @throws IllegalArgumentException If the outcome array is shorter than the list of trains.
+     * @throws IllegalStateException    If the interlocking has been closed.
+     */
+    public void tryMoveTrains(String[] trainNames, Status[] outcomes, IntConsumer callback)
+            throws IllegalArgumentException, IllegalStateException {
+        if (outcomes != null && outcomes.length < trainNames.length) {
+            throw new IllegalArgumentException("Outcome array is shorter than the list of trains");
+        }
+        long sequence = claim();
+        Slot slot = slots[(int) sequence & mask];
+        slot.type = TRY_MOVE;
+        slot.names = trainNames;
+        slot.outcomes = outcomes;
+        slot.callback = callback;
+        publish(slot, sequence);
+    }
+
+    /**
+     * Stops accepting commands, waits for the writer to apply every command already submitted and stops it.
+     */
+    @Override
+    public void close() {
+        long current;
+        do {
+            current = claimed.get();
+        } while (current >= 0 && !claimed.compareAndSet(current, current | CLOSED));
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Claims the next slot, waiting while the ring is full.
+     *
+     * @return The sequence number of the claimed slot.
+     * @throws IllegalStateException If the interlocking has been closed.
+     */
+    private long claim() throws IllegalStateException {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence < 0) {
+                throw new IllegalStateException("Interlocking is closed");
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        for (int spins = 0; sequence - consumed.get() >= slots.length; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(1000);
+            }
+        }
+        return sequence;
+    }
+
+    private void publish(Slot slot, long sequence) {
+        slot.sequence = sequence;
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void run() {
+        long next = 0;
+        int idle = 0;
+        while (true) {
+            Slot slot = slots[(int) next & mask];
+            if (slot.sequence == next) {
+                apply(slot);
+                next++;
+                idle = 0;
+                //Report progress once per drained burst, or sooner if the burst is a large part of the ring
+                if (slots[(int) next & mask].sequence != next || (next & reportMask) == 0) {
+                    consumed.set(next);
+                }
+                continue;
+            }
+            consumed.set(next);
+            long claims = claimed.get();
+            if (claims < 0 && (claims & ~CLOSED) == next) {
+                return;
+            }
+            if (idle++ < SPINS) {
+                Thread.onSpinWait();
+                continue;
+            }
+            sleeping = true;
+            if (slot.sequence != next && claimed.get() >= 0) {
+                LockSupport.park(this);
+            }
+            sleeping = false;
+            idle = 0;
+        }
+    }
+
+    private void apply(Slot slot) {
+        try {
+            switch (slot.type) {
+                case ADD:
+                    interlocking.addTrain(slot.name, slot.entry, slot.destination);
+                    complete(slot.future, null);
+                    break;
+                case MOVE:
+                    complete(slot.future, interlocking.moveTrains(slot.names));
+                    break;
+                case SECTION:
+                    complete(slot.future, interlocking.getSection(slot.entry));
+                    break;
+                case TRAIN:
+                    complete(slot.future, interlocking.getTrain(slot.name));
+                    break;
+                case TRY_ADD:
+                    accept(slot.callback, interlocking.tryAddTrain(slot.name, slot.entry, slot.destination));
+                    break;
+                default:
+                    accept(slot.callback, interlocking.tryMoveTrains(slot.names, slot.outcomes));
+                    break;
+            }
+        } catch (RuntimeException e) {
+            if (slot.future != null) {
+                slot.future.completeExceptionally(e);
+            }
+        }
+        slot.name = null;
+        slot.names = null;
+        slot.outcomes = null;
+        slot.future = null;
+        slot.callback = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void complete(CompletableFuture<?> future, Object value) {
+        ((CompletableFuture<Object>) future).complete(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void accept(Object callback, Status status) {
+        try {
+            ((Consumer<Status>) callback).accept(status);
+        } catch (RuntimeException e) {
+            //A failing callback must not stop the writer
+        }
+    }
+
+    private static void accept(Object callback, int count) {
+        try {
+            ((IntConsumer) callback).accept(count);
+        } catch (RuntimeException e) {
+            //A failing callback must not stop the writer
+        }
+    }
+
+    /**
+     * One command in the ring. The fields are written by the producer that claimed the slot and published to the
+     * writer by the volatile store of the slot's sequence number.
+     */
+    private static final class Slot {
+        volatile long sequence;
+        int type;
+        String name;
+        int entry;
+        int destination;
+        String[] names;
+        Status[] outcomes;
+        Object callback;
+        CompletableFuture<?> future;
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A copy of the full state of an interlocking, taken by {@link InterlockingImpl#checkpoint()} and restored by
+ * {@link InterlockingImpl#restore(Checkpoint)}.
+ *
+ * A checkpoint holds, for every train in service, its name, route and journey index, and the same for the exited
+ * trains the interlocking still remembers, oldest first, along with the move order and the state version. A
+ * checkpoint of a {@link PointInterlocking} also holds its clock and, for every point, its position, the position it
+ * is being thrown to and when that throw ends; other interlockings write no points. Taking a checkpoint only copies
+ * these into arrays; encoding and writing the file can then happen on any thread while the interlocking carries on.
+ *
+ * <pre>
+ * int    magic "ILCK", format version
+ * int    section count, route count     of the topology the checkpoint was taken on
+ * byte   move order ordinal
+ * long   state version
+ * int    train count                    then for each train: int route, int journey index, UTF name
+ * int    exit count                     then for each exit, oldest first: int route, UTF name
+ * long   clock time
+ * int    point count                    then for each point: int position, int target, long throw end
+ * </pre>
+ *
+ * Files of format 1, written before points were recorded, end after the exits and are read with no points.
+ */
+public final class Checkpoint {
+    private static final int MAGIC = 0x494C434B;
+    private static final int FORMAT = 2;
+
+    final int sectionCount;
+    final int routeCount;
+    final MoveOrder moveOrder;
+    final long version;
+    final String[] names;
+    final int[] routes;
+    final int[] journeyIndexes;
+    final String[] exitNames;
+    final int[] exitRoutes;
+    final long time;
+    final int[] pointPositions;
+    final int[] pointTargets;
+    final long[] pointThrowEnds;
+
+    Checkpoint(int sectionCount, int routeCount, MoveOrder moveOrder, long version, String[] names, int[] routes,
+               int[] journeyIndexes, String[] exitNames, int[] exitRoutes) {
+        this(sectionCount, routeCount, moveOrder, version, names, routes, journeyIndexes, exitNames, exitRoutes, 0,
+                new int[0], new int[0], new long[0]);
+    }
+
+    private Checkpoint(int sectionCount, int routeCount, MoveOrder moveOrder, long version, String[] names,
+                       int[] routes, int[] journeyIndexes, String[] exitNames, int[] exitRoutes, long time,
+                       int[] pointPositions, int[] pointTargets, long[] pointThrowEnds) {
+        this.sectionCount = sectionCount;
+        this.routeCount = routeCount;
+        this.moveOrder = moveOrder;
+        this.version = version;
+        this.names = names;
+        this.routes = routes;
+        this.journeyIndexes = journeyIndexes;
+        this.exitNames = exitNames;
+        this.exitRoutes = exitRoutes;
+        this.time = time;
+        this.pointPositions = pointPositions;
+        this.pointTargets = pointTargets;
+        this.pointThrowEnds = pointThrowEnds;
+    }
+
+    /**
+     * Copies the checkpoint with the state of the interlocking's points added.
+     *
+     * @param time      The time on the interlocking's clock.
+     * @param positions The position of each point, or the one it is being thrown from.
+     * @param targets   The position each point is being thrown to, or its position if it is settled.
+     * @param throwEnds The time each point's last throw ended or will end.
+     * @return The checkpoint with points.
+     */
+    Checkpoint withPoints(long time, int[] positions, int[] targets, long[] throwEnds) {
+        return new Checkpoint(sectionCount, routeCount, moveOrder, version, names, routes, journeyIndexes, exitNames,
+                exitRoutes, time, positions, targets, throwEnds);
+    }
+
+    /**
+     * Gets the version of the state the checkpoint holds.
+     *
+     * @return The state version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the number of trains in service in the checkpoint.
+     *
+     * @return The number of trains.
+     */
+    public int getTrainCount() {
+        return names.length;
+    }
+
+    /**
+     * Writes the checkpoint to a file, replacing it atomically where the file system allows, so that a crash while
+     * writing leaves the previous checkpoint in place.
+     *
+     * @param path The file to write.
+     * @throws UncheckedIOException If the file cannot be written.
+     */
+    public void write(Path path) throws UncheckedIOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary),
+                    1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeInt(sectionCount);
+                out.writeInt(routeCount);
+                out.writeByte(moveOrder.ordinal());
+                out.writeLong(version);
+                out.writeInt(names.length);
+                for (int i = 0; i < names.length; i++) {
+                    out.writeInt(routes[i]);
+                    out.writeInt(journeyIndexes[i]);
+                    out.writeUTF(names[i]);
+                }
+                out.writeInt(exitNames.length);
+                for (int i = 0; i < exitNames.length; i++) {
+                    out.writeInt(exitRoutes[i]);
+                    out.writeUTF(exitNames[i]);
+                }
+                out.writeLong(time);
+                out.writeInt(pointPositions.length);
+                for (int i = 0; i < pointPositions.length; i++) {
+                    out.writeInt(pointPositions[i]);
+                    out.writeInt(pointTargets[i]);
+                    out.writeLong(pointThrowEnds[i]);
+                }
+            }
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a checkpoint from a file with a single read of the whole file.
+     *
+     * @param path The file to read.
+     * @return The checkpoint.
+     * @throws UncheckedIOException  If the file cannot be read.
+     * @throws IllegalStateException If the file is not a checkpoint, has an unknown format version or is truncated or
+     *                               otherwise corrupt.
+     */
+    public static Checkpoint read(Path path) throws UncheckedIOException, IllegalStateException {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(path)));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalStateException("Not a checkpoint: " + path);
+            }
+            int format = in.readInt();
+            if (format != 1 && format != FORMAT) {
+                throw new IllegalStateException("Unknown checkpoint format " + format);
+            }
+            int sectionCount = in.readInt();
+            int routeCount = in.readInt();
+            MoveOrder[] orders = MoveOrder.values();
+            int order = in.readByte();
+            if (order < 0 || order >= orders.length) {
+                throw new IllegalStateException("Unknown move order " + order + " in checkpoint");
+            }
+            MoveOrder moveOrder = orders[order];
+            long version = in.readLong();
+            int trains = count(in, 10, "train");
+            String[] names = new String[trains];
+            int[] routes = new int[trains];
+            int[] journeyIndexes = new int[trains];
+            for (int i = 0; i < trains; i++) {
+                routes[i] = in.readInt();
+                journeyIndexes[i] = in.readInt();
+                names[i] = in.readUTF();
+            }
+            int exits = count(in, 6, "exit");
+            String[] exitNames = new String[exits];
+            int[] exitRoutes = new int[exits];
+            for (int i = 0; i < exits; i++) {
+                exitRoutes[i] = in.readInt();
+                exitNames[i] = in.readUTF();
+            }
+            Checkpoint checkpoint = new Checkpoint(sectionCount, routeCount, moveOrder, version, names, routes,
+                    journeyIndexes, exitNames, exitRoutes);
+            if (format == 1) {
+                return checkpoint;
+            }
+            long time = in.readLong();
+            int points = count(in, 16, "point");
+            int[] positions = new int[points];
+            int[] targets = new int[points];
+            long[] throwEnds = new long[points];
+            for (int i = 0; i < points; i++) {
+                positions[i] = in.readInt();
+                targets[i] = in.readInt();
+                throwEnds[i] = in.readLong();
+            }
+            return checkpoint.withPoints(time, positions, targets, throwEnds);
+        } catch (EOFException e) {
+            throw new IllegalStateException("Checkpoint is truncated: " + path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a count and checks it against the bytes left, so a corrupt count fails before anything is allocated.
+     *
+     * @param in      The input, positioned at the count.
+     * @param minimum The fewest bytes each counted entry takes.
+     * @param what    What is counted, for the error message.
+     * @return The count.
+     * @throws IOException           If the count cannot be read.
+     * @throws IllegalStateException If the count is negative or more entries than the bytes left can hold.
+     */
+    private static int count(DataInputStream in, int minimum, String what) throws IOException, IllegalStateException {
+        int count = in.readInt();
+        if (count < 0 || (long) count * minimum > in.available()) {
+            throw new IllegalStateException("Corrupt " + what + " count " + count + " in checkpoint");
+        }
+        return count;
+    }
+}
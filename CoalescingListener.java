@@ -0,0 +1,117 @@
+/**
+ * A listener that decouples a slow consumer from the interlocking by coalescing changes.
+ *
+ * Subscribed to an interlocking, it only records which sections have changed and who occupies them now, which takes
+ * a short lock and never waits for the consumer. A delivery thread hands the consumer one batch per wakeup, with one
+ * change per section that changed since the last batch: {@link OccupancyChange#ENTER} naming the section's current
+ * occupant, or {@link OccupancyChange#LEAVE} with no train name if the section is now free. Trains that passed
+ * through a section between two batches, including trains that left the corridor, are not reported, so however far
+ * the consumer falls behind the pending state never exceeds one entry per section.
+ */
+public class CoalescingListener implements OccupancyListener, AutoCloseable {
+    private final Topology topology;
+    private final OccupancyListener consumer;
+    private final String[] occupants;
+    private final boolean[] dirty;
+    private final int[] pending;
+    private int pendingSize;
+    private long version;
+    private boolean closed;
+    private final OccupancyEvents batch = new OccupancyEvents();
+    private final Thread delivery;
+
+    /**
+     * Starts a coalescing listener for a consumer.
+     *
+     * @param topology The topology of the interlocking it will be subscribed to.
+     * @param consumer The consumer, called on the delivery thread.
+     */
+    public CoalescingListener(Topology topology, OccupancyListener consumer) {
+        this.topology = topology;
+        this.consumer = consumer;
+        occupants = new String[topology.sectionCount()];
+        dirty = new boolean[occupants.length];
+        pending = new int[occupants.length];
+        delivery = new Thread(this::run, "occupancy-delivery");
+        delivery.setDaemon(true);
+        delivery.start();
+    }
+
+    /**
+     * Records a batch of changes for the delivery thread.
+     *
+     * @param events The changes.
+     */
+    @Override
+    public synchronized void onChanges(OccupancyEvents events) {
+        for (int i = 0; i < events.size(); i++) {
+            OccupancyChange change = events.change(i);
+            if (change == OccupancyChange.EXIT) {
+                continue;
+            }
+            int index = topology.sectionIndex(events.section(i));
+            occupants[index] = change == OccupancyChange.ENTER ? events.trainName(i) : null;
+            if (!dirty[index]) {
+                dirty[index] = true;
+                pending[pendingSize++] = index;
+            }
+        }
+        version = events.getVersion();
+        notifyAll();
+    }
+
+    /**
+     * Stops the delivery thread once it has delivered the changes already recorded. The listener should be
+     * unsubscribed first.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (delivery.isAlive()) {
+            try {
+                delivery.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (this) {
+                while (pendingSize == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        //Only close stops delivery
+                    }
+                }
+                if (pendingSize == 0) {
+                    return;
+                }
+                batch.clear();
+                for (int i = 0; i < pendingSize; i++) {
+                    int index = pending[i];
+                    String occupant = occupants[index];
+                    batch.add(occupant == null ? OccupancyChange.LEAVE : OccupancyChange.ENTER,
+                            topology.sectionId(index), occupant);
+                    dirty[index] = false;
+                }
+                pendingSize = 0;
+                batch.setVersion(version);
+            }
+            try {
+                consumer.onChanges(batch);
+            } catch (RuntimeException e) {
+                //A failing consumer must not stop delivery
+            }
+        }
+    }
+}
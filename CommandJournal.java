@@ -0,0 +1,349 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An append-only log of the commands accepted by an interlocking, kept in a memory-mapped file.
+ *
+ * The log is a sequence of 16-byte records of four little-endian ints, the first of which is the record type; a
+ * record whose type is zero marks the end of the log. Trains are referred to by int ids: the first time a name is
+ * used, a name record assigns it an id, and later records carry only the id. Once the interlocking forgets a name,
+ * its id is {@link #release released} and given to the next new name, most recently released first, so the table of
+ * ids stays as small as the set of names the interlocking knows, however many trains the log records. Replay
+ * releases the same ids at the same points, so each name record's id is the one replay expects next.
+ *
+ * <pre>
+ * NAME  id, byte length    followed by the UTF-8 name, padded to whole records
+ * ADD   id, entry, destination
+ * MOVE  count              followed by the ids of the listed trains, four per record
+ * ORDER move order ordinal
+ * </pre>
+ *
+ * Each command and the name records it needs are written as one group: the body first and the type of the group's
+ * first record last, so a process that dies part way through leaves a log that ends before the group. Writes go to
+ * the page cache through the mapping and survive the process dying; {@link #sync()} forces them to the disk, so that
+ * they also survive the machine failing.
+ *
+ * A journal belongs to one interlocking and is not synchronized.
+ */
+public class CommandJournal implements AutoCloseable {
+    static final int NAME = 1;
+    static final int ADD = 2;
+    static final int MOVE = 3;
+    static final int ORDER = 4;
+
+    private static final int RECORD = 16;
+    private static final int REGION_BITS = 24;
+    private static final long REGION = 1L << REGION_BITS;
+
+    private final FileChannel channel;
+    private final ArrayList<MappedByteBuffer> regions = new ArrayList<>();
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private final ArrayList<String> names = new ArrayList<>();
+    private int[] free = new int[0];
+    private int freeCount;
+    private long position;
+
+    /**
+     * Opens a journal, creating the file if it does not exist. Appends go after the commands already in the file
+     * once it has been replayed.
+     *
+     * @param path The journal file.
+     * @throws UncheckedIOException If the file cannot be opened or mapped.
+     */
+    public CommandJournal(Path path) throws UncheckedIOException {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Applies every command in the journal to an interlocking, and positions the journal after the last one. The
+     * interlocking should be new, on the topology the journal was written for, and should not record the commands
+     * again while they are replayed.
+     *
+     * @param interlocking The interlocking to rebuild.
+     * @return The number of commands applied.
+     * @throws IllegalStateException If the journal is corrupt.
+     */
+    public long replay(InterlockingImpl interlocking) throws IllegalStateException {
+        ArrayList<String[]> batches = new ArrayList<>();
+        long commands = 0;
+        long end = size();
+        position = 0;
+        while (true) {
+            if (position + RECORD > end) {
+                return commands;
+            }
+            int type = readInt(position);
+            if (type == 0) {
+                return commands;
+            }
+            int a = readInt(position + 4);
+            int b = readInt(position + 8);
+            int c = readInt(position + 12);
+            position += RECORD;
+            switch (type) {
+                case NAME:
+                    if (a != nextId()) {
+                        throw new IllegalStateException("Journal names are out of order at " + (position - RECORD));
+                    }
+                    if (b < 0 || position + records(b) * RECORD > end) {
+                        throw new IllegalStateException("Journal name is truncated at " + (position - RECORD));
+                    }
+                    byte[] bytes = new byte[b];
+                    for (int i = 0; i < b; i++) {
+                        bytes[i] = region(position + i).get((int) ((position + i) & (REGION - 1)));
+                    }
+                    position += records(b) * RECORD;
+                    intern(new String(bytes, StandardCharsets.UTF_8));
+                    break;
+                case ADD:
+                    interlocking.tryAddTrain(name(a, position - RECORD), b, c);
+                    commands++;
+                    break;
+                case MOVE:
+                    if (a < 0 || position + records(4L * a) * RECORD > end) {
+                        throw new IllegalStateException("Journal move is truncated at " + (position - RECORD));
+                    }
+                    while (batches.size() <= a) {
+                        batches.add(null);
+                    }
+                    String[] batch = batches.get(a);
+                    if (batch == null) {
+                        batch = new String[a];
+                        batches.set(a, batch);
+                    }
+                    for (int i = 0; i < a; i++) {
+                        batch[i] = name(readInt(position + 4L * i), position - RECORD);
+                    }
+                    position += records(4L * a) * RECORD;
+                    interlocking.tryMoveTrains(batch, null);
+                    commands++;
+                    break;
+                case ORDER:
+                    MoveOrder[] orders = MoveOrder.values();
+                    if (a < 0 || a >= orders.length) {
+                        throw new IllegalStateException("Unknown move order " + a + " at " + (position - RECORD));
+                    }
+                    interlocking.setMoveOrder(orders[a]);
+                    commands++;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown journal record " + type + " at " + (position - RECORD));
+            }
+        }
+    }
+
+    private String name(int id, long record) throws IllegalStateException {
+        if (id < 0 || id >= names.size() || names.get(id) == null) {
+            throw new IllegalStateException("Unknown journal train id " + id + " at " + record);
+        }
+        return names.get(id);
+    }
+
+    /**
+     * Gets the id of a train name, assigning the next one if the name is new.
+     *
+     * @param trainName The name.
+     * @return The id.
+     */
+    int id(String trainName) {
+        Integer id = ids.get(trainName);
+        if (id != null) {
+            return id;
+        }
+        long group = position;
+        byte[] bytes = trainName.getBytes(StandardCharsets.UTF_8);
+        id = intern(trainName);
+        writeRecord(id, bytes.length, 0);
+        for (int i = 0; i < bytes.length; i++) {
+            region(position + i).put((int) ((position + i) & (REGION - 1)), bytes[i]);
+        }
+        position += records(bytes.length) * RECORD;
+        commit(group, NAME);
+        return id;
+    }
+
+    private int intern(String trainName) {
+        int id;
+        if (freeCount > 0) {
+            id = free[--freeCount];
+            names.set(id, trainName);
+        } else {
+            id = names.size();
+            names.add(trainName);
+        }
+        ids.put(trainName, id);
+        return id;
+    }
+
+    private int nextId() {
+        return freeCount > 0 ? free[freeCount - 1] : names.size();
+    }
+
+    /**
+     * Gives the id of a name the interlocking has forgotten back, for the next new name to use. Nothing needs to be
+     * written, since replay forgets the name at the same point.
+     *
+     * @param trainName The forgotten name.
+     */
+    void release(String trainName) {
+        Integer id = ids.remove(trainName);
+        if (id == null) {
+            return;
+        }
+        names.set(id, null);
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, Math.max(16, free.length * 2));
+        }
+        free[freeCount++] = id;
+    }
+
+    /**
+     * Gets the number of ids held by names the interlocking still knows.
+     *
+     * @return The number of ids in use.
+     */
+    int idCount() {
+        return ids.size();
+    }
+
+    /**
+     * Appends an accepted entry.
+     *
+     * @param id                      The id of the train.
+     * @param entryTrackSection       The entry track section.
+     * @param destinationTrackSection The destination track section.
+     */
+    void add(int id, int entryTrackSection, int destinationTrackSection) {
+        long group = position;
+        writeRecord(id, entryTrackSection, destinationTrackSection);
+        commit(group, ADD);
+    }
+
+    /**
+     * Appends a move of the trains of a batch, skipping entries without a train. A batch without trains changes
+     * nothing and is not recorded.
+     *
+     * @param batch The resolved trains.
+     * @param size  The number of entries in the batch.
+     */
+    void move(InterlockingImpl.MoveBatch batch, int size) {
+        long group = position;
+        position += RECORD;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            Train train = batch.trains[i];
+            if (train != null) {
+                writeInt(position + 4L * count++, train.journalId);
+            }
+        }
+        if (count == 0) {
+            position = group;
+            return;
+        }
+        position += records(4 * count) * RECORD;
+        writeInt(group + 4, count);
+        commit(group, MOVE);
+    }
+
+    /**
+     * Appends a change of move order.
+     *
+     * @param moveOrder The new move order.
+     */
+    void order(MoveOrder moveOrder) {
+        long group = position;
+        writeRecord(moveOrder.ordinal(), 0, 0);
+        commit(group, ORDER);
+    }
+
+    /**
+     * Forces everything appended so far to the disk.
+     *
+     * @throws UncheckedIOException If the file cannot be written.
+     */
+    public void sync() throws UncheckedIOException {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+    }
+
+    /**
+     * Forces the journal to the disk and closes the file.
+     *
+     * @throws UncheckedIOException If the file cannot be written or closed.
+     */
+    @Override
+    public void close() throws UncheckedIOException {
+        sync();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long records(long bytes) {
+        return (bytes + RECORD - 1) / RECORD;
+    }
+
+    /**
+     * Writes a record apart from its type, which is left zero until the group is committed.
+     */
+    private void writeRecord(int a, int b, int c) {
+        writeInt(position + 4, a);
+        writeInt(position + 8, b);
+        writeInt(position + 12, c);
+        position += RECORD;
+    }
+
+    private void commit(long group, int type) {
+        //Zero the next type so that replay stops here even over the remains of an earlier, torn group
+        writeInt(position, 0);
+        writeInt(group, type);
+    }
+
+    private long size() throws UncheckedIOException {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int readInt(long at) {
+        return region(at).getInt((int) (at & (REGION - 1)));
+    }
+
+    private void writeInt(long at, int value) {
+        region(at).putInt((int) (at & (REGION - 1)), value);
+    }
+
+    private MappedByteBuffer region(long at) {
+        int index = (int) (at >>> REGION_BITS);
+        while (regions.size() <= index) {
+            try {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, regions.size() * REGION,
+                        REGION);
+                region.order(ByteOrder.LITTLE_ENDIAN);
+                regions.add(region);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return regions.get(index);
+    }
+}
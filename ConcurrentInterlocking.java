@@ -0,0 +1,321 @@
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An interlocking that may be driven by several threads at once.
+ *
+ * Instead of one lock around the whole corridor, every track section maps to one of a fixed number of lock stripes,
+ * and each operation locks only the stripes of the sections it reads or writes. The lock set of a move is its source
+ * and target section plus the source sections of every transition it yields to under the priority rules; the lock
+ * set of an entry is the entry section plus the sections inspected by the route's entry constraints. Lock sets are
+ * computed once from the topology, sorted by stripe, and always acquired in ascending order, so operations cannot
+ * deadlock. Movements in disjoint parts of the network, such as the passenger and freight lines, proceed in parallel.
+ *
+ * Each individual move or entry is atomic. A call to moveTrains is not: moves from concurrent calls may interleave
+ * between the trains of one call, exactly as if the calls had been issued train by train.
+ */
+public class ConcurrentInterlocking extends InterlockingImpl {
+    private static final int DEFAULT_STRIPES = 1024;
+
+    private final ReentrantLock[] locks;
+    private final int[][] transitionStripes;
+    private final int[][] routeStripes;
+    private final ThreadLocal<MoveBatch> batches = ThreadLocal.withInitial(MoveBatch::new);
+
+    /**
+     * Initializes a concurrent interlocking on the corridor described in the README.
+     */
+    public ConcurrentInterlocking() {
+        this(Topology.corridor());
+    }
+
+    /**
+     * Initializes a concurrent interlocking with the default number of lock stripes.
+     *
+     * @param topology The network topology.
+     */
+    public ConcurrentInterlocking(Topology topology) {
+        this(topology, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Initializes a concurrent interlocking.
+     *
+     * @param topology The network topology.
+     * @param stripes  The maximum number of locks; sections share a lock when there are more sections than stripes.
+     */
+    public ConcurrentInterlocking(Topology topology, int stripes) {
+        super(topology, TrainRegistry.DEFAULT_HISTORY, true);
+        int count = Integer.highestOneBit(Math.max(1, Math.min(stripes, topology.sectionCount())) * 2 - 1);
+        locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
+        }
+
+        transitionStripes = new int[topology.transitionCount()][];
+        for (int t = 0; t < transitionStripes.length; t++) {
+            int start = topology.priorityStart(t);
+            int end = topology.priorityStart(t + 1);
+            int[] sections = new int[2 + end - start];
+            int n = 0;
+            sections[n++] = topology.transitionFrom(t);
+            if (topology.transitionTo(t) != -1) {
+                sections[n++] = topology.transitionTo(t);
+            }
+            for (int i = start; i < end; i++) {
+                sections[n++] = topology.transitionFrom(topology.priorityTarget(i));
+            }
+            transitionStripes[t] = stripes(sections, n);
+        }
+
+        routeStripes = new int[topology.routeCount()][];
+        for (int r = 0; r < routeStripes.length; r++) {
+            int start = topology.constraintStart(r);
+            int end = topology.constraintStart(r + 1);
+            int[] sections = new int[1 + end - start];
+            int n = 0;
+            sections[n++] = topology.sectionIndex(topology.routePath(r)[0]);
+            for (int i = start; i < end; i++) {
+                sections[n++] = topology.constraintSection(i);
+            }
+            routeStripes[r] = stripes(sections, n);
+        }
+    }
+
+    /**
+     * Adds a new train while holding the locks of its entry section and of the sections its entry constraints inspect.
+     * addTrain and tryAddTrain go through this method, and time it with the wait for the locks.
+     *
+     * @param trainName              The name of the train.
+     * @param entryTrackSection      The entry track section for the train.
+     * @param destinationTrackSection The destination track section for the train.
+     * @return {@link Status#OK} if the train was added, or the reason it was not.
+     */
+    @Override
+    protected Status enter(String trainName, int entryTrackSection, int destinationTrackSection) {
+        int route = getTopology().route(entryTrackSection, destinationTrackSection);
+        if (route == -1) {
+            return Status.UNKNOWN_ROUTE;
+        }
+        int[] stripes = routeStripes[route];
+        lock(stripes);
+        try {
+            return super.enter(trainName, entryTrackSection, destinationTrackSection);
+        } finally {
+            unlock(stripes);
+        }
+    }
+
+    /**
+     * Moves a train while holding the locks of every section its move depends on. The train's transition is read
+     * again once the locks are held, since another thread may have moved the train in the meantime.
+     *
+     * @param train The train to be moved.
+     * @return True if the train was moved; false if it was blocked or has already left the corridor.
+     */
+    @Override
+    protected boolean moveTrain(Train train) {
+        while (true) {
+            int transition = train.getTransition();
+            if (transition == -1) {
+                return false;
+            }
+            int[] stripes = transitionStripes[transition];
+            lock(stripes);
+            try {
+                if (train.getTransition() == transition) {
+                    return super.moveTrain(train);
+                }
+            } finally {
+                unlock(stripes);
+            }
+        }
+    }
+
+    /**
+     * Finds the section blocking a train while holding the locks its move depends on.
+     *
+     * @param train The train.
+     * @return The index of the section blocking the train, or -1 if it is not blocked or has left the corridor.
+     */
+    @Override
+    protected int blocker(Train train) {
+        while (true) {
+            int transition = train.getTransition();
+            if (transition == -1) {
+                return -1;
+            }
+            int[] stripes = transitionStripes[transition];
+            lock(stripes);
+            try {
+                if (train.getTransition() == transition) {
+                    return super.blocker(train);
+                }
+            } finally {
+                unlock(stripes);
+            }
+        }
+    }
+
+    /**
+     * Gets the name of the train occupying a track section, under that section's lock.
+     *
+     * @param trackSection The track section to query.
+     * @return The name of the train occupying the section or null if the section is unoccupied.
+     * @throws IllegalArgumentException If the specified track section does not exist.
+     */
+    @Override
+    public String getSection(int trackSection) throws IllegalArgumentException {
+        int index = getTopology().sectionIndex(trackSection);
+        if (index == -1) {
+            return super.getSection(trackSection);
+        }
+        ReentrantLock lock = locks[index & (locks.length - 1)];
+        lock.lock();
+        try {
+            return super.getSection(trackSection);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the track section of a train, confirmed under that section's lock.
+     *
+     * @param trainName The name of the train.
+     * @return The track section where the train is located, or -1 if it has left the corridor.
+     * @throws IllegalArgumentException If the specified train name does not exist.
+     */
+    @Override
+    public int getTrain(String trainName) throws IllegalArgumentException {
+        while (true) {
+            int section = super.getTrain(trainName);
+            if (section == -1) {
+                return -1;
+            }
+            ReentrantLock lock = locks[getTopology().sectionIndex(section) & (locks.length - 1)];
+            lock.lock();
+            try {
+                if (super.getTrain(trainName) == section) {
+                    return section;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the interlocking to its initial state while holding every lock.
+     */
+    @Override
+    public void reset() {
+        lockAll();
+        try {
+            super.reset();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Copies the state of the interlocking while holding every lock, so the checkpoint is a state the network was
+     * actually in.
+     *
+     * @return The checkpoint.
+     */
+    @Override
+    public Checkpoint checkpoint() {
+        lockAll();
+        try {
+            return super.checkpoint();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Copies the occupancy bitset while holding every lock, so the copy is a state the network was actually in.
+     *
+     * @param bits A buffer of at least (sectionCount + 63) / 64 words.
+     * @return The version of the copied state.
+     * @throws IllegalArgumentException If the buffer is too small.
+     */
+    @Override
+    public long getOccupancy(long[] bits) throws IllegalArgumentException {
+        lockAll();
+        try {
+            return super.getOccupancy(bits);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Copies the occupant of every section while holding every lock, so the copy is a state the network was
+     * actually in.
+     *
+     * @param names A buffer of at least sectionCount entries.
+     * @return The version of the copied state.
+     * @throws IllegalArgumentException If the buffer is too small.
+     */
+    @Override
+    public long getOccupants(String[] names) throws IllegalArgumentException {
+        lockAll();
+        try {
+            return super.getOccupants(names);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Gets a per-thread scratch buffer, so concurrent calls to moveTrains never share one.
+     *
+     * @param size The number of trains in the call.
+     * @return A buffer owned by the calling thread.
+     */
+    @Override
+    protected MoveBatch batch(int size) {
+        return batches.get().ensure(size);
+    }
+
+    private int[] stripes(int[] sections, int n) {
+        int[] stripes = new int[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = sections[i] & (locks.length - 1);
+        }
+        Arrays.sort(stripes);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || stripes[unique - 1] != stripes[i]) {
+                stripes[unique++] = stripes[i];
+            }
+        }
+        return Arrays.copyOf(stripes, unique);
+    }
+
+    private void lock(int[] stripes) {
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    private void unlock(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.Arrays;
+
+/**
+ * A priority queue of events ordered by time, each event being a primitive long timestamp and an int payload.
+ * The events are kept in a binary heap over two flat arrays, so adding and removing neither boxes nor allocates.
+ * Events with equal times come out in no particular order.
+ */
+public class EventQueue {
+    private long[] times;
+    private int[] payloads;
+    private int size;
+
+    /**
+     * Creates a queue sized to hold the expected number of events without growing.
+     *
+     * @param expectedSize The number of events the queue is expected to hold.
+     */
+    public EventQueue(int expectedSize) {
+        times = new long[Math.max(4, expectedSize)];
+        payloads = new int[times.length];
+    }
+
+    /**
+     * Adds an event.
+     *
+     * @param time    The time of the event.
+     * @param payload The payload of the event.
+     */
+    public void add(long time, int payload) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            payloads = Arrays.copyOf(payloads, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (times[parent] <= time) {
+                break;
+            }
+            times[i] = times[parent];
+            payloads[i] = payloads[parent];
+            i = parent;
+        }
+        times[i] = time;
+        payloads[i] = payload;
+    }
+
+    /**
+     * Gets the time of the earliest event.
+     *
+     * @return The earliest time, or Long.MAX_VALUE if the queue is empty.
+     */
+    public long peekTime() {
+        return size == 0 ? Long.MAX_VALUE : times[0];
+    }
+
+    /**
+     * Removes the earliest event.
+     *
+     * @return The payload of the removed event.
+     * @throws IllegalStateException If the queue is empty.
+     */
+    public int poll() throws IllegalStateException {
+        if (size == 0) {
+            throw new IllegalStateException("Event queue is empty");
+        }
+        int payload = payloads[0];
+        long time = times[--size];
+        int last = payloads[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && times[child + 1] < times[child]) {
+                child++;
+            }
+            if (times[child] >= time) {
+                break;
+            }
+            times[i] = times[child];
+            payloads[i] = payloads[child];
+            i = child;
+        }
+        times[i] = time;
+        payloads[i] = last;
+        return payload;
+    }
+
+    /**
+     * Gets the number of events in the queue.
+     *
+     * @return The number of events.
+     */
+    public int size() {
+        return size;
+    }
+}
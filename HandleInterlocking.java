@@ -0,0 +1,132 @@
+import java.util.Arrays;
+
+/**
+ * An interlocking whose trains can be driven by int handle instead of by name.
+ *
+ * addTrainHandle returns a handle for the new train, and moveTrains(int[]) moves trains by handle, so a name is
+ * hashed once when its train enters rather than on every move. Handles address the rows of the {@link TrainTable}
+ * that holds the state of the interlocking's trains, so resolving a handle reads the table's arrays and never a map;
+ * everything else, from the rules to the move order, listeners, metrics and checkpoints, is that of
+ * {@link InterlockingImpl}, so moving by handle and moving by name behave the same. A train restored from a
+ * checkpoint gets a new handle.
+ *
+ * The interlocking is not synchronized and should be driven by one thread at a time.
+ */
+public class HandleInterlocking extends InterlockingImpl {
+    private final TrainTable table;
+    private final int[] occupantHandles;
+
+    /**
+     * Initializes the interlocking on the corridor described in the README.
+     */
+    public HandleInterlocking() {
+        this(Topology.corridor());
+    }
+
+    /**
+     * Initializes the interlocking on a network topology.
+     *
+     * @param topology The network topology.
+     */
+    public HandleInterlocking(Topology topology) {
+        this(topology, TrainRegistry.DEFAULT_HISTORY);
+    }
+
+    /**
+     * Initializes the interlocking on a network topology with a bounded memory of trains that have left.
+     *
+     * @param topology    The network topology.
+     * @param exitHistory The number of exited train names for which getTrain still returns -1.
+     */
+    public HandleInterlocking(Topology topology, int exitHistory) {
+        super(topology, exitHistory);
+        table = trainTable();
+        occupantHandles = new int[topology.sectionCount()];
+        Arrays.fill(occupantHandles, -1);
+    }
+
+    /**
+     * Adds a new train and returns its handle. The checks are those of addTrain.
+     *
+     * @param trainName              The name of the train.
+     * @param entryTrackSection      The entry track section for the train.
+     * @param destinationTrackSection The destination track section for the train.
+     * @return The handle of the new train, valid until the train leaves.
+     * @throws IllegalArgumentException If the train name is in use or there is no valid path.
+     * @throws IllegalStateException    If the entry section is occupied or an entry constraint is not met.
+     */
+    public int addTrainHandle(String trainName, int entryTrackSection, int destinationTrackSection)
+            throws IllegalArgumentException, IllegalStateException {
+        addTrain(trainName, entryTrackSection, destinationTrackSection);
+        return occupantHandles[getTopology().sectionIndex(entryTrackSection)];
+    }
+
+    /**
+     * Gets the handle of a train in service.
+     *
+     * @param trainName The name of the train.
+     * @return The handle, or -1 if no train of that name is in service.
+     */
+    public int handle(String trainName) {
+        Train train = inService(trainName);
+        return train == null ? -1 : table.handle(train.row);
+    }
+
+    /**
+     * Moves a list of trains given by handle, in the interlocking's move order.
+     *
+     * @param trainHandles An array of handles returned by addTrainHandle.
+     * @return The number of trains successfully moved.
+     * @throws IllegalArgumentException If one of the trains is not in service.
+     */
+    public int moveTrains(int[] trainHandles) throws IllegalArgumentException {
+        MoveBatch batch = batch(trainHandles.length);
+        for (int i = 0; i < trainHandles.length; i++) {
+            Train train = table.live(trainHandles[i]);
+            if (train == null) {
+                Arrays.fill(batch.trains, 0, i, null);
+                throw new IllegalArgumentException("Train handle " + trainHandles[i] + " is not in service.");
+            }
+            batch.trains[i] = train;
+        }
+        return moveResolved(batch, trainHandles.length);
+    }
+
+    /**
+     * Gets the current track section of a train by its handle.
+     *
+     * @param trainHandle The handle of the train.
+     * @return The track section where the train is located, or -1 if it has left.
+     */
+    public int getTrain(int trainHandle) {
+        return table.isLive(trainHandle) ? table.section(table.row(trainHandle)) : -1;
+    }
+
+    /**
+     * Copies the handle of every section's occupant into an array indexed by section index, without allocating.
+     *
+     * @param trainHandles A buffer of at least sectionCount entries; entry i receives the handle of the train on the
+     *                     section with index i, or -1.
+     * @return The version of the copied state.
+     * @throws IllegalArgumentException If the buffer is too small.
+     */
+    public long getOccupantHandles(int[] trainHandles) throws IllegalArgumentException {
+        if (trainHandles.length < occupantHandles.length) {
+            throw new IllegalArgumentException("Handle buffer is too small");
+        }
+        System.arraycopy(occupantHandles, 0, trainHandles, 0, occupantHandles.length);
+        return getVersion();
+    }
+
+    /**
+     * Records a section's occupant and its handle.
+     *
+     * @param index The section index.
+     * @param train The train now on the section, or null if the section is free.
+     */
+    @Override
+    protected void occupy(int index, Train train) {
+        occupantHandles[index] = train == null ? -1 : table.handle(train.row);
+        super.occupy(index, train);
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative long values with buckets of bounded relative width, for percentiles of waiting times.
+ *
+ * Values below 8 have a bucket each; larger values share a bucket with others of the same highest bit and the same
+ * next three bits, so a bucket spans at most an eighth of its values and every percentile is exact to within 12.5%.
+ * The buckets are atomic counters, so any number of threads may record into a histogram or merge others into it
+ * without locking.
+ */
+public class Histogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Records a value.
+     *
+     * @param value The value, at least zero.
+     * @throws IllegalArgumentException If the value is negative.
+     */
+    public void record(long value) throws IllegalArgumentException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Histogram values cannot be negative");
+        }
+        counts.getAndIncrement(bucket(value));
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     *
+     * @param other The histogram to add.
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.getAndAdd(i, count);
+            }
+        }
+    }
+
+    /**
+     * Adds a count to a bucket, for histograms recorded elsewhere in the same buckets.
+     *
+     * @param bucket The bucket index, as given by {@link #bucket(long)}.
+     * @param count  The number of values to add.
+     */
+    void addToBucket(int bucket, long count) {
+        counts.getAndAdd(bucket, count);
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded by other threads while the histogram is cleared may be kept.
+     */
+    public void clear() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    /**
+     * Gets the number of values recorded.
+     *
+     * @return The total count.
+     */
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Gets a percentile of the recorded values.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The smallest value of the bucket holding the percentile, or 0 if nothing has been recorded.
+     * @throws IllegalArgumentException If the percentile is out of range.
+     */
+    public long percentile(double percentile) throws IllegalArgumentException {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return lowest(i);
+            }
+        }
+        return lowest(BUCKETS - 1);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long lowest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hosts any number of independent interlockings in one process, keyed by corridor id.
+ *
+ * Corridors share nothing but their immutable {@link Topology}, so operations on different corridors never contend
+ * with each other. Creating, looking up and removing corridors is safe from any thread; an individual
+ * {@link InterlockingImpl} is still meant to be driven by one thread at a time.
+ */
+public class InterlockingHost {
+    private final ConcurrentHashMap<String, InterlockingImpl> corridors = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new corridor.
+     *
+     * @param corridorId The id of the new corridor.
+     * @param topology   The network the corridor runs on.
+     * @return The interlocking of the new corridor.
+     * @throws IllegalArgumentException If a corridor with the same id already exists.
+     */
+    public InterlockingImpl create(String corridorId, Topology topology) throws IllegalArgumentException {
+        InterlockingImpl interlocking = new InterlockingImpl(topology);
+        if (corridors.putIfAbsent(corridorId, interlocking) != null) {
+            throw new IllegalArgumentException("Corridor " + corridorId + " already exists");
+        }
+        return interlocking;
+    }
+
+    /**
+     * Gets the interlocking of a corridor.
+     *
+     * @param corridorId The id of the corridor.
+     * @return The interlocking.
+     * @throws IllegalArgumentException If the corridor does not exist.
+     */
+    public InterlockingImpl get(String corridorId) throws IllegalArgumentException {
+        InterlockingImpl interlocking = corridors.get(corridorId);
+        if (interlocking == null) {
+            throw new IllegalArgumentException("Corridor " + corridorId + " does not exist");
+        }
+        return interlocking;
+    }
+
+    /**
+     * Removes a corridor.
+     *
+     * @param corridorId The id of the corridor.
+     * @return True if the corridor existed; false otherwise.
+     */
+    public boolean remove(String corridorId) {
+        return corridors.remove(corridorId) != null;
+    }
+
+    /**
+     * Gets the ids of all hosted corridors.
+     *
+     * @return A live view of the corridor ids.
+     */
+    public Set<String> corridorIds() {
+        return corridors.keySet();
+    }
+}
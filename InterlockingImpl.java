@@ -1,51 +1,173 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.*;
 
 /**
  * The InterlockingImpl class implements the Interlocking interface, which represents a railway interlocking system.
  * It manages train movement between track sections, ensuring that constraints and priorities are observed.
+ * Each instance keeps its own trains, so several interlockings can run side by side in one process; a single
+ * instance is not synchronized and should be driven by one thread at a time.
+ *
+ * Priority and entry-constraint checks do not walk the rules. The interlocking keeps two sets of counters up to date
+ * as trains enter, move and leave: for every transition, the number of higher-priority transitions that have a train
+ * poised on them, and for every route, the number of its entry constraints currently matched by a train. A check is
+ * then a single counter read, and a move only touches the counters of the rules that name the train's position.
  */
 public class InterlockingImpl implements Interlocking {
-    private final Map<Integer, TrackSection> sections;
-    private final Map<String, Train> trains;
-    private final Map<Pair<Integer, Integer>, Set<Pair<Integer, Integer>>> constraints;
-    private final Map<Pair<Integer, Integer>, Set<Pair<Integer, Integer>>> priority;
-    private final Set<Pair<Integer, Integer>> prioritySet;
+    private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle BITS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(InterlockingImpl.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Topology topology;
+    private final TrackSection[] sections;
+    private final TrainRegistry trains;
+    private final MoveBatch batch = new MoveBatch();
+    private final boolean shared;
+    private final int[] yielding;
+    private final int[] blocked;
+    private final long[] occupiedBits;
+    private final String[] occupantNames;
+    private long version;
+    private OccupancyListener[] listeners = new OccupancyListener[0];
+    private OccupancyEvents events;
+    private MoveOrder moveOrder = MoveOrder.LISTED;
+    private InterlockingMetrics metrics;
 
     /**
-     * Constructor to initialize the Interlocking system.
+     * Constructor to initialize the Interlocking system on the 11-section corridor described in the README.
      */
     public InterlockingImpl() {
-        sections = new HashMap<>();
-        for (int i = 1; i < 12; i++) {
-            sections.put(i, new TrackSection(i));
-        }
-        trains = new HashMap<>();
-
-        constraints = new HashMap<>();
-        constraints.put(Pair.of(4, 3), Set.of(Pair.of(3, 4)));
-        constraints.put(Pair.of(3, 4), Set.of(Pair.of(4, 3)));
-        constraints.put(Pair.of(3, 11), Set.of(Pair.of(11, 3), Pair.of(7, 3)));
-        constraints.put(Pair.of(11, 3), Set.of(Pair.of(3, 11), Pair.of(7, 11)));
-        constraints.put(Pair.of(1, 9), Set.of(Pair.of(9, 2)));
-        constraints.put(Pair.of(9, 2), Set.of(Pair.of(1, 9), Pair.of(5, 9)));
-
-        priority = new HashMap<>();
-        priority.put(Pair.of(3, 4), Set.of(
-            Pair.of(1, 5),
-            Pair.of(6, 2)
-        ));
-        priority.put(Pair.of(4, 3), Set.of(
-            Pair.of(1, 5),
-            Pair.of(6, 2)
-        ));
-        priority.put(Pair.of(9, 6), Set.of(
-            Pair.of(5, 8),
-            Pair.of(10, 6)
-        ));
-        prioritySet = new HashSet<>();
-        for (Set<Pair<Integer, Integer>> item : priority.values()) {
-            prioritySet.addAll(item);
+        this(Topology.corridor());
+    }
+
+    /**
+     * Constructor to initialize the Interlocking system on a compiled network topology.
+     *
+     * @param topology The sections, routes, constraints and priority rules of the network.
+     */
+    public InterlockingImpl(Topology topology) {
+        this(topology, TrainRegistry.DEFAULT_HISTORY);
+    }
+
+    /**
+     * Constructor to initialize the Interlocking system with a bounded memory of trains that have left. Exited trains
+     * beyond the history are forgotten and their objects recycled for new trains, so memory stays flat however many
+     * trains pass through.
+     *
+     * @param topology    The sections, routes, constraints and priority rules of the network.
+     * @param exitHistory The number of exited trains whose names getTrain still resolves.
+     */
+    public InterlockingImpl(Topology topology, int exitHistory) {
+        this(topology, exitHistory, false);
+    }
+
+    /**
+     * Constructor for subclasses that move trains from several threads, each move holding locks on the sections it
+     * touches. The rule counters are then updated atomically, since moves under different locks may share one, and
+     * exited trains are not recycled, since another thread may still hold one it looked up earlier.
+     *
+     * @param topology    The sections, routes, constraints and priority rules of the network.
+     * @param exitHistory The number of exited trains whose names getTrain still resolves.
+     * @param shared      True if the interlocking may be updated by several threads at once.
+     */
+    protected InterlockingImpl(Topology topology, int exitHistory, boolean shared) {
+        this(topology, exitHistory, shared, !shared);
+    }
+
+    /**
+     * Constructor for subclasses that are updated by one thread but let other threads look up trains, and therefore
+     * must not recycle exited trains either.
+     *
+     * @param topology    The sections, routes, constraints and priority rules of the network.
+     * @param exitHistory The number of exited trains whose names getTrain still resolves.
+     * @param shared      True if the interlocking may be updated by several threads at once.
+     * @param recycle     True to reuse the objects of forgotten trains; only when no other thread reads them.
+     */
+    protected InterlockingImpl(Topology topology, int exitHistory, boolean shared, boolean recycle) {
+        this.topology = topology;
+        this.shared = shared;
+        yielding = new int[topology.transitionCount()];
+        blocked = new int[topology.routeCount()];
+        sections = new TrackSection[topology.sectionCount()];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = new TrackSection(topology.sectionId(i));
+        }
+        trains = new TrainRegistry(exitHistory, recycle);
+        trains.table(topology);
+        occupiedBits = new long[(sections.length + 63) >>> 6];
+        occupantNames = new String[sections.length];
+    }
+
+    /**
+     * Gets the network topology the interlocking runs on.
+     *
+     * @return The compiled topology.
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Gets the order in which moveTrains resolves the listed trains.
+     *
+     * @return The move order; {@link MoveOrder#LISTED} unless changed.
+     */
+    public MoveOrder getMoveOrder() {
+        return moveOrder;
+    }
+
+    /**
+     * Sets the order in which moveTrains resolves the listed trains.
+     *
+     * @param moveOrder The move order.
+     */
+    public void setMoveOrder(MoveOrder moveOrder) {
+        if (moveOrder == null) {
+            throw new IllegalArgumentException("Move order cannot be null");
         }
+        this.moveOrder = moveOrder;
+    }
+
+    /**
+     * Gets the metrics the interlocking records into.
+     *
+     * @return The metrics, or null if none are recorded.
+     */
+    public InterlockingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics the interlocking records moves, held trains, entries and call latencies into. Metrics should
+     * be set before the interlocking is shared between threads.
+     *
+     * @param metrics The metrics, built for this interlocking's topology, or null to stop recording.
+     * @throws IllegalArgumentException If the metrics were built for another topology.
+     */
+    public void setMetrics(InterlockingMetrics metrics) throws IllegalArgumentException {
+        if (metrics != null && metrics.getTopology() != topology) {
+            throw new IllegalArgumentException("Metrics were built for another topology");
+        }
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the track section with the given id.
+     *
+     * @param sectionId The id of the section.
+     * @return The track section, or null if it does not exist.
+     */
+    private TrackSection section(int sectionId) {
+        int index = topology.sectionIndex(sectionId);
+        return index == -1 ? null : sections[index];
     }
 
     /**
@@ -54,30 +176,37 @@ public class InterlockingImpl implements Interlocking {
      * This method examines whether a specific section transition has higher priority, based on the priority rules defined
      * for the interlocking system. It checks if there is a higher-priority train that is currently occupying the target
      * section of the transition. If such a train exists and is moving to the same destination as the current train, it
-     * indicates that the current train should wait to ensure safety and compliance with priority rules.
+     * indicates that the current train should wait to ensure safety and compliance with priority rules. The answer is
+     * a single read of the transition's counter of poised higher-priority trains.
      *
-     * @param key The section transition represented as a pair of section IDs (source and target).
+     * @param transition The section transition, as a transition index of the topology.
      * @return True if there is a higher-priority train moving to the target section; false otherwise.
      */
-    private boolean checkPriority(Pair<Integer, Integer> key) {
-        Set<Pair<Integer, Integer>> priorityTarget = priority.get(key);
-        if (priorityTarget == null) {
-            return false;
+    private boolean checkPriority(int transition) {
+        return count(yielding, transition) > 0;
+    }
+
+    /**
+     * Finds a section holding a train that a transition has to yield to.
+     *
+     * @param transition The section transition, as a transition index of the topology.
+     * @return The index of a section whose train is poised on a higher-priority transition, or -1 if there is none.
+     */
+    private int priorityBlocker(int transition) {
+        if (!checkPriority(transition)) {
+            return -1;
         }
-        for (Pair<Integer, Integer> target : priorityTarget) {
-            TrackSection section = sections.get(target.first);
-            int targetDestination = target.second;
-            if (!section.isOccupied()) {
-                continue;
-            }
-            if (section.train.getNextSection() == targetDestination) {
-                return true;
+        for (int i = topology.priorityStart(transition); i < topology.priorityStart(transition + 1); i++) {
+            int target = topology.priorityTarget(i);
+            int from = topology.transitionFrom(target);
+            Train occupant = sections[from].train;
+            if (occupant != null && occupant.getTransition() == target) {
+                return from;
             }
         }
-        return false;
+        return -1;
     }
 
-
     /**
      * Checks if a train can be moved based on constraints and priorities.
      *
@@ -85,36 +214,451 @@ public class InterlockingImpl implements Interlocking {
      * @return True if the train can be moved, false otherwise.
      */
     private boolean isMovable(Train train) {
-        TrackSection nextSection = sections.get(train.getNextSection());
-        Pair<Integer, Integer> key = Pair.of(train.getSection(), train.getNextSection());
-        if (nextSection == null) {
+        int transition = train.getTransition();
+        //A train listed twice may already have left on its first move
+        if (transition == -1) {
+            return false;
+        }
+        int next = topology.transitionTo(transition);
+        if (next == -1) {
             return true;
         }
-        if (nextSection.isOccupied() || checkPriority(key)) {
+        if (sections[next].isOccupied() || checkPriority(transition) || !isPointSet(transition)) {
             return false;
         }
         return true;
     }
 
+    /**
+     * Checks if the point a transition crosses is set for it. Every transition may pass unless overridden.
+     *
+     * @param transition The transition index, which does not leave the corridor.
+     * @return True if a train may make the move as far as points are concerned.
+     */
+    protected boolean isPointSet(int transition) {
+        return true;
+    }
+
     /**
      * Moves a train to the next track section if it is movable.
      *
      * @param train The train to be moved.
      * @return True if the train was successfully moved, false if it couldn't be moved.
      */
-    private boolean moveTrain(Train train) {
+    protected boolean moveTrain(Train train) {
         if (isMovable(train)) {
-            TrackSection currentSection = sections.get(train.getSection());
-            TrackSection nextSection = sections.get(train.getNextSection());
-            currentSection.moveTrain();
-            if (nextSection != null) {
-                nextSection.addTrain(train);
+            int transition = train.getTransition();
+            int next = topology.transitionTo(transition);
+            int from = topology.transitionFrom(transition);
+            track(train, -1);
+            sections[from].moveTrain();
+            occupy(from, null);
+            if (events != null) {
+                events.add(OccupancyChange.LEAVE, topology.sectionId(from), train.getTrainName());
+            }
+            if (next != -1) {
+                sections[next].addTrain(train);
+                occupy(next, train);
+                track(train, 1);
+                if (events != null) {
+                    events.add(OccupancyChange.ENTER, topology.sectionId(next), train.getTrainName());
+                }
+            } else {
+                if (events != null) {
+                    events.add(OccupancyChange.EXIT, topology.sectionId(from), train.getTrainName());
+                }
+                String forgotten = trains.retire(train);
+                if (forgotten != null) {
+                    forgotten(forgotten);
+                }
+            }
+            changed();
+            if (metrics != null) {
+                metrics.moved(transition);
             }
             return true;
         }
         return false;
     }
 
+    /**
+     * Adds or removes a train's position in the rule counters: the transitions that yield to the one it is poised
+     * on, and the routes whose entry constraints name its section and destination.
+     *
+     * @param train The train, which must be in service.
+     * @param delta 1 when the train arrives at its position, -1 when it is about to leave it.
+     */
+    private void track(Train train, int delta) {
+        int transition = train.getTransition();
+        for (int i = topology.yieldStart(transition); i < topology.yieldStart(transition + 1); i++) {
+            add(yielding, topology.yieldingTransition(i), delta);
+        }
+        int step = topology.routeStep(train.getRoute(), train.getJourneyIndex());
+        for (int i = topology.blockedStart(step); i < topology.blockedStart(step + 1); i++) {
+            add(blocked, topology.blockedRoute(i), delta);
+        }
+    }
+
+    private void add(int[] counts, int index, int delta) {
+        if (shared) {
+            COUNTS.getAndAdd(counts, index, delta);
+        } else {
+            counts[index] += delta;
+        }
+    }
+
+    private int count(int[] counts, int index) {
+        return shared ? (int) COUNTS.getVolatile(counts, index) : counts[index];
+    }
+
+    /**
+     * Records a section's occupant in the bulk occupancy state. Called for every section whose occupant changes,
+     * while the change is made.
+     *
+     * @param index The section index.
+     * @param train The train now on the section, or null if the section is free.
+     */
+    protected void occupy(int index, Train train) {
+        occupantNames[index] = train == null ? null : train.getTrainName();
+        long bit = 1L << index;
+        if (shared) {
+            if (train == null) {
+                BITS.getAndBitwiseAnd(occupiedBits, index >>> 6, ~bit);
+            } else {
+                BITS.getAndBitwiseOr(occupiedBits, index >>> 6, bit);
+            }
+        } else if (train == null) {
+            occupiedBits[index >>> 6] &= ~bit;
+        } else {
+            occupiedBits[index >>> 6] |= bit;
+        }
+    }
+
+    private void changed() {
+        if (shared) {
+            VERSION.getAndAdd(this, 1L);
+        } else {
+            version++;
+        }
+    }
+
+    /**
+     * Returns the interlocking to its initial state, with no trains in service or remembered and the version back at
+     * zero, keeping the topology, move order and listeners. Resetting is much cheaper than building a new
+     * interlocking, and leaves nothing behind that could affect the next use.
+     */
+    public void reset() {
+        for (int i = 0; i < sections.length; i++) {
+            if (sections[i].isOccupied()) {
+                sections[i].removeTrain();
+                occupy(i, null);
+            }
+        }
+        trains.clear();
+        Arrays.fill(yielding, 0);
+        Arrays.fill(blocked, 0);
+        if (shared) {
+            VERSION.setVolatile(this, 0L);
+        } else {
+            version = 0;
+        }
+        if (events != null) {
+            events.clear();
+        }
+    }
+
+    /**
+     * Copies the state of the interlocking into a checkpoint. Only the trains and a few settings are copied, so the
+     * interlocking can carry on while the checkpoint is written out.
+     *
+     * @return The checkpoint.
+     */
+    public Checkpoint checkpoint() {
+        int count = 0;
+        for (TrackSection section : sections) {
+            if (section.train != null) {
+                count++;
+            }
+        }
+        String[] names = new String[count];
+        int[] routes = new int[count];
+        int[] journeyIndexes = new int[count];
+        count = 0;
+        for (TrackSection section : sections) {
+            Train train = section.train;
+            if (train != null) {
+                names[count] = train.getTrainName();
+                routes[count] = train.getRoute();
+                journeyIndexes[count++] = train.getJourneyIndex();
+            }
+        }
+        Train[] exits = trains.exits();
+        String[] exitNames = new String[exits.length];
+        int[] exitRoutes = new int[exits.length];
+        for (int i = 0; i < exits.length; i++) {
+            exitNames[i] = exits[i].getTrainName();
+            exitRoutes[i] = exits[i].getRoute();
+        }
+        return new Checkpoint(sections.length, topology.routeCount(), moveOrder, getVersion(), names, routes,
+                journeyIndexes, exitNames, exitRoutes);
+    }
+
+    /**
+     * Restores the state held by a checkpoint. Trains are placed directly on their sections and the rule counters
+     * rebuilt from their positions, without replaying how they got there.
+     *
+     * @param checkpoint The checkpoint, taken on the same topology.
+     * @throws IllegalArgumentException If the checkpoint was taken on a topology of a different shape.
+     * @throws IllegalStateException    If the interlocking has already been used, or the checkpoint holds a route or
+     *                                  journey index the topology does not have, two trains with one name or two
+     *                                  trains on one section. Nothing is restored in that case.
+     */
+    public void restore(Checkpoint checkpoint) throws IllegalArgumentException, IllegalStateException {
+        if (checkpoint.sectionCount != sections.length || checkpoint.routeCount != topology.routeCount()) {
+            throw new IllegalArgumentException("Checkpoint was taken on a different topology");
+        }
+        if (getVersion() != 0) {
+            throw new IllegalStateException("Checkpoints can only be restored into a new interlocking");
+        }
+        validate(checkpoint);
+        for (int i = 0; i < checkpoint.exitNames.length; i++) {
+            Train train = place(checkpoint.exitNames[i], checkpoint.exitRoutes[i], -1);
+            trains.register(train);
+            trains.retire(train);
+        }
+        for (int i = 0; i < checkpoint.names.length; i++) {
+            Train train = place(checkpoint.names[i], checkpoint.routes[i], checkpoint.journeyIndexes[i]);
+            int index = topology.sectionIndex(train.getSection());
+            sections[index].addTrain(train);
+            trains.register(train);
+            occupy(index, train);
+            track(train, 1);
+        }
+        moveOrder = checkpoint.moveOrder;
+        if (shared) {
+            VERSION.setVolatile(this, checkpoint.version);
+        } else {
+            version = checkpoint.version;
+        }
+    }
+
+    /**
+     * Checks everything a checkpoint would place against the topology before any of it is placed.
+     *
+     * @param checkpoint The checkpoint, taken on a topology of the same shape.
+     * @throws IllegalStateException If the checkpoint holds an unknown route, a journey index past its route's end, two
+     *                               trains with one name or two trains on one section.
+     */
+    private void validate(Checkpoint checkpoint) throws IllegalStateException {
+        int routeCount = topology.routeCount();
+        for (int route : checkpoint.exitRoutes) {
+            if (route < 0 || route >= routeCount) {
+                throw new IllegalStateException("Checkpoint holds unknown route " + route);
+            }
+        }
+        boolean[] occupied = new boolean[sections.length];
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < checkpoint.names.length; i++) {
+            int route = checkpoint.routes[i];
+            if (route < 0 || route >= routeCount) {
+                throw new IllegalStateException("Checkpoint holds unknown route " + route);
+            }
+            int[] path = topology.routePath(route);
+            int journeyIndex = checkpoint.journeyIndexes[i];
+            if (journeyIndex < 0 || journeyIndex >= path.length) {
+                throw new IllegalStateException("Checkpoint holds journey index " + journeyIndex + " on route "
+                        + route);
+            }
+            if (!names.add(checkpoint.names[i])) {
+                throw new IllegalStateException("Checkpoint holds two trains named " + checkpoint.names[i]);
+            }
+            int index = topology.sectionIndex(path[journeyIndex]);
+            if (occupied[index]) {
+                throw new IllegalStateException("Checkpoint holds two trains on section " + path[journeyIndex]);
+            }
+            occupied[index] = true;
+        }
+    }
+
+    /**
+     * Creates a train part way along its route.
+     *
+     * @param trainName    The name of the train.
+     * @param route        The route index.
+     * @param journeyIndex The index of its section in the route's path, or -1 for a train that has left.
+     * @return The train.
+     */
+    private Train place(String trainName, int route, int journeyIndex) {
+        int[] path = topology.routePath(route);
+        Train train = trains.create(topology, trainName, path[0], topology.routeDestination(route));
+        int steps = journeyIndex == -1 ? path.length : journeyIndex;
+        for (int i = 0; i < steps; i++) {
+            train.move();
+        }
+        return train;
+    }
+
+    /**
+     * Called before a train is added on a route, once the route and its entry constraints have been checked. Admits
+     * every route unless overridden.
+     *
+     * @param route The route index.
+     * @return {@link Status#OK} to let the train in, or the reason it is kept out.
+     */
+    protected Status admit(int route) {
+        return Status.OK;
+    }
+
+    /**
+     * Called after a train has entered, before the call that added it returns. Does nothing unless overridden.
+     *
+     * @param train The new train.
+     */
+    protected void entered(Train train) {
+    }
+
+    /**
+     * Called when an exit pushes a train out of the remembered exits and its name is no longer known, so a later
+     * train of that name enters as a new one. Does nothing unless overridden.
+     *
+     * @param trainName The name of the forgotten train.
+     */
+    protected void forgotten(String trainName) {
+    }
+
+    /**
+     * Called with the resolved trains of a moveTrains or tryMoveTrains call before any of them moves. Does nothing
+     * unless overridden.
+     *
+     * @param batch The resolved trains; entries for names not in service are null.
+     * @param size  The number of entries in the batch.
+     */
+    protected void moving(MoveBatch batch, int size) {
+    }
+
+    /**
+     * Subscribes a listener to the occupancy changes. Listeners are called on the thread driving the interlocking at
+     * the end of every call that changed the network, with the changes made by that call, so a listener that takes
+     * long holds up the next move; slow consumers should be wrapped in a {@link CoalescingListener}. An exception
+     * thrown by a listener is discarded.
+     *
+     * @param listener The listener.
+     * @throws IllegalStateException If the interlocking may be updated by several threads at once.
+     */
+    public void subscribe(OccupancyListener listener) throws IllegalStateException {
+        if (shared) {
+            throw new IllegalStateException("Subscriptions need an interlocking driven by one thread");
+        }
+        if (events == null) {
+            events = new OccupancyEvents();
+        }
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    /**
+     * Unsubscribes a listener. Once the last listener is gone, changes are no longer recorded.
+     *
+     * @param listener The listener.
+     */
+    public void unsubscribe(OccupancyListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                OccupancyListener[] remaining = new OccupancyListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+                listeners = remaining;
+                break;
+            }
+        }
+        if (listeners.length == 0) {
+            events = null;
+        }
+    }
+
+    private void deliver() {
+        //A listener may unsubscribe during delivery, so work on the batch and listeners as they are now
+        OccupancyEvents batch = events;
+        if (batch == null || batch.size() == 0) {
+            return;
+        }
+        batch.setVersion(getVersion());
+        for (OccupancyListener listener : listeners) {
+            try {
+                listener.onChanges(batch);
+            } catch (RuntimeException e) {
+                //A failing listener must not stop the interlocking
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * Gets the version of the occupancy state. The version changes whenever a train enters, moves or leaves, so a
+     * poller that sees the same version as before can skip fetching the state.
+     *
+     * @return The number of changes made so far.
+     */
+    public long getVersion() {
+        return shared ? (long) VERSION.getVolatile(this) : version;
+    }
+
+    /**
+     * Copies the occupancy of every section into a bitset, without allocating. Bit i of the set, that is bit i % 64
+     * of word i / 64, is set when the section with index i (see {@link Topology#sectionId(int)}) is occupied.
+     *
+     * @param bits A buffer of at least (sectionCount + 63) / 64 words.
+     * @return The version of the copied state.
+     * @throws IllegalArgumentException If the buffer is too small.
+     */
+    public long getOccupancy(long[] bits) throws IllegalArgumentException {
+        if (bits.length < occupiedBits.length) {
+            throw new IllegalArgumentException("Occupancy buffer is too small");
+        }
+        long copied = getVersion();
+        System.arraycopy(occupiedBits, 0, bits, 0, occupiedBits.length);
+        return copied;
+    }
+
+    /**
+     * Copies the occupant of every section into an array indexed by section index, without allocating.
+     *
+     * @param names A buffer of at least sectionCount entries; entry i receives the name of the train on the section
+     *              with index i, or null.
+     * @return The version of the copied state.
+     * @throws IllegalArgumentException If the buffer is too small.
+     */
+    public long getOccupants(String[] names) throws IllegalArgumentException {
+        if (names.length < occupantNames.length) {
+            throw new IllegalArgumentException("Occupant buffer is too small");
+        }
+        long copied = getVersion();
+        System.arraycopy(occupantNames, 0, names, 0, occupantNames.length);
+        return copied;
+    }
+
+    /**
+     * Finds the section whose state keeps a train from moving.
+     *
+     * @param train The train.
+     * @return The index of the occupied section ahead of the train or of a section holding a train it yields to,
+     * or -1 if the train is not blocked.
+     */
+    protected int blocker(Train train) {
+        int transition = train.getTransition();
+        if (transition == -1) {
+            return -1;
+        }
+        int next = topology.transitionTo(transition);
+        if (next == -1) {
+            return -1;
+        }
+        if (sections[next].isOccupied()) {
+            return next;
+        }
+        return priorityBlocker(transition);
+    }
+
     /**
      * Adds a new train to the interlocking system, checking for constraints and priorities.
      *
@@ -127,30 +671,124 @@ public class InterlockingImpl implements Interlocking {
     @Override
     public void addTrain(String trainName, int entryTrackSection, int destinationTrackSection)
             throws IllegalArgumentException, IllegalStateException {
-        //Check if any constraint is violated
-        Pair<Integer, Integer> key = Pair.of(entryTrackSection, destinationTrackSection);
-        Set<Pair<Integer, Integer>> value = constraints.get(key);
-        if (value != null) {
-            for (Pair<Integer, Integer> c : value) {
-                TrackSection constraintSection = sections.get(c.first);
-                int targetSection = c.second;
-                if (constraintSection.isOccupied()) {
-                    if (constraintSection.train.getDestination() == targetSection) {
-                        throw new IllegalStateException("Constraint not met: trying to add a train heading for " +
-                                destinationTrackSection + " from " + entryTrackSection + ", but a train heading for "
-                                + targetSection + " is on " + c.first);
-                    }
-                }
-            }
+        Status status = tryAddTrain(trainName, entryTrackSection, destinationTrackSection);
+        switch (status) {
+            case OK:
+                return;
+            case UNKNOWN_ROUTE:
+                throw new IllegalArgumentException("Invalid train path.");
+            case NAME_IN_USE:
+                throw new IllegalArgumentException("Train name already in use.");
+            case CONSTRAINT_BLOCKED:
+                throw new IllegalStateException(constraintMessage(entryTrackSection, destinationTrackSection));
+            case ROUTE_LOCKED:
+                throw new IllegalStateException("Route from " + entryTrackSection + " to " + destinationTrackSection
+                        + " is locked for another train.");
+            default:
+                throw new IllegalStateException("Track " + entryTrackSection + " is currently occupied.");
         }
+    }
 
-        Train newTrain = new Train(trainName, entryTrackSection, destinationTrackSection);
-        sections.get(entryTrackSection).addTrain(newTrain);
-        trains.put(trainName, newTrain);
+    /**
+     * Adds a new train without throwing on rejection. The checks are those of addTrain, made in the same order: the
+     * route must exist, its entry constraints must be met, it must be admitted by {@link #admit(int)}, the name must
+     * be free and the entry section empty.
+     *
+     * @param trainName              The name of the train.
+     * @param entryTrackSection      The entry track section for the train.
+     * @param destinationTrackSection The destination track section for the train.
+     * @return {@link Status#OK} if the train was added, or the reason it was not.
+     */
+    public Status tryAddTrain(String trainName, int entryTrackSection, int destinationTrackSection) {
+        InterlockingMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return enter(trainName, entryTrackSection, destinationTrackSection);
+        }
+        long start = System.nanoTime();
+        Status status = enter(trainName, entryTrackSection, destinationTrackSection);
+        metrics.addLatency(System.nanoTime() - start);
+        if (status != Status.UNKNOWN_ROUTE) {
+            metrics.entry(topology.sectionIndex(entryTrackSection), status);
+        }
+        return status;
+    }
+
+    /**
+     * Makes the checks of tryAddTrain and adds the train, without recording metrics. Subclasses that guard entries,
+     * such as by locking, override this rather than tryAddTrain, so the time recorded for a call includes the wait.
+     *
+     * @param trainName              The name of the train.
+     * @param entryTrackSection      The entry track section for the train.
+     * @param destinationTrackSection The destination track section for the train.
+     * @return {@link Status#OK} if the train was added, or the reason it was not.
+     */
+    protected Status enter(String trainName, int entryTrackSection, int destinationTrackSection) {
+        int route = topology.route(entryTrackSection, destinationTrackSection);
+        if (route == -1) {
+            return Status.UNKNOWN_ROUTE;
+        }
+        if (count(blocked, route) > 0) {
+            return Status.CONSTRAINT_BLOCKED;
+        }
+        Status admitted = admit(route);
+        if (admitted != Status.OK) {
+            return admitted;
+        }
+        if (trains.getInService(trainName) != null) {
+            return Status.NAME_IN_USE;
+        }
+        TrackSection entry = section(entryTrackSection);
+        if (entry.isOccupied()) {
+            return Status.SECTION_OCCUPIED;
+        }
+        Train newTrain = trains.create(topology, trainName, entryTrackSection, destinationTrackSection);
+        if (!entry.tryAddTrain(newTrain)) {
+            trains.discard(newTrain);
+            return Status.SECTION_OCCUPIED;
+        }
+        if (!trains.tryRegister(newTrain)) {
+            entry.removeTrain();
+            trains.discard(newTrain);
+            return Status.NAME_IN_USE;
+        }
+        occupy(topology.sectionIndex(entryTrackSection), newTrain);
+        track(newTrain, 1);
+        changed();
+        entered(newTrain);
+        if (events != null) {
+            events.add(OccupancyChange.ENTER, entryTrackSection, trainName);
+            deliver();
+        }
+        return Status.OK;
+    }
+
+    /**
+     * Describes the entry constraint that keeps a train from entering.
+     *
+     * @param entryTrackSection      The entry track section for the train.
+     * @param destinationTrackSection The destination track section for the train.
+     * @return The message for the rejection.
+     */
+    private String constraintMessage(int entryTrackSection, int destinationTrackSection) {
+        int route = topology.route(entryTrackSection, destinationTrackSection);
+        for (int i = topology.constraintStart(route); i < topology.constraintStart(route + 1); i++) {
+            TrackSection constraintSection = sections[topology.constraintSection(i)];
+            int targetSection = topology.constraintDestination(i);
+            Train occupant = constraintSection.train;
+            if (occupant != null && occupant.getDestination() == targetSection) {
+                return "Constraint not met: trying to add a train heading for " + destinationTrackSection + " from "
+                        + entryTrackSection + ", but a train heading for " + targetSection + " is on "
+                        + constraintSection.sectionID;
+            }
+        }
+        return "Constraint not met: trying to add a train heading for " + destinationTrackSection + " from "
+                + entryTrackSection;
     }
 
     /**
      * Moves a list of trains, prioritizing trains with higher priority, while checking for constraints.
+     * Trains are resolved into a reusable buffer and compared by transition index, so a steady-state call allocates
+     * nothing.
      *
      * @param trainNames An array of train names to be moved.
      * @return The number of trains successfully moved.
@@ -158,35 +796,230 @@ public class InterlockingImpl implements Interlocking {
      */
     @Override
     public int moveTrains(String[] trainNames) throws IllegalArgumentException {
-        int count = 0;
-        List<String> priorityNames = new ArrayList<>();
-        List<String> nonPriorityNames = new ArrayList<>();
+        InterlockingMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        MoveBatch batch = batch(trainNames.length);
         //First pass - check illegal exception and prioritise priority sets.
-        for (String name : trainNames) {
+        for (int i = 0; i < trainNames.length; i++) {
+            String name = trainNames[i];
             //Check if train is in service
-            if (!Train.allTrains.contains(name)) {
+            Train train = trains.getInService(name);
+            if (train == null) {
+                Arrays.fill(batch.trains, 0, i, null);
                 throw new IllegalArgumentException("Train " + name + " is not in service.");
             }
-            Train train = trains.get(name);
-            Pair<Integer, Integer> key = Pair.of(train.getSection(), train.getNextSection());
-            if (prioritySet.contains(key)) {
-                priorityNames.add(name);
-                continue;
+            resolve(batch, i, train);
+        }
+        int moved = move(batch, trainNames.length, null);
+        deliver();
+        if (metrics != null) {
+            metrics.moveLatency(System.nanoTime() - start);
+        }
+        return moved;
+    }
+
+    /**
+     * Moves a list of trains like moveTrains, but skips trains that are not in service instead of throwing, and can
+     * report the outcome for each listed train.
+     *
+     * @param trainNames An array of train names to be moved.
+     * @param outcomes   An array at least as long as trainNames that receives, position by position, {@link Status#OK}
+     *                   for a train that moved or the reason it did not; or null if the outcomes are not needed.
+     * @return The number of trains successfully moved.
+     */
+    public int tryMoveTrains(String[] trainNames, Status[] outcomes) {
+        if (outcomes != null && outcomes.length < trainNames.length) {
+            throw new IllegalArgumentException("Outcome array is shorter than the list of trains");
+        }
+        InterlockingMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        MoveBatch batch = batch(trainNames.length);
+        for (int i = 0; i < trainNames.length; i++) {
+            Train train = trains.getInService(trainNames[i]);
+            resolve(batch, i, train);
+            if (train == null && outcomes != null) {
+                outcomes[i] = Status.NOT_IN_SERVICE;
             }
-            nonPriorityNames.add(name);
         }
-        priorityNames.addAll(nonPriorityNames);
-        //Second pass - move trains
-        for (String name : priorityNames) {
-            Train train = trains.get(name);
-            boolean isMoved = moveTrain(train);
-            if (isMoved) {
-                count++;
+        int moved = move(batch, trainNames.length, outcomes);
+        deliver();
+        if (metrics != null) {
+            metrics.moveLatency(System.nanoTime() - start);
+        }
+        return moved;
+    }
+
+    /**
+     * Moves trains a subclass has already looked up, as moveTrains does once it has resolved the names, and records
+     * the time taken as a moveTrains call.
+     *
+     * @param batch The buffer returned by {@link #batch(int)}, holding the trains in service in its first entries.
+     * @param size  The number of trains in the batch.
+     * @return The number of trains successfully moved.
+     */
+    protected int moveResolved(MoveBatch batch, int size) {
+        InterlockingMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            resolve(batch, i, batch.trains[i]);
+        }
+        int moved = move(batch, size, null);
+        deliver();
+        if (metrics != null) {
+            metrics.moveLatency(System.nanoTime() - start);
+        }
+        return moved;
+    }
+
+    private void resolve(MoveBatch batch, int i, Train train) {
+        //A concurrent caller may move the train out in between, leaving no transition
+        int transition = train == null ? -1 : train.getTransition();
+        batch.trains[i] = train;
+        batch.priority[i] = transition != -1 && topology.isPriorityTransition(transition);
+    }
+
+    /**
+     * Moves the trains of a resolved batch in the interlocking's move order. Entries without a train are skipped.
+     *
+     * @param batch    The resolved trains.
+     * @param size     The number of trains in the batch.
+     * @param outcomes The array receiving the outcome of each train, or null.
+     * @return The number of trains successfully moved.
+     */
+    private int move(MoveBatch batch, int size, Status[] outcomes) {
+        moving(batch, size);
+        if (moveOrder == MoveOrder.CASCADE) {
+            return cascade(batch, size, outcomes);
+        }
+        int count = 0;
+        //Second pass - move priority trains, then the rest, each in the order given
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < size; i++) {
+                Train train = batch.trains[i];
+                if (train == null || batch.priority[i] != (pass == 0)) {
+                    continue;
+                }
+                if (moveTrain(train)) {
+                    count++;
+                    if (outcomes != null) {
+                        outcomes[i] = Status.OK;
+                    }
+                } else if (outcomes != null || metrics != null) {
+                    held(train, blocker(train), outcomes, i);
+                }
             }
         }
+        Arrays.fill(batch.trains, 0, size, null);
         return count;
     }
-    
+
+    /**
+     * Moves the trains of a resolved batch in cascade order: priority trains first, then the rest, with every blocked
+     * train parked on the section that blocks it and tried again as soon as a move vacates that section.
+     *
+     * @param batch    The resolved trains.
+     * @param size     The number of trains in the batch.
+     * @param outcomes The array receiving the outcome of each train, or null.
+     * @return The number of trains successfully moved.
+     */
+    private int cascade(MoveBatch batch, int size, Status[] outcomes) {
+        int[] waiting = batch.waiting(sections.length);
+        int count = 0;
+        Arrays.fill(batch.waitingOn, 0, size, -1);
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < size; i++) {
+                if (batch.trains[i] == null || batch.priority[i] != (pass == 0)) {
+                    continue;
+                }
+                int top = 0;
+                batch.stack[top++] = i;
+                while (top > 0) {
+                    int j = batch.stack[--top];
+                    Train train = batch.trains[j];
+                    int transition = train.getTransition();
+                    if (moveTrain(train)) {
+                        count++;
+                        if (outcomes != null) {
+                            outcomes[j] = Status.OK;
+                        }
+                        //Wake the trains waiting on the section just left, earliest parked on top
+                        int from = topology.transitionFrom(transition);
+                        for (int k = waiting[from]; k != -1; k = batch.next[k]) {
+                            batch.stack[top++] = k;
+                        }
+                        waiting[from] = -1;
+                    } else {
+                        int section = blocker(train);
+                        batch.waitingOn[j] = section;
+                        if (section != -1) {
+                            batch.next[j] = waiting[section];
+                            waiting[section] = j;
+                        }
+                        if (outcomes != null || metrics != null) {
+                            held(train, section, outcomes, j);
+                        }
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (batch.waitingOn[i] != -1) {
+                waiting[batch.waitingOn[i]] = -1;
+            }
+            batch.trains[i] = null;
+        }
+        return count;
+    }
+
+    /**
+     * Reports why a train did not move to the outcome array and the metrics, whichever are present.
+     *
+     * @param train    The train.
+     * @param blocker  The section blocking it, as found by {@link #blocker(Train)}.
+     * @param outcomes The array receiving the outcome of each train, or null.
+     * @param i        The train's position in the batch.
+     */
+    private void held(Train train, int blocker, Status[] outcomes, int i) {
+        Status outcome = outcome(train, blocker);
+        if (outcomes != null) {
+            outcomes[i] = outcome;
+        }
+        InterlockingMetrics metrics = this.metrics;
+        int transition = train.getTransition();
+        if (metrics != null && transition != -1) {
+            metrics.held(transition, outcome);
+        }
+    }
+
+    /**
+     * Classifies why a train did not move.
+     *
+     * @param train   The train.
+     * @param blocker The section blocking it, as found by {@link #blocker(Train)}.
+     * @return The reason the train is held.
+     */
+    private Status outcome(Train train, int blocker) {
+        int transition = train.getTransition();
+        if (transition == -1) {
+            return Status.NOT_IN_SERVICE;
+        }
+        if (blocker == -1 && topology.transitionTo(transition) != -1 && !isPointSet(transition)) {
+            return Status.POINT_BLOCKED;
+        }
+        return blocker == topology.transitionTo(transition) || blocker == -1 ? Status.SECTION_OCCUPIED
+                : Status.PRIORITY_BLOCKED;
+    }
+
+    /**
+     * Gets the scratch buffer used to partition a call to moveTrains.
+     *
+     * @param size The number of trains in the call.
+     * @return A buffer with room for at least that many trains.
+     */
+    protected MoveBatch batch(int size) {
+        return batch.ensure(size);
+    }
+
     /**
      * Gets the name of the train occupying a specific track section.
      *
@@ -196,7 +1029,7 @@ public class InterlockingImpl implements Interlocking {
      */
     @Override
     public String getSection(int trackSection) throws IllegalArgumentException {
-        TrackSection section = sections.get(trackSection);
+        TrackSection section = section(trackSection);
 
         if (section == null) {
             throw new IllegalArgumentException("Track section does not exist");
@@ -205,12 +1038,46 @@ public class InterlockingImpl implements Interlocking {
         return section.getTrain();
     }
 
+    /**
+     * Reports whether a train is in service, without throwing for unknown names.
+     *
+     * @param trainName The name of the train.
+     * @return {@link Status#OK} if the train is in service, {@link Status#EXITED} if it has left recently enough to
+     * still be remembered, or {@link Status#NOT_IN_SERVICE} if the name is unknown or has been forgotten.
+     */
+    public Status trainStatus(String trainName) {
+        Train train = trains.get(trainName);
+        if (train == null) {
+            return Status.NOT_IN_SERVICE;
+        }
+        return train.isInService() ? Status.OK : Status.EXITED;
+    }
+
+    /**
+     * Gets a train in service by name.
+     *
+     * @param trainName The name of the train.
+     * @return The train, or null if it is unknown or has left the rail corridor.
+     */
+    protected Train inService(String trainName) {
+        return trains.getInService(trainName);
+    }
+
+    /**
+     * Gets the table holding the state of the interlocking's trains.
+     *
+     * @return The table, shared by every train the interlocking creates.
+     */
+    protected TrainTable trainTable() {
+        return trains.table(topology);
+    }
+
     /**
      * Gets the current track section of a train by its name.
      *
      * @param trainName The name of the train.
-     * @return The track section where the train is located.
-     * @throws IllegalArgumentException If the specified train name does not exist.
+     * @return The track section where the train is located, or -1 if it has left and is still remembered.
+     * @throws IllegalArgumentException If the specified train name does not exist or has been forgotten.
      */
     @Override
     public int getTrain(String trainName) throws IllegalArgumentException {
@@ -223,7 +1090,36 @@ public class InterlockingImpl implements Interlocking {
         return train.getSection();
     }
 
-    public static void removeTrain(String trainName) {
-        Train.removeTrain(trainName);
+    /**
+     * Reusable scratch space holding the trains of one moveTrains call and whether each takes priority, along with
+     * the wait lists used by {@link MoveOrder#CASCADE}: for each section the most recently parked train, and for each
+     * train the section it waits on and the next train parked on the same section.
+     */
+    protected static final class MoveBatch {
+        Train[] trains = new Train[16];
+        boolean[] priority = new boolean[16];
+        int[] waitingOn = new int[16];
+        int[] next = new int[16];
+        int[] stack = new int[16];
+        private int[] waiting = new int[0];
+
+        MoveBatch ensure(int size) {
+            if (trains.length < size) {
+                trains = new Train[size];
+                priority = new boolean[size];
+                waitingOn = new int[size];
+                next = new int[size];
+                stack = new int[size];
+            }
+            return this;
+        }
+
+        int[] waiting(int sections) {
+            if (waiting.length < sections) {
+                waiting = new int[sections];
+                Arrays.fill(waiting, -1);
+            }
+            return waiting;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,353 @@
+/**
+ * Counters and latency histograms recording what an interlocking does and why trains do not move.
+ *
+ * For every transition the metrics count the moves made and the failed attempts, split by the reason the train was
+ * held: the next section was occupied, the train yielded to a higher-priority train, or its point was not set. For
+ * every entry section they count the trains let in and the entries refused because a constraint fired, the section
+ * was occupied or the route was locked. The time each addTrain and moveTrains call takes is recorded in a
+ * log-linear histogram of nanoseconds with fixed buckets.
+ *
+ * Everything is recorded in {@link StripedCounters}, so recording allocates nothing and threads moving trains at
+ * the same time in a {@link ConcurrentInterlocking} do not contend on the counters. Readers take a
+ * {@link Snapshot}, which copies the sums once and then answers any number of queries.
+ */
+public class InterlockingMetrics {
+    private static final int MOVED = 0;
+    private static final int OCCUPIED = 1;
+    private static final int PRIORITY = 2;
+    private static final int POINT = 3;
+    private static final int TRANSITION_COUNTERS = 4;
+
+    private static final int ENTERED = 0;
+    private static final int CONSTRAINT = 1;
+    private static final int ENTRY_OCCUPIED = 2;
+    private static final int LOCKED = 3;
+    private static final int SECTION_COUNTERS = 4;
+
+    private final Topology topology;
+    private final int sectionBase;
+    private final int addLatencyBase;
+    private final int moveLatencyBase;
+    private final StripedCounters counters;
+
+    /**
+     * Creates metrics for an interlocking that may be driven by as many threads as there are processors.
+     *
+     * @param topology The topology of the interlocking the metrics will be recorded for.
+     */
+    public InterlockingMetrics(Topology topology) {
+        this(topology, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates metrics with a number of counter stripes. One stripe suits an interlocking driven by one thread.
+     *
+     * @param topology The topology of the interlocking the metrics will be recorded for.
+     * @param stripes  The number of stripes, rounded up to a power of two.
+     * @throws IllegalArgumentException If the number of stripes is not positive.
+     */
+    public InterlockingMetrics(Topology topology, int stripes) throws IllegalArgumentException {
+        this.topology = topology;
+        sectionBase = topology.transitionCount() * TRANSITION_COUNTERS;
+        addLatencyBase = sectionBase + topology.sectionCount() * SECTION_COUNTERS;
+        moveLatencyBase = addLatencyBase + Histogram.BUCKETS;
+        counters = new StripedCounters(moveLatencyBase + Histogram.BUCKETS, stripes);
+    }
+
+    /**
+     * Gets the topology the metrics are recorded for.
+     *
+     * @return The topology.
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Records a train making a move.
+     *
+     * @param transition The transition index.
+     */
+    void moved(int transition) {
+        counters.increment(transition * TRANSITION_COUNTERS + MOVED);
+    }
+
+    /**
+     * Records a train failing to make a move.
+     *
+     * @param transition The transition index.
+     * @param reason     Why the train was held: SECTION_OCCUPIED, PRIORITY_BLOCKED or POINT_BLOCKED.
+     */
+    void held(int transition, Status reason) {
+        int counter;
+        switch (reason) {
+            case SECTION_OCCUPIED:
+                counter = OCCUPIED;
+                break;
+            case PRIORITY_BLOCKED:
+                counter = PRIORITY;
+                break;
+            case POINT_BLOCKED:
+                counter = POINT;
+                break;
+            default:
+                return;
+        }
+        counters.increment(transition * TRANSITION_COUNTERS + counter);
+    }
+
+    /**
+     * Records the outcome of an entry at a section.
+     *
+     * @param section The dense index of the entry section.
+     * @param outcome The outcome of the entry; outcomes not counted per section are ignored.
+     */
+    void entry(int section, Status outcome) {
+        int counter;
+        switch (outcome) {
+            case OK:
+                counter = ENTERED;
+                break;
+            case CONSTRAINT_BLOCKED:
+                counter = CONSTRAINT;
+                break;
+            case SECTION_OCCUPIED:
+                counter = ENTRY_OCCUPIED;
+                break;
+            case ROUTE_LOCKED:
+                counter = LOCKED;
+                break;
+            default:
+                return;
+        }
+        counters.increment(sectionBase + section * SECTION_COUNTERS + counter);
+    }
+
+    /**
+     * Records how long an addTrain call took.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    void addLatency(long nanos) {
+        counters.increment(addLatencyBase + Histogram.bucket(Math.max(0, nanos)));
+    }
+
+    /**
+     * Records how long a moveTrains call took.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    void moveLatency(long nanos) {
+        counters.increment(moveLatencyBase + Histogram.bucket(Math.max(0, nanos)));
+    }
+
+    /**
+     * Sets every counter and histogram back to zero.
+     */
+    public void clear() {
+        counters.clear();
+    }
+
+    /**
+     * Copies the current values of the metrics.
+     *
+     * @return A snapshot of the counters and histograms.
+     */
+    public Snapshot snapshot() {
+        long[] values = new long[counters.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = counters.sum(i);
+        }
+        return new Snapshot(topology, values, sectionBase, addLatencyBase, moveLatencyBase);
+    }
+
+    /**
+     * The values of a set of metrics at the time the snapshot was taken. Counters keep counting after the snapshot,
+     * but the snapshot does not change.
+     */
+    public static final class Snapshot {
+        private final Topology topology;
+        private final long[] values;
+        private final int sectionBase;
+        private final Histogram addLatency = new Histogram();
+        private final Histogram moveLatency = new Histogram();
+
+        Snapshot(Topology topology, long[] values, int sectionBase, int addLatencyBase, int moveLatencyBase) {
+            this.topology = topology;
+            this.values = values;
+            this.sectionBase = sectionBase;
+            for (int bucket = 0; bucket < Histogram.BUCKETS; bucket++) {
+                if (values[addLatencyBase + bucket] != 0) {
+                    addLatency.addToBucket(bucket, values[addLatencyBase + bucket]);
+                }
+                if (values[moveLatencyBase + bucket] != 0) {
+                    moveLatency.addToBucket(bucket, values[moveLatencyBase + bucket]);
+                }
+            }
+        }
+
+        /**
+         * Gets the number of moves made from one section to another.
+         *
+         * @param fromTrackSection The section the movement leaves.
+         * @param toTrackSection   The section the movement enters, or -1 for leaving the corridor.
+         * @return The number of moves.
+         * @throws IllegalArgumentException If the topology has no such movement.
+         */
+        public long getMoves(int fromTrackSection, int toTrackSection) throws IllegalArgumentException {
+            return transitionValue(fromTrackSection, toTrackSection, MOVED);
+        }
+
+        /**
+         * Gets the number of times a train was held because the section ahead was occupied.
+         *
+         * @param fromTrackSection The section the movement leaves.
+         * @param toTrackSection   The section the movement enters.
+         * @return The number of failed attempts.
+         * @throws IllegalArgumentException If the topology has no such movement.
+         */
+        public long getOccupiedBlocks(int fromTrackSection, int toTrackSection) throws IllegalArgumentException {
+            return transitionValue(fromTrackSection, toTrackSection, OCCUPIED);
+        }
+
+        /**
+         * Gets the number of times a train was held to let a higher-priority train go first.
+         *
+         * @param fromTrackSection The section the movement leaves.
+         * @param toTrackSection   The section the movement enters.
+         * @return The number of failed attempts.
+         * @throws IllegalArgumentException If the topology has no such movement.
+         */
+        public long getPriorityBlocks(int fromTrackSection, int toTrackSection) throws IllegalArgumentException {
+            return transitionValue(fromTrackSection, toTrackSection, PRIORITY);
+        }
+
+        /**
+         * Gets the number of times a train was held because its point was not set for it.
+         *
+         * @param fromTrackSection The section the movement leaves.
+         * @param toTrackSection   The section the movement enters.
+         * @return The number of failed attempts.
+         * @throws IllegalArgumentException If the topology has no such movement.
+         */
+        public long getPointBlocks(int fromTrackSection, int toTrackSection) throws IllegalArgumentException {
+            return transitionValue(fromTrackSection, toTrackSection, POINT);
+        }
+
+        /**
+         * Gets the number of trains that entered at a section.
+         *
+         * @param trackSection The entry section.
+         * @return The number of entries.
+         * @throws IllegalArgumentException If the section does not exist.
+         */
+        public long getEntries(int trackSection) throws IllegalArgumentException {
+            return sectionValue(trackSection, ENTERED);
+        }
+
+        /**
+         * Gets the number of entries at a section refused because an entry constraint fired.
+         *
+         * @param trackSection The entry section.
+         * @return The number of refused entries.
+         * @throws IllegalArgumentException If the section does not exist.
+         */
+        public long getConstraintRejections(int trackSection) throws IllegalArgumentException {
+            return sectionValue(trackSection, CONSTRAINT);
+        }
+
+        /**
+         * Gets the number of entries at a section refused because the section was occupied.
+         *
+         * @param trackSection The entry section.
+         * @return The number of refused entries.
+         * @throws IllegalArgumentException If the section does not exist.
+         */
+        public long getOccupiedRejections(int trackSection) throws IllegalArgumentException {
+            return sectionValue(trackSection, ENTRY_OCCUPIED);
+        }
+
+        /**
+         * Gets the number of entries at a section refused because a section of the route was locked.
+         *
+         * @param trackSection The entry section.
+         * @return The number of refused entries.
+         * @throws IllegalArgumentException If the section does not exist.
+         */
+        public long getLockedRejections(int trackSection) throws IllegalArgumentException {
+            return sectionValue(trackSection, LOCKED);
+        }
+
+        /**
+         * Gets the total number of moves over all transitions.
+         *
+         * @return The number of moves.
+         */
+        public long getMoves() {
+            return total(0, topology.transitionCount(), TRANSITION_COUNTERS, MOVED);
+        }
+
+        /**
+         * Gets the total number of failed moves over all transitions, whatever held the trains.
+         *
+         * @return The number of failed attempts.
+         */
+        public long getBlocks() {
+            return total(0, topology.transitionCount(), TRANSITION_COUNTERS, OCCUPIED)
+                    + total(0, topology.transitionCount(), TRANSITION_COUNTERS, PRIORITY)
+                    + total(0, topology.transitionCount(), TRANSITION_COUNTERS, POINT);
+        }
+
+        /**
+         * Gets the total number of trains that entered.
+         *
+         * @return The number of entries.
+         */
+        public long getEntries() {
+            return total(sectionBase, topology.sectionCount(), SECTION_COUNTERS, ENTERED);
+        }
+
+        /**
+         * Gets the distribution of the time taken by addTrain and tryAddTrain calls.
+         *
+         * @return The histogram of call durations, in nanoseconds.
+         */
+        public Histogram getAddLatency() {
+            return addLatency;
+        }
+
+        /**
+         * Gets the distribution of the time taken by moveTrains and tryMoveTrains calls.
+         *
+         * @return The histogram of call durations, in nanoseconds.
+         */
+        public Histogram getMoveLatency() {
+            return moveLatency;
+        }
+
+        private long transitionValue(int fromTrackSection, int toTrackSection, int counter)
+                throws IllegalArgumentException {
+            int transition = topology.transition(fromTrackSection, toTrackSection);
+            if (transition == -1) {
+                throw new IllegalArgumentException("No movement from " + fromTrackSection + " to " + toTrackSection);
+            }
+            return values[transition * TRANSITION_COUNTERS + counter];
+        }
+
+        private long sectionValue(int trackSection, int counter) throws IllegalArgumentException {
+            int index = topology.sectionIndex(trackSection);
+            if (index == -1) {
+                throw new IllegalArgumentException("Track section does not exist");
+            }
+            return values[sectionBase + index * SECTION_COUNTERS + counter];
+        }
+
+        private long total(int base, int count, int stride, int counter) {
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                total += values[base + i * stride + counter];
+            }
+            return total;
+        }
+    }
+}
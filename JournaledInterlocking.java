@@ -0,0 +1,142 @@
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * An interlocking that records every accepted command in a {@link CommandJournal}, and rebuilds its state from the
+ * journal when it is opened again.
+ *
+ * Entries are recorded once they have been accepted and moves once their trains have been resolved, just before
+ * they are applied, so rejected entries and calls naming trains that are not in service leave no trace. Moves are
+ * recorded by the trains' journal ids, which are looked up once when a train enters rather than on every move, so
+ * recording a move costs a few writes to mapped memory and no hashing. The journal gives a name's id back once the
+ * interlocking forgets the name, so the ids in use stay within the trains in service and the remembered exits.
+ *
+ * Replay applies the journal through the same code as the original calls, so the rebuilt interlocking holds the same
+ * trains on the same sections, remembers the same exits and uses the same move order.
+ */
+public class JournaledInterlocking extends InterlockingImpl implements AutoCloseable {
+    private final CommandJournal journal;
+    private final long replayed;
+    private boolean recording;
+
+    /**
+     * Opens a journaled interlocking on the corridor described in the README.
+     *
+     * @param path The journal file, which is created if it does not exist and replayed if it does.
+     * @throws UncheckedIOException  If the journal cannot be opened.
+     * @throws IllegalStateException If the journal is corrupt.
+     */
+    public JournaledInterlocking(Path path) throws UncheckedIOException, IllegalStateException {
+        this(Topology.corridor(), path);
+    }
+
+    /**
+     * Opens a journaled interlocking on a network topology.
+     *
+     * @param topology The network topology, which must be the one the journal was written for.
+     * @param path     The journal file, which is created if it does not exist and replayed if it does.
+     * @throws UncheckedIOException  If the journal cannot be opened.
+     * @throws IllegalStateException If the journal is corrupt.
+     */
+    public JournaledInterlocking(Topology topology, Path path) throws UncheckedIOException, IllegalStateException {
+        super(topology);
+        journal = new CommandJournal(path);
+        try {
+            replayed = journal.replay(this);
+        } catch (IllegalStateException e) {
+            journal.close();
+            throw e;
+        }
+        recording = true;
+    }
+
+    /**
+     * Gets the number of commands replayed from the journal when the interlocking was opened.
+     *
+     * @return The number of commands.
+     */
+    public long getReplayed() {
+        return replayed;
+    }
+
+    /**
+     * Gets the number of journal ids held by the names the interlocking still knows.
+     *
+     * @return The number of ids in use.
+     */
+    int getJournalIds() {
+        return journal.idCount();
+    }
+
+    /**
+     * Forces the commands recorded so far to the disk.
+     *
+     * @throws UncheckedIOException If the journal cannot be written.
+     */
+    public void sync() throws UncheckedIOException {
+        journal.sync();
+    }
+
+    @Override
+    public void setMoveOrder(MoveOrder moveOrder) throws IllegalArgumentException {
+        super.setMoveOrder(moveOrder);
+        if (recording) {
+            journal.order(moveOrder);
+        }
+    }
+
+    /**
+     * Always throws, since the journal cannot be taken back.
+     *
+     * @throws IllegalStateException Always.
+     */
+    @Override
+    public void reset() throws IllegalStateException {
+        throw new IllegalStateException("A journaled interlocking cannot be reset");
+    }
+
+    /**
+     * Always throws, since a journaled interlocking is rebuilt from its journal, which a restored state would not
+     * match.
+     *
+     * @param checkpoint The checkpoint.
+     * @throws IllegalStateException Always.
+     */
+    @Override
+    public void restore(Checkpoint checkpoint) throws IllegalStateException {
+        throw new IllegalStateException("A journaled interlocking is rebuilt from its journal");
+    }
+
+    @Override
+    protected void entered(Train train) {
+        //During replay the name records have already been read, so this only looks the id up
+        train.journalId = journal.id(train.getTrainName());
+        if (recording) {
+            journal.add(train.journalId, train.getSection(), train.getDestination());
+        }
+    }
+
+    @Override
+    protected void forgotten(String trainName) {
+        //Replay forgets the same names at the same points, so it frees the same ids
+        journal.release(trainName);
+    }
+
+    @Override
+    protected void moving(MoveBatch batch, int size) {
+        if (recording) {
+            journal.move(batch, size);
+        }
+    }
+
+    /**
+     * Closes the journal, forcing it to the disk. The interlocking must not be used afterwards.
+     *
+     * @throws UncheckedIOException If the journal cannot be written or closed.
+     */
+    @Override
+    public void close() throws UncheckedIOException {
+        recording = false;
+        journal.close();
+    }
+}
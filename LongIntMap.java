@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from primitive long keys to primitive int values.
+ * Keys and values are stored in flat arrays, so lookups neither box nor allocate.
+ * Missing keys map to -1, which means -1 cannot be stored as a value.
+ */
+public class LongIntMap {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    /**
+     * Creates a map sized to hold the expected number of entries without rehashing.
+     *
+     * @param expectedSize The number of entries the map is expected to hold.
+     */
+    public LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Packs two ints into a single long key.
+     *
+     * @param high The value stored in the upper 32 bits.
+     * @param low  The value stored in the lower 32 bits.
+     * @return The packed key.
+     */
+    public static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xffffffffL);
+    }
+
+    /**
+     * Gets the value mapped to a key.
+     *
+     * @param key The key to look up.
+     * @return The mapped value, or -1 if the key is absent.
+     */
+    public int get(long key) {
+        //The reserved key marks empty slots, so it would otherwise match the first free one
+        if (key == EMPTY) {
+            return -1;
+        }
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                return values[slot];
+            }
+            if (k == EMPTY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Checks whether a key is present in the map.
+     *
+     * @param key The key to look up.
+     * @return True if the key is present; false otherwise.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != -1;
+    }
+
+    /**
+     * Maps a key to a value, replacing any previous mapping.
+     *
+     * @param key   The key. Long.MIN_VALUE is reserved and cannot be used.
+     * @param value The value. Must not be -1.
+     * @return The previous value, or -1 if the key was absent.
+     */
+    public int put(long key, int value) {
+        if (key == EMPTY || value == -1) {
+            throw new IllegalArgumentException("Reserved key or value");
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            if (k == EMPTY) {
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Gets the number of entries in the map.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs many randomized {@link Simulation} scenarios in parallel to estimate the capacity of a network.
+ *
+ * Each scenario draws, for every entry section given arrivals, a mean headway from the configured range and a random
+ * mix of the routes starting there, and runs Poisson arrivals on each route for a fixed duration. Scenario i always
+ * gets the i-th random stream split from the seed, so the results are the same whatever the number of threads or
+ * the order the scenarios run in.
+ *
+ * Every worker thread owns one interlocking, which it resets between scenarios, so scenarios share no mutable state.
+ * On a topology with points the interlockings are {@link PointInterlocking}s, so point throws hold trains up.
+ * Their statistics are merged into one {@link Result} through atomic counters and histograms, without locking.
+ */
+public class MonteCarlo {
+    private final Topology topology;
+    private final long[] traversal;
+    private final double[] minHeadways;
+    private final double[] maxHeadways;
+    private final int[][] entryRoutes;
+
+    /**
+     * Creates a runner for a network, with no arrivals and every section taking one tick to traverse.
+     *
+     * @param topology The network topology.
+     */
+    public MonteCarlo(Topology topology) {
+        this.topology = topology;
+        int sections = topology.sectionCount();
+        traversal = new long[sections];
+        Arrays.fill(traversal, 1);
+        minHeadways = new double[sections];
+        maxHeadways = new double[sections];
+        int[] counts = new int[sections];
+        for (int r = 0; r < topology.routeCount(); r++) {
+            counts[topology.sectionIndex(topology.routePath(r)[0])]++;
+        }
+        entryRoutes = new int[sections][];
+        for (int i = 0; i < sections; i++) {
+            entryRoutes[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int r = 0; r < topology.routeCount(); r++) {
+            int entry = topology.sectionIndex(topology.routePath(r)[0]);
+            entryRoutes[entry][counts[entry]++] = r;
+        }
+    }
+
+    /**
+     * Sets how long trains take to traverse a section in every scenario.
+     *
+     * @param trackSection The track section.
+     * @param ticks        The traversal time, at least one tick.
+     * @throws IllegalArgumentException If the section does not exist or the time is not positive.
+     */
+    public void setTraversalTime(int trackSection, long ticks) throws IllegalArgumentException {
+        if (ticks < 1) {
+            throw new IllegalArgumentException("Traversal time must be positive");
+        }
+        traversal[index(trackSection)] = ticks;
+    }
+
+    /**
+     * Gives an entry section random arrivals. Each scenario draws the mean time between arrivals uniformly from a
+     * range and splits the arrivals across the routes starting at the section in random proportions.
+     *
+     * @param entryTrackSection The entry track section.
+     * @param minMeanHeadway    The shortest mean time between arrivals.
+     * @param maxMeanHeadway    The longest mean time between arrivals.
+     * @throws IllegalArgumentException If no route starts at the section, or the range is empty or not positive.
+     */
+    public void setArrivals(int entryTrackSection, double minMeanHeadway, double maxMeanHeadway)
+            throws IllegalArgumentException {
+        int entry = index(entryTrackSection);
+        if (entryRoutes[entry].length == 0) {
+            throw new IllegalArgumentException("No route starts at " + entryTrackSection);
+        }
+        if (!(minMeanHeadway > 0) || maxMeanHeadway < minMeanHeadway) {
+            throw new IllegalArgumentException("Headway range must be positive and not empty");
+        }
+        minHeadways[entry] = minMeanHeadway;
+        maxHeadways[entry] = maxMeanHeadway;
+    }
+
+    private int index(int trackSection) throws IllegalArgumentException {
+        int index = topology.sectionIndex(trackSection);
+        if (index == -1) {
+            throw new IllegalArgumentException("Track section does not exist");
+        }
+        return index;
+    }
+
+    /**
+     * Runs scenarios on as many threads as there are processors.
+     *
+     * @param scenarios The number of scenarios.
+     * @param duration  The length of each scenario in ticks.
+     * @param seed      The seed all the scenarios' randomness is split from.
+     * @return The merged statistics.
+     */
+    public Result run(int scenarios, long duration, long seed) {
+        return run(scenarios, duration, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs scenarios on a number of threads.
+     *
+     * @param scenarios The number of scenarios.
+     * @param duration  The length of each scenario in ticks.
+     * @param seed      The seed all the scenarios' randomness is split from.
+     * @param threads   The number of worker threads.
+     * @return The merged statistics.
+     * @throws IllegalArgumentException If the number of scenarios is negative or of threads not positive.
+     */
+    public Result run(int scenarios, long duration, long seed, int threads) throws IllegalArgumentException {
+        if (scenarios < 0 || threads < 1) {
+            throw new IllegalArgumentException("Scenario count cannot be negative and thread count must be positive");
+        }
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[scenarios];
+        for (int i = 0; i < scenarios; i++) {
+            randoms[i] = root.split();
+        }
+        Result result = new Result(topology, duration);
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[Math.min(threads, Math.max(1, scenarios))];
+        for (int w = 0; w < workers.length; w++) {
+            workers[w] = new Thread(() -> {
+                try {
+                    InterlockingImpl interlocking = topology.pointCount() == 0 ? new InterlockingImpl(topology)
+                            : new PointInterlocking(topology);
+                    for (int i = next.getAndIncrement(); i < scenarios; i = next.getAndIncrement()) {
+                        interlocking.reset();
+                        result.add(scenario(interlocking, randoms[i], duration));
+                    }
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "monte-carlo-" + w);
+            workers[w].start();
+        }
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable thrown = failure.get();
+        if (thrown instanceof RuntimeException) {
+            throw (RuntimeException) thrown;
+        } else if (thrown != null) {
+            throw (Error) thrown;
+        }
+        return result;
+    }
+
+    private Simulation scenario(InterlockingImpl interlocking, SplittableRandom random, long duration) {
+        Simulation simulation = new Simulation(interlocking);
+        for (int i = 0; i < traversal.length; i++) {
+            simulation.setTraversalTime(topology.sectionId(i), traversal[i]);
+        }
+        for (int entry = 0; entry < entryRoutes.length; entry++) {
+            if (minHeadways[entry] == 0) {
+                continue;
+            }
+            double mean = minHeadways[entry] + random.nextDouble() * (maxHeadways[entry] - minHeadways[entry]);
+            int[] routes = entryRoutes[entry];
+            double[] shares = new double[routes.length];
+            double total = 0;
+            for (int r = 0; r < routes.length; r++) {
+                shares[r] = 1 - random.nextDouble();
+                total += shares[r];
+            }
+            for (int r = 0; r < routes.length; r++) {
+                //A share s of Poisson arrivals with mean headway m is a Poisson stream with mean headway m / s
+                simulation.addRandomService(0, mean * total / shares[r], Long.MAX_VALUE,
+                        topology.routePath(routes[r])[0], topology.routeDestination(routes[r]), random.split());
+            }
+        }
+        simulation.run(duration);
+        return simulation;
+    }
+
+    /**
+     * The statistics of a batch of scenarios, merged as the scenarios complete. All the methods may be called while
+     * scenarios are still being added.
+     */
+    public static final class Result {
+        private final Topology topology;
+        private final long duration;
+        private final LongAdder scenarios = new LongAdder();
+        private final LongAdder entered = new LongAdder();
+        private final LongAdder exited = new LongAdder();
+        private final Histogram scenarioExits = new Histogram();
+        private final Histogram delays = new Histogram();
+        private final AtomicLongArray blocking;
+        private final AtomicLongArray maxBlocking;
+
+        Result(Topology topology, long duration) {
+            this.topology = topology;
+            this.duration = duration;
+            blocking = new AtomicLongArray(topology.transitionCount());
+            maxBlocking = new AtomicLongArray(topology.transitionCount());
+        }
+
+        void add(Simulation simulation) {
+            scenarios.increment();
+            entered.add(simulation.getEntered());
+            exited.add(simulation.getExited());
+            scenarioExits.record(simulation.getExited());
+            delays.add(simulation.getDelays());
+            for (int t = 0; t < topology.transitionCount(); t++) {
+                int from = topology.sectionId(topology.transitionFrom(t));
+                int to = topology.transitionTo(t) == -1 ? -1 : topology.sectionId(topology.transitionTo(t));
+                long held = simulation.getBlockingTime(from, to);
+                if (held != 0) {
+                    blocking.getAndAdd(t, held);
+                    long longest = simulation.getMaxBlockingTime(from, to);
+                    maxBlocking.getAndAccumulate(t, longest, Math::max);
+                }
+            }
+        }
+
+        /**
+         * Gets the number of scenarios run.
+         *
+         * @return The number of completed scenarios.
+         */
+        public long getScenarios() {
+            return scenarios.sum();
+        }
+
+        /**
+         * Gets the number of trains that entered, over all scenarios.
+         *
+         * @return The number of trains let in.
+         */
+        public long getEntered() {
+            return entered.sum();
+        }
+
+        /**
+         * Gets the number of trains that completed their journey, over all scenarios.
+         *
+         * @return The number of trains that left the corridor.
+         */
+        public long getExited() {
+            return exited.sum();
+        }
+
+        /**
+         * Gets the mean throughput over all scenarios.
+         *
+         * @param period The length of the period to express the throughput in.
+         * @return The average number of trains completing their journey per period.
+         */
+        public double getThroughput(long period) {
+            long runs = scenarios.sum();
+            return runs == 0 ? 0 : (double) exited.sum() * period / ((double) runs * duration);
+        }
+
+        /**
+         * Gets the distribution of the number of trains completing their journey in one scenario.
+         *
+         * @return The histogram of per-scenario throughput.
+         */
+        public Histogram getScenarioExits() {
+            return scenarioExits;
+        }
+
+        /**
+         * Gets the distribution of the journey delays of every train that completed its journey, over all scenarios.
+         *
+         * @return The histogram of journey delays, as defined by {@link Simulation#getJourneyDelay()}.
+         */
+        public Histogram getDelays() {
+            return delays;
+        }
+
+        /**
+         * Gets the total time trains were held before a movement, over all scenarios.
+         *
+         * @param fromTrackSection The section the movement leaves.
+         * @param toTrackSection   The section the movement enters, or -1 for leaving the corridor.
+         * @return The total hold time.
+         * @throws IllegalArgumentException If the topology has no such movement.
+         */
+        public long getBlockingTime(int fromTrackSection, int toTrackSection) throws IllegalArgumentException {
+            return blocking.get(transition(fromTrackSection, toTrackSection));
+        }
+
+        /**
+         * Gets the longest time a single train was held before a movement, over all scenarios. A long hold on a
+         * movement that yields to priority traffic marks it as starved.
+         *
+         * @param fromTrackSection The section the movement leaves.
+         * @param toTrackSection   The section the movement enters, or -1 for leaving the corridor.
+         * @return The longest hold.
+         * @throws IllegalArgumentException If the topology has no such movement.
+         */
+        public long getMaxBlockingTime(int fromTrackSection, int toTrackSection) throws IllegalArgumentException {
+            return maxBlocking.get(transition(fromTrackSection, toTrackSection));
+        }
+
+        private int transition(int fromTrackSection, int toTrackSection) throws IllegalArgumentException {
+            int transition = topology.transition(fromTrackSection, toTrackSection);
+            if (transition == -1) {
+                throw new IllegalArgumentException("No movement from " + fromTrackSection + " to " + toTrackSection);
+            }
+            return transition;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * The order in which an interlocking resolves the trains of one call to moveTrains.
+ *
+ * In both orders trains poised on a higher-priority transition are tried before the rest, so a train never moves
+ * ahead of one it has to yield to, and every move is checked against the current state of the network.
+ */
+public enum MoveOrder {
+    /**
+     * Each train is tried once, in the order listed. A train behind another train that moves later in the same call
+     * stays where it is until the next call.
+     */
+    LISTED,
+
+    /**
+     * Trains are tried in the order listed, but a train that is held up by another listed train waits on the section
+     * blocking it and is tried again as soon as that section is vacated. Moves cascade along chains of trains, so a
+     * call moves every train that can be moved by any ordering of the list that respects priorities.
+     */
+    CASCADE
+}
@@ -0,0 +1,11 @@
+/**
+ * The kinds of occupancy change reported to an {@link OccupancyListener}.
+ */
+public enum OccupancyChange {
+    /** A train has arrived on a section, either entering the corridor or moving onto it. */
+    ENTER,
+    /** A train has left a section, moving on or leaving the corridor. */
+    LEAVE,
+    /** A train has left the corridor from its destination section, which it has just left. */
+    EXIT
+}
@@ -0,0 +1,87 @@
+import java.util.Arrays;
+
+/**
+ * A reusable batch of occupancy changes, stored as parallel arrays rather than one object per event.
+ *
+ * An interlocking fills one batch while it moves trains and hands it to its listeners when the call completes, then
+ * clears it for the next call; the arrays only grow, so a steady flow of changes allocates nothing.
+ */
+public final class OccupancyEvents {
+    private static final OccupancyChange[] CHANGES = OccupancyChange.values();
+
+    private byte[] changes = new byte[16];
+    private int[] sections = new int[16];
+    private String[] names = new String[16];
+    private int size;
+    private long version;
+
+    /**
+     * Gets the number of changes in the batch.
+     *
+     * @return The number of changes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the kind of a change.
+     *
+     * @param i The position of the change in the batch.
+     * @return The kind of change.
+     */
+    public OccupancyChange change(int i) {
+        return CHANGES[changes[i]];
+    }
+
+    /**
+     * Gets the track section a change happened on.
+     *
+     * @param i The position of the change in the batch.
+     * @return The track section id.
+     */
+    public int section(int i) {
+        return sections[i];
+    }
+
+    /**
+     * Gets the train involved in a change.
+     *
+     * @param i The position of the change in the batch.
+     * @return The train's name, or null for a coalesced {@link OccupancyChange#LEAVE} whose train is not known.
+     */
+    public String trainName(int i) {
+        return names[i];
+    }
+
+    /**
+     * Gets the version of the interlocking state once the batch has been applied, as returned by
+     * {@link InterlockingImpl#getVersion()}.
+     *
+     * @return The version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    void add(OccupancyChange change, int section, String trainName) {
+        if (size == changes.length) {
+            changes = Arrays.copyOf(changes, size * 2);
+            sections = Arrays.copyOf(sections, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        changes[size] = (byte) change.ordinal();
+        sections[size] = section;
+        names[size] = trainName;
+        size++;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    void clear() {
+        Arrays.fill(names, 0, size, null);
+        size = 0;
+    }
+}
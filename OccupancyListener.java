@@ -0,0 +1,12 @@
+/**
+ * Receives the occupancy changes made by an interlocking, one batch per call that changed the network.
+ */
+@FunctionalInterface
+public interface OccupancyListener {
+    /**
+     * Handles the changes made by one addTrain, moveTrains or tryMoveTrains call, in the order they were made.
+     *
+     * @param events The changes. The object is reused for the next batch, so it must not be kept after returning.
+     */
+    void onChanges(OccupancyEvents events);
+}
@@ -0,0 +1,221 @@
+import java.util.Arrays;
+
+/**
+ * An immutable view of which train is on which section at one moment, as published by {@link SnapshotInterlocking}.
+ *
+ * The occupants are held in fixed-size chunks of sections. A new snapshot copies only the chunks whose sections
+ * changed and shares the rest with the snapshot before it, so publishing after a batch costs little more than the
+ * batch touched, however large the network. A snapshot never changes once published and may be read from any number
+ * of threads without locking.
+ *
+ * The snapshot also indexes where each train is, remembered exits included, in a hash table of a fixed number of
+ * buckets held in chunks the same way: a new snapshot copies the chunks and buckets holding the trains that changed
+ * and shares the rest. getTrain is then a hash lookup that reads this snapshot alone.
+ */
+public final class OccupancySnapshot {
+    static final int CHUNK_BITS = 6;
+    static final int CHUNK = 1 << CHUNK_BITS;
+
+    /**
+     * The location of a train that has left the corridor and is still remembered.
+     */
+    static final int EXITED = -1;
+
+    /**
+     * The location of a train the snapshot does not know.
+     */
+    static final int UNKNOWN = -2;
+
+    private static final Located[] EMPTY_BUCKET = new Located[0];
+
+    private final Topology topology;
+    private final long version;
+    private final String[][] chunks;
+    private final Located[][][] index;
+    private final int indexMask;
+
+    /**
+     * Creates the snapshot of an empty network.
+     *
+     * @param topology The network topology.
+     * @param trains   The most trains the index will hold at once: those in service plus the remembered exits.
+     */
+    OccupancySnapshot(Topology topology, int trains) {
+        this.topology = topology;
+        this.version = 0;
+        int sections = topology.sectionCount();
+        chunks = new String[(sections + CHUNK - 1) >>> CHUNK_BITS][];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = new String[Math.min(CHUNK, sections - (c << CHUNK_BITS))];
+        }
+        int buckets = Integer.highestOneBit(Math.max(CHUNK, trains) * 2 - 1);
+        indexMask = buckets - 1;
+        index = new Located[buckets >>> CHUNK_BITS][][];
+        Located[][] empty = new Located[CHUNK][];
+        Arrays.fill(empty, EMPTY_BUCKET);
+        Arrays.fill(index, empty);
+    }
+
+    /**
+     * Creates the snapshot following another one.
+     *
+     * @param previous  The previous snapshot.
+     * @param version   The version of the new state.
+     * @param occupants The current occupant of every section, by section index.
+     * @param dirty     The chunks whose sections have changed since the previous snapshot, one flag per chunk; the
+     *                 flags are cleared.
+     * @param changes   The changes to train locations since the previous snapshot, in the order made; cleared.
+     */
+    OccupancySnapshot(OccupancySnapshot previous, long version, String[] occupants, boolean[] dirty,
+                      Changes changes) {
+        this.topology = previous.topology;
+        this.version = version;
+        chunks = previous.chunks.clone();
+        for (int c = 0; c < chunks.length; c++) {
+            if (dirty[c]) {
+                int start = c << CHUNK_BITS;
+                chunks[c] = Arrays.copyOfRange(occupants, start, start + chunks[c].length);
+                dirty[c] = false;
+            }
+        }
+        indexMask = previous.indexMask;
+        index = previous.index.clone();
+        //Chunks copied for this snapshot, which later changes may write to in place
+        boolean[] copied = changes.size == 0 ? null : new boolean[index.length];
+        for (int i = 0; i < changes.size; i++) {
+            apply(changes.names[i], changes.locations[i], changes.exits[i], copied);
+        }
+        changes.clear();
+    }
+
+    private void apply(String name, int location, long exit, boolean[] copied) {
+        int bucket = bucket(name);
+        int c = bucket >>> CHUNK_BITS;
+        if (!copied[c]) {
+            index[c] = index[c].clone();
+            copied[c] = true;
+        }
+        Located[] entries = index[c][bucket & (CHUNK - 1)];
+        int found = 0;
+        while (found < entries.length && !entries[found].name.equals(name)) {
+            found++;
+        }
+        Located[] updated;
+        if (location == UNKNOWN) {
+            //Forget the train only if it has not entered or left again since the exit being forgotten
+            if (found == entries.length || entries[found].location != EXITED || entries[found].exit != exit) {
+                return;
+            }
+            updated = new Located[entries.length - 1];
+            System.arraycopy(entries, 0, updated, 0, found);
+            System.arraycopy(entries, found + 1, updated, found, entries.length - found - 1);
+        } else {
+            updated = Arrays.copyOf(entries, Math.max(entries.length, found + 1));
+            updated[found] = new Located(name, location, exit);
+        }
+        index[c][bucket & (CHUNK - 1)] = updated;
+    }
+
+    private int bucket(String name) {
+        int h = name.hashCode() * 0x9E3779B9;
+        return (h ^ h >>> 16) & indexMask;
+    }
+
+    /**
+     * Gets the version of the interlocking state this snapshot shows, as returned by
+     * {@link InterlockingImpl#getVersion()}.
+     *
+     * @return The version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the name of the train occupying a track section.
+     *
+     * @param trackSection The track section to query.
+     * @return The name of the occupying train, or null if the section was free.
+     * @throws IllegalArgumentException If the specified track section does not exist.
+     */
+    public String getSection(int trackSection) throws IllegalArgumentException {
+        int index = topology.sectionIndex(trackSection);
+        if (index == -1) {
+            throw new IllegalArgumentException("Track section does not exist");
+        }
+        return chunks[index >>> CHUNK_BITS][index & (CHUNK - 1)];
+    }
+
+    /**
+     * Gets the track section a train occupies.
+     *
+     * @param trainName The name of the train.
+     * @return The track section, or -1 if the train was not on any section.
+     */
+    public int getTrain(String trainName) {
+        int location = locate(trainName);
+        return location < 0 ? -1 : location;
+    }
+
+    /**
+     * Finds a train in the index.
+     *
+     * @param trainName The name of the train.
+     * @return The track section the train is on, {@link #EXITED} for a remembered exit, or {@link #UNKNOWN}.
+     */
+    int locate(String trainName) {
+        int bucket = bucket(trainName);
+        for (Located entry : index[bucket >>> CHUNK_BITS][bucket & (CHUNK - 1)]) {
+            if (entry.name.equals(trainName)) {
+                return entry.location;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static final class Located {
+        final String name;
+        final int location;
+        final long exit;
+
+        Located(String name, int location, long exit) {
+            this.name = name;
+            this.location = location;
+            this.exit = exit;
+        }
+    }
+
+    /**
+     * The train locations changed by the writer since the last snapshot, kept in reusable arrays.
+     */
+    static final class Changes {
+        private String[] names = new String[16];
+        private int[] locations = new int[16];
+        private long[] exits = new long[16];
+        private int size;
+
+        /**
+         * Records a change.
+         *
+         * @param name     The name of the train.
+         * @param location The section the train is now on; {@link #EXITED} when it leaves; or {@link #UNKNOWN} when
+         *                 its exit is forgotten.
+         * @param exit     The number of the exit, for a train leaving or forgotten; otherwise ignored.
+         */
+        void add(String name, int location, long exit) {
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                locations = Arrays.copyOf(locations, size * 2);
+                exits = Arrays.copyOf(exits, size * 2);
+            }
+            names[size] = name;
+            locations[size] = location;
+            exits[size++] = exit;
+        }
+
+        void clear() {
+            Arrays.fill(names, 0, size, null);
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * An executable place/transition net with ordinary (weight one) arcs and inhibitor arcs.
+ *
+ * The marking is a vector of token counts, one per place. Arcs are kept in compressed sparse form in both directions:
+ * from each transition to its input, output and inhibitor places, and from each place to the transitions that read
+ * it. For every transition the net counts how many of its preconditions currently fail (empty input places plus
+ * marked inhibitor places); a transition is enabled exactly when that count is zero. Firing only touches places whose
+ * token count crosses zero, and for those only the transitions adjacent to them, so the cost of firing depends on the
+ * local structure of the net rather than on its size. Enabled transitions are kept in a bitset.
+ */
+public class PetriNet {
+    private final int[] tokens;
+
+    private final int[] inputStart;
+    private final int[] inputPlaces;
+    private final int[] outputStart;
+    private final int[] outputPlaces;
+
+    private final int[] readerStart;
+    private final int[] readers;
+    private final int[] inhibitedStart;
+    private final int[] inhibited;
+
+    private final int[] deficit;
+    private final long[] enabled;
+    private int enabledCount;
+
+    /**
+     * Builds a net with an empty marking.
+     *
+     * @param placeCount The number of places.
+     * @param inputs     The input places of each transition.
+     * @param outputs    The output places of each transition.
+     * @param inhibitors The inhibitor places of each transition; the transition is disabled while any is marked.
+     */
+    public PetriNet(int placeCount, int[][] inputs, int[][] outputs, int[][] inhibitors) {
+        int transitionCount = inputs.length;
+        tokens = new int[placeCount];
+        inputStart = new int[transitionCount + 1];
+        inputPlaces = flatten(inputs, inputStart);
+        outputStart = new int[transitionCount + 1];
+        outputPlaces = flatten(outputs, outputStart);
+        readerStart = new int[placeCount + 1];
+        readers = invert(inputs, placeCount, readerStart);
+        inhibitedStart = new int[placeCount + 1];
+        inhibited = invert(inhibitors, placeCount, inhibitedStart);
+
+        deficit = new int[transitionCount];
+        enabled = new long[(transitionCount + 63) >>> 6];
+        for (int t = 0; t < transitionCount; t++) {
+            deficit[t] = inputStart[t + 1] - inputStart[t];
+            if (deficit[t] == 0) {
+                enable(t);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of places.
+     *
+     * @return The number of places.
+     */
+    public int placeCount() {
+        return tokens.length;
+    }
+
+    /**
+     * Gets the number of transitions.
+     *
+     * @return The number of transitions.
+     */
+    public int transitionCount() {
+        return deficit.length;
+    }
+
+    /**
+     * Gets the number of tokens on a place.
+     *
+     * @param place The place.
+     * @return The token count.
+     */
+    public int tokens(int place) {
+        return tokens[place];
+    }
+
+    /**
+     * Sets the number of tokens on a place, updating the transitions adjacent to it.
+     *
+     * @param place The place.
+     * @param count The new token count.
+     */
+    public void setTokens(int place, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative token count");
+        }
+        int old = tokens[place];
+        tokens[place] = count;
+        if (old == 0 && count > 0) {
+            marked(place);
+        } else if (old > 0 && count == 0) {
+            emptied(place);
+        }
+    }
+
+    /**
+     * Checks whether a transition may fire in the current marking.
+     *
+     * @param transition The transition.
+     * @return True if every input place is marked and every inhibitor place is empty; false otherwise.
+     */
+    public boolean isEnabled(int transition) {
+        return deficit[transition] == 0;
+    }
+
+    /**
+     * Gets the number of preconditions of a transition that currently fail.
+     *
+     * @param transition The transition.
+     * @return The number of empty input places plus the number of marked inhibitor places.
+     */
+    public int deficit(int transition) {
+        return deficit[transition];
+    }
+
+    /**
+     * Gets the number of enabled transitions.
+     *
+     * @return The number of enabled transitions.
+     */
+    public int enabledCount() {
+        return enabledCount;
+    }
+
+    /**
+     * Finds the next enabled transition.
+     *
+     * @param from The first transition to consider.
+     * @return The lowest enabled transition that is not less than from, or -1 if there is none.
+     */
+    public int nextEnabled(int from) {
+        int word = from >>> 6;
+        if (word >= enabled.length) {
+            return -1;
+        }
+        long bits = enabled[word] & (-1L << (from & 63));
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == enabled.length) {
+                return -1;
+            }
+            bits = enabled[word];
+        }
+    }
+
+    /**
+     * Fires a transition: removes a token from each input place and adds one to each output place.
+     *
+     * @param transition The transition to fire.
+     * @throws IllegalStateException If the transition is not enabled.
+     */
+    public void fire(int transition) throws IllegalStateException {
+        if (deficit[transition] != 0) {
+            throw new IllegalStateException("Transition " + transition + " is not enabled");
+        }
+        for (int i = inputStart[transition]; i < inputStart[transition + 1]; i++) {
+            int place = inputPlaces[i];
+            if (--tokens[place] == 0) {
+                emptied(place);
+            }
+        }
+        for (int i = outputStart[transition]; i < outputStart[transition + 1]; i++) {
+            int place = outputPlaces[i];
+            if (tokens[place]++ == 0) {
+                marked(place);
+            }
+        }
+    }
+
+    private void marked(int place) {
+        for (int i = readerStart[place]; i < readerStart[place + 1]; i++) {
+            int t = readers[i];
+            if (--deficit[t] == 0) {
+                enable(t);
+            }
+        }
+        for (int i = inhibitedStart[place]; i < inhibitedStart[place + 1]; i++) {
+            int t = inhibited[i];
+            if (deficit[t]++ == 0) {
+                disable(t);
+            }
+        }
+    }
+
+    private void emptied(int place) {
+        for (int i = readerStart[place]; i < readerStart[place + 1]; i++) {
+            int t = readers[i];
+            if (deficit[t]++ == 0) {
+                disable(t);
+            }
+        }
+        for (int i = inhibitedStart[place]; i < inhibitedStart[place + 1]; i++) {
+            int t = inhibited[i];
+            if (--deficit[t] == 0) {
+                enable(t);
+            }
+        }
+    }
+
+    private void enable(int transition) {
+        enabled[transition >>> 6] |= 1L << transition;
+        enabledCount++;
+    }
+
+    private void disable(int transition) {
+        enabled[transition >>> 6] &= ~(1L << transition);
+        enabledCount--;
+    }
+
+    private static int[] flatten(int[][] lists, int[] start) {
+        for (int i = 0; i < lists.length; i++) {
+            start[i + 1] = start[i] + lists[i].length;
+        }
+        int[] values = new int[start[lists.length]];
+        for (int i = 0; i < lists.length; i++) {
+            System.arraycopy(lists[i], 0, values, start[i], lists[i].length);
+        }
+        return values;
+    }
+
+    private static int[] invert(int[][] lists, int placeCount, int[] start) {
+        for (int[] list : lists) {
+            for (int place : list) {
+                start[place + 1]++;
+            }
+        }
+        for (int p = 0; p < placeCount; p++) {
+            start[p + 1] += start[p];
+        }
+        int[] fill = start.clone();
+        int[] values = new int[start[placeCount]];
+        for (int t = 0; t < lists.length; t++) {
+            for (int place : lists[t]) {
+                values[fill[place]++] = t;
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,185 @@
+import java.util.Arrays;
+
+/**
+ * An interlocking that runs trains by firing transitions of the network's Petri net.
+ *
+ * Safety, entry constraints and priorities are not checked by hand here: a move is legal exactly when the
+ * corresponding transition of the {@link RailNet} is enabled, and the net keeps its enabled set up to date as tokens
+ * move. Train names and routes are tracked beside the net, since a token only records its route and position.
+ */
+public class PetriNetInterlocking implements Interlocking {
+    private final Topology topology;
+    private final RailNet railNet;
+    private final PetriNet net;
+    private final TrainRegistry trains;
+    private final Train[] occupants;
+    private final InterlockingImpl.MoveBatch batch = new InterlockingImpl.MoveBatch();
+
+    /**
+     * Initializes the interlocking on the corridor described in the README.
+     */
+    public PetriNetInterlocking() {
+        this(Topology.corridor());
+    }
+
+    /**
+     * Initializes the interlocking on a network topology.
+     *
+     * @param topology The network topology.
+     */
+    public PetriNetInterlocking(Topology topology) {
+        this(new RailNet(topology));
+    }
+
+    /**
+     * Initializes the interlocking on a compiled net, which may be shared with other interlockings.
+     *
+     * @param railNet The compiled net of the network.
+     */
+    public PetriNetInterlocking(RailNet railNet) {
+        this.topology = railNet.getTopology();
+        this.railNet = railNet;
+        this.net = railNet.newNet();
+        this.trains = new TrainRegistry(TrainRegistry.DEFAULT_HISTORY, true);
+        this.occupants = new Train[topology.sectionCount()];
+    }
+
+    /**
+     * Gets the net the interlocking fires transitions on.
+     *
+     * @return The live net.
+     */
+    public PetriNet getNet() {
+        return net;
+    }
+
+    /**
+     * Adds a new train by firing the entry transition of its route.
+     *
+     * @param trainName              The name of the train.
+     * @param entryTrackSection      The entry track section for the train.
+     * @param destinationTrackSection The destination track section for the train.
+     * @throws IllegalArgumentException If the train name is in use or there is no valid path.
+     * @throws IllegalStateException    If the entry section is occupied or an entry constraint is not met.
+     */
+    @Override
+    public void addTrain(String trainName, int entryTrackSection, int destinationTrackSection)
+            throws IllegalArgumentException, IllegalStateException {
+        int route = topology.route(entryTrackSection, destinationTrackSection);
+        if (route == -1) {
+            throw new IllegalArgumentException("Invalid train path.");
+        }
+        //Unmet preconditions beyond the entry section's free place are marked constraint inhibitors
+        int entry = railNet.entryTransition(route);
+        int occupied = net.tokens(railNet.freePlace(topology.sectionIndex(entryTrackSection))) == 0 ? 1 : 0;
+        if (net.deficit(entry) > occupied) {
+            throw new IllegalStateException("Constraint not met: trying to add a train heading for "
+                    + destinationTrackSection + " from " + entryTrackSection);
+        }
+        if (trains.getInService(trainName) != null) {
+            throw new IllegalArgumentException("Train name already in use.");
+        }
+        if (!net.isEnabled(entry)) {
+            throw new IllegalStateException("Track " + entryTrackSection + " is currently occupied.");
+        }
+        //Created only once every check has passed, so a rejected add never takes or recycles a train
+        Train newTrain = trains.create(topology, trainName, entryTrackSection, destinationTrackSection);
+        trains.register(newTrain);
+        net.fire(entry);
+        occupants[topology.sectionIndex(entryTrackSection)] = newTrain;
+    }
+
+    /**
+     * Moves a list of trains, trains on a higher-priority transition first, by firing their step transitions.
+     *
+     * @param trainNames An array of train names to be moved.
+     * @return The number of trains successfully moved.
+     * @throws IllegalArgumentException If one of the trains is not in service.
+     */
+    @Override
+    public int moveTrains(String[] trainNames) throws IllegalArgumentException {
+        InterlockingImpl.MoveBatch batch = this.batch.ensure(trainNames.length);
+        for (int i = 0; i < trainNames.length; i++) {
+            Train train = trains.getInService(trainNames[i]);
+            if (train == null) {
+                Arrays.fill(batch.trains, 0, i, null);
+                throw new IllegalArgumentException("Train " + trainNames[i] + " is not in service.");
+            }
+            batch.trains[i] = train;
+            batch.priority[i] = topology.isPriorityTransition(train.getTransition());
+        }
+        int count = 0;
+        for (int i = 0; i < trainNames.length; i++) {
+            if (batch.priority[i] && moveTrain(batch.trains[i])) {
+                count++;
+            }
+        }
+        for (int i = 0; i < trainNames.length; i++) {
+            if (!batch.priority[i] && moveTrain(batch.trains[i])) {
+                count++;
+            }
+            batch.trains[i] = null;
+        }
+        return count;
+    }
+
+    /**
+     * Fires the step transition of a train if it is enabled.
+     *
+     * @param train The train to move.
+     * @return True if the train moved; false otherwise.
+     */
+    private boolean moveTrain(Train train) {
+        if (!train.isInService()) {
+            return false;
+        }
+        int step = railNet.stepTransition(train.getRoute(), train.getJourneyIndex());
+        if (!net.isEnabled(step)) {
+            return false;
+        }
+        net.fire(step);
+        int transition = train.getTransition();
+        occupants[topology.transitionFrom(transition)] = null;
+        if (topology.transitionTo(transition) != -1) {
+            occupants[topology.transitionTo(transition)] = train;
+        }
+        train.move();
+        if (!train.isInService()) {
+            trains.retire(train);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the name of the train occupying a specific track section.
+     *
+     * @param trackSection The track section to query.
+     * @return The name of the train occupying the section or null if the section is unoccupied.
+     * @throws IllegalArgumentException If the specified track section does not exist.
+     */
+    @Override
+    public String getSection(int trackSection) throws IllegalArgumentException {
+        int index = topology.sectionIndex(trackSection);
+        if (index == -1) {
+            throw new IllegalArgumentException("Track section does not exist");
+        }
+        Train train = occupants[index];
+        return train == null ? null : train.getTrainName();
+    }
+
+    /**
+     * Gets the current track section of a train by its name.
+     *
+     * @param trainName The name of the train.
+     * @return The track section where the train is located, or -1 if it has left the corridor.
+     * @throws IllegalArgumentException If the specified train name does not exist.
+     */
+    @Override
+    public int getTrain(String trainName) throws IllegalArgumentException {
+        Train train = trains.get(trainName);
+        if (train == null) {
+            throw new IllegalArgumentException("Train name does not exist");
+        }
+        return train.getSection();
+    }
+}
@@ -0,0 +1,364 @@
+import java.util.Arrays;
+
+/**
+ * An interlocking that models the points of its topology, as in the README's j1 and j2 place structures: each point
+ * stands in one position at a time, passes only the movements of that position, and takes a fixed number of ticks
+ * to be thrown to another, during which nothing crosses it.
+ *
+ * The interlocking keeps its own tick clock, which the caller moves forward with {@link #advanceTo(long)}; a
+ * {@link Simulation} running on a point interlocking does this itself. A point is locked in its position while any
+ * train is poised on one of that position's movements and nothing but the point could hold it back, and is only
+ * thrown once none is and a train is waiting for another position, the one with most trains waiting first. Trains
+ * that arrive for the same position are therefore let through as a batch before the point moves, so a stream of
+ * trains costs one throw rather than one per train. A train for the current position that is held by an occupied
+ * section or a priority rule does not keep the point, since it may be waiting for a train that needs the point
+ * thrown.
+ *
+ * Each point counts its throws and passages and the ticks it spent being thrown, so the points that limit a
+ * network's capacity can be picked out. Checkpoints hold the clock and the position, target and throw end of every
+ * point, so a restored interlocking carries on with its points where they were, throws in progress included; the
+ * statistics start again from zero. A checkpoint without points, taken on another kind of interlocking, starts with
+ * every point settled in its first position at time zero.
+ */
+public class PointInterlocking extends InterlockingImpl {
+    private final Topology topology;
+    private final int[] poised;
+    private final Train[] occupants;
+    private final int[][] pointTransitions;
+    private final int[] positions;
+    private final int[] targets;
+    private final long[] throwEnds;
+    private final int[][] demand;
+    private final long[] throwCounts;
+    private final long[] passages;
+    private final long[] throwingTimes;
+    private long time;
+    private boolean restoring;
+
+    /**
+     * Creates a point interlocking on the corridor described in the README, with its points j1 and j2.
+     */
+    public PointInterlocking() {
+        this(CorridorHolder.CORRIDOR_WITH_POINTS);
+    }
+
+    /**
+     * Creates a point interlocking on a network topology.
+     *
+     * @param topology The sections, routes, rules and points of the network.
+     */
+    public PointInterlocking(Topology topology) {
+        super(topology);
+        this.topology = topology;
+        poised = new int[topology.sectionCount()];
+        Arrays.fill(poised, -1);
+        occupants = new Train[topology.sectionCount()];
+        int points = topology.pointCount();
+        int[] crossing = new int[points];
+        for (int transition = 0; transition < topology.transitionCount(); transition++) {
+            if (topology.transitionPoint(transition) != -1) {
+                crossing[topology.transitionPoint(transition)]++;
+            }
+        }
+        pointTransitions = new int[points][];
+        for (int point = 0; point < points; point++) {
+            pointTransitions[point] = new int[crossing[point]];
+            crossing[point] = 0;
+        }
+        for (int transition = 0; transition < topology.transitionCount(); transition++) {
+            int point = topology.transitionPoint(transition);
+            if (point != -1) {
+                pointTransitions[point][crossing[point]++] = transition;
+            }
+        }
+        positions = new int[points];
+        targets = new int[points];
+        throwEnds = new long[points];
+        demand = new int[points][];
+        for (int point = 0; point < points; point++) {
+            demand[point] = new int[topology.pointPositionCount(point)];
+        }
+        throwCounts = new long[points];
+        passages = new long[points];
+        throwingTimes = new long[points];
+    }
+
+    /**
+     * Moves the clock forward, completing the throws due by then and starting any that have become possible,
+     * including those the trains holding a point no longer stand in the way of.
+     *
+     * @param now The new time, in ticks.
+     * @throws IllegalArgumentException If the time is earlier than the current time.
+     */
+    public void advanceTo(long now) throws IllegalArgumentException {
+        if (now < time) {
+            throw new IllegalArgumentException("Time cannot go back");
+        }
+        time = now;
+        for (int point = 0; point < positions.length; point++) {
+            if (inTransit(point) && throwEnds[point] <= now) {
+                settle(point);
+            }
+            schedule(point);
+        }
+    }
+
+    /**
+     * Gets the time on the interlocking's clock.
+     *
+     * @return The current time, in ticks.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the time the next point being thrown will settle.
+     *
+     * @return The earliest end of a throw in progress, or Long.MAX_VALUE if no point is being thrown.
+     */
+    public long getNextSettleTime() {
+        long next = Long.MAX_VALUE;
+        for (int point = 0; point < positions.length; point++) {
+            if (inTransit(point)) {
+                next = Math.min(next, throwEnds[point]);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Gets the position a point stands in, or was thrown from if it is moving.
+     *
+     * @param pointId The point id.
+     * @return The position index, in the order the topology lists them.
+     * @throws IllegalArgumentException If the point does not exist.
+     */
+    public int getPosition(int pointId) throws IllegalArgumentException {
+        return positions[point(pointId)];
+    }
+
+    /**
+     * Checks if a point is being thrown.
+     *
+     * @param pointId The point id.
+     * @return True if the point is moving between positions.
+     * @throws IllegalArgumentException If the point does not exist.
+     */
+    public boolean isThrowing(int pointId) throws IllegalArgumentException {
+        return inTransit(point(pointId));
+    }
+
+    /**
+     * Gets the number of times a point has been thrown, counting a throw in progress.
+     *
+     * @param pointId The point id.
+     * @return The number of throws.
+     * @throws IllegalArgumentException If the point does not exist.
+     */
+    public long getThrows(int pointId) throws IllegalArgumentException {
+        return throwCounts[point(pointId)];
+    }
+
+    /**
+     * Gets the number of trains that have crossed a point.
+     *
+     * @param pointId The point id.
+     * @return The number of passages.
+     * @throws IllegalArgumentException If the point does not exist.
+     */
+    public long getPassages(int pointId) throws IllegalArgumentException {
+        return passages[point(pointId)];
+    }
+
+    /**
+     * Gets the time a point has spent being thrown, up to the current time.
+     *
+     * @param pointId The point id.
+     * @return The throwing time, in ticks.
+     * @throws IllegalArgumentException If the point does not exist.
+     */
+    public long getThrowingTime(int pointId) throws IllegalArgumentException {
+        int point = point(pointId);
+        long throwing = throwingTimes[point];
+        if (inTransit(point)) {
+            throwing += time - (throwEnds[point] - topology.pointThrowTime(point));
+        }
+        return throwing;
+    }
+
+    /**
+     * Gets the share of the time so far that a point has spent being thrown, when no train could cross it.
+     *
+     * @param pointId The point id.
+     * @return The utilization, from 0 to 1, or 0 at time zero.
+     * @throws IllegalArgumentException If the point does not exist.
+     */
+    public double getUtilization(int pointId) throws IllegalArgumentException {
+        return time == 0 ? 0 : (double) getThrowingTime(pointId) / time;
+    }
+
+    private int point(int pointId) throws IllegalArgumentException {
+        int point = topology.pointIndex(pointId);
+        if (point == -1) {
+            throw new IllegalArgumentException("Point does not exist");
+        }
+        return point;
+    }
+
+    private boolean inTransit(int point) {
+        return targets[point] != positions[point];
+    }
+
+    @Override
+    protected boolean isPointSet(int transition) {
+        int point = topology.transitionPoint(transition);
+        return point == -1 || !inTransit(point) && positions[point] == topology.transitionPosition(transition);
+    }
+
+    @Override
+    protected void occupy(int index, Train train) {
+        super.occupy(index, train);
+        occupants[index] = train;
+        //A section holds one train, so the movement it is poised on is remembered per section until it leaves
+        int transition = poised[index];
+        if (train == null) {
+            poised[index] = -1;
+            int point = transition == -1 ? -1 : topology.transitionPoint(transition);
+            if (point != -1) {
+                demand[point][topology.transitionPosition(transition)]--;
+                passages[point]++;
+                schedule(point);
+            }
+        } else {
+            transition = train.getTransition();
+            poised[index] = transition;
+            int point = topology.transitionPoint(transition);
+            if (point != -1) {
+                demand[point][topology.transitionPosition(transition)]++;
+                schedule(point);
+            }
+        }
+    }
+
+    //Starts a throw if the point is free to move and a train is waiting for another position
+    private void schedule(int point) {
+        if (restoring || inTransit(point) || isHeld(point)) {
+            return;
+        }
+        int[] waiting = demand[point];
+        int target = -1;
+        for (int position = 0; position < waiting.length; position++) {
+            if (position != positions[point] && waiting[position] > 0
+                    && (target == -1 || waiting[position] > waiting[target])) {
+                target = position;
+            }
+        }
+        if (target == -1) {
+            return;
+        }
+        targets[point] = target;
+        throwEnds[point] = time + topology.pointThrowTime(point);
+        throwCounts[point]++;
+        if (throwEnds[point] <= time) {
+            settle(point);
+        }
+    }
+
+    //Checks if a train poised on a movement of the point's position could pass as soon as the point lets it
+    private boolean isHeld(int point) {
+        if (demand[point][positions[point]] == 0) {
+            return false;
+        }
+        for (int transition : pointTransitions[point]) {
+            int from = topology.transitionFrom(transition);
+            if (poised[from] == transition && topology.transitionPosition(transition) == positions[point]
+                    && blocker(occupants[from]) == -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void settle(int point) {
+        throwingTimes[point] += topology.pointThrowTime(point);
+        positions[point] = targets[point];
+    }
+
+    /**
+     * Returns the interlocking to its initial state, with the clock and point statistics back at zero and every
+     * point in its first position.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        Arrays.fill(poised, -1);
+        Arrays.fill(occupants, null);
+        Arrays.fill(positions, 0);
+        Arrays.fill(targets, 0);
+        for (int[] waiting : demand) {
+            Arrays.fill(waiting, 0);
+        }
+        Arrays.fill(throwCounts, 0);
+        Arrays.fill(passages, 0);
+        Arrays.fill(throwingTimes, 0);
+        time = 0;
+    }
+
+    /**
+     * Copies the state of the interlocking into a checkpoint, with the clock and the state of every point.
+     *
+     * @return The checkpoint.
+     */
+    @Override
+    public Checkpoint checkpoint() {
+        return super.checkpoint().withPoints(time, positions.clone(), targets.clone(), throwEnds.clone());
+    }
+
+    /**
+     * Restores the state held by a checkpoint, with its points where they were when it was taken. The trains are
+     * placed with no throw started, since the points they wait for are already set as the checkpoint holds them.
+     *
+     * @param checkpoint The checkpoint, taken on the same topology.
+     * @throws IllegalArgumentException If the checkpoint was taken on a topology of a different shape or with a
+     *                                  different number of points.
+     * @throws IllegalStateException    If the interlocking has already been used, or the checkpoint holds a train or
+     *                                  point state the topology cannot have. Nothing is restored in that case.
+     */
+    @Override
+    public void restore(Checkpoint checkpoint) throws IllegalArgumentException, IllegalStateException {
+        int points = checkpoint.pointPositions.length;
+        if (points != 0 && points != positions.length) {
+            throw new IllegalArgumentException("Checkpoint was taken on a different topology");
+        }
+        if (checkpoint.time < 0) {
+            throw new IllegalStateException("Checkpoint holds time " + checkpoint.time);
+        }
+        for (int point = 0; point < points; point++) {
+            int count = topology.pointPositionCount(point);
+            int position = checkpoint.pointPositions[point];
+            int target = checkpoint.pointTargets[point];
+            if (position < 0 || position >= count || target < 0 || target >= count
+                    || target != position && checkpoint.pointThrowEnds[point] <= checkpoint.time) {
+                throw new IllegalStateException("Checkpoint holds an invalid state for point " + point);
+            }
+        }
+        //Throws are left as the checkpoint holds them, so none is started while the trains are placed
+        restoring = true;
+        try {
+            super.restore(checkpoint);
+        } finally {
+            restoring = false;
+        }
+        if (points != 0) {
+            System.arraycopy(checkpoint.pointPositions, 0, positions, 0, points);
+            System.arraycopy(checkpoint.pointTargets, 0, targets, 0, points);
+            System.arraycopy(checkpoint.pointThrowEnds, 0, throwEnds, 0, points);
+        }
+        time = checkpoint.time;
+    }
+
+    private static final class CorridorHolder {
+        static final Topology CORRIDOR_WITH_POINTS = Topology.parse(Topology.CORRIDOR + Topology.CORRIDOR_POINTS);
+    }
+}
@@ -0,0 +1,253 @@
+import java.util.Arrays;
+
+/**
+ * Compiles a {@link Topology} into the place/transition net that models it.
+ *
+ * Each track section has a "free" place, marked while the section is empty. Each step of each route has a train
+ * place, marked while a train following that route is on that section; this is the README's p1L, p3U and so on,
+ * unfolded per route so that a token also carries where the train is heading. The transitions are:
+ * <ul>
+ *     <li>one entry transition per route, taking the entry section's free token. Its entry constraints are inhibitor
+ *     arcs from the train places of the blocking (section, destination) pairs;</li>
+ *     <li>one step transition per route step, moving the token to the next train place and handing back the free
+ *     token of the section left behind. Priority rules are inhibitor arcs from the train places of trains poised on
+ *     a higher-priority transition, which plays the role of the point places R1/L1 and L2/M2/R2 holding the
+ *     junction for the passenger line;</li>
+ *     <li>the step transition of a route's last section is its exit and only returns the free token.</li>
+ * </ul>
+ * Places are numbered sections first, then train places route by route. Transitions are numbered entry transitions
+ * first, then step transitions route by route.
+ */
+public class RailNet {
+    private final Topology topology;
+    private final int[] stepOffset;
+    private final int[] placeRoute;
+    private final int[] placeStep;
+    private final int[][] inputs;
+    private final int[][] outputs;
+    private final int[][] inhibitors;
+
+    /**
+     * Compiles the net of a topology.
+     *
+     * @param topology The network topology.
+     */
+    public RailNet(Topology topology) {
+        this.topology = topology;
+        int sections = topology.sectionCount();
+        int routes = topology.routeCount();
+        stepOffset = new int[routes + 1];
+        for (int r = 0; r < routes; r++) {
+            stepOffset[r + 1] = stepOffset[r] + topology.routePath(r).length;
+        }
+        int steps = stepOffset[routes];
+
+        placeRoute = new int[sections + steps];
+        placeStep = new int[sections + steps];
+        Arrays.fill(placeRoute, 0, sections, -1);
+        Arrays.fill(placeStep, 0, sections, -1);
+        for (int r = 0; r < routes; r++) {
+            for (int i = 0; i < topology.routePath(r).length; i++) {
+                placeRoute[sections + stepOffset[r] + i] = r;
+                placeStep[sections + stepOffset[r] + i] = i;
+            }
+        }
+
+        //Index the train places by the section they are on and by the transition they are poised on
+        int[] bySectionStart = new int[sections + 1];
+        int[] byTransitionStart = new int[topology.transitionCount() + 1];
+        for (int r = 0; r < routes; r++) {
+            int[] path = topology.routePath(r);
+            for (int i = 0; i < path.length; i++) {
+                bySectionStart[topology.sectionIndex(path[i]) + 1]++;
+                byTransitionStart[topology.routeTransitions(r)[i] + 1]++;
+            }
+        }
+        for (int s = 0; s < sections; s++) {
+            bySectionStart[s + 1] += bySectionStart[s];
+        }
+        for (int t = 0; t < topology.transitionCount(); t++) {
+            byTransitionStart[t + 1] += byTransitionStart[t];
+        }
+        int[] bySection = new int[steps];
+        int[] byTransition = new int[steps];
+        int[] sectionFill = bySectionStart.clone();
+        int[] transitionFill = byTransitionStart.clone();
+        for (int r = 0; r < routes; r++) {
+            int[] path = topology.routePath(r);
+            for (int i = 0; i < path.length; i++) {
+                bySection[sectionFill[topology.sectionIndex(path[i])]++] = trainPlace(r, i);
+                byTransition[transitionFill[topology.routeTransitions(r)[i]]++] = trainPlace(r, i);
+            }
+        }
+
+        int transitions = routes + steps;
+        inputs = new int[transitions][];
+        outputs = new int[transitions][];
+        inhibitors = new int[transitions][];
+        int[] scratch = new int[steps];
+        for (int r = 0; r < routes; r++) {
+            int[] path = topology.routePath(r);
+            int entry = topology.sectionIndex(path[0]);
+            inputs[r] = new int[]{entry};
+            outputs[r] = new int[]{trainPlace(r, 0)};
+            int n = 0;
+            for (int c = topology.constraintStart(r); c < topology.constraintStart(r + 1); c++) {
+                int section = topology.constraintSection(c);
+                int destination = topology.constraintDestination(c);
+                for (int k = bySectionStart[section]; k < bySectionStart[section + 1]; k++) {
+                    if (topology.routeDestination(placeRoute[bySection[k]]) == destination) {
+                        scratch[n++] = bySection[k];
+                    }
+                }
+            }
+            inhibitors[r] = Arrays.copyOf(scratch, n);
+
+            for (int i = 0; i < path.length; i++) {
+                int t = stepTransition(r, i);
+                int here = topology.sectionIndex(path[i]);
+                if (i + 1 < path.length) {
+                    int next = topology.sectionIndex(path[i + 1]);
+                    inputs[t] = new int[]{trainPlace(r, i), next};
+                    outputs[t] = new int[]{trainPlace(r, i + 1), here};
+                } else {
+                    inputs[t] = new int[]{trainPlace(r, i)};
+                    outputs[t] = new int[]{here};
+                }
+                int transition = topology.routeTransitions(r)[i];
+                n = 0;
+                for (int p = topology.priorityStart(transition); p < topology.priorityStart(transition + 1); p++) {
+                    int target = topology.priorityTarget(p);
+                    for (int k = byTransitionStart[target]; k < byTransitionStart[target + 1]; k++) {
+                        scratch[n++] = byTransition[k];
+                    }
+                }
+                inhibitors[t] = Arrays.copyOf(scratch, n);
+            }
+        }
+    }
+
+    /**
+     * Creates a net in the initial marking: every section free and no trains.
+     *
+     * @return A new, independent net.
+     */
+    public PetriNet newNet() {
+        PetriNet net = new PetriNet(placeRoute.length, inputs, outputs, inhibitors);
+        for (int s = 0; s < topology.sectionCount(); s++) {
+            net.setTokens(freePlace(s), 1);
+        }
+        return net;
+    }
+
+    /**
+     * Gets the topology the net was compiled from.
+     *
+     * @return The topology.
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Gets the number of places.
+     *
+     * @return The number of places.
+     */
+    public int placeCount() {
+        return placeRoute.length;
+    }
+
+    /**
+     * Gets the number of transitions.
+     *
+     * @return The number of transitions.
+     */
+    public int transitionCount() {
+        return inputs.length;
+    }
+
+    /**
+     * Gets the place that is marked while a section is empty.
+     *
+     * @param sectionIndex The dense section index.
+     * @return The free place.
+     */
+    public int freePlace(int sectionIndex) {
+        return sectionIndex;
+    }
+
+    /**
+     * Gets the place that is marked while a train of a route is at a step of it.
+     *
+     * @param route The route index.
+     * @param step  The index along the route's path.
+     * @return The train place.
+     */
+    public int trainPlace(int route, int step) {
+        return topology.sectionCount() + stepOffset[route] + step;
+    }
+
+    /**
+     * Gets the route of a train place.
+     *
+     * @param place The place.
+     * @return The route index, or -1 for a free place.
+     */
+    public int placeRoute(int place) {
+        return placeRoute[place];
+    }
+
+    /**
+     * Gets the route step of a train place.
+     *
+     * @param place The place.
+     * @return The index along the route's path, or -1 for a free place.
+     */
+    public int placeStep(int place) {
+        return placeStep[place];
+    }
+
+    /**
+     * Gets the transition by which a train enters on a route.
+     *
+     * @param route The route index.
+     * @return The entry transition.
+     */
+    public int entryTransition(int route) {
+        return route;
+    }
+
+    /**
+     * Gets the transition by which a train leaves a step of its route; for the last step this is the exit.
+     *
+     * @param route The route index.
+     * @param step  The index along the route's path.
+     * @return The step transition.
+     */
+    public int stepTransition(int route, int step) {
+        return topology.routeCount() + stepOffset[route] + step;
+    }
+
+    /**
+     * Gets the route a transition belongs to.
+     *
+     * @param transition The transition.
+     * @return The route index.
+     */
+    public int transitionRoute(int transition) {
+        return transition < topology.routeCount() ? transition : placeRoute[transition - topology.routeCount()
+                + topology.sectionCount()];
+    }
+
+    /**
+     * Gets the route step a transition leaves.
+     *
+     * @param transition The transition.
+     * @return The index along the route's path, or -1 for an entry transition.
+     */
+    public int transitionStep(int transition) {
+        return transition < topology.routeCount() ? -1 : placeStep[transition - topology.routeCount()
+                + topology.sectionCount()];
+    }
+}
@@ -0,0 +1,514 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Explores every reachable marking of a {@link RailNet} to check that the interlocking rules are safe.
+ *
+ * A state records, for each section, which train place (route and journey index) occupies it, or that it is empty.
+ * Each section gets a bit field just wide enough for the train places on it, and the fields are packed into longs;
+ * the whole 11-section corridor fits in a single long. Trains enter spontaneously on every route, so the explorer
+ * covers every interleaving of entries, moves and exits.
+ *
+ * The search is a level-synchronous breadth-first search run on a fork-join pool. Each level's frontier is split
+ * across workers, and each worker has its own copy of the net. Visited states go into a lock-free open-addressing
+ * table of fixed size, so memory stays bounded. States that fit in 63 bits are stored exactly. Larger states are
+ * stored as 64-bit fingerprints (hash compaction), so a fingerprint collision may, rarely, hide part of the state
+ * space. Once the table holds maxStates states, exploration stops and the result is marked incomplete.
+ *
+ * The explorer reports the following, each with a trace of transitions from the empty network:
+ * <ul>
+ *     <li>two trains on one section;</li>
+ *     <li>a train entering while one of its route's entry constraints holds;</li>
+ *     <li>deadlocks, where trains are present but none can move or exit.</li>
+ * </ul>
+ * The first two are checked against the topology rather than the net: in every state, each move the train tokens
+ * could make if the net had no guards is checked against the rules, and a move that breaks them but that the net
+ * still enables is reported. A net compiled correctly from its topology therefore reports neither.
+ */
+public class ReachabilityExplorer {
+    /**
+     * The kinds of problem the explorer reports.
+     */
+    public enum Kind {
+        SECTION_CONFLICT,
+        CONSTRAINT_VIOLATION,
+        DEADLOCK
+    }
+
+    /**
+     * A problem found in the state space, with the transitions that lead to it.
+     */
+    public static final class Violation {
+        public final Kind kind;
+        public final String message;
+        public final List<String> trace;
+
+        Violation(Kind kind, String message, List<String> trace) {
+            this.kind = kind;
+            this.message = message;
+            this.trace = trace;
+        }
+
+        @Override
+        public String toString() {
+            return kind + ": " + message + " after " + trace;
+        }
+    }
+
+    /**
+     * The outcome of an exploration.
+     */
+    public static final class Result {
+        public final long states;
+        public final long edges;
+        public final int depth;
+        public final boolean complete;
+        public final List<Violation> violations;
+
+        Result(long states, long edges, int depth, boolean complete, List<Violation> violations) {
+            this.states = states;
+            this.edges = edges;
+            this.depth = depth;
+            this.complete = complete;
+            this.violations = violations;
+        }
+    }
+
+    private static final int CHUNK = 256;
+
+    private final RailNet railNet;
+    private final Topology topology;
+    private final int maxStates;
+    private final int maxViolations;
+    private final boolean keepTraces;
+
+    private final int words;
+    private final int[] fieldWord;
+    private final int[] fieldShift;
+    private final long[] fieldMask;
+    private final int[][] sectionPlaces;
+    private final int[] placeCode;
+    private final int[] transitionClear;
+    private final int[] transitionSet;
+    private final int[] transitionSetCode;
+
+    /**
+     * Prepares an explorer.
+     *
+     * @param railNet       The net to explore.
+     * @param maxStates     The most states to visit before giving up; bounds the memory used.
+     * @param maxViolations The number of violations after which exploration stops early.
+     * @param keepTraces    Whether to remember each state's predecessor so violations come with traces.
+     */
+    public ReachabilityExplorer(RailNet railNet, int maxStates, int maxViolations, boolean keepTraces) {
+        this.railNet = railNet;
+        this.topology = railNet.getTopology();
+        this.maxStates = maxStates;
+        this.maxViolations = maxViolations;
+        this.keepTraces = keepTraces;
+
+        int sections = topology.sectionCount();
+        int[] count = new int[sections];
+        for (int p = sections; p < railNet.placeCount(); p++) {
+            count[placeSection(p)]++;
+        }
+        sectionPlaces = new int[sections][];
+        placeCode = new int[railNet.placeCount()];
+        fieldWord = new int[sections];
+        fieldShift = new int[sections];
+        fieldMask = new long[sections];
+        int word = 0;
+        int shift = 0;
+        for (int s = 0; s < sections; s++) {
+            sectionPlaces[s] = new int[count[s] + 1];
+            int width = 32 - Integer.numberOfLeadingZeros(count[s]);
+            if (shift + width > 64) {
+                word++;
+                shift = 0;
+            }
+            fieldWord[s] = word;
+            fieldShift[s] = shift;
+            fieldMask[s] = (1L << width) - 1;
+            shift += width;
+        }
+        words = word + 1;
+        Arrays.fill(count, 0);
+        for (int p = sections; p < railNet.placeCount(); p++) {
+            int s = placeSection(p);
+            placeCode[p] = ++count[s];
+            sectionPlaces[s][placeCode[p]] = p;
+        }
+
+        //The sections each transition empties and fills
+        transitionClear = new int[railNet.transitionCount()];
+        transitionSet = new int[railNet.transitionCount()];
+        transitionSetCode = new int[railNet.transitionCount()];
+        for (int t = 0; t < railNet.transitionCount(); t++) {
+            int route = railNet.transitionRoute(t);
+            int step = railNet.transitionStep(t);
+            int[] path = topology.routePath(route);
+            transitionClear[t] = step == -1 ? -1 : topology.sectionIndex(path[step]);
+            int next = step + 1;
+            transitionSet[t] = next < path.length ? topology.sectionIndex(path[next]) : -1;
+            transitionSetCode[t] = next < path.length ? placeCode[railNet.trainPlace(route, next)] : 0;
+        }
+    }
+
+    /**
+     * Explores the state space on the common fork-join pool.
+     *
+     * @return The exploration result.
+     */
+    public Result explore() {
+        return explore(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Explores the state space.
+     *
+     * @param pool The pool to run the search on.
+     * @return The exploration result.
+     */
+    public Result explore(ForkJoinPool pool) {
+        Search search = new Search();
+        long[] initial = new long[words];
+        search.visited.insert(key(initial, 0), 0, -1);
+        long[] frontier = initial;
+        int depth = 0;
+        while (frontier.length > 0 && !search.stopped()) {
+            Expand task = new Expand(search, frontier, 0, frontier.length / words);
+            frontier = pool.invoke(task).toArray();
+            if (frontier.length > 0) {
+                depth++;
+            }
+        }
+        List<Violation> violations = new ArrayList<>(search.violations);
+        return new Result(search.visited.size(), search.edges.get(), depth,
+                !search.visited.full && frontier.length == 0, Collections.unmodifiableList(violations));
+    }
+
+    private int placeSection(int place) {
+        int route = railNet.placeRoute(place);
+        return topology.sectionIndex(topology.routePath(route)[railNet.placeStep(place)]);
+    }
+
+    private int field(long[] state, int offset, int section) {
+        return (int) ((state[offset + fieldWord[section]] >>> fieldShift[section]) & fieldMask[section]);
+    }
+
+    private void setField(long[] state, int offset, int section, int code) {
+        long mask = fieldMask[section] << fieldShift[section];
+        int w = offset + fieldWord[section];
+        state[w] = (state[w] & ~mask) | ((long) code << fieldShift[section]);
+    }
+
+    private long key(long[] state, int offset) {
+        if (words == 1 && state[offset] >= 0) {
+            return state[offset] | Long.MIN_VALUE;
+        }
+        long h = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < words; i++) {
+            h = (h ^ state[offset + i]) * 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        return h == 0 ? 1 : h & Long.MAX_VALUE;
+    }
+
+    private String describe(int transition) {
+        int route = railNet.transitionRoute(transition);
+        int step = railNet.transitionStep(transition);
+        int[] path = topology.routePath(route);
+        String routeName = path[0] + "-" + path[path.length - 1];
+        if (step == -1) {
+            return "enter " + routeName;
+        }
+        int to = step + 1 < path.length ? path[step + 1] : 0;
+        return "t" + path[step] + "," + to + " (" + routeName + ")";
+    }
+
+    /**
+     * The shared state of one exploration.
+     */
+    private final class Search {
+        final VisitedSet visited = new VisitedSet(maxStates, keepTraces);
+        final ConcurrentLinkedQueue<Violation> violations = new ConcurrentLinkedQueue<>();
+        //Counted apart from the queue, whose size is a full traversal
+        final AtomicInteger violationCount = new AtomicInteger();
+        final AtomicLong edges = new AtomicLong();
+        final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+        boolean stopped() {
+            return visited.full || violationCount.get() >= maxViolations;
+        }
+
+        void report(Kind kind, String message, long parentKey, int transition) {
+            if (violationCount.getAndIncrement() >= maxViolations) {
+                return;
+            }
+            List<String> trace = new ArrayList<>();
+            if (transition != -1) {
+                trace.add(describe(transition));
+            }
+            if (keepTraces) {
+                for (long k = parentKey; ; ) {
+                    int slot = visited.find(k);
+                    int t = visited.transitions.get(slot);
+                    if (t == -1) {
+                        break;
+                    }
+                    trace.add(describe(t));
+                    k = visited.parents.get(slot);
+                }
+            }
+            Collections.reverse(trace);
+            violations.add(new Violation(kind, message, Collections.unmodifiableList(trace)));
+        }
+    }
+
+    /**
+     * A thread's private net, loaded with one state at a time.
+     */
+    private final class Worker {
+        final PetriNet net = railNet.newNet();
+        final long[] loaded = new long[words];
+        final long[] successor = new long[words];
+
+        void load(long[] frontier, int offset) {
+            for (int s = 0; s < sectionPlaces.length; s++) {
+                int code = field(frontier, offset, s);
+                int old = field(loaded, 0, s);
+                if (code != old) {
+                    if (old != 0) {
+                        net.setTokens(sectionPlaces[s][old], 0);
+                    }
+                    if (code != 0) {
+                        net.setTokens(sectionPlaces[s][code], 1);
+                    }
+                    net.setTokens(railNet.freePlace(s), code == 0 ? 1 : 0);
+                }
+            }
+            System.arraycopy(frontier, offset, loaded, 0, words);
+        }
+    }
+
+    /**
+     * Expands a slice of the frontier and returns the new states it discovers.
+     */
+    private final class Expand extends RecursiveTask<StateBuffer> {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final long[] frontier;
+        private final int from;
+        private final int to;
+
+        Expand(Search search, long[] frontier, int from, int to) {
+            this.search = search;
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected StateBuffer compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                Expand left = new Expand(search, frontier, from, mid);
+                left.fork();
+                StateBuffer right = new Expand(search, frontier, mid, to).compute();
+                return left.join().append(right);
+            }
+            StateBuffer next = new StateBuffer(words);
+            Worker worker = search.workers.get();
+            for (int i = from; i < to && !search.stopped(); i++) {
+                expand(worker, i * words, next);
+            }
+            return next;
+        }
+
+        private void expand(Worker worker, int offset, StateBuffer next) {
+            worker.load(frontier, offset);
+            long parentKey = key(frontier, offset);
+            PetriNet net = worker.net;
+            boolean trainsPresent = false;
+            for (int w = 0; w < words; w++) {
+                trainsPresent |= frontier[offset + w] != 0;
+            }
+            boolean canMove = false;
+            //Every move of the unguarded net: each route's entry, then the next step of each train present
+            int routes = topology.routeCount();
+            for (int candidate = 0; candidate < routes + sectionPlaces.length; candidate++) {
+                int t;
+                if (candidate < routes) {
+                    t = railNet.entryTransition(candidate);
+                } else {
+                    int code = field(frontier, offset, candidate - routes);
+                    if (code == 0) {
+                        continue;
+                    }
+                    int place = sectionPlaces[candidate - routes][code];
+                    t = railNet.stepTransition(railNet.placeRoute(place), railNet.placeStep(place));
+                }
+                boolean enabled = net.isEnabled(t);
+                int step = railNet.transitionStep(t);
+                if (step == -1 && constraintHolds(t, offset)) {
+                    if (enabled) {
+                        search.report(Kind.CONSTRAINT_VIOLATION,
+                                describe(t) + " fired while an entry constraint holds", parentKey, t);
+                    }
+                    continue;
+                }
+                int target = transitionSet[t];
+                if (target != -1 && field(frontier, offset, target) != 0) {
+                    if (enabled) {
+                        search.report(Kind.SECTION_CONFLICT, "two trains on section " + topology.sectionId(target),
+                                parentKey, t);
+                    }
+                    continue;
+                }
+                if (!enabled) {
+                    continue;
+                }
+                search.edges.incrementAndGet();
+                canMove |= step != -1;
+                long[] successor = worker.successor;
+                System.arraycopy(frontier, offset, successor, 0, words);
+                if (transitionClear[t] != -1) {
+                    setField(successor, 0, transitionClear[t], 0);
+                }
+                if (target != -1) {
+                    setField(successor, 0, target, transitionSetCode[t]);
+                }
+                if (search.visited.insert(key(successor, 0), parentKey, t)) {
+                    next.add(successor);
+                }
+            }
+            if (trainsPresent && !canMove) {
+                search.report(Kind.DEADLOCK, "no train can move", parentKey, -1);
+            }
+        }
+
+        private boolean constraintHolds(int entry, int offset) {
+            int route = railNet.transitionRoute(entry);
+            for (int c = topology.constraintStart(route); c < topology.constraintStart(route + 1); c++) {
+                int section = topology.constraintSection(c);
+                int code = field(frontier, offset, section);
+                if (code != 0 && topology.routeDestination(railNet.placeRoute(sectionPlaces[section][code]))
+                        == topology.constraintDestination(c)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A growable, flat list of packed states.
+     */
+    private static final class StateBuffer {
+        private final int words;
+        private long[] data = new long[64];
+        private int size;
+
+        StateBuffer(int words) {
+            this.words = words;
+        }
+
+        void add(long[] state) {
+            if (size + words > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + words));
+            }
+            System.arraycopy(state, 0, data, size, words);
+            size += words;
+        }
+
+        StateBuffer append(StateBuffer other) {
+            if (size + other.size > data.length) {
+                data = Arrays.copyOf(data, size + other.size);
+            }
+            System.arraycopy(other.data, 0, data, size, other.size);
+            size += other.size;
+            return this;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * A lock-free, fixed-capacity hash set of state keys, optionally remembering how each state was reached.
+     */
+    private static final class VisitedSet {
+        final AtomicLongArray keys;
+        final AtomicLongArray parents;
+        final AtomicIntegerArray transitions;
+        private final int mask;
+        private final int limit;
+        private final AtomicLong size = new AtomicLong();
+        volatile boolean full;
+
+        VisitedSet(int maxStates, boolean keepTraces) {
+            int capacity = Integer.highestOneBit(Math.max(16, maxStates) * 2 - 1) << 1;
+            keys = new AtomicLongArray(capacity);
+            parents = keepTraces ? new AtomicLongArray(capacity) : null;
+            transitions = keepTraces ? new AtomicIntegerArray(capacity) : null;
+            mask = capacity - 1;
+            limit = maxStates;
+        }
+
+        boolean insert(long key, long parent, int transition) {
+            int slot = slot(key);
+            while (true) {
+                long k = keys.get(slot);
+                if (k == key) {
+                    return false;
+                }
+                if (k == 0) {
+                    //Reserve room before claiming the slot, so racing inserts cannot take the table past its limit
+                    if (size.incrementAndGet() > limit) {
+                        size.decrementAndGet();
+                        full = true;
+                        return false;
+                    }
+                    if (!keys.compareAndSet(slot, 0, key)) {
+                        size.decrementAndGet();
+                        continue;
+                    }
+                    if (parents != null) {
+                        parents.set(slot, parent);
+                        transitions.set(slot, transition);
+                    }
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        int find(long key) {
+            int slot = slot(key);
+            while (keys.get(slot) != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        long size() {
+            return size.get();
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Finds routes through a network described as a directed graph of section links, rather than as a list of routes.
+ * A route is the shortest path of links from an entry to an exit section; among equally short paths the one through
+ * the earliest declared links is taken, so the same graph always gives the same routes. A route leads from a section
+ * to another one, so there is no route from a section to itself, as with the routes of a {@link Topology}.
+ *
+ * Routes are interned: each (entry, exit) pair has one shared array, keyed by the pair packed into a long, which is
+ * returned on every lookup and must not be modified. Routes for the pairs a network is operated on are computed
+ * together by {@link #computeAll(int[], int[], int)}, one breadth-first search per entry spread across threads, and
+ * are kept for the life of the finder. Any other pair is searched for on first use and kept in a bounded cache of
+ * a fixed number of routes, so rarely used pairs cost no memory once they fall out of use.
+ *
+ * The cache is set-associative: a pair can only be held in one of four slots picked by its hash, and a new route
+ * replaces the least recently used of them. All methods may be called from any number of threads.
+ */
+public final class RouteFinder {
+    private static final int WAYS = 4;
+    private static final long EMPTY = -1;
+    private static final int[] NO_ROUTE = new int[0];
+
+    private final int[] sectionIds;
+    private final LongIntMap indexById;
+    private final int[] linkStart;
+    private final int[] linkTargets;
+
+    private final LongIntMap pinnedByEndpoints = new LongIntMap(16);
+    private int[][] pinned = new int[16][];
+
+    private final long[] cacheKeys;
+    private final int[][] cacheRoutes;
+    private final long[] cacheUsed;
+    private final int cacheMask;
+    private long clock;
+
+    /**
+     * Creates a route finder over a directed graph of sections.
+     *
+     * @param sectionIds    The section ids.
+     * @param linkFrom      The section each link leaves, by id.
+     * @param linkTo        The section each link enters, by id, in the same order as linkFrom.
+     * @param cacheCapacity The number of lazily found routes to keep; rounded up to a power of two of at least four.
+     * @throws IllegalArgumentException If a section is declared twice, a link refers to an unknown section, the link
+     *                                  arrays differ in length or the capacity is negative.
+     */
+    public RouteFinder(int[] sectionIds, int[] linkFrom, int[] linkTo, int cacheCapacity)
+            throws IllegalArgumentException {
+        if (linkFrom.length != linkTo.length || cacheCapacity < 0) {
+            throw new IllegalArgumentException("Links must pair up and the cache capacity cannot be negative");
+        }
+        this.sectionIds = sectionIds.clone();
+        indexById = new LongIntMap(sectionIds.length);
+        for (int i = 0; i < sectionIds.length; i++) {
+            if (sectionIds[i] < 0) {
+                throw new IllegalArgumentException("Section ids cannot be negative");
+            }
+            if (indexById.put(sectionIds[i], i) != -1) {
+                throw new IllegalArgumentException("Section " + sectionIds[i] + " is declared twice");
+            }
+        }
+
+        //The links in CSR form, each section's targets in declaration order
+        linkStart = new int[sectionIds.length + 1];
+        for (int from : linkFrom) {
+            linkStart[index(from) + 1]++;
+        }
+        for (int i = 0; i < sectionIds.length; i++) {
+            linkStart[i + 1] += linkStart[i];
+        }
+        linkTargets = new int[linkFrom.length];
+        int[] fill = Arrays.copyOf(linkStart, sectionIds.length);
+        for (int l = 0; l < linkFrom.length; l++) {
+            linkTargets[fill[index(linkFrom[l])]++] = index(linkTo[l]);
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(WAYS, cacheCapacity) * 2 - 1);
+        cacheKeys = new long[capacity];
+        cacheRoutes = new int[capacity][];
+        cacheUsed = new long[capacity];
+        Arrays.fill(cacheKeys, EMPTY);
+        cacheMask = capacity / WAYS - 1;
+    }
+
+    private int index(int sectionId) throws IllegalArgumentException {
+        int index = indexById.get(sectionId);
+        if (index == -1) {
+            throw new IllegalArgumentException("Section " + sectionId + " does not exist");
+        }
+        return index;
+    }
+
+    /**
+     * Gets the route between two sections, searching for it if it has not been computed or has been evicted.
+     *
+     * @param entrySection The id of the entry section.
+     * @param exitSection  The id of the exit section.
+     * @return The section ids from entry to exit, shared and not to be modified, or null if the exit cannot be
+     * reached or is the entry itself.
+     * @throws IllegalArgumentException If either section does not exist.
+     */
+    public int[] route(int entrySection, int exitSection) throws IllegalArgumentException {
+        int from = index(entrySection);
+        int to = index(exitSection);
+        if (from == to) {
+            return null;
+        }
+        long key = LongIntMap.pack(entrySection, exitSection);
+        synchronized (this) {
+            int slot = pinnedByEndpoints.get(key);
+            if (slot != -1) {
+                return pinned[slot];
+            }
+            int[] cached = cached(key);
+            if (cached != null) {
+                return cached == NO_ROUTE ? null : cached;
+            }
+        }
+        //Search without holding the lock, so a slow search does not stall lookups of other pairs
+        int[] parent = new int[sectionIds.length];
+        int[] queue = new int[sectionIds.length];
+        search(from, to, parent, queue);
+        int[] path = path(from, to, parent);
+        synchronized (this) {
+            //Another thread may have found it first, or pinned it with computeAll; keep its array so the route stays
+            //interned
+            int slot = pinnedByEndpoints.get(key);
+            if (slot != -1) {
+                return pinned[slot];
+            }
+            int[] cached = cached(key);
+            if (cached != null) {
+                return cached == NO_ROUTE ? null : cached;
+            }
+            cache(key, path == null ? NO_ROUTE : path);
+        }
+        return path;
+    }
+
+    /**
+     * Computes the routes from every entry to every exit and keeps them for the life of the finder. Each entry is
+     * searched once for all the exits, and the entries are shared among the threads.
+     *
+     * @param entrySections The ids of the entry sections.
+     * @param exitSections  The ids of the exit sections.
+     * @param threads       The number of threads to search on; one searches on the calling thread.
+     * @return The routes, with the route from entrySections[e] to exitSections[x] at index
+     * e * exitSections.length + x, or null where the exit cannot be reached or is the entry itself.
+     * @throws IllegalArgumentException If a section does not exist or the thread count is not positive.
+     */
+    public int[][] computeAll(int[] entrySections, int[] exitSections, int threads) throws IllegalArgumentException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        int[] entries = new int[entrySections.length];
+        for (int e = 0; e < entries.length; e++) {
+            entries[e] = index(entrySections[e]);
+        }
+        int[] exits = new int[exitSections.length];
+        for (int x = 0; x < exits.length; x++) {
+            exits[x] = index(exitSections[x]);
+        }
+        int[][] routes = new int[entries.length * exits.length][];
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            int[] parent = new int[sectionIds.length];
+            int[] queue = new int[sectionIds.length];
+            for (int e = next.getAndIncrement(); e < entries.length; e = next.getAndIncrement()) {
+                search(entries[e], -1, parent, queue);
+                for (int x = 0; x < exits.length; x++) {
+                    if (exits[x] != entries[e]) {
+                        routes[e * exits.length + x] = path(entries[e], exits[x], parent);
+                    }
+                }
+            }
+        };
+        threads = Math.min(threads, Math.max(1, entries.length));
+        if (threads == 1) {
+            worker.run();
+        } else {
+            run(worker, threads);
+        }
+
+        synchronized (this) {
+            for (int e = 0; e < entries.length; e++) {
+                for (int x = 0; x < exits.length; x++) {
+                    int i = e * exits.length + x;
+                    if (routes[i] != null) {
+                        routes[i] = pin(LongIntMap.pack(entrySections[e], exitSections[x]), routes[i]);
+                    }
+                }
+            }
+        }
+        return routes;
+    }
+
+    private static void run(Runnable worker, int threads) {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            workers[w] = new Thread(() -> {
+                try {
+                    worker.run();
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "route-finder-" + w);
+            workers[w].start();
+        }
+        boolean interrupted = false;
+        for (Thread thread : workers) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable thrown = failure.get();
+        if (thrown instanceof RuntimeException) {
+            throw (RuntimeException) thrown;
+        } else if (thrown != null) {
+            throw (Error) thrown;
+        }
+    }
+
+    /**
+     * Gets the number of routes kept for the life of the finder.
+     *
+     * @return The number of routes computed by {@link #computeAll(int[], int[], int)}.
+     */
+    public synchronized int pinnedCount() {
+        return pinnedByEndpoints.size();
+    }
+
+    /**
+     * Gets the number of lazily found routes currently cached, including pairs found to have no route.
+     *
+     * @return The number of cached pairs, at most the cache capacity.
+     */
+    public synchronized int cachedCount() {
+        int count = 0;
+        for (long key : cacheKeys) {
+            if (key != EMPTY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    //Breadth-first search from a section, recording each reached section's predecessor; stops early at the target
+    private void search(int from, int to, int[] parent, int[] queue) {
+        Arrays.fill(parent, -1);
+        parent[from] = from;
+        queue[0] = from;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int section = queue[head++];
+            if (section == to) {
+                return;
+            }
+            for (int l = linkStart[section]; l < linkStart[section + 1]; l++) {
+                int target = linkTargets[l];
+                if (parent[target] == -1) {
+                    parent[target] = section;
+                    queue[tail++] = target;
+                }
+            }
+        }
+    }
+
+    private int[] path(int from, int to, int[] parent) {
+        if (parent[to] == -1) {
+            return null;
+        }
+        int length = 1;
+        for (int section = to; section != from; section = parent[section]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int section = to, i = length - 1; i >= 0; section = parent[section], i--) {
+            path[i] = sectionIds[section];
+        }
+        return path;
+    }
+
+    private int[] pin(long key, int[] route) {
+        int slot = pinnedByEndpoints.get(key);
+        if (slot != -1) {
+            return pinned[slot];
+        }
+        //A route already found lazily keeps its array, so callers holding it still see the interned route
+        int[] cached = cached(key);
+        if (cached != null && cached != NO_ROUTE) {
+            route = cached;
+        }
+        slot = pinnedByEndpoints.size();
+        if (slot == pinned.length) {
+            pinned = Arrays.copyOf(pinned, slot * 2);
+        }
+        pinned[slot] = route;
+        pinnedByEndpoints.put(key, slot);
+        return route;
+    }
+
+    private int[] cached(long key) {
+        int set = set(key);
+        for (int way = set; way < set + WAYS; way++) {
+            if (cacheKeys[way] == key) {
+                cacheUsed[way] = ++clock;
+                return cacheRoutes[way];
+            }
+        }
+        return null;
+    }
+
+    private void cache(long key, int[] route) {
+        int set = set(key);
+        int victim = set;
+        for (int way = set; way < set + WAYS; way++) {
+            if (cacheKeys[way] == EMPTY) {
+                victim = way;
+                break;
+            }
+            if (cacheUsed[way] < cacheUsed[victim]) {
+                victim = way;
+            }
+        }
+        cacheKeys[victim] = key;
+        cacheRoutes[victim] = route;
+        cacheUsed[victim] = ++clock;
+    }
+
+    private int set(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return ((int) (h ^ (h >>> 32)) & cacheMask) * WAYS;
+    }
+}
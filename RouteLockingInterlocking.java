@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+/**
+ * An interlocking that locks a train's whole route when it enters, and releases the route section by section as the
+ * train leaves each one. A train is only let in when no section of its route is locked for another train, so trains
+ * whose routes cross or run head-on never meet, whatever the entry constraints say; a train following another on
+ * the same track waits at the entry until the one ahead has cleared every section they share.
+ *
+ * The locked sections are kept as a bitset over section indexes. Each route's sections are precompiled into a sparse
+ * mask of the same shape, so checking whether a route can be set is one AND per mask word, however many trains are
+ * in service. Locking a route sets the bits of its sections, and releasing a section clears one bit as the train
+ * vacates it.
+ *
+ * A checkpoint restores correctly if it was taken from a route-locking interlocking, since every train's remaining
+ * route is then clear of every other's.
+ */
+public class RouteLockingInterlocking extends InterlockingImpl {
+    private final Topology topology;
+    private final long[] locked;
+
+    /**
+     * Creates a route-locking interlocking on the corridor described in the README.
+     */
+    public RouteLockingInterlocking() {
+        this(Topology.corridor());
+    }
+
+    /**
+     * Creates a route-locking interlocking on a network topology.
+     *
+     * @param topology The sections, routes, constraints and priority rules of the network.
+     */
+    public RouteLockingInterlocking(Topology topology) {
+        super(topology);
+        this.topology = topology;
+        locked = new long[(topology.sectionCount() + 63) >>> 6];
+    }
+
+    /**
+     * Checks if the route between two sections could be set now, that is if none of its sections is locked.
+     *
+     * @param entryTrackSection       The entry track section.
+     * @param destinationTrackSection The destination track section.
+     * @return True if the route is clear, false if it is not or there is no such route.
+     */
+    public boolean canSetRoute(int entryTrackSection, int destinationTrackSection) {
+        int route = topology.route(entryTrackSection, destinationTrackSection);
+        return route != -1 && isClear(route);
+    }
+
+    /**
+     * Checks if a section is locked for a train, either because the train is on it or because it lies ahead on the
+     * train's route.
+     *
+     * @param trackSection The track section.
+     * @return True if the section is locked.
+     * @throws IllegalArgumentException If the section does not exist.
+     */
+    public boolean isLocked(int trackSection) throws IllegalArgumentException {
+        int index = topology.sectionIndex(trackSection);
+        if (index == -1) {
+            throw new IllegalArgumentException("Track section does not exist");
+        }
+        return (locked[index >>> 6] & 1L << index) != 0;
+    }
+
+    private boolean isClear(int route) {
+        for (int i = topology.lockMaskStart(route); i < topology.lockMaskStart(route + 1); i++) {
+            if ((locked[topology.lockMaskWord(i)] & topology.lockMaskBits(i)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected Status admit(int route) {
+        return isClear(route) ? Status.OK : Status.ROUTE_LOCKED;
+    }
+
+    @Override
+    protected void occupy(int index, Train train) {
+        super.occupy(index, train);
+        long bit = 1L << index;
+        if (train == null) {
+            locked[index >>> 6] &= ~bit;
+        } else if ((locked[index >>> 6] & bit) == 0) {
+            //A train arriving on a section it has not locked is entering or being restored; a moving train has
+            //locked its next section since it entered
+            int[] path = topology.routePath(train.getRoute());
+            for (int i = train.getJourneyIndex(); i < path.length; i++) {
+                int section = topology.sectionIndex(path[i]);
+                locked[section >>> 6] |= 1L << section;
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        Arrays.fill(locked, 0);
+    }
+}
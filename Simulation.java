@@ -0,0 +1,527 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A discrete-event simulation of timetabled traffic through an interlocking, for capacity planning.
+ *
+ * Time is counted in whole ticks of whatever unit the caller chooses, such as seconds. A timetable is made of
+ * services, each running trains on one route at a fixed headway, and of single trains. A train asks to enter at its
+ * timetabled time and waits, in order behind any earlier trains for the same entry section, until the interlocking
+ * lets it in. It then spends the traversal time of each section on its route before asking to move on, and waits
+ * there whenever the interlocking holds it back. All the trains ready at one instant are moved in one moveTrains
+ * call, so the interlocking's priority rules and move order apply between them.
+ *
+ * The engine keeps its pending events in an {@link EventQueue} of primitive timestamps and refers to trains by
+ * reusable slots, so a run allocates little beyond the interlocking's own work, and years of traffic on the
+ * corridor take seconds. The simulation reports throughput, the delay of trains at entry and over their whole
+ * journey, and for each section the total time trains spent held on it waiting to move on.
+ *
+ * On a {@link PointInterlocking} the simulation drives the points' clock, so trains are held while the points they
+ * cross are thrown, and each throw wakes the trains waiting for it as soon as the point settles.
+ *
+ * The simulated trains are named "sim-" followed by a number, and are best run on an interlocking of their own.
+ */
+public class Simulation {
+    //The payload of the events that wake the simulation when a point settles
+    private static final int SETTLE = Integer.MIN_VALUE;
+
+    private final InterlockingImpl interlocking;
+    private final Topology topology;
+    private final PointInterlocking points;
+    private final long pointStart;
+    private long nextSettle = Long.MAX_VALUE;
+    private final long[] traversal;
+    private final EventQueue events = new EventQueue(64);
+    private long time;
+
+    private int[] serviceRoutes = new int[4];
+    private long[] headways = new long[4];
+    private long[] remaining = new long[4];
+    private double[] meanHeadways = new double[4];
+    private SplittableRandom[] randoms = new SplittableRandom[4];
+    private int serviceCount;
+    private final Queue[] entryQueues;
+
+    private final String[] names;
+    private final int[] slotRoutes;
+    private final int[] slotSteps;
+    private final long[] scheduled;
+    private final long[] readySince;
+    private final int[] free;
+    private int freeCount;
+    private final int[] ready;
+    private int readyCount;
+    private final ArrayList<String[]> batches = new ArrayList<>();
+    private Status[] outcomes = new Status[16];
+
+    private long entered;
+    private long exited;
+    private long entryDelay;
+    private long maxEntryDelay;
+    private long journeyDelay;
+    private final long[] blocking;
+    private final long[] transitionBlocking;
+    private final long[] maxTransitionBlocking;
+    private final Histogram delays = new Histogram();
+
+    /**
+     * Creates a simulation on a new interlocking for the corridor described in the README, with every section
+     * taking one tick to traverse.
+     */
+    public Simulation() {
+        this(new InterlockingImpl());
+    }
+
+    /**
+     * Creates a simulation on an interlocking, with every section taking one tick to traverse.
+     *
+     * @param interlocking The interlocking, which keeps its move order and other settings.
+     */
+    public Simulation(InterlockingImpl interlocking) {
+        this.interlocking = interlocking;
+        this.topology = interlocking.getTopology();
+        points = interlocking instanceof PointInterlocking ? (PointInterlocking) interlocking : null;
+        pointStart = points == null ? 0 : points.getTime();
+        int sections = topology.sectionCount();
+        traversal = new long[sections];
+        Arrays.fill(traversal, 1);
+        blocking = new long[sections];
+        transitionBlocking = new long[topology.transitionCount()];
+        maxTransitionBlocking = new long[topology.transitionCount()];
+        entryQueues = new Queue[sections];
+        for (int i = 0; i < sections; i++) {
+            entryQueues[i] = new Queue();
+        }
+        //An interlocking never holds more trains than it has sections
+        names = new String[sections];
+        slotRoutes = new int[sections];
+        slotSteps = new int[sections];
+        scheduled = new long[sections];
+        readySince = new long[sections];
+        free = new int[sections];
+        ready = new int[sections];
+        for (int slot = 0; slot < sections; slot++) {
+            names[slot] = "sim-" + slot;
+            free[slot] = sections - 1 - slot;
+        }
+        freeCount = sections;
+    }
+
+    /**
+     * Sets how long trains take to traverse a section.
+     *
+     * @param trackSection The track section.
+     * @param ticks        The traversal time, at least one tick.
+     * @throws IllegalArgumentException If the section does not exist or the time is not positive.
+     */
+    public void setTraversalTime(int trackSection, long ticks) throws IllegalArgumentException {
+        int index = topology.sectionIndex(trackSection);
+        if (index == -1) {
+            throw new IllegalArgumentException("Track section does not exist");
+        }
+        if (ticks < 1) {
+            throw new IllegalArgumentException("Traversal time must be positive");
+        }
+        traversal[index] = ticks;
+    }
+
+    /**
+     * Adds a single train to the timetable.
+     *
+     * @param entryTime               The time the train asks to enter, not earlier than the current time.
+     * @param entryTrackSection       The entry track section for the train.
+     * @param destinationTrackSection The destination track section for the train.
+     * @throws IllegalArgumentException If there is no valid path or the time has passed.
+     */
+    public void addTrain(long entryTime, int entryTrackSection, int destinationTrackSection)
+            throws IllegalArgumentException {
+        addService(entryTime, 1, 1, entryTrackSection, destinationTrackSection);
+    }
+
+    /**
+     * Adds a service running trains on one route at a fixed headway. Its trains are scheduled one at a time as the
+     * simulation reaches them, so long services cost no memory up front.
+     *
+     * @param firstTime               The time the first train asks to enter, not earlier than the current time.
+     * @param headway                 The time between trains, at least one tick.
+     * @param count                   The number of trains.
+     * @param entryTrackSection       The entry track section for the trains.
+     * @param destinationTrackSection The destination track section for the trains.
+     * @throws IllegalArgumentException If there is no valid path, the time has passed, or the headway or count is not
+     *                                  positive.
+     */
+    public void addService(long firstTime, long headway, long count, int entryTrackSection,
+                           int destinationTrackSection) throws IllegalArgumentException {
+        addService(firstTime, headway, 0, count, entryTrackSection, destinationTrackSection, null);
+    }
+
+    /**
+     * Adds a service whose trains arrive at random, as a Poisson process: the times between trains are drawn
+     * independently from an exponential distribution and rounded to whole ticks, so several trains may arrive at
+     * once. Poisson arrivals at an entry section split across its routes are themselves Poisson arrivals, so a
+     * route mix is modelled by one random service per route.
+     *
+     * @param firstTime               The earliest time a train may arrive, not earlier than the current time.
+     * @param meanHeadway             The mean time between trains.
+     * @param count                   The number of trains.
+     * @param entryTrackSection       The entry track section for the trains.
+     * @param destinationTrackSection The destination track section for the trains.
+     * @param random                  The source of randomness, used only by this service.
+     * @throws IllegalArgumentException If there is no valid path, the time has passed, or the headway or count is not
+     *                                  positive.
+     */
+    public void addRandomService(long firstTime, double meanHeadway, long count, int entryTrackSection,
+                                 int destinationTrackSection, SplittableRandom random) throws IllegalArgumentException {
+        if (!(meanHeadway > 0)) {
+            throw new IllegalArgumentException("Headway and count must be positive");
+        }
+        addService(firstTime, 1, meanHeadway, count, entryTrackSection, destinationTrackSection, random);
+    }
+
+    /**
+     * Adds a service of either kind.
+     *
+     * @param headway     The headway of a fixed service.
+     * @param meanHeadway The mean headway of a random service.
+     * @param random      The source of randomness for a random service, or null for a fixed one.
+     */
+    private void addService(long firstTime, long headway, double meanHeadway, long count, int entryTrackSection,
+                            int destinationTrackSection, SplittableRandom random) throws IllegalArgumentException {
+        int route = topology.route(entryTrackSection, destinationTrackSection);
+        if (route == -1) {
+            throw new IllegalArgumentException("Invalid train path.");
+        }
+        if (firstTime < time) {
+            throw new IllegalArgumentException("Entry time has already passed");
+        }
+        if (headway < 1 || count < 1) {
+            throw new IllegalArgumentException("Headway and count must be positive");
+        }
+        if (serviceCount == serviceRoutes.length) {
+            serviceRoutes = Arrays.copyOf(serviceRoutes, serviceCount * 2);
+            headways = Arrays.copyOf(headways, serviceCount * 2);
+            remaining = Arrays.copyOf(remaining, serviceCount * 2);
+            meanHeadways = Arrays.copyOf(meanHeadways, serviceCount * 2);
+            randoms = Arrays.copyOf(randoms, serviceCount * 2);
+        }
+        int service = serviceCount++;
+        serviceRoutes[service] = route;
+        headways[service] = headway;
+        remaining[service] = count;
+        meanHeadways[service] = meanHeadway;
+        randoms[service] = random;
+        //Service events have negative payloads, train slots non-negative ones
+        events.add(firstTime + (random == null ? 0 : gap(service)), ~service);
+    }
+
+    /**
+     * Runs the simulation until a given time, handling every event up to and including it.
+     *
+     * @param until The time to stop at.
+     */
+    public void run(long until) {
+        while (events.peekTime() <= until) {
+            time = events.peekTime();
+            if (points != null) {
+                points.advanceTo(pointStart + time);
+            }
+            while (events.peekTime() == time) {
+                int payload = events.poll();
+                if (payload == SETTLE) {
+                    nextSettle = Long.MAX_VALUE;
+                } else if (payload < 0) {
+                    depart(~payload);
+                } else {
+                    readySince[payload] = time;
+                    ready[readyCount++] = payload;
+                }
+            }
+            settle();
+            if (points != null) {
+                //Only the earliest pending throw needs an event; the next is scheduled when it settles
+                long settles = points.getNextSettleTime() - pointStart;
+                if (settles < nextSettle && points.getNextSettleTime() != Long.MAX_VALUE) {
+                    nextSettle = settles;
+                    events.add(settles, SETTLE);
+                }
+            }
+        }
+        time = Math.max(time, until);
+        if (points != null) {
+            points.advanceTo(pointStart + time);
+        }
+    }
+
+    private void depart(int service) {
+        int route = serviceRoutes[service];
+        entryQueues[topology.sectionIndex(topology.routePath(route)[0])].add(route, time);
+        if (--remaining[service] > 0) {
+            events.add(time + (randoms[service] == null ? headways[service] : gap(service)), ~service);
+        }
+    }
+
+    private long gap(int service) {
+        return Math.round(-meanHeadways[service] * Math.log(1 - randoms[service].nextDouble()));
+    }
+
+    /**
+     * Moves the ready trains and lets waiting trains in until neither makes any more progress at the current time.
+     */
+    private void settle() {
+        boolean progress = true;
+        while (progress) {
+            progress = moveReady();
+            for (Queue queue : entryQueues) {
+                if (queue.size > 0 && freeCount > 0 && enter(queue)) {
+                    progress = true;
+                }
+            }
+        }
+    }
+
+    private boolean moveReady() {
+        if (readyCount == 0) {
+            return false;
+        }
+        while (batches.size() <= readyCount) {
+            batches.add(new String[batches.size()]);
+        }
+        String[] batch = batches.get(readyCount);
+        for (int i = 0; i < readyCount; i++) {
+            batch[i] = names[ready[i]];
+        }
+        if (outcomes.length < readyCount) {
+            outcomes = new Status[readyCount];
+        }
+        if (interlocking.tryMoveTrains(batch, outcomes) == 0) {
+            return false;
+        }
+        int waiting = 0;
+        for (int i = 0; i < readyCount; i++) {
+            int slot = ready[i];
+            if (outcomes[i] != Status.OK) {
+                ready[waiting++] = slot;
+                continue;
+            }
+            int[] path = topology.routePath(slotRoutes[slot]);
+            int section = topology.sectionIndex(path[slotSteps[slot]]);
+            int transition = topology.routeTransitions(slotRoutes[slot])[slotSteps[slot]];
+            long held = time - readySince[slot];
+            blocking[section] += held;
+            transitionBlocking[transition] += held;
+            maxTransitionBlocking[transition] = Math.max(maxTransitionBlocking[transition], held);
+            if (++slotSteps[slot] == path.length) {
+                long delay = time - scheduled[slot] - freeRunningTime(path);
+                exited++;
+                journeyDelay += delay;
+                delays.record(delay);
+                free[freeCount++] = slot;
+            } else {
+                events.add(time + traversal[topology.sectionIndex(path[slotSteps[slot]])], slot);
+            }
+        }
+        readyCount = waiting;
+        return true;
+    }
+
+    private boolean enter(Queue queue) {
+        int route = queue.routes[queue.head];
+        int slot = free[freeCount - 1];
+        int[] path = topology.routePath(route);
+        if (interlocking.tryAddTrain(names[slot], path[0], topology.routeDestination(route)) != Status.OK) {
+            return false;
+        }
+        freeCount--;
+        long timetabled = queue.times[queue.head];
+        queue.remove();
+        slotRoutes[slot] = route;
+        slotSteps[slot] = 0;
+        scheduled[slot] = timetabled;
+        entered++;
+        entryDelay += time - timetabled;
+        maxEntryDelay = Math.max(maxEntryDelay, time - timetabled);
+        events.add(time + traversal[topology.sectionIndex(path[0])], slot);
+        return true;
+    }
+
+    private long freeRunningTime(int[] path) {
+        long total = 0;
+        for (int section : path) {
+            total += traversal[topology.sectionIndex(section)];
+        }
+        return total;
+    }
+
+    /**
+     * Gets the current simulated time.
+     *
+     * @return The time of the last run.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the number of trains that have entered.
+     *
+     * @return The number of trains let in so far.
+     */
+    public long getEntered() {
+        return entered;
+    }
+
+    /**
+     * Gets the number of trains that have completed their journey.
+     *
+     * @return The number of trains that have left the corridor so far.
+     */
+    public long getExited() {
+        return exited;
+    }
+
+    /**
+     * Gets the throughput so far.
+     *
+     * @param period The length of the period to express the throughput in, such as 3600 for trains per hour when
+     *               ticks are seconds.
+     * @return The average number of trains that completed their journey per period.
+     */
+    public double getThroughput(long period) {
+        return time == 0 ? 0 : (double) exited * period / time;
+    }
+
+    /**
+     * Gets the number of trains waiting to enter.
+     *
+     * @return The number of trains whose entry time has passed but that have not been let in.
+     */
+    public int getWaiting() {
+        int waiting = 0;
+        for (Queue queue : entryQueues) {
+            waiting += queue.size;
+        }
+        return waiting;
+    }
+
+    /**
+     * Gets the total time trains have waited to enter beyond their timetabled time.
+     *
+     * @return The sum of the entry delays of the trains that have entered.
+     */
+    public long getEntryDelay() {
+        return entryDelay;
+    }
+
+    /**
+     * Gets the longest time a train has waited to enter.
+     *
+     * @return The largest entry delay so far.
+     */
+    public long getMaxEntryDelay() {
+        return maxEntryDelay;
+    }
+
+    /**
+     * Gets the total delay of completed journeys: the time from the timetabled entry to leaving the corridor, minus
+     * the time the journey takes on a free line.
+     *
+     * @return The sum of the journey delays of the trains that have left.
+     */
+    public long getJourneyDelay() {
+        return journeyDelay;
+    }
+
+    /**
+     * Gets the total time trains have been held on a section after traversing it, waiting for the interlocking to
+     * let them move on. Large values mark the junctions that limit capacity.
+     *
+     * @param trackSection The track section.
+     * @return The time spent held on the section by trains that have since moved on.
+     * @throws IllegalArgumentException If the section does not exist.
+     */
+    public long getBlockingTime(int trackSection) throws IllegalArgumentException {
+        int index = topology.sectionIndex(trackSection);
+        if (index == -1) {
+            throw new IllegalArgumentException("Track section does not exist");
+        }
+        return blocking[index];
+    }
+
+    /**
+     * Gets the total time trains have been held before a movement, waiting for the interlocking to let them make
+     * it. Movements that keep yielding to priority traffic show up here as starved.
+     *
+     * @param fromTrackSection The section the movement leaves.
+     * @param toTrackSection   The section the movement enters, or -1 for leaving the corridor.
+     * @return The time spent held by trains that have since made the movement.
+     * @throws IllegalArgumentException If the topology has no such movement.
+     */
+    public long getBlockingTime(int fromTrackSection, int toTrackSection) throws IllegalArgumentException {
+        return transitionBlocking[transition(fromTrackSection, toTrackSection)];
+    }
+
+    /**
+     * Gets the longest time a single train has been held before a movement.
+     *
+     * @param fromTrackSection The section the movement leaves.
+     * @param toTrackSection   The section the movement enters, or -1 for leaving the corridor.
+     * @return The longest hold so far.
+     * @throws IllegalArgumentException If the topology has no such movement.
+     */
+    public long getMaxBlockingTime(int fromTrackSection, int toTrackSection) throws IllegalArgumentException {
+        return maxTransitionBlocking[transition(fromTrackSection, toTrackSection)];
+    }
+
+    private int transition(int fromTrackSection, int toTrackSection) throws IllegalArgumentException {
+        int transition = topology.transition(fromTrackSection, toTrackSection);
+        if (transition == -1) {
+            throw new IllegalArgumentException("No movement from " + fromTrackSection + " to " + toTrackSection);
+        }
+        return transition;
+    }
+
+    /**
+     * Gets the distribution of the journey delays of the trains that have left, as defined for
+     * {@link #getJourneyDelay()}.
+     *
+     * @return The histogram of journey delays, which keeps filling as the simulation runs.
+     */
+    public Histogram getDelays() {
+        return delays;
+    }
+
+    /**
+     * A first-in, first-out queue of trains waiting at one entry section, held as a growable ring of routes and
+     * timetabled times.
+     */
+    private static final class Queue {
+        int[] routes = new int[4];
+        long[] times = new long[4];
+        int head;
+        int size;
+
+        void add(int route, long time) {
+            if (size == routes.length) {
+                int[] grownRoutes = new int[size * 2];
+                long[] grownTimes = new long[size * 2];
+                for (int i = 0; i < size; i++) {
+                    grownRoutes[i] = routes[(head + i) % size];
+                    grownTimes[i] = times[(head + i) % size];
+                }
+                routes = grownRoutes;
+                times = grownTimes;
+                head = 0;
+            }
+            int tail = (head + size) % routes.length;
+            routes[tail] = route;
+            times[tail] = time;
+            size++;
+        }
+
+        void remove() {
+            head = (head + 1) % routes.length;
+            size--;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+import java.util.Arrays;
+
+/**
+ * An interlocking driven by one writer thread and read by any number of other threads without locking.
+ *
+ * After every call that changes the network, the writer publishes an immutable {@link OccupancySnapshot} of the
+ * section occupants and train locations through a volatile reference. getSection and getTrain answer from the latest
+ * snapshot alone, so a reader always sees the state between two complete calls, never a batch half applied, and
+ * neither blocks the writer nor slows it beyond the cost of publishing. Readers that need several answers from one
+ * consistent state should take a snapshot once and query it.
+ *
+ * addTrain, moveTrains and the other updating methods must be called from one thread at a time. The snapshot
+ * remembers the same exits as the train registry, so getTrain still returns -1 for a train that has left until the
+ * registry forgets it too.
+ */
+public class SnapshotInterlocking extends InterlockingImpl {
+    private final String[] occupants;
+    private final boolean[] dirty;
+    private final OccupancySnapshot.Changes changes = new OccupancySnapshot.Changes();
+    private final String[] exitNames;
+    private final long[] exitNumbers;
+    private int exitStart;
+    private int exitSize;
+    private long exitCount;
+    private boolean changed;
+    private volatile OccupancySnapshot snapshot;
+
+    /**
+     * Initializes the interlocking on the corridor described in the README.
+     */
+    public SnapshotInterlocking() {
+        this(Topology.corridor());
+    }
+
+    /**
+     * Initializes the interlocking on a network topology.
+     *
+     * @param topology The network topology.
+     */
+    public SnapshotInterlocking(Topology topology) {
+        this(topology, TrainRegistry.DEFAULT_HISTORY);
+    }
+
+    /**
+     * Initializes the interlocking on a network topology with a bounded memory of trains that have left.
+     *
+     * @param topology    The network topology.
+     * @param exitHistory The number of exited trains whose names getTrain still resolves.
+     */
+    public SnapshotInterlocking(Topology topology, int exitHistory) {
+        super(topology, exitHistory);
+        occupants = new String[topology.sectionCount()];
+        exitNames = new String[exitHistory];
+        exitNumbers = new long[exitHistory];
+        snapshot = new OccupancySnapshot(topology, occupants.length + exitHistory);
+        dirty = new boolean[(occupants.length + OccupancySnapshot.CHUNK - 1) >>> OccupancySnapshot.CHUNK_BITS];
+    }
+
+    /**
+     * Gets the latest published snapshot.
+     *
+     * @return The state after the most recent completed call that changed the network.
+     */
+    public OccupancySnapshot snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public Status tryAddTrain(String trainName, int entryTrackSection, int destinationTrackSection) {
+        Status status = super.tryAddTrain(trainName, entryTrackSection, destinationTrackSection);
+        publish();
+        return status;
+    }
+
+    @Override
+    public int moveTrains(String[] trainNames) throws IllegalArgumentException {
+        int moved = super.moveTrains(trainNames);
+        publish();
+        return moved;
+    }
+
+    @Override
+    public int tryMoveTrains(String[] trainNames, Status[] outcomes) {
+        int moved = super.tryMoveTrains(trainNames, outcomes);
+        publish();
+        return moved;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        changes.clear();
+        Arrays.fill(exitNames, null);
+        exitStart = 0;
+        exitSize = 0;
+        Arrays.fill(dirty, false);
+        changed = false;
+        snapshot = new OccupancySnapshot(getTopology(), occupants.length + exitNames.length);
+    }
+
+    @Override
+    public void restore(Checkpoint checkpoint) throws IllegalArgumentException, IllegalStateException {
+        super.restore(checkpoint);
+        for (String name : checkpoint.exitNames) {
+            exited(name);
+        }
+        //A remembered exit may share its name with a train back in service, which must win
+        for (int i = 0; i < occupants.length; i++) {
+            if (occupants[i] != null) {
+                changes.add(occupants[i], getTopology().sectionId(i), 0);
+            }
+        }
+        changed = true;
+        publish();
+    }
+
+    @Override
+    protected void occupy(int index, Train train) {
+        super.occupy(index, train);
+        occupants[index] = train == null ? null : train.getTrainName();
+        dirty[index >>> OccupancySnapshot.CHUNK_BITS] = true;
+        changed = true;
+        if (train != null) {
+            changes.add(occupants[index], getTopology().sectionId(index), 0);
+        }
+    }
+
+    @Override
+    protected boolean moveTrain(Train train) {
+        if (!super.moveTrain(train)) {
+            return false;
+        }
+        if (!train.isInService()) {
+            exited(train.getTrainName());
+        }
+        return true;
+    }
+
+    //Records an exit, and forgets the oldest remembered exit when the history is full, as the train registry does
+    private void exited(String name) {
+        long number = ++exitCount;
+        changes.add(name, OccupancySnapshot.EXITED, number);
+        if (exitNames.length == 0) {
+            changes.add(name, OccupancySnapshot.UNKNOWN, number);
+            return;
+        }
+        if (exitSize == exitNames.length) {
+            changes.add(exitNames[exitStart], OccupancySnapshot.UNKNOWN, exitNumbers[exitStart]);
+            exitNames[exitStart] = name;
+            exitNumbers[exitStart] = number;
+            exitStart = (exitStart + 1) % exitNames.length;
+        } else {
+            int slot = (exitStart + exitSize++) % exitNames.length;
+            exitNames[slot] = name;
+            exitNumbers[slot] = number;
+        }
+    }
+
+    private void publish() {
+        if (changed) {
+            changed = false;
+            snapshot = new OccupancySnapshot(snapshot, getVersion(), occupants, dirty, changes);
+        }
+    }
+
+    /**
+     * Gets the name of the train occupying a track section in the latest snapshot.
+     *
+     * @param trackSection The track section to query.
+     * @return The name of the train occupying the section or null if the section is unoccupied.
+     * @throws IllegalArgumentException If the specified track section does not exist.
+     */
+    @Override
+    public String getSection(int trackSection) throws IllegalArgumentException {
+        return snapshot.getSection(trackSection);
+    }
+
+    /**
+     * Gets the track section of a train in the latest snapshot.
+     *
+     * @param trainName The name of the train.
+     * @return The track section where the train is located, or -1 if it has left and is still remembered.
+     * @throws IllegalArgumentException If the train did not exist in the snapshot or has been forgotten.
+     */
+    @Override
+    public int getTrain(String trainName) throws IllegalArgumentException {
+        int location = snapshot.locate(trainName);
+        if (location == OccupancySnapshot.UNKNOWN) {
+            throw new IllegalArgumentException("Train name does not exist");
+        }
+        return location == OccupancySnapshot.EXITED ? -1 : location;
+    }
+}
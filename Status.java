@@ -0,0 +1,56 @@
+/**
+ * The outcome of a non-throwing interlocking operation, such as {@link InterlockingImpl#tryAddTrain} or one train
+ * of {@link InterlockingImpl#tryMoveTrains}. Rejections are reported by returning one of these constants, so a
+ * rejected request costs no exception, stack trace or message string.
+ */
+public enum Status {
+    /**
+     * The train was added or moved.
+     */
+    OK,
+
+    /**
+     * The entry section, or the next section of a moving train, is occupied.
+     */
+    SECTION_OCCUPIED,
+
+    /**
+     * An entry constraint of the route is not met.
+     */
+    CONSTRAINT_BLOCKED,
+
+    /**
+     * A section of the route is locked for another train.
+     */
+    ROUTE_LOCKED,
+
+    /**
+     * The train has to wait for a train poised on a higher-priority transition.
+     */
+    PRIORITY_BLOCKED,
+
+    /**
+     * The point the train has to cross is set for other movements or is being thrown.
+     */
+    POINT_BLOCKED,
+
+    /**
+     * There is no route from the entry section to the destination.
+     */
+    UNKNOWN_ROUTE,
+
+    /**
+     * A train with the same name is still in service.
+     */
+    NAME_IN_USE,
+
+    /**
+     * No train with that name is in service.
+     */
+    NOT_IN_SERVICE,
+
+    /**
+     * The train has left the rail corridor and is still remembered by name.
+     */
+    EXITED
+}
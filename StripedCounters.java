@@ -0,0 +1,108 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A fixed set of long counters that many threads can add to without contending with each other.
+ *
+ * Every counter is kept once per stripe, and a thread always adds to the copy in the stripe picked by its identity
+ * hash, so threads on different stripes never write the same cache line: each stripe's copies are laid out together
+ * and padded away from the next stripe's. A counter's value is the sum of its copies. Adding neither allocates nor
+ * locks, and costs one atomic add on a line that is rarely shared; reading a counter costs one read per stripe, so
+ * counters suit values that are recorded far more often than they are read.
+ *
+ * Sums read while other threads add are not a consistent cut across counters, but every add is counted exactly once.
+ */
+public final class StripedCounters {
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(long[].class);
+    //Longs per 64-byte cache line, and lines of padding between stripes against adjacent-line prefetching
+    private static final int LINE = 8;
+    private static final int PADDING = 2 * LINE;
+
+    private final int counters;
+    private final int rowLength;
+    private final int stripeMask;
+    private final long[] cells;
+
+    /**
+     * Creates counters striped for as many threads as there are processors.
+     *
+     * @param counters The number of counters.
+     */
+    public StripedCounters(int counters) {
+        this(counters, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates counters with a number of stripes. One stripe suits counters written by a single thread.
+     *
+     * @param counters The number of counters.
+     * @param stripes  The number of stripes, rounded up to a power of two.
+     * @throws IllegalArgumentException If the number of counters is negative or of stripes not positive.
+     */
+    public StripedCounters(int counters, int stripes) throws IllegalArgumentException {
+        if (counters < 0 || stripes < 1 || stripes > 1 << 16) {
+            throw new IllegalArgumentException("Counter count cannot be negative and stripe count must be positive");
+        }
+        this.counters = counters;
+        int size = Integer.highestOneBit(stripes * 2 - 1);
+        rowLength = (counters + LINE - 1) / LINE * LINE + PADDING;
+        stripeMask = size - 1;
+        cells = new long[PADDING + size * rowLength];
+    }
+
+    /**
+     * Gets the number of counters.
+     *
+     * @return The number of counters.
+     */
+    public int size() {
+        return counters;
+    }
+
+    /**
+     * Adds one to a counter.
+     *
+     * @param counter The counter index.
+     */
+    public void increment(int counter) {
+        add(counter, 1);
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param counter The counter index.
+     * @param delta   The amount to add.
+     */
+    public void add(int counter, long delta) {
+        CELLS.getAndAdd(cells, offset() + counter, delta);
+    }
+
+    /**
+     * Gets the value of a counter.
+     *
+     * @param counter The counter index.
+     * @return The sum of every add to the counter since it was created or last cleared.
+     */
+    public long sum(int counter) {
+        long sum = 0;
+        for (int cell = PADDING + counter; cell < cells.length; cell += rowLength) {
+            sum += (long) CELLS.getVolatile(cells, cell);
+        }
+        return sum;
+    }
+
+    /**
+     * Sets every counter to zero. Adds made by other threads meanwhile may be kept or lost.
+     */
+    public void clear() {
+        for (int cell = 0; cell < cells.length; cell++) {
+            CELLS.setVolatile(cells, cell, 0L);
+        }
+    }
+
+    private int offset() {
+        int h = System.identityHashCode(Thread.currentThread()) * 0x9E3779B9;
+        return PADDING + ((h ^ h >>> 16) & stripeMask) * rowLength;
+    }
+}
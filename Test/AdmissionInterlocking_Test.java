@@ -0,0 +1,143 @@
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class AdmissionInterlocking_Test {
+    //Test queued trains enter in order as soon as their entry section is freed
+    @Test
+    public void testFifoAdmission() {
+        AdmissionInterlocking interlocking = new AdmissionInterlocking();
+        CompletableFuture<Void> a = interlocking.queueTrain("a", 1, 8);
+        assertTrue(a.isDone());
+        CompletableFuture<Void> b = interlocking.queueTrain("b", 1, 9);
+        CompletableFuture<Void> c = interlocking.queueTrain("c", 1, 8);
+        assertFalse(b.isDone());
+        assertEquals(interlocking.getQueueLength(1), 2);
+        assertEquals(interlocking.getQueued(), 2);
+
+        assertEquals(interlocking.moveTrains(new String[]{"a"}), 1);
+        assertTrue(b.isDone());
+        assertFalse(c.isDone());
+        assertEquals(interlocking.getSection(1), "b");
+        assertEquals(interlocking.getQueueLength(1), 1);
+        assertEquals(interlocking.getAdmitted(), 2);
+        assertEquals(interlocking.getWaitTimes().count(), 2);
+    }
+
+    //Test a queued train waits for its entry constraints as well as its entry section
+    @Test
+    public void testConstraintWait() {
+        AdmissionInterlocking interlocking = new AdmissionInterlocking();
+        interlocking.addTrain("x", 9, 2);
+        CompletableFuture<Void> y = interlocking.queueTrain("y", 1, 9);
+        assertFalse(y.isDone());
+        assertNull(interlocking.getSection(1));
+
+        Status[] outcomes = new Status[1];
+        assertEquals(interlocking.tryMoveTrains(new String[]{"x"}, outcomes), 1);
+        assertTrue(y.isDone());
+        assertEquals(interlocking.getTrain("y"), 1);
+    }
+
+    //Test higher priorities enter first, and a callback runs on admission
+    @Test
+    public void testPriority() {
+        AdmissionInterlocking interlocking = new AdmissionInterlocking();
+        interlocking.addTrain("a", 3, 4);
+        CompletableFuture<Void> low = interlocking.queueTrain("low", 3, 11);
+        boolean[] called = new boolean[1];
+        interlocking.queueTrain("high", 3, 11, 5, () -> called[0] = true);
+        interlocking.moveTrains(new String[]{"a"});
+        assertTrue(called[0]);
+        assertFalse(low.isDone());
+        assertEquals(interlocking.getSection(3), "high");
+    }
+
+    //Test a queued name is held against other trains, and dequeuing or resetting cancels the wait
+    @Test
+    public void testNamesAndCancelling() {
+        AdmissionInterlocking interlocking = new AdmissionInterlocking();
+        interlocking.addTrain("a", 1, 8);
+        CompletableFuture<Void> b = interlocking.queueTrain("b", 1, 8);
+        try {
+            interlocking.queueTrain("a", 3, 4);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(interlocking.getQueued(), 1);
+        }
+        try {
+            interlocking.addTrain("b", 3, 4);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertNull(interlocking.getSection(3));
+        }
+        try {
+            interlocking.queueTrain("c", 1, 3);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(interlocking.getQueueLength(1), 1);
+        }
+
+        assertTrue(interlocking.dequeueTrain("b"));
+        assertTrue(b.isCancelled());
+        assertFalse(interlocking.dequeueTrain("b"));
+        interlocking.addTrain("b", 3, 4);
+
+        CompletableFuture<Void> d = interlocking.queueTrain("d", 1, 8);
+        CompletableFuture<Void> e = interlocking.queueTrain("e", 1, 9);
+        d.cancel(false);
+        interlocking.moveTrains(new String[]{"a"});
+        assertTrue(e.isDone());
+        assertEquals(interlocking.getSection(1), "e");
+
+        CompletableFuture<Void> f = interlocking.queueTrain("f", 1, 8);
+        interlocking.reset();
+        assertTrue(f.isCancelled());
+        assertEquals(interlocking.getQueued(), 0);
+        assertEquals(interlocking.getAdmitted(), 0);
+        assertEquals(interlocking.getWaitTimes().count(), 0);
+        assertTrue(interlocking.queueTrain("f", 1, 8).isDone());
+    }
+
+    //Test a callback may move trains, and the trains its move frees the way for are let in before the call returns
+    @Test
+    public void testCallbackMovesTrains() {
+        AdmissionInterlocking interlocking = new AdmissionInterlocking();
+        interlocking.addTrain("x1", 1, 8);
+        interlocking.addTrain("x2", 10, 2);
+        interlocking.queueTrain("qa", 1, 8, 0, () -> interlocking.moveTrains(new String[]{"x2"}));
+        CompletableFuture<Void> qb = interlocking.queueTrain("qb", 10, 2);
+        assertEquals(interlocking.getQueued(), 2);
+
+        assertEquals(interlocking.moveTrains(new String[]{"x1"}), 1);
+        assertEquals(interlocking.getSection(1), "qa");
+        assertEquals(interlocking.getSection(6), "x2");
+        assertTrue(qb.isDone());
+        assertEquals(interlocking.getSection(10), "qb");
+        assertEquals(interlocking.getQueued(), 0);
+        assertEquals(interlocking.getAdmitted(), 2);
+    }
+
+    //Test a failing callback does not stop the other admissions, and its exception reaches the caller afterwards
+    @Test
+    public void testFailingCallback() {
+        AdmissionInterlocking interlocking = new AdmissionInterlocking();
+        interlocking.addTrain("x1", 1, 8);
+        interlocking.addTrain("x2", 3, 4);
+        interlocking.queueTrain("qa", 1, 8, 0, () -> {
+            throw new IllegalStateException("callback");
+        });
+        CompletableFuture<Void> qb = interlocking.queueTrain("qb", 3, 11);
+        try {
+            interlocking.moveTrains(new String[]{"x2", "x1"});
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "callback");
+        }
+        assertEquals(interlocking.getSection(1), "qa");
+        assertTrue(qb.isDone());
+        assertEquals(interlocking.getSection(3), "qb");
+    }
+}
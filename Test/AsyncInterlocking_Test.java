@@ -0,0 +1,96 @@
+import org.junit.Test;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AsyncInterlocking_Test {
+    //Test commands are applied in submission order and results come back through the futures
+    @Test
+    public void testFutures() {
+        try (AsyncInterlocking network = new AsyncInterlocking()) {
+            network.addTrain("t18", 1, 8);
+            network.moveTrains(new String[]{"t18"});
+            assertEquals(network.getSection(5).join(), "t18");
+            assertEquals((int) network.getTrain("t18").join(), 5);
+            assertEquals((int) network.moveTrains(new String[]{"t18"}).join(), 1);
+            assertNull(network.getSection(5).join());
+        }
+    }
+
+    //Test exceptions of the plain interlocking complete the future exceptionally
+    @Test
+    public void testExceptionalFutures() {
+        try (AsyncInterlocking network = new AsyncInterlocking()) {
+            network.addTrain("t18", 1, 8).join();
+            try {
+                network.addTrain("t19", 1, 9).join();
+                fail();
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            try {
+                network.getSection(12).join();
+                fail();
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+            assertEquals(network.getSection(1).join(), "t18");
+        }
+    }
+
+    //Test the callback interface reports statuses and outcomes
+    @Test
+    public void testCallbacks() {
+        Status[] added = new Status[2];
+        Status[] outcomes = new Status[2];
+        AtomicInteger moved = new AtomicInteger(-1);
+        try (AsyncInterlocking network = new AsyncInterlocking()) {
+            network.tryAddTrain("c34", 3, 4, status -> added[0] = status);
+            network.tryAddTrain("c43", 3, 4, status -> added[1] = status);
+            network.tryMoveTrains(new String[]{"c34", "none"}, outcomes, moved::set);
+        }
+        assertArrayEquals(added, new Status[]{Status.OK, Status.SECTION_OCCUPIED});
+        assertArrayEquals(outcomes, new Status[]{Status.OK, Status.NOT_IN_SERVICE});
+        assertEquals(moved.get(), 1);
+    }
+
+    //Test many clients on a small ring, each running its own train up and down the freight line
+    @Test
+    public void testManyClients() throws InterruptedException {
+        int clients = 8;
+        int rounds = 2000;
+        StringBuilder text = new StringBuilder("sections 1..").append(2 * clients).append('\n');
+        for (int c = 0; c < clients; c++) {
+            text.append("route ").append(2 * c + 1).append(' ').append(2 * c + 2).append('\n');
+        }
+        AtomicInteger moves = new AtomicInteger();
+        AsyncInterlocking network = new AsyncInterlocking(new InterlockingImpl(Topology.parse(text)), 4);
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            int entry = 2 * c + 1;
+            String[] names = {"t" + c};
+            threads[c] = new Thread(() -> {
+                for (int r = 0; r < rounds; r++) {
+                    network.addTrain(names[0], entry, entry + 1);
+                    network.tryMoveTrains(names, null, moves::addAndGet);
+                    network.moveTrains(names).join();
+                }
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        network.close();
+        assertEquals(moves.get(), clients * rounds);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() {
+        AsyncInterlocking network = new AsyncInterlocking();
+        network.close();
+        network.getSection(1);
+    }
+}
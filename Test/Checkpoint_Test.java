@@ -0,0 +1,217 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Checkpoint_Test {
+    private static final int[][] ROUTES = {{1, 8}, {1, 9}, {3, 4}, {4, 3}, {9, 2}, {10, 2}, {3, 11}, {11, 3}, {1, 2}};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    //Test a restored interlocking carries on exactly like the one the checkpoint was taken from
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path path = folder.newFile("checkpoint").toPath();
+        Random random = new Random(3);
+        InterlockingImpl original = new InterlockingImpl(Topology.corridor(), 64);
+        original.setMoveOrder(MoveOrder.CASCADE);
+        run(random, original, null, 5000);
+        original.checkpoint().write(path);
+        InterlockingImpl restored = new InterlockingImpl(Topology.corridor(), 64);
+        restored.restore(Checkpoint.read(path));
+        assertEquals(restored.getVersion(), original.getVersion());
+        assertEquals(restored.getMoveOrder(), MoveOrder.CASCADE);
+        run(random, original, restored, 20000);
+    }
+
+    private static void run(Random random, InterlockingImpl expected, InterlockingImpl actual, int steps) {
+        for (int step = 0; step < steps; step++) {
+            String name = "t" + random.nextInt(200);
+            if (random.nextInt(3) == 0) {
+                int[] route = ROUTES[random.nextInt(ROUTES.length)];
+                Status status = expected.tryAddTrain(name, route[0], route[1]);
+                if (actual != null) {
+                    assertEquals(actual.tryAddTrain(name, route[0], route[1]), status);
+                }
+            } else {
+                String[] names = {name, "t" + random.nextInt(200)};
+                int moved = expected.tryMoveTrains(names, null);
+                if (actual != null) {
+                    assertEquals(actual.tryMoveTrains(names, null), moved);
+                }
+            }
+            if (actual != null) {
+                for (int section = 1; section <= 11; section++) {
+                    assertEquals(actual.getSection(section), expected.getSection(section));
+                }
+                assertEquals(actual.trainStatus(name), expected.trainStatus(name));
+            }
+        }
+    }
+
+    //Test a large network restores from one file with every train in place
+    @Test
+    public void testLargeNetwork() throws IOException {
+        int lines = 50000;
+        StringBuilder text = new StringBuilder("sections 1..").append(2 * lines).append('\n');
+        for (int i = 1; i < 2 * lines; i += 2) {
+            text.append("route ").append(i).append(' ').append(i + 1).append('\n');
+        }
+        Topology topology = Topology.parse(text);
+        InterlockingImpl original = new InterlockingImpl(topology);
+        String[] name = new String[1];
+        for (int i = 1; i < 2 * lines; i += 2) {
+            name[0] = "t" + i;
+            original.addTrain(name[0], i, i + 1);
+            if (i % 4 == 1) {
+                original.moveTrains(name);
+            }
+        }
+        Path path = folder.newFile("large").toPath();
+        original.checkpoint().write(path);
+        Checkpoint checkpoint = Checkpoint.read(path);
+        assertEquals(checkpoint.getTrainCount(), lines);
+        InterlockingImpl restored = new InterlockingImpl(topology);
+        restored.restore(checkpoint);
+        for (int i = 1; i < 2 * lines; i += 2) {
+            assertEquals(restored.getTrain("t" + i), i % 4 == 1 ? i + 1 : i);
+        }
+    }
+
+    //Test the snapshot interlocking publishes the restored state
+    @Test
+    public void testRestoreSnapshot() {
+        InterlockingImpl original = new InterlockingImpl();
+        original.addTrain("t18", 1, 8);
+        SnapshotInterlocking restored = new SnapshotInterlocking();
+        restored.restore(original.checkpoint());
+        assertEquals(restored.snapshot().getSection(1), "t18");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDifferentTopology() {
+        new InterlockingImpl(Topology.parse("sections 1..2\nroute 1 2")).restore(new InterlockingImpl().checkpoint());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUsedInterlocking() {
+        InterlockingImpl network = new InterlockingImpl();
+        network.addTrain("t18", 1, 8);
+        network.restore(new InterlockingImpl().checkpoint());
+    }
+
+    //Test a point interlocking restores its clock and a throw in progress, and carries on as the original does
+    @Test
+    public void testPoints() throws IOException {
+        PointInterlocking original = new PointInterlocking();
+        original.addTrain("t1", 3, 4);
+        original.advanceTo(2);
+        Path path = folder.newFile("points").toPath();
+        original.checkpoint().write(path);
+        PointInterlocking restored = new PointInterlocking();
+        restored.restore(Checkpoint.read(path));
+        assertEquals(restored.getTime(), 2);
+        assertTrue(restored.isThrowing(1));
+        assertEquals(restored.getNextSettleTime(), 3);
+        for (PointInterlocking network : new PointInterlocking[]{original, restored}) {
+            assertEquals(network.moveTrains(new String[]{"t1"}), 0);
+            network.advanceTo(3);
+            assertEquals(network.getPosition(1), 1);
+            assertEquals(network.moveTrains(new String[]{"t1"}), 1);
+        }
+
+        //A checkpoint without points starts every point settled in its first position
+        PointInterlocking plain = new PointInterlocking();
+        plain.restore(new InterlockingImpl().checkpoint());
+        assertEquals(plain.getTime(), 0);
+        assertEquals(plain.getPosition(1), 0);
+    }
+
+    //Test a point state the topology cannot have is rejected before anything is restored
+    @Test
+    public void testInvalidPoints() {
+        PointInterlocking original = new PointInterlocking();
+        original.addTrain("t1", 3, 4);
+        Checkpoint checkpoint = original.checkpoint();
+        Checkpoint[] invalid = {
+                checkpoint.withPoints(0, new int[]{0, 5}, new int[]{0, 0}, new long[2]),
+                checkpoint.withPoints(5, new int[]{0, 0}, new int[]{1, 0}, new long[]{3, 0}),
+                checkpoint.withPoints(-1, new int[2], new int[2], new long[2])
+        };
+        for (Checkpoint corrupt : invalid) {
+            PointInterlocking network = new PointInterlocking();
+            try {
+                network.restore(corrupt);
+                fail();
+            } catch (IllegalStateException expected) {
+            }
+            assertEquals(network.trainStatus("t1"), Status.NOT_IN_SERVICE);
+        }
+    }
+
+    //Test a corrupt move order, train count or truncated file fails the read with IllegalStateException
+    @Test
+    public void testCorruptFile() throws IOException {
+        InterlockingImpl original = new InterlockingImpl();
+        original.addTrain("t18", 1, 8);
+        Path path = folder.newFile("corrupt").toPath();
+        original.checkpoint().write(path);
+        byte[] bytes = Files.readAllBytes(path);
+        assertCorrupt(path, bytes, 16, 99);
+        assertCorrupt(path, bytes, 25, -1);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+        try {
+            Checkpoint.read(path);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private static void assertCorrupt(Path path, byte[] bytes, int at, int value) throws IOException {
+        byte[] corrupt = bytes.clone();
+        corrupt[at] = (byte) value;
+        Files.write(path, corrupt);
+        try {
+            Checkpoint.read(path);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    //Test a checkpoint that does not fit the topology is rejected before anything is restored
+    @Test
+    public void testInvalidContents() {
+        Topology topology = Topology.corridor();
+        int route = topology.routeCount();
+        Checkpoint[] invalid = {
+                checkpoint(new String[]{"a"}, new int[]{route}, new int[]{0}),
+                checkpoint(new String[]{"a"}, new int[]{0}, new int[]{topology.routePath(0).length}),
+                checkpoint(new String[]{"a", "a"}, new int[]{0, 2}, new int[]{0, 0}),
+                checkpoint(new String[]{"a", "b"}, new int[]{0, 0}, new int[]{0, 0})
+        };
+        for (Checkpoint checkpoint : invalid) {
+            InterlockingImpl network = new InterlockingImpl(topology, 16);
+            try {
+                network.restore(checkpoint);
+                fail();
+            } catch (IllegalStateException expected) {
+            }
+            assertEquals(network.trainStatus("a"), Status.NOT_IN_SERVICE);
+            network.restore(new InterlockingImpl(topology, 16).checkpoint());
+        }
+    }
+
+    private static Checkpoint checkpoint(String[] names, int[] routes, int[] journeyIndexes) {
+        Topology topology = Topology.corridor();
+        return new Checkpoint(topology.sectionCount(), topology.routeCount(), MoveOrder.LISTED, 0, names, routes,
+                journeyIndexes, new String[]{"x"}, new int[]{0});
+    }
+}
@@ -0,0 +1,136 @@
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentInterlocking_Test {
+    //Test the concurrent mode keeps the priority rules of the plain interlocking
+    @Test
+    public void testMovePriority() {
+        Interlocking network = new ConcurrentInterlocking();
+        network.addTrain("c34", 3, 4);
+        network.addTrain("c18", 1, 8);
+        network.moveTrains(new String[]{"c34"});
+        assertEquals(network.getTrain("c34"), 3);
+        network.moveTrains(new String[]{"c34", "c18"});
+        assertEquals(network.getTrain("c34"), 4);
+        assertEquals(network.getTrain("c18"), 5);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddConstraint() {
+        Interlocking network = new ConcurrentInterlocking();
+        network.addTrain("a311", 3, 11);
+        network.moveTrains(new String[]{"a311"});
+        network.addTrain("a113", 11, 3);
+    }
+
+    //Test a name raced into two entries is only registered once and the losing entry is released
+    @Test
+    public void testAddSameNameTwice() {
+        Interlocking network = new ConcurrentInterlocking();
+        network.addTrain("x", 1, 8);
+        try {
+            network.addTrain("x", 3, 4);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertNull(network.getSection(3));
+        }
+    }
+
+    //Test threads moving the same trains never place two trains on one section and never lose a move
+    @Test
+    public void testSharedTrains() throws InterruptedException {
+        String[] names = {"a", "b", "c", "d"};
+        for (int round = 0; round < 200; round++) {
+            ConcurrentInterlocking network = new ConcurrentInterlocking(Topology.corridor(), 4);
+            network.addTrain("a", 1, 8);
+            network.addTrain("b", 3, 4);
+            network.addTrain("c", 10, 2);
+            network.addTrain("d", 11, 3);
+            AtomicInteger moves = new AtomicInteger();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = worker(failure, () -> {
+                    boolean active = true;
+                    while (active) {
+                        active = false;
+                        for (String name : names) {
+                            if (network.getTrain(name) != -1) {
+                                active = true;
+                                try {
+                                    moves.addAndGet(network.moveTrains(new String[]{name}));
+                                } catch (IllegalArgumentException e) {
+                                    //Another thread moved the train out of the corridor
+                                }
+                            }
+                        }
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertNoFailure(failure);
+            assertEquals(moves.get(), 11);
+            for (int section = 1; section <= 11; section++) {
+                assertNull(network.getSection(section));
+            }
+        }
+    }
+
+    //Test snapshots taken while other threads move trains always show a consistent state
+    @Test
+    public void testConsistentSnapshot() throws InterruptedException {
+        ConcurrentInterlocking network = new ConcurrentInterlocking();
+        Topology topology = Topology.corridor();
+        int sections = topology.sectionCount();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread mover = worker(failure, () -> {
+            for (int i = 0; i < 2000; i++) {
+                String[] name = {"c" + i};
+                network.addTrain(name[0], 3, 4);
+                network.moveTrains(name);
+                network.moveTrains(name);
+            }
+        });
+        mover.start();
+        long[] bits = new long[1];
+        String[] names = new String[sections];
+        long last = -1;
+        while (mover.isAlive()) {
+            long version = network.getOccupancy(bits);
+            assertTrue(version >= last);
+            last = version;
+            network.getOccupants(names);
+            //The freight line holds at most one train at a time
+            assertTrue(Long.bitCount(bits[0]) <= 1);
+        }
+        mover.join();
+        assertNoFailure(failure);
+        assertEquals(network.getVersion(), 6000L);
+        assertEquals(network.getOccupancy(bits), 6000L);
+        assertEquals(bits[0], 0L);
+    }
+
+    //Runs a task on a new thread, keeping the first exception any worker throws for the test to report
+    private static Thread worker(AtomicReference<Throwable> failure, Runnable task) {
+        return new Thread(() -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        });
+    }
+
+    private static void assertNoFailure(AtomicReference<Throwable> failure) {
+        if (failure.get() != null) {
+            throw new AssertionError("A worker thread failed", failure.get());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HandleInterlocking_Test {
+    @Test
+    public void testMoveByHandle() {
+        HandleInterlocking network = new HandleInterlocking();
+        int c34 = network.addTrainHandle("c34", 3, 4);
+        int c18 = network.addTrainHandle("c18", 1, 8);
+        assertEquals(network.handle("c34"), c34);
+        assertEquals(network.moveTrains(new int[]{c34}), 0);
+        assertEquals(network.moveTrains(new int[]{c34, c18}), 2);
+        assertEquals(network.getTrain(c34), 4);
+        assertEquals(network.getSection(5), "c18");
+        assertEquals(network.moveTrains(new int[]{c34, c34}), 1);
+        assertEquals(network.getTrain(c34), -1);
+        assertEquals(network.getTrain("c34"), -1);
+        assertEquals(network.handle("c34"), -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMoveStaleHandle() {
+        HandleInterlocking network = new HandleInterlocking();
+        int a34 = network.addTrainHandle("a34", 3, 4);
+        network.moveTrains(new int[]{a34});
+        network.moveTrains(new int[]{a34});
+        network.addTrainHandle("b34", 3, 4);
+        network.moveTrains(new int[]{a34});
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddConstraint() {
+        HandleInterlocking network = new HandleInterlocking();
+        network.addTrain("a311", 3, 11);
+        network.moveTrains(new String[]{"a311"});
+        network.addTrain("a113", 11, 3);
+    }
+
+    //Test random traffic gives the same results as the object-based interlocking
+    @Test
+    public void testMatchesInterlockingImpl() {
+        int[][] routes = {{1, 8}, {1, 9}, {3, 4}, {4, 3}, {9, 2}, {10, 2}, {3, 11}, {11, 3}, {1, 2}};
+        Random random = new Random(7);
+        Interlocking expected = new InterlockingImpl();
+        Interlocking actual = new HandleInterlocking();
+        for (int step = 0; step < 20000; step++) {
+            String name = "t" + random.nextInt(12);
+            if (random.nextInt(3) == 0) {
+                int[] route = routes[random.nextInt(routes.length)];
+                assertEquals(outcome(() -> expected.addTrain(name, route[0], route[1])),
+                        outcome(() -> actual.addTrain(name, route[0], route[1])));
+            } else {
+                String[] names = {name, "t" + random.nextInt(12), "t" + random.nextInt(12)};
+                assertEquals(outcome(() -> expected.moveTrains(names)), outcome(() -> actual.moveTrains(names)));
+            }
+            for (int section = 1; section <= 11; section++) {
+                assertEquals(expected.getSection(section), actual.getSection(section));
+            }
+            assertEquals(outcome(() -> expected.getTrain(name)), outcome(() -> actual.getTrain(name)));
+        }
+    }
+
+    //Test the bulk snapshots agree with getSection and report handles
+    @Test
+    public void testOccupancySnapshot() {
+        HandleInterlocking network = new HandleInterlocking();
+        Topology topology = Topology.corridor();
+        int t18 = network.addTrainHandle("t18", 1, 8);
+        int c34 = network.addTrainHandle("c34", 3, 4);
+        network.moveTrains(new int[]{t18});
+        int[] handles = new int[topology.sectionCount()];
+        String[] names = new String[topology.sectionCount()];
+        long[] bits = new long[1];
+        assertEquals(network.getOccupantHandles(handles), 3L);
+        assertEquals(network.getOccupants(names), 3L);
+        assertEquals(network.getOccupancy(bits), 3L);
+        for (int i = 0; i < handles.length; i++) {
+            int section = topology.sectionId(i);
+            assertEquals(names[i], network.getSection(section));
+            assertEquals((bits[0] >>> i & 1) == 1, names[i] != null);
+        }
+        assertEquals(handles[topology.sectionIndex(5)], t18);
+        assertEquals(handles[topology.sectionIndex(3)], c34);
+        assertEquals(handles[topology.sectionIndex(1)], -1);
+    }
+
+    //Test handles follow the trains through cascade moves, checkpoints and resets
+    @Test
+    public void testSharedFeatures() {
+        HandleInterlocking network = new HandleInterlocking();
+        network.setMoveOrder(MoveOrder.CASCADE);
+        int a = network.addTrainHandle("a", 1, 8);
+        network.moveTrains(new int[]{a});
+        int b = network.addTrainHandle("b", 1, 9);
+        //b waits on a's section and follows it in the same call
+        assertEquals(network.moveTrains(new int[]{b, a}), 2);
+        assertEquals(network.getTrain(b), 5);
+
+        HandleInterlocking restored = new HandleInterlocking();
+        restored.restore(network.checkpoint());
+        int restoredB = restored.handle("b");
+        assertEquals(restored.getTrain(restoredB), 5);
+        assertEquals(restored.moveTrains(new int[]{restoredB}), 1);
+        assertEquals(restored.getTrain("b"), 9);
+
+        network.reset();
+        assertFalse(network.getTrain(a) != -1 || network.getTrain(b) != -1);
+        assertEquals(network.handle("b"), -1);
+        int c = network.addTrainHandle("c", 1, 8);
+        assertEquals(network.getTrain(c), 1);
+    }
+
+    private static String outcome(Runnable action) {
+        try {
+            action.run();
+            return "ok";
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class Histogram_Test {
+    //Test percentiles are exact for small values and within an eighth for large ones
+    @Test
+    public void testPercentiles() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(histogram.count(), 1000);
+        assertEquals(histogram.percentile(0), 1);
+        assertEquals(histogram.percentile(0.5), 5);
+        long median = histogram.percentile(50);
+        assertTrue(median <= 500 && median >= 500 * 7 / 8);
+        long top = histogram.percentile(100);
+        assertTrue(top <= 1000 && top >= 1000 * 7 / 8);
+    }
+
+    //Test merging adds the counts of both histograms
+    @Test
+    public void testAdd() {
+        Histogram first = new Histogram();
+        Histogram second = new Histogram();
+        first.record(0);
+        second.record(Long.MAX_VALUE);
+        second.record(3);
+        first.add(second);
+        assertEquals(first.count(), 3);
+        assertEquals(first.percentile(50), 3);
+        assertTrue(first.percentile(100) > Long.MAX_VALUE / 2);
+        assertEquals(new Histogram().percentile(50), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegative() {
+        new Histogram().record(-1);
+    }
+
+    //Test clearing forgets every value
+    @Test
+    public void testClear() {
+        Histogram histogram = new Histogram();
+        histogram.record(5);
+        histogram.record(5000);
+        histogram.clear();
+        assertEquals(histogram.count(), 0);
+        assertEquals(histogram.percentile(50), 0);
+    }
+}
@@ -0,0 +1,54 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InterlockingHost_Test {
+    //Test corridors are created once and looked up by id
+    @Test
+    public void testCreate() {
+        InterlockingHost host = new InterlockingHost();
+        InterlockingImpl a = host.create("a", Topology.corridor());
+        host.create("b", Topology.corridor());
+        assertSame(host.get("a"), a);
+        assertEquals(host.corridorIds().size(), 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateTwice() {
+        InterlockingHost host = new InterlockingHost();
+        host.create("a", Topology.corridor());
+        host.create("a", Topology.corridor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRemove() {
+        InterlockingHost host = new InterlockingHost();
+        host.create("a", Topology.corridor());
+        assertTrue(host.remove("a"));
+        host.get("a");
+    }
+
+    //Test corridors driven from different threads do not interfere
+    @Test
+    public void testParallelCorridors() throws InterruptedException {
+        InterlockingHost host = new InterlockingHost();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            InterlockingImpl network = host.create("c" + i, Topology.corridor());
+            threads[i] = new Thread(() -> {
+                for (int n = 0; n < 1000; n++) {
+                    network.addTrain("t", 1, 8);
+                    while (network.moveTrains(new String[]{"t"}) > 0 && network.getTrain("t") != -1) {
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            assertEquals(host.get("c" + i).getTrain("t"), -1);
+        }
+    }
+}
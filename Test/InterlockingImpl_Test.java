@@ -1,4 +1,8 @@
 import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
 import static org.junit.Assert.*;
 
 public class InterlockingImpl_Test {
@@ -67,7 +71,6 @@ public class InterlockingImpl_Test {
     @Test(expected = IllegalStateException.class)
     public void testAddTrainFull2(){
         Interlocking network = new InterlockingImpl();
-        Train.removeTrain("t19");
         network.addTrain("t19", 1, 9);
         network.moveTrains(new String[]{"t19"});
         network.moveTrains(new String[]{"t19"});
@@ -106,7 +109,6 @@ public class InterlockingImpl_Test {
         Interlocking network = new InterlockingImpl();
         network.addTrain("b34", 3, 4);
         network.addTrain("b43", 4, 3);
-        Train.removeTrain("b34");
     }
 
     //If train 3->11 present, train 11->3 cannot enter
@@ -115,8 +117,6 @@ public class InterlockingImpl_Test {
         Interlocking network = new InterlockingImpl();
         network.addTrain("a311", 3, 11);
         network.addTrain("a113", 11, 3);
-        Train.removeTrain("a311");
-        Train.removeTrain("a113");
     }
 
     //If train 3->11 present, train 11->3 cannot move
@@ -124,11 +124,9 @@ public class InterlockingImpl_Test {
     @Test(expected = IllegalStateException.class)
     public void testAddConstraint4(){
         Interlocking network = new InterlockingImpl();
-        Train.removeTrain("a311");
         network.addTrain("a311", 3, 11);
         network.moveTrains(new String[]{"a311"});
         network.addTrain("a113", 11, 3);
-        Train.removeTrain("a311");
     }
 
     //If train 11->3 is present, train 3->11 cannot enter
@@ -137,19 +135,15 @@ public class InterlockingImpl_Test {
         Interlocking network = new InterlockingImpl();
         network.addTrain("a113", 11, 3);
         network.addTrain("a311",  3,11);
-        Train.removeTrain("a113");
     }
 
     //If train 11->3 is present, train 3->11 cannot enter
     @Test(expected = IllegalStateException.class)
     public void testAddConstraint6(){
         Interlocking network = new InterlockingImpl();
-        Train.removeTrain("a113");
         network.addTrain("a113", 11, 3);
         network.moveTrains(new String[]{"a113"});
         network.addTrain("a311",  3,11);
-        Train.removeTrain("a113");
-        Train.removeTrain("a311");
     }
 
     //If train 1->9 is present, train 9->2 cannot enter
@@ -164,7 +158,6 @@ public class InterlockingImpl_Test {
     @Test(expected = IllegalStateException.class)
     public void testAddConstraint8(){
         Interlocking network = new InterlockingImpl();
-        Train.removeTrain("a19");
         network.addTrain("a19", 1,9);
         network.moveTrains(new String[]{"a19"});
         network.addTrain("a92", 9,2);
@@ -353,6 +346,16 @@ public class InterlockingImpl_Test {
         network.moveTrains(new String[]{"c182"});
     }
 
+    //Test a train listed twice only exits once
+    @Test
+    public void testMoveTwiceInOneCall(){
+        Interlocking network = new InterlockingImpl();
+        network.addTrain("d34", 3, 4);
+        network.moveTrains(new String[]{"d34"});
+        assertEquals(network.moveTrains(new String[]{"d34", "d34"}), 1);
+        assertEquals(network.getTrain("d34"), -1);
+    }
+
     //Check that calling train that has left the system returns an error
     @Test(expected = IllegalArgumentException.class)
     public void testMoveTrainNotInService1(){
@@ -381,4 +384,291 @@ public class InterlockingImpl_Test {
         network.moveTrains(new String[]{"b18"});
         network.moveTrains(new String[]{"b18"});
     }
-}
\ No newline at end of file
+
+    //Check that a train listed before the train ahead of it only follows it in cascade order
+    @Test
+    public void testCascadeFollowsTrainAhead(){
+        for (MoveOrder order : MoveOrder.values()) {
+            InterlockingImpl network = new InterlockingImpl();
+            network.setMoveOrder(order);
+            network.addTrain("x18", 1, 8);
+            network.moveTrains(new String[]{"x18"});
+            network.addTrain("y18", 1, 8);
+            if (order == MoveOrder.LISTED) {
+                assertEquals(network.moveTrains(new String[]{"y18", "x18"}), 1);
+                assertEquals(network.getTrain("y18"), 1);
+            } else {
+                assertEquals(network.moveTrains(new String[]{"y18", "x18"}), 2);
+                assertEquals(network.getTrain("y18"), 5);
+            }
+            assertEquals(network.getTrain("x18"), 8);
+        }
+    }
+
+    //Check that a cascade runs along a chain of non-priority trains
+    @Test
+    public void testCascadeChain(){
+        InterlockingImpl network = new InterlockingImpl();
+        network.setMoveOrder(MoveOrder.CASCADE);
+        network.addTrain("a311", 3, 11);
+        network.moveTrains(new String[]{"a311"});
+        network.moveTrains(new String[]{"a311"});
+        network.addTrain("b311", 3, 11);
+        network.moveTrains(new String[]{"b311"});
+        network.addTrain("c311", 3, 11);
+        assertEquals(network.moveTrains(new String[]{"c311", "b311", "a311"}), 3);
+        assertEquals(network.getTrain("a311"), -1);
+        assertEquals(network.getTrain("b311"), 11);
+        assertEquals(network.getTrain("c311"), 7);
+    }
+
+    //Check that a train only passes a higher-priority train once that train has moved on
+    @Test
+    public void testCascadeKeepsPriority(){
+        InterlockingImpl network = new InterlockingImpl();
+        network.setMoveOrder(MoveOrder.CASCADE);
+        network.addTrain("x18", 1, 8);
+        network.moveTrains(new String[]{"x18"});
+        network.addTrain("y18", 1, 8);
+        network.addTrain("c34", 3, 4);
+        //y18 stays poised on 1-5 behind x18, so c34 has to wait
+        assertEquals(network.moveTrains(new String[]{"c34", "y18"}), 0);
+        assertEquals(network.getTrain("c34"), 3);
+        //Once x18 moves, y18 follows it and c34 is free to go
+        assertEquals(network.moveTrains(new String[]{"c34", "y18", "x18"}), 3);
+        assertEquals(network.getTrain("y18"), 5);
+        assertEquals(network.getTrain("c34"), 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullMoveOrder(){
+        new InterlockingImpl().setMoveOrder(null);
+    }
+
+    //Check that constraints and priorities are lifted once the blocking train has left
+    @Test
+    public void testRulesReleasedOnExit(){
+        Interlocking network = new InterlockingImpl();
+        network.addTrain("t19", 1, 9);
+        network.moveTrains(new String[]{"t19"});
+        try {
+            network.addTrain("t92", 9, 2);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("on 5"));
+        }
+        network.addTrain("c34", 3, 4);
+        network.addTrain("t18", 1, 8);
+        assertEquals(network.moveTrains(new String[]{"c34"}), 0);
+        network.moveTrains(new String[]{"t19"});
+        network.moveTrains(new String[]{"t19"});
+        assertEquals(network.getTrain("t19"), -1);
+        network.addTrain("t92", 9, 2);
+        network.moveTrains(new String[]{"t18"});
+        assertEquals(network.moveTrains(new String[]{"c34"}), 1);
+    }
+
+    //Check that rejected entries are reported by status, in the same order addTrain checks them
+    @Test
+    public void testTryAddTrain(){
+        InterlockingImpl network = new InterlockingImpl();
+        assertEquals(network.tryAddTrain("t12", 1, 2), Status.UNKNOWN_ROUTE);
+        assertEquals(network.tryAddTrain("t19", 1, 9), Status.OK);
+        assertEquals(network.tryAddTrain("t18", 1, 8), Status.SECTION_OCCUPIED);
+        assertEquals(network.tryAddTrain("t19", 3, 4), Status.NAME_IN_USE);
+        network.moveTrains(new String[]{"t19"});
+        assertEquals(network.tryAddTrain("t92", 9, 2), Status.CONSTRAINT_BLOCKED);
+        assertNull(network.getSection(9));
+        assertEquals(network.getSection(5), "t19");
+    }
+
+    //Check that a route whose key is the map's reserved key is unknown rather than read from an empty slot
+    @Test
+    public void testTryAddTrainReservedKey(){
+        InterlockingImpl network = new InterlockingImpl();
+        assertEquals(network.tryAddTrain("t", Integer.MIN_VALUE, 0), Status.UNKNOWN_ROUTE);
+        assertEquals(network.tryAddTrain("t", 1, 9), Status.OK);
+    }
+
+    //Check the outcome reported for each listed train
+    @Test
+    public void testTryMoveTrains(){
+        InterlockingImpl network = new InterlockingImpl();
+        network.addTrain("x18", 1, 8);
+        network.moveTrains(new String[]{"x18"});
+        network.addTrain("y18", 1, 8);
+        network.addTrain("c34", 3, 4);
+        Status[] outcomes = new Status[4];
+        assertEquals(network.tryMoveTrains(new String[]{"c34", "y18", "gone", "c34"}, outcomes), 0);
+        assertArrayEquals(outcomes, new Status[]{Status.PRIORITY_BLOCKED, Status.SECTION_OCCUPIED,
+                Status.NOT_IN_SERVICE, Status.PRIORITY_BLOCKED});
+
+        network.setMoveOrder(MoveOrder.CASCADE);
+        assertEquals(network.tryMoveTrains(new String[]{"c34", "y18", "x18"}, outcomes), 3);
+        assertArrayEquals(outcomes, new Status[]{Status.OK, Status.OK, Status.OK, Status.PRIORITY_BLOCKED});
+        assertEquals(network.tryMoveTrains(new String[]{"c34", "c34"}, null), 1);
+        assertEquals(network.getTrain("c34"), -1);
+    }
+
+    //Check that exited trains are reported until they fall out of the history
+    @Test
+    public void testExitHistory(){
+        InterlockingImpl network = new InterlockingImpl(Topology.corridor(), 1);
+        network.addTrain("a34", 3, 4);
+        network.moveTrains(new String[]{"a34"});
+        assertEquals(network.trainStatus("a34"), Status.OK);
+        network.moveTrains(new String[]{"a34"});
+        assertEquals(network.trainStatus("a34"), Status.EXITED);
+        assertEquals(network.getTrain("a34"), -1);
+        network.addTrain("b34", 3, 4);
+        network.moveTrains(new String[]{"b34"});
+        network.moveTrains(new String[]{"b34"});
+        assertEquals(network.trainStatus("a34"), Status.NOT_IN_SERVICE);
+        assertEquals(network.trainStatus("b34"), Status.EXITED);
+        try {
+            network.getTrain("a34");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(network.trainStatus("b34"), Status.EXITED);
+        }
+    }
+
+    //Check that a long run with fresh names only remembers the history
+    @Test
+    public void testLongRun(){
+        InterlockingImpl network = new InterlockingImpl(Topology.corridor(), 16);
+        for (int i = 0; i < 10000; i++) {
+            String[] name = {"t" + i};
+            network.addTrain(name[0], 3, 4);
+            network.moveTrains(name);
+            network.moveTrains(name);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(network.trainStatus("t" + i), i < 10000 - 16 ? Status.NOT_IN_SERVICE : Status.EXITED);
+        }
+    }
+
+    //Check the bulk occupancy snapshot and that its version only changes when trains do
+    @Test
+    public void testOccupancySnapshot(){
+        InterlockingImpl network = new InterlockingImpl();
+        Topology topology = Topology.corridor();
+        long[] bits = new long[1];
+        String[] names = new String[topology.sectionCount()];
+        long empty = network.getOccupancy(bits);
+        assertEquals(bits[0], 0L);
+        network.addTrain("t18", 1, 8);
+        network.addTrain("c34", 3, 4);
+        long added = network.getOccupants(names);
+        assertEquals(added, empty + 2);
+        assertEquals(names[topology.sectionIndex(1)], "t18");
+        assertEquals(names[topology.sectionIndex(3)], "c34");
+        network.moveTrains(new String[]{"t18"});
+        assertEquals(network.getOccupancy(bits), added + 1);
+        assertEquals(bits[0], 1L << topology.sectionIndex(5) | 1L << topology.sectionIndex(3));
+        network.getOccupants(names);
+        assertNull(names[topology.sectionIndex(1)]);
+        assertEquals(names[topology.sectionIndex(5)], "t18");
+        //A batch in which nobody moves leaves the version alone
+        network.addTrain("t19", 1, 9);
+        long before = network.getVersion();
+        network.tryAddTrain("t29", 1, 9);
+        assertEquals(network.getVersion(), before);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOccupancyBufferTooSmall(){
+        new InterlockingImpl().getOccupants(new String[3]);
+    }
+
+    //Check listeners receive the changes of each call as one batch
+    @Test
+    public void testListener(){
+        InterlockingImpl network = new InterlockingImpl();
+        List<String> received = new ArrayList<>();
+        OccupancyListener listener = events -> {
+            StringBuilder batch = new StringBuilder();
+            for (int i = 0; i < events.size(); i++) {
+                batch.append(events.change(i)).append(' ').append(events.section(i)).append(' ')
+                        .append(events.trainName(i)).append(';');
+            }
+            received.add(batch.append(events.getVersion()).toString());
+        };
+        network.subscribe(listener);
+        network.addTrain("c34", 3, 4);
+        network.addTrain("t18", 1, 8);
+        network.moveTrains(new String[]{"c34", "t18"});
+        network.moveTrains(new String[]{"c34"});
+        //Nothing moves, so nothing is delivered
+        network.tryAddTrain("t19", 1, 9);
+        network.tryAddTrain("t58", 5, 8);
+        network.unsubscribe(listener);
+        network.moveTrains(new String[]{"t18"});
+        assertEquals(received, Arrays.asList(
+                "ENTER 3 c34;1",
+                "ENTER 1 t18;2",
+                "LEAVE 1 t18;ENTER 5 t18;LEAVE 3 c34;ENTER 4 c34;4",
+                "LEAVE 4 c34;EXIT 4 c34;5",
+                "ENTER 1 t19;6"));
+    }
+
+    //Check a coalescing listener reports the final state of every changed section
+    @Test
+    public void testCoalescingListener() throws InterruptedException {
+        InterlockingImpl network = new InterlockingImpl();
+        Map<Integer, String> state = new HashMap<>();
+        CountDownLatch release = new CountDownLatch(1);
+        CoalescingListener listener = new CoalescingListener(network.getTopology(), events -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (int i = 0; i < events.size(); i++) {
+                state.put(events.section(i), events.trainName(i));
+            }
+        });
+        network.subscribe(listener);
+        for (int i = 0; i < 100; i++) {
+            String[] name = {"c" + i};
+            network.addTrain(name[0], 3, 4);
+            network.moveTrains(name);
+            network.moveTrains(name);
+        }
+        network.addTrain("t18", 1, 8);
+        network.moveTrains(new String[]{"t18"});
+        release.countDown();
+        network.unsubscribe(listener);
+        listener.close();
+        assertNull(state.get(3));
+        assertNull(state.get(4));
+        assertNull(state.get(1));
+        assertEquals(state.get(5), "t18");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testConcurrentSubscription(){
+        new ConcurrentInterlocking().subscribe(events -> {});
+    }
+
+    //Check reset returns the interlocking to its initial state
+    @Test
+    public void testReset(){
+        InterlockingImpl network = new InterlockingImpl();
+        network.addTrain("t18", 1, 8);
+        network.addTrain("c34", 3, 4);
+        network.moveTrains(new String[]{"t18", "c34"});
+        network.moveTrains(new String[]{"c34"});
+        network.reset();
+        assertEquals(network.getVersion(), 0L);
+        assertEquals(network.trainStatus("c34"), Status.NOT_IN_SERVICE);
+        assertEquals(network.trainStatus("t18"), Status.NOT_IN_SERVICE);
+        for (int section = 1; section <= 11; section++) {
+            assertNull(network.getSection(section));
+        }
+        //Nothing left of the rule counters: a freight train may enter and move
+        network.addTrain("c43", 4, 3);
+        assertEquals(network.moveTrains(new String[]{"c43"}), 1);
+    }
+}
+
@@ -0,0 +1,165 @@
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class InterlockingMetrics_Test {
+    //Test moves, held trains and entries are counted per transition and section, with the reason for each
+    @Test
+    public void testCounters() {
+        InterlockingImpl interlocking = new InterlockingImpl();
+        InterlockingMetrics metrics = new InterlockingMetrics(interlocking.getTopology(), 1);
+        interlocking.setMetrics(metrics);
+        interlocking.addTrain("a", 3, 4);
+        interlocking.addTrain("p", 1, 8);
+        assertEquals(interlocking.tryAddTrain("b", 4, 3), Status.CONSTRAINT_BLOCKED);
+        assertEquals(interlocking.tryAddTrain("c", 1, 9), Status.SECTION_OCCUPIED);
+        assertEquals(interlocking.tryAddTrain("c", 2, 9), Status.UNKNOWN_ROUTE);
+
+        //a yields to p, then c is held behind p
+        Status[] outcomes = new Status[1];
+        assertEquals(interlocking.tryMoveTrains(new String[]{"a"}, outcomes), 0);
+        assertEquals(outcomes[0], Status.PRIORITY_BLOCKED);
+        assertEquals(interlocking.moveTrains(new String[]{"p"}), 1);
+        assertEquals(interlocking.moveTrains(new String[]{"a"}), 1);
+        interlocking.addTrain("c", 1, 9);
+        assertEquals(interlocking.moveTrains(new String[]{"c"}), 0);
+
+        InterlockingMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(snapshot.getMoves(1, 5), 1);
+        assertEquals(snapshot.getMoves(3, 4), 1);
+        assertEquals(snapshot.getMoves(), 2);
+        assertEquals(snapshot.getPriorityBlocks(3, 4), 1);
+        assertEquals(snapshot.getOccupiedBlocks(1, 5), 1);
+        assertEquals(snapshot.getPointBlocks(1, 5), 0);
+        assertEquals(snapshot.getBlocks(), 2);
+        assertEquals(snapshot.getEntries(1), 2);
+        assertEquals(snapshot.getEntries(3), 1);
+        assertEquals(snapshot.getEntries(), 3);
+        assertEquals(snapshot.getConstraintRejections(4), 1);
+        assertEquals(snapshot.getOccupiedRejections(1), 1);
+        assertEquals(snapshot.getLockedRejections(1), 0);
+        assertEquals(snapshot.getAddLatency().count(), 6);
+        assertEquals(snapshot.getMoveLatency().count(), 4);
+    }
+
+    //Test a snapshot keeps its values while recording goes on, and clearing starts the counts again
+    @Test
+    public void testSnapshot() {
+        InterlockingImpl interlocking = new InterlockingImpl();
+        InterlockingMetrics metrics = new InterlockingMetrics(interlocking.getTopology());
+        interlocking.setMetrics(metrics);
+        interlocking.addTrain("t1", 3, 4);
+        InterlockingMetrics.Snapshot before = metrics.snapshot();
+        interlocking.moveTrains(new String[]{"t1"});
+        interlocking.moveTrains(new String[]{"t1"});
+        assertEquals(before.getMoves(), 0);
+        assertEquals(metrics.snapshot().getMoves(3, 4), 1);
+        assertEquals(metrics.snapshot().getMoves(4, -1), 1);
+
+        metrics.clear();
+        InterlockingMetrics.Snapshot cleared = metrics.snapshot();
+        assertEquals(cleared.getMoves(), 0);
+        assertEquals(cleared.getEntries(3), 0);
+        assertEquals(cleared.getMoveLatency().count(), 0);
+
+        //Without metrics nothing is recorded
+        interlocking.setMetrics(null);
+        interlocking.addTrain("t2", 3, 4);
+        assertEquals(metrics.snapshot().getEntries(), 0);
+    }
+
+    //Test point and route locking rejections are told apart from occupied sections
+    @Test
+    public void testPointsAndLocks() {
+        PointInterlocking points = new PointInterlocking();
+        InterlockingMetrics metrics = new InterlockingMetrics(points.getTopology(), 1);
+        points.setMetrics(metrics);
+        points.addTrain("t1", 3, 4);
+        points.moveTrains(new String[]{"t1"});
+        assertEquals(metrics.snapshot().getPointBlocks(3, 4), 1);
+
+        RouteLockingInterlocking locking = new RouteLockingInterlocking();
+        metrics = new InterlockingMetrics(locking.getTopology(), 1);
+        locking.setMetrics(metrics);
+        locking.addTrain("t1", 1, 8);
+        locking.moveTrains(new String[]{"t1"});
+        assertEquals(locking.tryAddTrain("t2", 1, 9), Status.ROUTE_LOCKED);
+        assertEquals(metrics.snapshot().getLockedRejections(1), 1);
+    }
+
+    //Test trains moved from many threads are all counted
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        ConcurrentInterlocking interlocking = new ConcurrentInterlocking();
+        InterlockingMetrics metrics = new InterlockingMetrics(interlocking.getTopology(), 4);
+        interlocking.setMetrics(metrics);
+        int[][] routes = {{3, 4}, {4, 3}, {9, 2}, {10, 2}};
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger adds = new AtomicInteger();
+        AtomicInteger moves = new AtomicInteger();
+        Thread[] threads = new Thread[2];
+        for (int t = 0; t < threads.length; t++) {
+            int[] route = routes[t * 2];
+            String name = "t" + t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 1000; i++) {
+                        adds.incrementAndGet();
+                        while (interlocking.tryAddTrain(name, route[0], route[1]) != Status.OK) {
+                            adds.incrementAndGet();
+                            Thread.yield();
+                        }
+                        while (interlocking.trainStatus(name) == Status.OK) {
+                            moves.incrementAndGet();
+                            interlocking.tryMoveTrains(new String[]{name}, null);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("Worker failed", failure.get());
+        }
+        InterlockingMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(snapshot.getEntries(), 2000);
+        assertEquals(snapshot.getMoves(3, 4), 1000);
+        assertEquals(snapshot.getMoves(9, 6), 1000);
+        //Every call is timed once, including the adds taking the stripe locks
+        assertEquals(snapshot.getAddLatency().count(), adds.get());
+        assertEquals(snapshot.getMoveLatency().count(), moves.get());
+    }
+
+    //Test moves by handle are timed like moves by name
+    @Test
+    public void testHandleLatency() {
+        HandleInterlocking interlocking = new HandleInterlocking();
+        InterlockingMetrics metrics = new InterlockingMetrics(interlocking.getTopology(), 1);
+        interlocking.setMetrics(metrics);
+        int handle = interlocking.addTrainHandle("a", 3, 4);
+        interlocking.moveTrains(new int[]{handle});
+        interlocking.moveTrains(new String[]{"a"});
+        InterlockingMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(snapshot.getAddLatency().count(), 1);
+        assertEquals(snapshot.getMoveLatency().count(), 2);
+        assertEquals(snapshot.getMoves(3, 4), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMovement() {
+        new InterlockingMetrics(Topology.corridor()).snapshot().getMoves(1, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOtherTopology() {
+        new InterlockingImpl().setMetrics(new InterlockingMetrics(Topology.parse(Topology.CORRIDOR)));
+    }
+}
@@ -0,0 +1,152 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JournaledInterlocking_Test {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    //Test reopening the journal rebuilds the trains, the exits and the move order
+    @Test
+    public void testReplay() throws IOException {
+        Path path = folder.newFile("journal").toPath();
+        try (JournaledInterlocking network = new JournaledInterlocking(path)) {
+            assertEquals(network.getReplayed(), 0);
+            network.addTrain("t18", 1, 8);
+            network.addTrain("c34", 3, 4);
+            network.setMoveOrder(MoveOrder.CASCADE);
+            network.moveTrains(new String[]{"t18", "c34"});
+            network.moveTrains(new String[]{"c34"});
+            //Rejected commands are not recorded
+            assertEquals(network.tryAddTrain("t19", 5, 9), Status.UNKNOWN_ROUTE);
+            assertEquals(network.tryMoveTrains(new String[]{"none"}, null), 0);
+        }
+        try (JournaledInterlocking network = new JournaledInterlocking(path)) {
+            assertEquals(network.getReplayed(), 5);
+            assertEquals(network.getTrain("t18"), 5);
+            assertEquals(network.getTrain("c34"), -1);
+            assertEquals(network.getMoveOrder(), MoveOrder.CASCADE);
+            //New commands are appended after the replayed ones
+            network.addTrain("c34", 3, 4);
+            network.moveTrains(new String[]{"t18"});
+        }
+        try (JournaledInterlocking network = new JournaledInterlocking(path)) {
+            assertEquals(network.getReplayed(), 7);
+            assertEquals(network.getSection(3), "c34");
+            assertEquals(network.getTrain("t18"), 8);
+        }
+    }
+
+    //Test the ids of forgotten names are reused, so a stream of new names keeps the id table bounded
+    @Test
+    public void testIdRecycling() throws IOException {
+        Path path = folder.newFile("recycled").toPath();
+        int trains = 3 * TrainRegistry.DEFAULT_HISTORY;
+        try (JournaledInterlocking network = new JournaledInterlocking(path)) {
+            for (int i = 0; i < trains; i++) {
+                network.addTrain("t" + i, 3, 4);
+                network.moveTrains(new String[]{"t" + i});
+                network.moveTrains(new String[]{"t" + i});
+            }
+            network.addTrain("last", 3, 4);
+            assertTrue(network.getJournalIds() <= TrainRegistry.DEFAULT_HISTORY + 1);
+        }
+        try (JournaledInterlocking network = new JournaledInterlocking(path)) {
+            assertEquals(network.getReplayed(), 3L * trains + 1);
+            assertEquals(network.getSection(3), "last");
+            assertEquals(network.trainStatus("t" + (trains - 1)), Status.EXITED);
+            assertEquals(network.trainStatus("t0"), Status.NOT_IN_SERVICE);
+            assertTrue(network.getJournalIds() <= TrainRegistry.DEFAULT_HISTORY + 1);
+            network.moveTrains(new String[]{"last"});
+            network.moveTrains(new String[]{"last"});
+            assertEquals(network.trainStatus("last"), Status.EXITED);
+        }
+    }
+
+    //Test a long random run replays to the same state as a plain interlocking given the same commands
+    @Test
+    public void testLongReplay() throws IOException {
+        Path path = folder.newFile("long").toPath();
+        int[][] routes = {{1, 8}, {1, 9}, {3, 4}, {4, 3}, {9, 2}, {10, 2}, {3, 11}, {11, 3}, {1, 2}};
+        Random random = new Random(11);
+        InterlockingImpl expected = new InterlockingImpl();
+        try (JournaledInterlocking network = new JournaledInterlocking(path)) {
+            for (int step = 0; step < 200000; step++) {
+                String name = "t" + random.nextInt(5000);
+                if (random.nextInt(3) == 0) {
+                    int[] route = routes[random.nextInt(routes.length)];
+                    assertEquals(network.tryAddTrain(name, route[0], route[1]),
+                            expected.tryAddTrain(name, route[0], route[1]));
+                } else {
+                    String[] names = {name, "t" + random.nextInt(5000), "t" + random.nextInt(5000)};
+                    assertEquals(network.tryMoveTrains(names, null), expected.tryMoveTrains(names, null));
+                }
+            }
+        }
+        try (JournaledInterlocking network = new JournaledInterlocking(path)) {
+            for (int section = 1; section <= 11; section++) {
+                assertEquals(network.getSection(section), expected.getSection(section));
+            }
+            for (int i = 0; i < 5000; i++) {
+                assertEquals(network.trainStatus("t" + i), expected.trainStatus("t" + i));
+            }
+        }
+    }
+
+    //Test a journal with an unknown train id, move order or a truncated move is rejected as corrupt
+    @Test
+    public void testCorruptJournal() throws IOException {
+        Path path = folder.newFile("corrupt").toPath();
+        try (JournaledInterlocking network = new JournaledInterlocking(path)) {
+            network.addTrain("t18", 1, 8);
+            network.setMoveOrder(MoveOrder.CASCADE);
+            network.moveTrains(new String[]{"t18"});
+        }
+        //The records are NAME, the name, ADD, ORDER and MOVE followed by its ids
+        assertCorrupt(path, 36, 7);
+        assertCorrupt(path, 52, MoveOrder.values().length);
+        assertCorrupt(path, 52, -1);
+        assertCorrupt(path, 80, 1);
+        assertCorrupt(path, 68, -1);
+        assertCorrupt(path, 68, Integer.MAX_VALUE);
+        assertCorrupt(path, 8, Integer.MAX_VALUE);
+        try (JournaledInterlocking network = new JournaledInterlocking(path)) {
+            assertEquals(network.getReplayed(), 3);
+            assertEquals(network.getSection(5), "t18");
+        }
+    }
+
+    private static void assertCorrupt(Path path, long at, int value) throws IOException {
+        int original = writeInt(path, at, value);
+        try {
+            new JournaledInterlocking(path).close();
+            fail("Corrupt journal was replayed");
+        } catch (IllegalStateException e) {
+            //Expected
+        } finally {
+            writeInt(path, at, original);
+        }
+    }
+
+    private static int writeInt(Path path, long at, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(buffer, at);
+            int original = buffer.getInt(0);
+            buffer.clear();
+            buffer.putInt(0, value);
+            channel.write(buffer, at);
+            return original;
+        }
+    }
+}
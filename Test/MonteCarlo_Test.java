@@ -0,0 +1,55 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MonteCarlo_Test {
+    private static MonteCarlo corridor() {
+        MonteCarlo monteCarlo = new MonteCarlo(Topology.corridor());
+        for (int section = 1; section <= 11; section++) {
+            monteCarlo.setTraversalTime(section, 30);
+        }
+        for (int entry : new int[]{1, 3, 4, 9, 10, 11}) {
+            monteCarlo.setArrivals(entry, 120, 600);
+        }
+        return monteCarlo;
+    }
+
+    //Test the results depend only on the seed, not on the number of threads
+    @Test
+    public void testReproducible() {
+        MonteCarlo monteCarlo = corridor();
+        MonteCarlo.Result single = monteCarlo.run(40, 24 * 3600, 42, 1);
+        MonteCarlo.Result parallel = monteCarlo.run(40, 24 * 3600, 42, 4);
+        assertEquals(single.getScenarios(), 40);
+        assertEquals(parallel.getScenarios(), 40);
+        assertEquals(parallel.getEntered(), single.getEntered());
+        assertEquals(parallel.getExited(), single.getExited());
+        assertEquals(parallel.getDelays().percentile(99), single.getDelays().percentile(99));
+        assertEquals(parallel.getBlockingTime(3, 4), single.getBlockingTime(3, 4));
+        assertEquals(parallel.getMaxBlockingTime(9, 6), single.getMaxBlockingTime(9, 6));
+        assertNotEquals(monteCarlo.run(40, 24 * 3600, 43, 4).getExited(), single.getExited());
+    }
+
+    //Test a busy corridor reports throughput, delay percentiles and the starvation of yielding movements
+    @Test
+    public void testStatistics() {
+        MonteCarlo.Result result = corridor().run(200, 24 * 3600, 7);
+        assertEquals(result.getScenarios(), 200);
+        assertEquals(result.getScenarioExits().count(), 200);
+        assertEquals(result.getDelays().count(), result.getExited());
+        assertTrue(result.getThroughput(3600) > 0);
+        assertTrue(result.getDelays().percentile(50) <= result.getDelays().percentile(99));
+        //Freight movements yield to passenger trains, so they are held at times
+        assertTrue(result.getBlockingTime(3, 4) + result.getBlockingTime(4, 3) > 0);
+        //Trains from 9 to 6 yield to 5-8 and 10-6, so they are held, and the longest hold is at least the mean
+        long longest = result.getMaxBlockingTime(9, 6);
+        assertTrue(longest > 0);
+        assertTrue(longest <= result.getBlockingTime(9, 6));
+        assertTrue(longest >= result.getBlockingTime(9, 6) / result.getEntered());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoRouteFromSection() {
+        new MonteCarlo(Topology.corridor()).setArrivals(5, 10, 20);
+    }
+}
@@ -0,0 +1,92 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PetriNetInterlocking_Test {
+    @Test
+    public void testMovePriority() {
+        Interlocking network = new PetriNetInterlocking();
+        network.addTrain("c34", 3, 4);
+        network.addTrain("c18", 1, 8);
+        network.moveTrains(new String[]{"c34"});
+        assertEquals(network.getTrain("c34"), 3);
+        network.moveTrains(new String[]{"c34", "c18"});
+        assertEquals(network.getTrain("c34"), 4);
+        assertEquals(network.getTrain("c18"), 5);
+        assertEquals(network.getSection(5), "c18");
+        network.moveTrains(new String[]{"c34"});
+        assertEquals(network.getTrain("c34"), -1);
+        assertNull(network.getSection(4));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddConstraint() {
+        Interlocking network = new PetriNetInterlocking();
+        network.addTrain("a19", 1, 9);
+        network.moveTrains(new String[]{"a19"});
+        network.addTrain("a92", 9, 2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddTrainFull() {
+        Interlocking network = new PetriNetInterlocking();
+        network.addTrain("t18", 1, 8);
+        network.addTrain("t19", 1, 9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddTrainInvalidPath() {
+        new PetriNetInterlocking().addTrain("ac", 1, 3);
+    }
+
+    //Test an add rejected for its name leaves the train already using it and the entry section untouched
+    @Test
+    public void testAddNameInUse() {
+        Interlocking network = new PetriNetInterlocking();
+        network.addTrain("t", 3, 4);
+        try {
+            network.addTrain("t", 1, 8);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(), "Train name already in use.");
+        }
+        assertEquals(network.getTrain("t"), 3);
+        assertNull(network.getSection(1));
+        network.addTrain("u", 1, 8);
+        assertEquals(network.getSection(1), "u");
+    }
+
+    //Test the net-backed interlocking agrees with InterlockingImpl on random traffic
+    @Test
+    public void testAgreesWithInterlockingImpl() {
+        int[][] routes = {{1, 8}, {1, 9}, {3, 4}, {4, 3}, {9, 2}, {10, 2}, {3, 11}, {11, 3}};
+        Random random = new Random(42);
+        Interlocking expected = new InterlockingImpl();
+        Interlocking actual = new PetriNetInterlocking();
+        for (int step = 0; step < 20000; step++) {
+            String name = "t" + random.nextInt(12);
+            if (random.nextInt(3) == 0) {
+                int[] route = routes[random.nextInt(routes.length)];
+                assertEquals(outcome(() -> expected.addTrain(name, route[0], route[1])),
+                        outcome(() -> actual.addTrain(name, route[0], route[1])));
+            } else {
+                String[] names = {name, "t" + random.nextInt(12), "t" + random.nextInt(12)};
+                assertEquals(outcome(() -> expected.moveTrains(names)), outcome(() -> actual.moveTrains(names)));
+            }
+            for (int section = 1; section <= 11; section++) {
+                assertEquals(expected.getSection(section), actual.getSection(section));
+            }
+        }
+    }
+
+    private static String outcome(Runnable action) {
+        try {
+            action.run();
+            return "ok";
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+}
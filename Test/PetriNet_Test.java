@@ -0,0 +1,60 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PetriNet_Test {
+    //Two transitions: t0 moves a token from p0 to p1, t1 needs p1 and is inhibited by p2
+    private PetriNet newNet() {
+        return new PetriNet(3,
+                new int[][]{{0}, {1}},
+                new int[][]{{1}, {0}},
+                new int[][]{{}, {2}});
+    }
+
+    //Test enabledness follows the marking
+    @Test
+    public void testFire() {
+        PetriNet net = newNet();
+        assertEquals(net.enabledCount(), 0);
+        net.setTokens(0, 1);
+        assertTrue(net.isEnabled(0));
+        assertEquals(net.nextEnabled(0), 0);
+        net.fire(0);
+        assertFalse(net.isEnabled(0));
+        assertTrue(net.isEnabled(1));
+        assertEquals(net.nextEnabled(0), 1);
+        assertEquals(net.tokens(1), 1);
+    }
+
+    //Test an inhibitor place disables a transition while marked
+    @Test
+    public void testInhibitor() {
+        PetriNet net = newNet();
+        net.setTokens(1, 1);
+        net.setTokens(2, 1);
+        assertFalse(net.isEnabled(1));
+        assertEquals(net.deficit(1), 1);
+        net.setTokens(2, 0);
+        assertTrue(net.isEnabled(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFireDisabled() {
+        newNet().fire(1);
+    }
+
+    //Test the corridor net starts with exactly the eight entry transitions enabled
+    @Test
+    public void testRailNet() {
+        RailNet railNet = new RailNet(Topology.corridor());
+        PetriNet net = railNet.newNet();
+        assertEquals(net.enabledCount(), 8);
+        int route = Topology.corridor().route(3, 4);
+        net.fire(railNet.entryTransition(route));
+        assertEquals(net.tokens(railNet.trainPlace(route, 0)), 1);
+        assertFalse(net.isEnabled(railNet.entryTransition(Topology.corridor().route(4, 3))));
+        assertFalse(net.isEnabled(railNet.entryTransition(Topology.corridor().route(3, 11))));
+        assertEquals(railNet.transitionRoute(railNet.stepTransition(route, 1)), route);
+        assertEquals(railNet.transitionStep(railNet.stepTransition(route, 1)), 1);
+    }
+}
@@ -0,0 +1,124 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PointInterlocking_Test {
+    //Two lines joining at section 3 through point 1, which takes four ticks to throw
+    private static final String JUNCTION = "sections 1..6\nroute 1 3 5\nroute 2 3 6\npoint 1 4 : 1 3 | 2 3\n";
+
+    //Test a train waits while the point it needs is thrown, and the throw is counted
+    @Test
+    public void testThrowTime() {
+        PointInterlocking interlocking = new PointInterlocking();
+        interlocking.addTrain("t1", 3, 4);
+        assertTrue(interlocking.isThrowing(1));
+        Status[] outcomes = new Status[1];
+        assertEquals(interlocking.tryMoveTrains(new String[]{"t1"}, outcomes), 0);
+        assertEquals(outcomes[0], Status.POINT_BLOCKED);
+        interlocking.advanceTo(2);
+        assertEquals(interlocking.moveTrains(new String[]{"t1"}), 0);
+        assertEquals(interlocking.getNextSettleTime(), 3);
+
+        interlocking.advanceTo(3);
+        assertFalse(interlocking.isThrowing(1));
+        assertEquals(interlocking.getPosition(1), 1);
+        assertEquals(interlocking.moveTrains(new String[]{"t1"}), 1);
+        assertEquals(interlocking.getThrows(1), 1);
+        assertEquals(interlocking.getPassages(1), 1);
+        interlocking.advanceTo(6);
+        assertEquals(interlocking.getThrowingTime(1), 3);
+        assertEquals(interlocking.getUtilization(1), 0.5, 1e-9);
+        assertEquals(interlocking.getThrows(2), 0);
+    }
+
+    //Test a train for the current position held by an occupied section does not keep the point from the train ahead
+    @Test
+    public void testBlockedTrainDoesNotHoldPoint() {
+        PointInterlocking interlocking = new PointInterlocking();
+        assertEquals(interlocking.tryAddTrain("Y", 11, 3), Status.OK);
+        assertEquals(interlocking.moveTrains(new String[]{"Y"}), 1);
+        assertEquals(interlocking.tryAddTrain("X", 3, 4), Status.OK);
+        //Y waits on 7 for the point's current position, but cannot enter 3 until X has left it through the point
+        for (int tick = 1; tick <= 50; tick++) {
+            interlocking.advanceTo(tick);
+            interlocking.tryMoveTrains(new String[]{"X", "Y"}, null);
+        }
+        assertEquals(interlocking.trainStatus("X"), Status.EXITED);
+        assertEquals(interlocking.trainStatus("Y"), Status.EXITED);
+        assertEquals(interlocking.getThrows(1), 2);
+    }
+
+    //Test trains for the position the point is set to pass as a batch before it is thrown, and only then
+    @Test
+    public void testBatching() {
+        PointInterlocking interlocking = new PointInterlocking(Topology.parse(JUNCTION));
+        interlocking.addTrain("a", 1, 5);
+        assertEquals(interlocking.moveTrains(new String[]{"a"}), 1);
+        interlocking.addTrain("c", 1, 5);
+        assertEquals(interlocking.moveTrains(new String[]{"a"}), 1);
+        interlocking.addTrain("b", 2, 6);
+
+        //The point is locked for c, so b waits without the point moving, and is thrown once c has passed
+        assertFalse(interlocking.isThrowing(1));
+        Status[] outcomes = new Status[3];
+        assertEquals(interlocking.tryMoveTrains(new String[]{"b", "c"}, outcomes), 1);
+        assertEquals(outcomes[0], Status.POINT_BLOCKED);
+        assertTrue(interlocking.isThrowing(1));
+        assertEquals(interlocking.moveTrains(new String[]{"a", "c"}), 2);
+        assertEquals(interlocking.tryMoveTrains(new String[]{"b"}, outcomes), 0);
+        assertEquals(outcomes[0], Status.POINT_BLOCKED);
+
+        //A train arriving for the old position during the throw waits for the batch on the new one
+        interlocking.addTrain("d", 1, 5);
+        interlocking.advanceTo(4);
+        assertEquals(interlocking.getPosition(1), 1);
+        assertEquals(interlocking.tryMoveTrains(new String[]{"d", "b"}, outcomes), 1);
+        assertEquals(outcomes[0], Status.POINT_BLOCKED);
+        assertEquals(interlocking.getThrows(1), 2);
+        assertEquals(interlocking.getNextSettleTime(), 8);
+        assertEquals(interlocking.getPassages(1), 3);
+    }
+
+    //Test a simulation holds trains while points are thrown and wakes them when the points settle
+    @Test
+    public void testSimulation() {
+        Simulation simulation = new Simulation(new PointInterlocking());
+        simulation.addTrain(0, 3, 4);
+        simulation.run(100);
+        //The train is ready to move at tick 1, but point 1 only settles at tick 3
+        assertEquals(simulation.getExited(), 1);
+        assertEquals(simulation.getJourneyDelay(), 2);
+
+        //Alternating services on the crossing all get through, but are delayed by point throws
+        Simulation free = new Simulation();
+        Simulation thrown = new Simulation(new PointInterlocking());
+        for (Simulation run : new Simulation[]{free, thrown}) {
+            run.addService(0, 4, 250, 1, 8);
+            run.addService(2, 4, 250, 3, 4);
+            run.run(2000);
+        }
+        assertEquals(thrown.getExited(), free.getExited());
+        assertTrue(thrown.getJourneyDelay() > free.getJourneyDelay());
+    }
+
+    //Test a reset returns the points and their statistics to the start
+    @Test
+    public void testReset() {
+        PointInterlocking interlocking = new PointInterlocking();
+        interlocking.addTrain("t1", 3, 4);
+        interlocking.advanceTo(5);
+        interlocking.moveTrains(new String[]{"t1"});
+        interlocking.reset();
+        assertEquals(interlocking.getTime(), 0);
+        assertEquals(interlocking.getPosition(1), 0);
+        assertEquals(interlocking.getThrows(1), 0);
+        assertEquals(interlocking.getPassages(1), 0);
+        interlocking.addTrain("t1", 1, 8);
+        assertEquals(interlocking.moveTrains(new String[]{"t1"}), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownPoint() {
+        new PointInterlocking().getThrows(3);
+    }
+}
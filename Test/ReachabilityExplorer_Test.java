@@ -0,0 +1,88 @@
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ReachabilityExplorer_Test {
+    //Test the corridor's rules are safe and free of deadlocks
+    @Test
+    public void testCorridorIsSafe() {
+        ReachabilityExplorer explorer = new ReachabilityExplorer(new RailNet(Topology.corridor()), 1 << 20, 10, true);
+        ReachabilityExplorer.Result result = explorer.explore();
+        assertTrue(result.complete);
+        assertTrue(result.violations.isEmpty());
+        assertEquals(result.states, 57816);
+    }
+
+    //Test a single worker visits the same states as the parallel search
+    @Test
+    public void testSequentialMatchesParallel() {
+        ReachabilityExplorer explorer = new ReachabilityExplorer(new RailNet(Topology.corridor()), 1 << 20, 10, false);
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            assertEquals(explorer.explore(pool).states, explorer.explore().states);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    //Test head-on routes without entry constraints deadlock, with the entries leading there as the trace
+    @Test
+    public void testDeadlock() {
+        Topology topology = Topology.parse("sections 3 4\nroute 3 4\nroute 4 3\n");
+        ReachabilityExplorer.Result result = new ReachabilityExplorer(new RailNet(topology), 100, 10, true).explore();
+        assertEquals(result.violations.size(), 1);
+        ReachabilityExplorer.Violation violation = result.violations.get(0);
+        assertEquals(violation.kind, ReachabilityExplorer.Kind.DEADLOCK);
+        assertEquals(violation.trace.size(), 2);
+        assertTrue(violation.trace.contains("enter 3-4"));
+    }
+
+    //Test the search stops once the visited set is full
+    @Test
+    public void testBoundedMemory() {
+        StringBuilder text = new StringBuilder("sections 1..400\n");
+        for (int i = 1; i < 400; i += 4) {
+            text.append("route ").append(i).append(' ').append(i + 1).append(' ').append(i + 2).append(' ')
+                    .append(i + 3).append('\n');
+        }
+        ReachabilityExplorer.Result result =
+                new ReachabilityExplorer(new RailNet(Topology.parse(text)), 100000, 10, false).explore();
+        assertFalse(result.complete);
+        assertEquals(result.states, 100000);
+    }
+
+    //Test a net missing its guards is caught breaking the section and entry constraint rules
+    @Test
+    public void testUnguardedNet() {
+        Topology topology = Topology.parse("sections 1..4\nroute 1 2 3\nroute 4 2\nconstraint 4 2 : 1 3\n");
+        RailNet unguarded = new RailNet(topology) {
+            @Override
+            public PetriNet newNet() {
+                //Every transition only moves its train token, ignoring free places and inhibitor arcs
+                int[][] inputs = new int[transitionCount()][];
+                int[][] outputs = new int[transitionCount()][];
+                int[][] inhibitors = new int[transitionCount()][0];
+                for (int t = 0; t < transitionCount(); t++) {
+                    int route = transitionRoute(t);
+                    int step = transitionStep(t);
+                    int length = topology.routePath(route).length;
+                    inputs[t] = step == -1 ? new int[0] : new int[]{trainPlace(route, step)};
+                    outputs[t] = step + 1 < length ? new int[]{trainPlace(route, step + 1)} : new int[0];
+                }
+                return new PetriNet(placeCount(), inputs, outputs, inhibitors);
+            }
+        };
+        ReachabilityExplorer.Result result = new ReachabilityExplorer(unguarded, 1000, 100, true).explore();
+        boolean conflict = false;
+        boolean constraint = false;
+        for (ReachabilityExplorer.Violation violation : result.violations) {
+            conflict |= violation.kind == ReachabilityExplorer.Kind.SECTION_CONFLICT;
+            constraint |= violation.kind == ReachabilityExplorer.Kind.CONSTRAINT_VIOLATION;
+            assertFalse(violation.trace.isEmpty());
+        }
+        assertTrue(conflict);
+        assertTrue(constraint);
+    }
+}
@@ -0,0 +1,110 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RouteFinder_Test {
+    private static final int[] SECTIONS = {1, 2, 3, 4, 5, 6};
+
+    //A diamond 1-2-4 and 1-3-4, with 4-5 onwards and 6 cut off
+    private static RouteFinder diamond(int cacheCapacity) {
+        return new RouteFinder(SECTIONS, new int[]{1, 1, 2, 3, 4}, new int[]{2, 3, 4, 4, 5}, cacheCapacity);
+    }
+
+    //Test routes are shortest paths through the earliest declared links
+    @Test
+    public void testShortestRoute() {
+        RouteFinder finder = diamond(16);
+        assertArrayEquals(finder.route(1, 5), new int[]{1, 2, 4, 5});
+        assertArrayEquals(finder.route(3, 5), new int[]{3, 4, 5});
+        //There is no route from a section to itself, as computeAll also has none
+        assertNull(finder.route(4, 4));
+        assertNull(finder.route(5, 1));
+        assertNull(finder.route(1, 6));
+    }
+
+    //Test lazily found routes are interned until they are evicted
+    @Test
+    public void testCacheEviction() {
+        RouteFinder finder = diamond(4);
+        int[] route = finder.route(1, 5);
+        assertSame(finder.route(1, 5), route);
+        finder.route(1, 4);
+        finder.route(2, 5);
+        finder.route(3, 5);
+        assertEquals(finder.cachedCount(), 4);
+
+        //The cache holds four routes, so a fifth replaces the least recently used, which is 1-4
+        finder.route(1, 5);
+        finder.route(1, 3);
+        assertEquals(finder.cachedCount(), 4);
+        assertSame(finder.route(1, 5), route);
+        finder.route(1, 4);
+        assertEquals(finder.cachedCount(), 4);
+    }
+
+    //Test computed routes are kept for good and lazily found ones keep their arrays when computed again
+    @Test
+    public void testComputeAll() {
+        RouteFinder finder = diamond(4);
+        int[] lazy = finder.route(1, 5);
+        int[][] routes = finder.computeAll(new int[]{1, 3}, new int[]{4, 5, 6}, 1);
+        assertEquals(routes.length, 6);
+        assertSame(routes[1], lazy);
+        assertArrayEquals(routes[3], new int[]{3, 4});
+        assertNull(routes[2]);
+        assertEquals(finder.pinnedCount(), 4);
+        for (int i = 0; i < 8; i++) {
+            finder.route(1, 2);
+            finder.route(2, 4);
+            finder.route(2, 5);
+            finder.route(4, 5);
+            finder.route(5, 4);
+        }
+        assertSame(finder.route(3, 5), routes[4]);
+    }
+
+    //Test a parallel search finds the same routes as a single thread
+    @Test
+    public void testParallelComputeAll() {
+        int size = 60;
+        int[] sections = new int[size * size];
+        int[] from = new int[2 * size * (size - 1)];
+        int[] to = new int[from.length];
+        int links = 0;
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                sections[row * size + column] = row * size + column;
+                if (column + 1 < size) {
+                    from[links] = row * size + column;
+                    to[links++] = row * size + column + 1;
+                }
+                if (row + 1 < size) {
+                    from[links] = row * size + column;
+                    to[links++] = (row + 1) * size + column;
+                }
+            }
+        }
+        int[] entries = new int[size];
+        int[] exits = new int[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = i * size;
+            exits[i] = i * size + size - 1;
+        }
+        int[][] single = new RouteFinder(sections, from, to, 0).computeAll(entries, exits, 1);
+        int[][] parallel = new RouteFinder(sections, from, to, 0).computeAll(entries, exits, 4);
+        for (int i = 0; i < single.length; i++) {
+            assertArrayEquals(parallel[i], single[i]);
+        }
+        assertEquals(single[size - 1].length, 2 * size - 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownLinkSection() {
+        new RouteFinder(SECTIONS, new int[]{1}, new int[]{7}, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownSection() {
+        diamond(4).route(1, 7);
+    }
+}
@@ -0,0 +1,88 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RouteLockingInterlocking_Test {
+    //Two routes crossing on section 2, with no entry constraints between them
+    private static final String CROSSING = "sections 1..5\nroute 1 2 3\nroute 4 2 5\n";
+
+    //Test a route stays locked ahead of its train and is released section by section
+    @Test
+    public void testSectionalRelease() {
+        RouteLockingInterlocking interlocking = new RouteLockingInterlocking();
+        interlocking.addTrain("t1", 1, 8);
+        assertTrue(interlocking.isLocked(8));
+        assertEquals(interlocking.tryAddTrain("t2", 1, 9), Status.ROUTE_LOCKED);
+
+        //Leaving 1 releases it, but the following train still needs 5
+        assertEquals(interlocking.moveTrains(new String[]{"t1"}), 1);
+        assertFalse(interlocking.isLocked(1));
+        assertFalse(interlocking.canSetRoute(1, 9));
+        assertEquals(interlocking.tryAddTrain("t3", 10, 2), Status.OK);
+
+        assertEquals(interlocking.moveTrains(new String[]{"t1"}), 1);
+        assertTrue(interlocking.canSetRoute(1, 9));
+        assertEquals(interlocking.tryAddTrain("t2", 1, 9), Status.OK);
+        assertEquals(interlocking.moveTrains(new String[]{"t1"}), 1);
+        assertFalse(interlocking.isLocked(8));
+    }
+
+    //Test crossing routes are kept apart even where no entry constraint names them
+    @Test
+    public void testCrossingRoutes() {
+        Topology topology = Topology.parse(CROSSING);
+        InterlockingImpl plain = new InterlockingImpl(topology);
+        plain.addTrain("t1", 1, 3);
+        assertEquals(plain.tryAddTrain("t2", 4, 5), Status.OK);
+
+        RouteLockingInterlocking interlocking = new RouteLockingInterlocking(topology);
+        interlocking.addTrain("t1", 1, 3);
+        try {
+            interlocking.addTrain("t2", 4, 5);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("locked"));
+        }
+        interlocking.moveTrains(new String[]{"t1"});
+        interlocking.moveTrains(new String[]{"t1"});
+        assertEquals(interlocking.tryAddTrain("t2", 4, 5), Status.OK);
+        assertFalse(interlocking.canSetRoute(1, 3));
+        assertFalse(interlocking.canSetRoute(1, 5));
+    }
+
+    //Test no two trains ever hold the same section, and restoring or resetting keeps the locks consistent
+    @Test
+    public void testRandomTraffic() {
+        int[][] routes = {{1, 8}, {1, 9}, {3, 4}, {4, 3}, {9, 2}, {10, 2}, {3, 11}, {11, 3}};
+        Random random = new Random(5);
+        RouteLockingInterlocking interlocking = new RouteLockingInterlocking();
+        for (int step = 0; step < 20000; step++) {
+            if (step == 10000) {
+                RouteLockingInterlocking restored = new RouteLockingInterlocking();
+                restored.restore(interlocking.checkpoint());
+                for (int id = 1; id <= 11; id++) {
+                    assertEquals(restored.isLocked(id), interlocking.isLocked(id));
+                }
+                interlocking = restored;
+            }
+            String name = "t" + random.nextInt(20);
+            if (random.nextInt(3) == 0) {
+                int[] route = routes[random.nextInt(routes.length)];
+                interlocking.tryAddTrain(name, route[0], route[1]);
+            } else {
+                interlocking.tryMoveTrains(new String[]{name}, new Status[1]);
+            }
+            for (int id = 1; id <= 11; id++) {
+                if (interlocking.getSection(id) != null) {
+                    assertTrue(interlocking.isLocked(id));
+                }
+            }
+        }
+        interlocking.reset();
+        for (int[] route : routes) {
+            assertTrue(interlocking.canSetRoute(route[0], route[1]));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class Simulation_Test {
+    //Test a single train on a free line runs to its timetable
+    @Test
+    public void testFreeRun() {
+        Simulation simulation = new Simulation();
+        simulation.setTraversalTime(1, 10);
+        simulation.setTraversalTime(5, 20);
+        simulation.setTraversalTime(8, 5);
+        simulation.addTrain(100, 1, 8);
+        simulation.run(134);
+        assertEquals(simulation.getExited(), 0);
+        simulation.run(135);
+        assertEquals(simulation.getEntered(), 1);
+        assertEquals(simulation.getExited(), 1);
+        assertEquals(simulation.getJourneyDelay(), 0);
+        assertEquals(simulation.getEntryDelay(), 0);
+        assertEquals(simulation.getTime(), 135);
+    }
+
+    //Test trains at a shorter headway than the line allows queue at entry, and the line runs at its capacity
+    @Test
+    public void testQueueAtEntry() {
+        Simulation simulation = new Simulation();
+        simulation.setTraversalTime(3, 10);
+        simulation.setTraversalTime(4, 10);
+        simulation.addService(0, 5, 100, 3, 4);
+        simulation.run(10000);
+        //A train moves onto 4 as the one ahead leaves it, so a train leaves every 10 ticks without being held
+        assertEquals(simulation.getExited(), 100);
+        assertEquals(simulation.getMaxEntryDelay(), 99 * 10 - 99 * 5);
+        assertEquals(simulation.getWaiting(), 0);
+        assertEquals(simulation.getBlockingTime(3), 0);
+        assertEquals(simulation.getJourneyDelay(), simulation.getEntryDelay());
+    }
+
+    //Test trains held by the priority rules show up as blocking time at the junction
+    @Test
+    public void testJunctionBlocking() {
+        Simulation simulation = new Simulation();
+        //Passenger trains queue on 1 behind a slow section 5, and freight trains on 3 must yield to them
+        simulation.setTraversalTime(5, 50);
+        simulation.addService(0, 10, 100, 1, 8);
+        simulation.addService(0, 10, 100, 3, 4);
+        simulation.run(100000);
+        assertEquals(simulation.getExited(), 200);
+        assertTrue(simulation.getBlockingTime(1) > 0);
+        assertEquals(simulation.getBlockingTime(3), simulation.getBlockingTime(1));
+        assertEquals(simulation.getBlockingTime(4), 0);
+        assertEquals(simulation.getThroughput(100000), 200.0, 0);
+    }
+
+    //Test a year of traffic in seconds of ticks runs through
+    @Test
+    public void testYearOfTraffic() {
+        long year = 365L * 24 * 3600;
+        Simulation simulation = new Simulation();
+        for (int section = 1; section <= 11; section++) {
+            simulation.setTraversalTime(section, 60);
+        }
+        simulation.addService(0, 600, year / 600, 1, 8);
+        simulation.addService(300, 600, year / 600, 9, 2);
+        simulation.addService(0, 900, year / 900, 3, 4);
+        simulation.run(year + 3600);
+        assertEquals(simulation.getExited(), year / 600 * 2 + year / 900);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRoute() {
+        new Simulation().addTrain(0, 1, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroTraversal() {
+        new Simulation().setTraversalTime(1, 0);
+    }
+
+    //Test random arrivals are reproducible from the seed and all run through
+    @Test
+    public void testRandomService() {
+        long[] delays = new long[2];
+        for (int run = 0; run < 2; run++) {
+            Simulation simulation = new Simulation();
+            simulation.addRandomService(0, 100, 1000, 3, 4, new SplittableRandom(5));
+            simulation.run(1000000);
+            assertEquals(simulation.getDelays().count(), simulation.getExited());
+            delays[run] = simulation.getJourneyDelay();
+            assertEquals(simulation.getExited(), 1000);
+        }
+        assertEquals(delays[0], delays[1]);
+    }
+}
+
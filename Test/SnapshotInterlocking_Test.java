@@ -0,0 +1,146 @@
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class SnapshotInterlocking_Test {
+    //Test the interlocking answers like InterlockingImpl from its snapshots
+    @Test
+    public void testReadsFromSnapshot() {
+        SnapshotInterlocking network = new SnapshotInterlocking();
+        network.addTrain("t18", 1, 8);
+        network.addTrain("c34", 3, 4);
+        assertEquals(network.getSection(1), "t18");
+        assertEquals(network.getTrain("c34"), 3);
+        assertEquals(network.moveTrains(new String[]{"t18", "c34"}), 2);
+        assertEquals(network.getTrain("t18"), 5);
+        assertEquals(network.getSection(4), "c34");
+        network.moveTrains(new String[]{"c34"});
+        assertEquals(network.getTrain("c34"), -1);
+        assertNull(network.getSection(4));
+        assertEquals(network.snapshot().getVersion(), network.getVersion());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownTrain() {
+        new SnapshotInterlocking().getTrain("none");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownSection() {
+        new SnapshotInterlocking().getSection(12);
+    }
+
+    //Test a snapshot keeps showing its state after later moves, including sections on other chunks
+    @Test
+    public void testSnapshotIsImmutable() {
+        StringBuilder text = new StringBuilder("sections 1..200\n");
+        for (int entry = 1; entry < 200; entry += 60) {
+            text.append("route ").append(entry).append(' ').append(entry + 1).append('\n');
+        }
+        SnapshotInterlocking network = new SnapshotInterlocking(Topology.parse(text));
+        network.addTrain("a", 1, 2);
+        network.addTrain("b", 121, 122);
+        OccupancySnapshot before = network.snapshot();
+        network.moveTrains(new String[]{"a"});
+        network.addTrain("c", 61, 62);
+        OccupancySnapshot after = network.snapshot();
+        assertEquals(before.getSection(1), "a");
+        assertNull(before.getSection(2));
+        assertNull(before.getSection(61));
+        assertEquals(before.getTrain("b"), 121);
+        assertEquals(after.getTrain("a"), 2);
+        assertEquals(after.getTrain("b"), 121);
+        assertEquals(after.getTrain("c"), 61);
+        assertEquals(after.getVersion(), before.getVersion() + 2);
+        //A rejected entry publishes nothing new
+        assertEquals(network.tryAddTrain("d", 61, 62), Status.SECTION_OCCUPIED);
+        assertSame(network.snapshot(), after);
+    }
+
+    //Test getTrain answers from the published index, remembering exits as long as the registry does
+    @Test
+    public void testTrainIndex() {
+        SnapshotInterlocking network = new SnapshotInterlocking(Topology.corridor(), 2);
+        network.addTrain("a", 3, 4);
+        OccupancySnapshot entered = network.snapshot();
+        network.moveTrains(new String[]{"a"});
+        network.moveTrains(new String[]{"a"});
+        assertEquals(entered.getTrain("a"), 3);
+        assertEquals(network.getTrain("a"), -1);
+
+        //The name comes back into service, leaves again, and two later exits push both of its exits out
+        network.addTrain("a", 4, 3);
+        assertEquals(network.getTrain("a"), 4);
+        network.moveTrains(new String[]{"a"});
+        network.moveTrains(new String[]{"a"});
+        for (String name : new String[]{"b", "c"}) {
+            network.addTrain(name, 3, 4);
+            network.moveTrains(new String[]{name});
+            network.moveTrains(new String[]{name});
+        }
+        assertEquals(network.getTrain("c"), -1);
+        assertEquals(network.trainStatus("a"), Status.NOT_IN_SERVICE);
+        try {
+            network.getTrain("a");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(), "Train name does not exist");
+        }
+    }
+
+    //Test the index is rebuilt by restoring a checkpoint and emptied by a reset
+    @Test
+    public void testIndexRestoreAndReset() {
+        SnapshotInterlocking network = new SnapshotInterlocking();
+        network.addTrain("x", 3, 4);
+        network.moveTrains(new String[]{"x"});
+        network.moveTrains(new String[]{"x"});
+        network.addTrain("x", 4, 3);
+        network.addTrain("y", 1, 8);
+        SnapshotInterlocking restored = new SnapshotInterlocking();
+        restored.restore(network.checkpoint());
+        assertEquals(restored.getTrain("x"), 4);
+        assertEquals(restored.getTrain("y"), 1);
+
+        network.reset();
+        assertEquals(network.snapshot().getTrain("y"), -1);
+        try {
+            network.getTrain("x");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(network.snapshot().getVersion(), 0L);
+        }
+    }
+
+    //Test readers never see the writer in the middle of a batch
+    @Test
+    public void testReadersSeeWholeBatches() throws InterruptedException {
+        SnapshotInterlocking network = new SnapshotInterlocking();
+        AtomicBoolean done = new AtomicBoolean();
+        String[] failure = new String[1];
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                OccupancySnapshot snapshot = network.snapshot();
+                String first = snapshot.getSection(3);
+                String second = snapshot.getSection(4);
+                //Each batch moves the freight train a whole step, so it is never on both sections
+                if (first != null && second != null) {
+                    failure[0] = "train on two sections at version " + snapshot.getVersion();
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20000; i++) {
+            String[] name = {"c" + i};
+            network.addTrain(name[0], 3, 4);
+            network.moveTrains(name);
+            network.moveTrains(name);
+        }
+        done.set(true);
+        reader.join(10000);
+        assertNull(failure[0]);
+        assertEquals(network.snapshot().getVersion(), 60000L);
+    }
+}
@@ -0,0 +1,45 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StripedCounters_Test {
+    //Test counters are kept apart and can be cleared
+    @Test
+    public void testCounters() {
+        StripedCounters counters = new StripedCounters(10, 3);
+        assertEquals(counters.size(), 10);
+        counters.increment(0);
+        counters.add(9, 5);
+        counters.add(9, -2);
+        assertEquals(counters.sum(0), 1);
+        assertEquals(counters.sum(9), 3);
+        assertEquals(counters.sum(5), 0);
+        counters.clear();
+        assertEquals(counters.sum(9), 0);
+    }
+
+    //Test no add is lost when many threads add to the same counters
+    @Test
+    public void testConcurrentAdds() throws InterruptedException {
+        StripedCounters counters = new StripedCounters(3);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100000; i++) {
+                    counters.increment(i % 3);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(counters.sum(0) + counters.sum(1) + counters.sum(2), 800000);
+        assertEquals(counters.sum(1), 8 * 33333);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoStripes() {
+        new StripedCounters(1, 0);
+    }
+}
@@ -0,0 +1,226 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class Topology_Test {
+    //Test the corridor compiles to the eight legal paths
+    @Test
+    public void testCorridorRoutes() {
+        Topology topology = Topology.corridor();
+        assertEquals(topology.sectionCount(), 11);
+        assertEquals(topology.routeCount(), 8);
+        assertArrayEquals(topology.routePath(topology.route(1, 8)), new int[]{1, 5, 8});
+        assertArrayEquals(topology.routePath(topology.route(11, 3)), new int[]{11, 7, 3});
+        assertEquals(topology.route(1, 3), -1);
+        assertEquals(topology.sectionIndex(12), -1);
+    }
+
+    //Test transitions are shared between routes and exits are marked with -1
+    @Test
+    public void testTransitions() {
+        Topology topology = Topology.corridor();
+        int t15 = topology.transition(1, 5);
+        assertEquals(topology.routeTransitions(topology.route(1, 8))[0], t15);
+        assertEquals(topology.routeTransitions(topology.route(1, 9))[0], t15);
+        int exit = topology.routeTransitions(topology.route(3, 4))[1];
+        assertEquals(topology.transitionTo(exit), -1);
+        assertEquals(topology.transition(4, -1), exit);
+    }
+
+    //Test priority and constraint rules are grouped by their key
+    @Test
+    public void testRules() {
+        Topology topology = Topology.corridor();
+        int t34 = topology.transition(3, 4);
+        assertEquals(topology.priorityStart(t34 + 1) - topology.priorityStart(t34), 2);
+        assertTrue(topology.isPriorityTransition(topology.transition(6, 2)));
+        assertFalse(topology.isPriorityTransition(t34));
+        int route = topology.route(3, 11);
+        assertEquals(topology.constraintStart(route + 1) - topology.constraintStart(route), 2);
+        assertEquals(topology.constraintDestination(topology.constraintStart(route)), 3);
+    }
+
+    //Test unknown sections are reported with their line number
+    @Test
+    public void testUnknownSection() {
+        try {
+            Topology.parse("sections 1..3\nroute 1 2 4\n");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Line 2"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownPriorityTransition() {
+        Topology.parse("sections 1..3\nroute 1 2\npriority 1 2 : 2 3\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateRoute() {
+        Topology.parse("sections 1 2\nroute 1 2\nroute 1 2 # again\n");
+    }
+
+    //Test a long generated corridor loads into dense tables
+    @Test
+    public void testLargeNetwork() {
+        StringBuilder text = new StringBuilder("sections 1..20000\n");
+        for (int i = 1; i < 20000; i += 2) {
+            text.append("route ").append(i).append(' ').append(i + 1).append('\n');
+        }
+        Topology topology = Topology.parse(text);
+        assertEquals(topology.sectionCount(), 20000);
+        assertEquals(topology.routeCount(), 10000);
+        assertEquals(topology.routeDestination(topology.route(19999, 20000)), 20000);
+    }
+
+    //Test the priority and constraint rules read from the other side
+    @Test
+    public void testInvertedRules() {
+        Topology topology = Topology.corridor();
+        int t15 = topology.transition(1, 5);
+        int t34 = topology.transition(3, 4);
+        int t43 = topology.transition(4, 3);
+        assertEquals(topology.yieldStart(t15 + 1) - topology.yieldStart(t15), 2);
+        for (int i = topology.yieldStart(t15); i < topology.yieldStart(t15 + 1); i++) {
+            int t = topology.yieldingTransition(i);
+            assertTrue(t == t34 || t == t43);
+        }
+        assertEquals(topology.yieldStart(t34 + 1) - topology.yieldStart(t34), 0);
+
+        //A train heading for 9 on section 5 blocks entry on 9-2, and nothing else does on route 1-9
+        int r19 = topology.route(1, 9);
+        int r92 = topology.route(9, 2);
+        int step = topology.routeStep(r19, 1);
+        assertEquals(topology.blockedStart(step + 1) - topology.blockedStart(step), 1);
+        assertEquals(topology.blockedRoute(topology.blockedStart(step)), r92);
+        step = topology.routeStep(r19, 2);
+        assertEquals(topology.blockedStart(step + 1) - topology.blockedStart(step), 0);
+        assertEquals(topology.stepCount(), 22);
+    }
+
+    //Test the corridor written as links derives its routes, with listed routes taking precedence
+    @Test
+    public void testLinkedRoutes() {
+        Topology topology = Topology.parse("sections 1..11\n" +
+                "link 1 5 8\nlink 5 9 6 2\nlink 10 6\nlink 3 4 3\nlink 3 7 11 7 3\n" +
+                "entry 1 3 4 9 10 11\nexit 8 9 4 3 2 11\n" +
+                "route 4 3 7 11 # listed, so not derived again\n");
+        assertArrayEquals(topology.routePath(topology.route(1, 8)), new int[]{1, 5, 8});
+        assertArrayEquals(topology.routePath(topology.route(1, 2)), new int[]{1, 5, 9, 6, 2});
+        assertArrayEquals(topology.routePath(topology.route(11, 3)), new int[]{11, 7, 3});
+        assertArrayEquals(topology.routePath(topology.route(4, 11)), new int[]{4, 3, 7, 11});
+        assertEquals(topology.route(10, 8), -1);
+        assertEquals(topology.route(3, 3), -1);
+        assertEquals(topology.routeCount(), 11);
+        assertSame(topology.findRoute(1, 2), topology.routePath(topology.route(1, 2)));
+        assertArrayEquals(topology.findRoute(5, 6), new int[]{5, 9, 6});
+        assertNull(topology.findRoute(2, 1));
+        assertNull(Topology.corridor().findRoute(1, 8));
+    }
+
+    //Test links to unknown sections are reported with their line number
+    @Test
+    public void testUnknownLinkSection() {
+        try {
+            Topology.parse("sections 1..3\nentry 1\nlink 1 2 4\n");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Line 3"));
+        }
+    }
+
+    //Test a grid with tens of thousands of entry and exit pairs compiles them all into the route table
+    @Test
+    public void testLargeLinkedNetwork() {
+        int size = 200;
+        StringBuilder text = new StringBuilder("sections 1.." + size * size + "\n");
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column + 1 < size; column++) {
+                int id = row * size + column + 1;
+                text.append("link ").append(id).append(' ').append(id + 1).append('\n');
+                text.append("link ").append(column * size + row + 1).append(' ')
+                        .append((column + 1) * size + row + 1).append('\n');
+            }
+        }
+        StringBuilder entries = new StringBuilder("entry");
+        StringBuilder exits = new StringBuilder("exit");
+        for (int i = 0; i < size; i++) {
+            entries.append(' ').append(i * size + 1);
+            exits.append(' ').append((i + 1) * size);
+        }
+        text.append(entries).append('\n').append(exits).append('\n');
+        Topology topology = Topology.parse(text);
+        //Every right-hand section is reachable from every left-hand one, moving only right and down
+        assertEquals(topology.routeCount(), size * (size + 1) / 2);
+        int[] path = topology.routePath(topology.route(1, size * size));
+        assertEquals(path.length, 2 * size - 1);
+        assertEquals(topology.route(size + 1, size), -1);
+    }
+
+    //Test the lock masks hold each route's sections and mark routes sharing one as conflicting
+    @Test
+    public void testLockMasks() {
+        Topology topology = Topology.corridor();
+        int r18 = topology.route(1, 8);
+        assertEquals(topology.lockMaskStart(r18 + 1) - topology.lockMaskStart(r18), 1);
+        long bits = 1L << topology.sectionIndex(1) | 1L << topology.sectionIndex(5) | 1L << topology.sectionIndex(8);
+        assertEquals(topology.lockMaskBits(topology.lockMaskStart(r18)), bits);
+        assertTrue(topology.routesConflict(r18, topology.route(1, 9)));
+        assertTrue(topology.routesConflict(topology.route(9, 2), topology.route(10, 2)));
+        assertFalse(topology.routesConflict(r18, topology.route(10, 2)));
+
+        //Sections far apart fall in different words
+        Topology wide = Topology.parse("sections 1..200\nroute 1 100 200\nroute 150 200\nroute 2 3\n");
+        int route = wide.route(1, 200);
+        assertEquals(wide.lockMaskStart(route + 1) - wide.lockMaskStart(route), 3);
+        assertTrue(wide.routesConflict(route, wide.route(150, 200)));
+        assertFalse(wide.routesConflict(route, wide.route(2, 3)));
+    }
+
+    //Test points compile to the position each guarded transition needs
+    @Test
+    public void testPoints() {
+        Topology topology = Topology.parse(Topology.CORRIDOR + Topology.CORRIDOR_POINTS);
+        assertEquals(topology.pointCount(), 2);
+        int j2 = topology.pointIndex(2);
+        assertEquals(topology.pointPositionCount(j2), 3);
+        assertEquals(topology.pointThrowTime(j2), 3);
+        assertEquals(topology.transitionPoint(topology.transition(10, 6)), j2);
+        assertEquals(topology.transitionPosition(topology.transition(10, 6)), 1);
+        assertEquals(topology.transitionPosition(topology.transition(4, 3)), 1);
+        assertEquals(topology.transitionPoint(topology.transition(6, 2)), -1);
+        assertEquals(Topology.corridor().pointCount(), 0);
+        try {
+            Topology.parse(Topology.CORRIDOR + "point 3 1 : 1 5 | 5 8\npoint 4 1 : 5 8 | 5 9\n");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Line 24"));
+        }
+    }
+
+    //Test sparse section ids are indexed without a table sized by the largest id
+    @Test
+    public void testSparseIds() {
+        Topology topology = Topology.parse("sections 7 2000000000 2147483646..2147483647\n"
+                + "route 7 2000000000 2147483647\nlink 7 2147483646\nentry 7\nexit 2147483646\n");
+        assertEquals(topology.sectionCount(), 4);
+        assertEquals(topology.sectionIndex(2000000000), 1);
+        assertEquals(topology.sectionIndex(2147483647), 3);
+        assertEquals(topology.sectionIndex(8), -1);
+        assertEquals(topology.sectionIndex(-1), -1);
+        assertTrue(topology.route(7, 2147483646) != -1);
+        assertTrue(topology.transition(2000000000, 2147483647) != -1);
+    }
+
+    //Test a reversed section range is reported with its line number
+    @Test
+    public void testReversedRange() {
+        try {
+            Topology.parse("sections 1..3\nsections 9..5\n");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Line 2"));
+        }
+    }
+}
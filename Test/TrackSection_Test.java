@@ -12,7 +12,7 @@ public class TrackSection_Test {
         Train t1 = new Train("t1", 1, 8);
         s1.addTrain(t1);
         assertTrue(s1.isOccupied());
-        assertEquals(s1.getTrain(), t1.trainName);
+        assertEquals(s1.getTrain(), t1.getTrainName());
         s1.addTrain(t1);
     }
 
@@ -38,13 +38,22 @@ public class TrackSection_Test {
         s5.addTrain(t1);
         assertEquals(s1.getTrain(),null);
         assertFalse(s1.isOccupied());
-        assertEquals(s5.getTrain(), t1.trainName);
+        assertEquals(s5.getTrain(), t1.getTrainName());
         assertEquals(t1.getSection(), s5.sectionID);
         s1.addTrain(t2);
         assertEquals(t2.getSection(),s1.sectionID);
-        assertEquals(s1.getTrain(), t2.trainName);
+        assertEquals(s1.getTrain(), t2.getTrainName());
         assertTrue(s1.isOccupied());
     }
 
-
-}
\ No newline at end of file
+    @Test
+    public void testTryAddTrain(){
+        TrackSection s1 = new TrackSection(1);
+        Train t1 = new Train("c1", 1, 8);
+        Train t2 = new Train("c2", 1, 9);
+        assertTrue(s1.tryAddTrain(t1));
+        assertTrue(s1.tryAddTrain(t1));
+        assertFalse(s1.tryAddTrain(t2));
+        assertEquals(s1.getTrain(), t1.getTrainName());
+    }
+}
@@ -0,0 +1,64 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TrainRegistry_Test {
+    //Test only the most recent exits are remembered
+    @Test
+    public void testHistory() {
+        TrainRegistry registry = new TrainRegistry(2, false);
+        Train[] trains = new Train[3];
+        for (int i = 0; i < trains.length; i++) {
+            trains[i] = registry.create(Topology.corridor(), "t" + i, 3, 4);
+            registry.register(trains[i]);
+            trains[i].move();
+            trains[i].move();
+            registry.retire(trains[i]);
+        }
+        assertNull(registry.get("t0"));
+        assertSame(registry.get("t1"), trains[1]);
+        assertSame(registry.get("t2"), trains[2]);
+        assertEquals(registry.size(), 2);
+    }
+
+    //Test a forgotten train is reused for the next one
+    @Test
+    public void testRecycle() {
+        TrainRegistry registry = new TrainRegistry(0, true);
+        Train first = registry.create(Topology.corridor(), "a", 3, 4);
+        registry.register(first);
+        first.move();
+        first.move();
+        registry.retire(first);
+        assertNull(registry.get("a"));
+        Train second = registry.create(Topology.corridor(), "b", 1, 8);
+        assertSame(second, first);
+        assertEquals(second.getTrainName(), "b");
+        assertEquals(second.getSection(), 1);
+        assertEquals(second.getDestination(), 8);
+    }
+
+    //Test a name reused before the old train is forgotten stays with the new train
+    @Test
+    public void testForgetReusedName() {
+        TrainRegistry registry = new TrainRegistry(1, false);
+        Train old = new Train("x", 3, 4);
+        registry.register(old);
+        old.move();
+        old.move();
+        registry.retire(old);
+        Train current = new Train("x", 4, 3);
+        registry.register(current);
+        Train other = new Train("y", 3, 4);
+        registry.register(other);
+        other.move();
+        other.move();
+        registry.retire(other);
+        assertSame(registry.get("x"), current);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeHistory() {
+        new TrainRegistry(-1, false);
+    }
+}
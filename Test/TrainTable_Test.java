@@ -0,0 +1,72 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TrainTable_Test {
+    //Test a train's state lives in its row, and moves update the row in place
+    @Test
+    public void testRowState() {
+        TrainTable table = new TrainTable(Topology.corridor(), 4);
+        Train train = new Train(table, "a", 1, 9);
+        int row = train.row;
+        assertSame(table.train(row), train);
+        assertEquals(table.route(row), Topology.corridor().route(1, 9));
+        assertEquals(table.section(row), 1);
+        assertEquals(table.journeyIndex(row), 0);
+        assertEquals(table.transition(row), Topology.corridor().transition(1, 5));
+        train.move();
+        assertEquals(table.section(row), 5);
+        assertEquals(table.journeyIndex(row), 1);
+        assertEquals(train.getNextSection(), 9);
+        train.move();
+        train.move();
+        assertEquals(table.section(row), -1);
+        assertEquals(table.transition(row), -1);
+        assertFalse(train.isInService());
+        assertEquals(table.size(), 1);
+    }
+
+    //Test a handle dies when its train leaves or its row is reused, and freed rows are reused
+    @Test
+    public void testStaleHandle() {
+        TrainTable table = new TrainTable(Topology.corridor(), 1);
+        Train first = new Train(table, "a", 3, 4);
+        int handle = table.handle(first.row);
+        assertTrue(table.isLive(handle));
+        first.move();
+        first.move();
+        assertFalse(table.isLive(handle));
+
+        first.reuse("b", 3, 4);
+        int reused = table.handle(first.row);
+        assertNotEquals(reused, handle);
+        assertTrue(table.isLive(reused));
+        assertFalse(table.isLive(handle));
+
+        table.release(first.row);
+        assertFalse(table.isLive(reused));
+        assertEquals(table.size(), 0);
+        Train second = new Train(table, "c", 1, 8);
+        assertEquals(second.row, first.row);
+        assertFalse(table.isLive(reused));
+        assertTrue(table.isLive(table.handle(second.row)));
+        assertFalse(table.isLive(-1));
+    }
+
+    //Test the table grows past its first block without moving the rows it already has
+    @Test
+    public void testGrowth() {
+        TrainTable table = new TrainTable(Topology.corridor(), 2);
+        Train[] trains = new Train[100];
+        for (int i = 0; i < trains.length; i++) {
+            trains[i] = new Train(table, "t" + i, 3, 4);
+        }
+        trains[0].move();
+        for (int i = 0; i < trains.length; i++) {
+            assertSame(table.train(trains[i].row), trains[i]);
+            assertEquals(table.section(trains[i].row), i == 0 ? 4 : 3);
+        }
+        assertEquals(table.size(), 100);
+        assertFalse(table.isLive(table.handle(99) + 1));
+    }
+}
@@ -17,18 +17,27 @@ public class Train_Test {
         Train t8 = new Train("t8", 11, 3);
     }
 
-    //Test Exception thrown when intialising trains with same name:
+    //Test Exception thrown when registering trains with same name:
     @Test(expected = IllegalArgumentException.class)
     public void testName1() {
-        Train t1 = new Train("a1", 1, 9);
-        Train t2 = new Train("a1", 1, 9);
+        TrainRegistry registry = new TrainRegistry();
+        registry.register(new Train("a1", 1, 9));
+        registry.register(new Train("a1", 1, 9));
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testName2() {
-        Train t1 = new Train("b1", 1, 9);
-        Train t2 = new Train("b2", 1, 9);
-        Train t3 = new Train("b2", 1, 9);
+        TrainRegistry registry = new TrainRegistry();
+        registry.register(new Train("b1", 1, 9));
+        registry.register(new Train("b2", 1, 9));
+        registry.register(new Train("b2", 1, 9));
+    }
+
+    //Test separate registries accept the same name
+    @Test
+    public void testName3() {
+        new TrainRegistry().register(new Train("b3", 1, 9));
+        new TrainRegistry().register(new Train("b3", 1, 9));
     }
 
     //Test Exception thrown when intialising illegal path:
@@ -68,7 +77,7 @@ public class Train_Test {
         assertEquals(t1.getSection(), 9);
         t1.move();
         assertEquals(t1.getSection(), -1);
-        assertFalse(Train.allTrains.contains(t1.trainName));
+        assertFalse(t1.isInService());
         Train t2 = new Train("z1", 9, 2);
         assertEquals(t2.getSection(), 9);
         t2.move();
@@ -79,6 +88,20 @@ public class Train_Test {
         assertEquals(t2.getSection(), -1);
     }
 
+    //Test the precompiled transition follows the train along its route
+    @Test
+    public void testTransition() {
+        Topology topology = Topology.corridor();
+        Train t1 = new Train("y1", 10, 2);
+        assertEquals(t1.getTransition(), topology.transition(10, 6));
+        t1.move();
+        assertEquals(t1.getTransition(), topology.transition(6, 2));
+        t1.move();
+        assertEquals(t1.getTransition(), topology.transition(2, -1));
+        t1.move();
+        assertEquals(t1.getTransition(), -1);
+    }
+
     //Test Move - try to move a train out of system
     @Test(expected = IllegalArgumentException.class)
     public void testMoveIllegal() {
@@ -0,0 +1,1106 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A compiled description of a rail network: its track sections, legal routes, entry constraints and priority rules.
+ *
+ * Topologies are written in a small line-based text format. Everything after a '#' is a comment.
+ * <pre>
+ * sections 1..11                      # section ids, as single ids or inclusive ranges
+ * route 1 5 8                         # a legal path, from entry section to exit section
+ * constraint 3 11 : 11 3, 7 3         # route 3-11 cannot enter while a train heading for 3 is on 11 or on 7
+ * priority 3 4 : 1 5, 6 2             # a train moving 3-4 waits for any train about to move 1-5 or 6-2
+ * point 1 3 : 1 5, 7 3 | 3 4, 4 3     # point 1 takes 3 ticks to throw between 1-5 and 7-3, and 3-4 and 4-3
+ * </pre>
+ * A point's positions are separated by '|', and it starts in the first. Points only hold trains back in a
+ * {@link PointInterlocking}; other interlockings ignore them. Large networks may describe their track as directed
+ * links instead of listing every route:
+ * <pre>
+ * link 1 5 8                          # trains may run 1 to 5 and 5 to 8
+ * entry 1 3                           # sections trains enter the network on
+ * exit 8 4                            # sections trains leave the network from
+ * </pre>
+ * Every exit reachable from an entry then gets the shortest route along the links, found by a {@link RouteFinder}
+ * when the description is compiled, unless a route line already joins the two. Derived routes are compiled like
+ * listed ones, so validating an entry stays a single hash lookup however many entry and exit pairs there are.
+ * The loader compiles the description into dense, index-based tables. Sections are numbered 0..n-1 in declaration
+ * order, every consecutive pair of sections on a route becomes a transition, and the last section of each route gets
+ * an exit transition whose target index is -1. Constraint and priority rules are stored in flat offset/value arrays.
+ * A compiled topology is immutable and may be shared between any number of interlockings.
+ */
+public final class Topology {
+    /**
+     * The number of routes between sections that are not declared entries and exits kept by
+     * {@link #findRoute(int, int)}.
+     */
+    public static final int ROUTE_CACHE_CAPACITY = 4096;
+
+    /**
+     * The 11-section corridor described in the README.
+     */
+    public static final String CORRIDOR =
+            "# 11-section passenger and freight corridor\n" +
+            "sections 1..11\n" +
+            "\n" +
+            "route 1 5 8\n" +
+            "route 1 5 9\n" +
+            "route 3 4\n" +
+            "route 4 3\n" +
+            "route 9 6 2\n" +
+            "route 10 6 2\n" +
+            "route 3 7 11\n" +
+            "route 11 7 3\n" +
+            "\n" +
+            "constraint 4 3 : 3 4\n" +
+            "constraint 3 4 : 4 3\n" +
+            "constraint 3 11 : 11 3, 7 3\n" +
+            "constraint 11 3 : 3 11, 7 11\n" +
+            "constraint 1 9 : 9 2\n" +
+            "constraint 9 2 : 1 9, 5 9\n" +
+            "\n" +
+            "priority 3 4 : 1 5, 6 2\n" +
+            "priority 4 3 : 1 5, 6 2\n" +
+            "priority 9 6 : 5 8, 10 6\n";
+
+    /**
+     * The corridor's junction points j1 and j2 from the README, each taking three ticks to throw, to be appended to
+     * {@link #CORRIDOR}. Point 1 starts in R1, passing 1-5 and 7-3, and is thrown to L1 for 3-4 and 4-3. Point 2 has
+     * positions L2 for 5-8, M2 for 5-9 and 10-6 together, and R2 for 9-6.
+     */
+    public static final String CORRIDOR_POINTS =
+            "point 1 3 : 1 5, 7 3 | 3 4, 4 3\n" +
+            "point 2 3 : 5 8 | 5 9, 10 6 | 9 6\n";
+
+    //Largest id beyond the section count for which ids index a table directly rather than going through a map
+    private static final int DENSE_ID_SLACK = 1024;
+
+    private final int[] sectionIds;
+    private final int[] sectionIndexById;
+    private final LongIntMap sparseIndexById;
+
+    private final int[][] routePaths;
+    private final int[][] routeTransitions;
+    private final int[] routeDestinations;
+    private final LongIntMap routeByEndpoints;
+
+    private final int[] transitionFrom;
+    private final int[] transitionTo;
+    private final LongIntMap transitionByIndices;
+
+    private final int[] constraintStart;
+    private final int[] constraintSections;
+    private final int[] constraintDestinations;
+
+    private final int[] priorityStart;
+    private final int[] priorityTargets;
+    private final boolean[] priorityTransition;
+    private final int[] yieldStart;
+    private final int[] yieldingTransitions;
+
+    private final int[] routeStepStart;
+    private final int[] blockedStart;
+    private final int[] blockedRoutes;
+
+    private final int[] pointIds;
+    private final int[] pointThrowTimes;
+    private final int[] pointPositionCounts;
+    private final int[] transitionPoints;
+    private final int[] transitionPositions;
+
+    private final int[] lockMaskStart;
+    private final int[] lockMaskWords;
+    private final long[] lockMaskBits;
+
+    private final RouteFinder routeFinder;
+
+    private Topology(Parser p) {
+        int sectionCount = p.sections.size;
+        sectionIds = p.sections.toArray();
+        int maxId = 0;
+        for (int id : sectionIds) {
+            maxId = Math.max(maxId, id);
+        }
+        //A table sized by the largest id would be huge for a few large ids, so sparse ids are hashed instead
+        if (maxId <= 4L * sectionCount + DENSE_ID_SLACK) {
+            sectionIndexById = new int[maxId + 1];
+            Arrays.fill(sectionIndexById, -1);
+            sparseIndexById = null;
+        } else {
+            sectionIndexById = null;
+            sparseIndexById = new LongIntMap(sectionCount);
+        }
+        for (int i = 0; i < sectionCount; i++) {
+            int previous;
+            if (sparseIndexById != null) {
+                previous = sparseIndexById.put(sectionIds[i], i);
+            } else {
+                previous = sectionIndexById[sectionIds[i]];
+                sectionIndexById[sectionIds[i]] = i;
+            }
+            if (previous != -1) {
+                throw new IllegalArgumentException("Section " + sectionIds[i] + " is declared twice");
+            }
+        }
+
+        //The links, which only need checking here since the finder reports unknown sections without a line
+        for (int l = 0; l < p.linkFrom.size; l++) {
+            requireSection(p.linkFrom.get(l), p.linkLines.get(l));
+            requireSection(p.linkTo.get(l), p.linkLines.get(l));
+        }
+        for (int e = 0; e < p.entries.size; e++) {
+            requireSection(p.entries.get(e), p.entryLines.get(e));
+        }
+        for (int x = 0; x < p.exits.size; x++) {
+            requireSection(p.exits.get(x), p.exitLines.get(x));
+        }
+        routeFinder = p.linkFrom.size == 0 ? null
+                : new RouteFinder(sectionIds, p.linkFrom.toArray(), p.linkTo.toArray(), ROUTE_CACHE_CAPACITY);
+
+        //Routes, listed and derived from the links, and the transitions they induce
+        int listedCount = p.routeStart.size - 1;
+        int[][] derived = deriveRoutes(p, listedCount);
+        int routeCount = listedCount + derived.length;
+        routePaths = new int[routeCount][];
+        routeTransitions = new int[routeCount][];
+        routeDestinations = new int[routeCount];
+        routeByEndpoints = new LongIntMap(routeCount);
+        transitionByIndices = new LongIntMap(p.routeSections.size);
+        IntBuffer from = new IntBuffer();
+        IntBuffer to = new IntBuffer();
+        for (int r = 0; r < routeCount; r++) {
+            int[] path = r < listedCount
+                    ? p.routeSections.slice(p.routeStart.get(r), p.routeStart.get(r + 1)) : derived[r - listedCount];
+            int line = r < listedCount ? p.routeLines.get(r) : 0;
+            int[] transitions = new int[path.length];
+            for (int step = 0; step < path.length; step++) {
+                int fromIndex = requireSection(path[step], line);
+                int toIndex = step + 1 < path.length ? requireSection(path[step + 1], line) : -1;
+                long key = LongIntMap.pack(fromIndex, toIndex);
+                int t = transitionByIndices.get(key);
+                if (t == -1) {
+                    t = from.size;
+                    from.add(fromIndex);
+                    to.add(toIndex);
+                    transitionByIndices.put(key, t);
+                }
+                transitions[step] = t;
+            }
+            if (routeByEndpoints.put(LongIntMap.pack(path[0], path[path.length - 1]), r) != -1) {
+                throw new IllegalArgumentException("Line " + line + ": duplicate route from "
+                        + path[0] + " to " + path[path.length - 1]);
+            }
+            routePaths[r] = path;
+            routeTransitions[r] = transitions;
+            routeDestinations[r] = path[path.length - 1];
+        }
+        transitionFrom = from.toArray();
+        transitionTo = to.toArray();
+
+        //Entry constraints, grouped by route
+        constraintStart = new int[routeCount + 1];
+        constraintSections = new int[p.constraintRules.size / 2];
+        constraintDestinations = new int[p.constraintRules.size / 2];
+        int[] ruleRoute = new int[p.constraintKeys.size / 2];
+        for (int k = 0; k < ruleRoute.length; k++) {
+            int line = p.constraintLines.get(k);
+            int route =
+                    routeByEndpoints.get(LongIntMap.pack(p.constraintKeys.get(2 * k), p.constraintKeys.get(2 * k + 1)));
+            if (route == -1) {
+                throw new IllegalArgumentException("Line " + line + ": constraint refers to an unknown route");
+            }
+            ruleRoute[k] = route;
+            constraintStart[route + 1] += p.constraintRuleStart.get(k + 1) - p.constraintRuleStart.get(k);
+        }
+        for (int r = 0; r < routeCount; r++) {
+            constraintStart[r + 1] += constraintStart[r];
+        }
+        int[] fill = Arrays.copyOf(constraintStart, routeCount);
+        for (int k = 0; k < ruleRoute.length; k++) {
+            int line = p.constraintLines.get(k);
+            for (int i = p.constraintRuleStart.get(k); i < p.constraintRuleStart.get(k + 1); i++) {
+                int slot = fill[ruleRoute[k]]++;
+                constraintSections[slot] = requireSection(p.constraintRules.get(2 * i), line);
+                constraintDestinations[slot] = p.constraintRules.get(2 * i + 1);
+                requireSection(constraintDestinations[slot], line);
+            }
+        }
+
+        //Priority rules, grouped by the transition that has to wait
+        int transitionCount = transitionFrom.length;
+        priorityStart = new int[transitionCount + 1];
+        priorityTargets = new int[p.priorityRules.size / 2];
+        priorityTransition = new boolean[transitionCount];
+        int[] ruleTransition = new int[p.priorityKeys.size / 2];
+        for (int k = 0; k < ruleTransition.length; k++) {
+            int line = p.priorityLines.get(k);
+            ruleTransition[k] = requireTransition(p.priorityKeys.get(2 * k), p.priorityKeys.get(2 * k + 1), line);
+            priorityStart[ruleTransition[k] + 1] += p.priorityRuleStart.get(k + 1) - p.priorityRuleStart.get(k);
+        }
+        for (int t = 0; t < transitionCount; t++) {
+            priorityStart[t + 1] += priorityStart[t];
+        }
+        fill = Arrays.copyOf(priorityStart, transitionCount);
+        for (int k = 0; k < ruleTransition.length; k++) {
+            int line = p.priorityLines.get(k);
+            for (int i = p.priorityRuleStart.get(k); i < p.priorityRuleStart.get(k + 1); i++) {
+                int target = requireTransition(p.priorityRules.get(2 * i), p.priorityRules.get(2 * i + 1), line);
+                priorityTargets[fill[ruleTransition[k]]++] = target;
+                priorityTransition[target] = true;
+            }
+        }
+
+        //The same priority rules, grouped by the transition that takes precedence
+        yieldStart = new int[transitionCount + 1];
+        yieldingTransitions = new int[priorityTargets.length];
+        for (int target : priorityTargets) {
+            yieldStart[target + 1]++;
+        }
+        for (int t = 0; t < transitionCount; t++) {
+            yieldStart[t + 1] += yieldStart[t];
+        }
+        fill = Arrays.copyOf(yieldStart, transitionCount);
+        for (int t = 0; t < transitionCount; t++) {
+            for (int i = priorityStart[t]; i < priorityStart[t + 1]; i++) {
+                yieldingTransitions[fill[priorityTargets[i]]++] = t;
+            }
+        }
+
+        //The entry constraints, grouped by the route steps that match them: a train at step i of route r is on
+        //section path[i] heading for the route's destination, and blocks every route with that pair in a constraint
+        LongIntMap pairs = new LongIntMap(constraintSections.length);
+        int[] constraintPair = new int[constraintSections.length];
+        int[] pairStart = new int[constraintSections.length + 1];
+        for (int c = 0; c < constraintSections.length; c++) {
+            long key = LongIntMap.pack(constraintSections[c], constraintDestinations[c]);
+            int pair = pairs.get(key);
+            if (pair == -1) {
+                pair = pairs.size();
+                pairs.put(key, pair);
+            }
+            constraintPair[c] = pair;
+            pairStart[pair + 1]++;
+        }
+        for (int pair = 0; pair < pairs.size(); pair++) {
+            pairStart[pair + 1] += pairStart[pair];
+        }
+        int[] pairRoutes = new int[constraintSections.length];
+        fill = Arrays.copyOf(pairStart, pairs.size());
+        for (int r = 0; r < routeCount; r++) {
+            for (int c = constraintStart[r]; c < constraintStart[r + 1]; c++) {
+                pairRoutes[fill[constraintPair[c]]++] = r;
+            }
+        }
+        routeStepStart = new int[routeCount + 1];
+        for (int r = 0; r < routeCount; r++) {
+            routeStepStart[r + 1] = routeStepStart[r] + routePaths[r].length;
+        }
+        int[] stepPair = new int[routeStepStart[routeCount]];
+        blockedStart = new int[stepPair.length + 1];
+        for (int r = 0; r < routeCount; r++) {
+            for (int i = 0; i < routePaths[r].length; i++) {
+                int step = routeStepStart[r] + i;
+                stepPair[step] = pairs.get(LongIntMap.pack(sectionIndex(routePaths[r][i]), routeDestinations[r]));
+                int size = stepPair[step] == -1 ? 0 : pairStart[stepPair[step] + 1] - pairStart[stepPair[step]];
+                blockedStart[step + 1] = blockedStart[step] + size;
+            }
+        }
+        blockedRoutes = new int[blockedStart[stepPair.length]];
+        for (int step = 0; step < stepPair.length; step++) {
+            if (stepPair[step] != -1) {
+                System.arraycopy(pairRoutes, pairStart[stepPair[step]], blockedRoutes, blockedStart[step],
+                        blockedStart[step + 1] - blockedStart[step]);
+            }
+        }
+
+        //Points, and the position each guarded transition needs
+        int pointCount = p.pointIds.size;
+        pointIds = p.pointIds.toArray();
+        pointThrowTimes = p.pointThrowTimes.toArray();
+        pointPositionCounts = new int[pointCount];
+        transitionPoints = new int[transitionCount];
+        transitionPositions = new int[transitionCount];
+        Arrays.fill(transitionPoints, -1);
+        for (int point = 0; point < pointCount; point++) {
+            int line = p.pointLines.get(point);
+            for (int other = 0; other < point; other++) {
+                if (pointIds[other] == pointIds[point]) {
+                    throw new IllegalArgumentException("Line " + line + ": point " + pointIds[point]
+                            + " is declared twice");
+                }
+            }
+            int first = p.pointPositionStart.get(point);
+            int last = p.pointPositionStart.get(point + 1);
+            pointPositionCounts[point] = last - first;
+            for (int position = first; position < last; position++) {
+                for (int i = p.positionRuleStart.get(position); i < p.positionRuleStart.get(position + 1); i++) {
+                    int t = requireTransition(p.positionRules.get(2 * i), p.positionRules.get(2 * i + 1), line);
+                    if (transitionPoints[t] != -1) {
+                        throw new IllegalArgumentException("Line " + line + ": the move from "
+                                + p.positionRules.get(2 * i) + " to " + p.positionRules.get(2 * i + 1)
+                                + " is already guarded by a point");
+                    }
+                    transitionPoints[t] = point;
+                    transitionPositions[t] = position - first;
+                }
+            }
+        }
+
+        //The sections of each route as a sparse bitset: the words of a section bitset that hold any of them
+        lockMaskStart = new int[routeCount + 1];
+        IntBuffer words = new IntBuffer();
+        long[] bits = new long[routeStepStart[routeCount]];
+        for (int r = 0; r < routeCount; r++) {
+            for (int id : routePaths[r]) {
+                int index = sectionIndex(id);
+                int offset = lockMaskStart[r];
+                while (offset < words.size && words.get(offset) != index >>> 6) {
+                    offset++;
+                }
+                if (offset == words.size) {
+                    words.add(index >>> 6);
+                }
+                bits[offset] |= 1L << index;
+            }
+            lockMaskStart[r + 1] = words.size;
+        }
+        lockMaskWords = words.toArray();
+        lockMaskBits = Arrays.copyOf(bits, words.size);
+    }
+
+    //Finds the routes from every entry to every exit, skipping pairs already joined by a listed route
+    private int[][] deriveRoutes(Parser p, int listedCount) {
+        if (routeFinder == null || p.entries.size == 0 || p.exits.size == 0) {
+            return new int[0][];
+        }
+        LongIntMap joined = new LongIntMap(listedCount + p.entries.size * p.exits.size);
+        for (int r = 0; r < listedCount; r++) {
+            int first = p.routeSections.get(p.routeStart.get(r));
+            int last = p.routeSections.get(p.routeStart.get(r + 1) - 1);
+            joined.put(LongIntMap.pack(first, last), r);
+        }
+        int[] entries = p.entries.toArray();
+        int[] exits = p.exits.toArray();
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), entries.length / 64));
+        int[][] found = routeFinder.computeAll(entries, exits, threads);
+        int[][] derived = new int[found.length][];
+        int count = 0;
+        for (int[] path : found) {
+            if (path != null
+                    && joined.put(LongIntMap.pack(path[0], path[path.length - 1]), listedCount + count) == -1) {
+                derived[count++] = path;
+            }
+        }
+        return Arrays.copyOf(derived, count);
+    }
+
+    /**
+     * Gets the shared, compiled topology of the 11-section corridor described in the README.
+     *
+     * @return The corridor topology.
+     */
+    public static Topology corridor() {
+        return CorridorHolder.CORRIDOR_TOPOLOGY;
+    }
+
+    /**
+     * Compiles a topology description.
+     *
+     * @param text The topology description.
+     * @return The compiled topology.
+     * @throws IllegalArgumentException If the description is malformed or refers to unknown sections or routes.
+     */
+    public static Topology parse(CharSequence text) throws IllegalArgumentException {
+        Parser parser = new Parser(text);
+        parser.parse();
+        return new Topology(parser);
+    }
+
+    /**
+     * Reads and compiles a topology description from a file.
+     *
+     * @param file The file holding the topology description, encoded as UTF-8.
+     * @return The compiled topology.
+     * @throws IOException              If the file cannot be read.
+     * @throws IllegalArgumentException If the description is malformed.
+     */
+    public static Topology load(Path file) throws IOException, IllegalArgumentException {
+        return parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Gets the number of track sections.
+     *
+     * @return The number of sections.
+     */
+    public int sectionCount() {
+        return sectionIds.length;
+    }
+
+    /**
+     * Gets the id of the section with the given dense index.
+     *
+     * @param index The dense section index.
+     * @return The section id.
+     */
+    public int sectionId(int index) {
+        return sectionIds[index];
+    }
+
+    /**
+     * Gets the dense index of a section id.
+     *
+     * @param sectionId The section id.
+     * @return The dense index, or -1 if the section does not exist.
+     */
+    public int sectionIndex(int sectionId) {
+        if (sparseIndexById != null) {
+            return sparseIndexById.get(sectionId);
+        }
+        return sectionId >= 0 && sectionId < sectionIndexById.length ? sectionIndexById[sectionId] : -1;
+    }
+
+    /**
+     * Gets the number of legal routes.
+     *
+     * @return The number of routes.
+     */
+    public int routeCount() {
+        return routePaths.length;
+    }
+
+    /**
+     * Looks up the route between an entry and an exit section.
+     *
+     * @param entrySection The id of the entry section.
+     * @param exitSection  The id of the exit section.
+     * @return The route index, or -1 if there is no legal route.
+     */
+    public int route(int entrySection, int exitSection) {
+        return routeByEndpoints.get(LongIntMap.pack(entrySection, exitSection));
+    }
+
+    /**
+     * Finds the shortest path along the links between any two sections, whether or not they are a declared entry and
+     * exit. Paths between declared entries and exits were found when the description was compiled, and are the same
+     * arrays as the routes derived from them; others are searched for on first use and cached, up to
+     * {@link #ROUTE_CACHE_CAPACITY} of them, so occasional queries for planning stay cheap. The returned array is
+     * shared and must not be modified.
+     *
+     * @param fromSection The id of the section to start on.
+     * @param toSection   The id of the section to end on.
+     * @return The section ids from start to end, or null if the description has no links or the end is unreachable.
+     * @throws IllegalArgumentException If either section does not exist.
+     */
+    public int[] findRoute(int fromSection, int toSection) throws IllegalArgumentException {
+        if (sectionIndex(fromSection) == -1 || sectionIndex(toSection) == -1) {
+            throw new IllegalArgumentException("Track section does not exist");
+        }
+        return routeFinder == null ? null : routeFinder.route(fromSection, toSection);
+    }
+
+    /**
+     * Gets the section ids along a route. The returned array is shared and must not be modified.
+     *
+     * @param route The route index.
+     * @return The section ids from entry to exit.
+     */
+    public int[] routePath(int route) {
+        return routePaths[route];
+    }
+
+    /**
+     * Gets the transition taken at each step of a route. The returned array is shared and must not be modified.
+     *
+     * @param route The route index.
+     * @return The transition index for each step; the last one is the exit transition.
+     */
+    public int[] routeTransitions(int route) {
+        return routeTransitions[route];
+    }
+
+    /**
+     * Gets the id of a route's exit section.
+     *
+     * @param route The route index.
+     * @return The destination section id.
+     */
+    public int routeDestination(int route) {
+        return routeDestinations[route];
+    }
+
+    /**
+     * Gets the number of distinct transitions, including exit transitions.
+     *
+     * @return The number of transitions.
+     */
+    public int transitionCount() {
+        return transitionFrom.length;
+    }
+
+    /**
+     * Looks up the transition between two sections.
+     *
+     * @param fromSection The id of the section being left.
+     * @param toSection   The id of the section being entered, or -1 for an exit.
+     * @return The transition index, or -1 if no route uses it.
+     */
+    public int transition(int fromSection, int toSection) {
+        int fromIndex = sectionIndex(fromSection);
+        int toIndex = toSection == -1 ? -1 : sectionIndex(toSection);
+        if (fromIndex == -1 || (toIndex == -1 && toSection != -1)) {
+            return -1;
+        }
+        return transitionByIndices.get(LongIntMap.pack(fromIndex, toIndex));
+    }
+
+    /**
+     * Gets the dense index of the section a transition leaves.
+     *
+     * @param transition The transition index.
+     * @return The source section index.
+     */
+    public int transitionFrom(int transition) {
+        return transitionFrom[transition];
+    }
+
+    /**
+     * Gets the dense index of the section a transition enters.
+     *
+     * @param transition The transition index.
+     * @return The target section index, or -1 for an exit transition.
+     */
+    public int transitionTo(int transition) {
+        return transitionTo[transition];
+    }
+
+    /**
+     * Gets the offset of a route's first entry constraint in {@link #constraintSection(int)} and
+     * {@link #constraintDestination(int)}. The constraints of route r occupy offsets
+     * constraintStart(r) to constraintStart(r + 1) - 1.
+     *
+     * @param route The route index, or routeCount() for the end of the table.
+     * @return The offset.
+     */
+    public int constraintStart(int route) {
+        return constraintStart[route];
+    }
+
+    /**
+     * Gets the section index that an entry constraint inspects.
+     *
+     * @param offset The constraint offset.
+     * @return The dense index of the inspected section.
+     */
+    public int constraintSection(int offset) {
+        return constraintSections[offset];
+    }
+
+    /**
+     * Gets the destination that blocks entry when held by the train on the inspected section.
+     *
+     * @param offset The constraint offset.
+     * @return The id of the blocking destination section.
+     */
+    public int constraintDestination(int offset) {
+        return constraintDestinations[offset];
+    }
+
+    /**
+     * Gets the offset of the first higher-priority transition of a transition in {@link #priorityTarget(int)}.
+     * The transitions that t waits for occupy offsets priorityStart(t) to priorityStart(t + 1) - 1.
+     *
+     * @param transition The transition index, or transitionCount() for the end of the table.
+     * @return The offset.
+     */
+    public int priorityStart(int transition) {
+        return priorityStart[transition];
+    }
+
+    /**
+     * Gets a higher-priority transition.
+     *
+     * @param offset The priority rule offset.
+     * @return The transition index that takes precedence.
+     */
+    public int priorityTarget(int offset) {
+        return priorityTargets[offset];
+    }
+
+    /**
+     * Checks whether other transitions have to wait for a transition.
+     *
+     * @param transition The transition index.
+     * @return True if the transition appears on the right-hand side of a priority rule; false otherwise.
+     */
+    public boolean isPriorityTransition(int transition) {
+        return priorityTransition[transition];
+    }
+
+    /**
+     * Gets the offset of the first transition that waits for a transition in {@link #yieldingTransition(int)}.
+     * The transitions that wait for t occupy offsets yieldStart(t) to yieldStart(t + 1) - 1; this is the priority
+     * table read in the other direction.
+     *
+     * @param transition The transition index, or transitionCount() for the end of the table.
+     * @return The offset.
+     */
+    public int yieldStart(int transition) {
+        return yieldStart[transition];
+    }
+
+    /**
+     * Gets a transition that has to wait.
+     *
+     * @param offset The offset in the inverted priority table.
+     * @return The transition index that yields.
+     */
+    public int yieldingTransition(int offset) {
+        return yieldingTransitions[offset];
+    }
+
+    /**
+     * Gets the total number of route steps, counting one step for every section of every route.
+     *
+     * @return The number of route steps.
+     */
+    public int stepCount() {
+        return blockedStart.length - 1;
+    }
+
+    /**
+     * Numbers a route step across all routes.
+     *
+     * @param route The route index.
+     * @param step  The index along the route's path.
+     * @return The route step, in the range 0 to stepCount() - 1.
+     */
+    public int routeStep(int route, int step) {
+        return routeStepStart[route] + step;
+    }
+
+    /**
+     * Gets the offset of the first route blocked by a route step in {@link #blockedRoute(int)}. A train at route
+     * step s blocks entry to the routes at offsets blockedStart(s) to blockedStart(s + 1) - 1, one for each entry
+     * constraint naming its section and destination.
+     *
+     * @param routeStep The route step, or stepCount() for the end of the table.
+     * @return The offset.
+     */
+    public int blockedStart(int routeStep) {
+        return blockedStart[routeStep];
+    }
+
+    /**
+     * Gets a route whose entry is blocked.
+     *
+     * @param offset The offset in the blocked route table.
+     * @return The route index.
+     */
+    public int blockedRoute(int offset) {
+        return blockedRoutes[offset];
+    }
+
+    /**
+     * Gets the number of points.
+     *
+     * @return The number of points.
+     */
+    public int pointCount() {
+        return pointIds.length;
+    }
+
+    /**
+     * Gets the id of the point with the given dense index.
+     *
+     * @param point The dense point index, in declaration order.
+     * @return The point id.
+     */
+    public int pointId(int point) {
+        return pointIds[point];
+    }
+
+    /**
+     * Gets the dense index of a point id. Networks have few points, so this is a scan.
+     *
+     * @param pointId The point id.
+     * @return The dense index, or -1 if the point does not exist.
+     */
+    public int pointIndex(int pointId) {
+        for (int point = 0; point < pointIds.length; point++) {
+            if (pointIds[point] == pointId) {
+                return point;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the time a point takes to move from one position to another.
+     *
+     * @param point The dense point index.
+     * @return The throw time in ticks.
+     */
+    public int pointThrowTime(int point) {
+        return pointThrowTimes[point];
+    }
+
+    /**
+     * Gets the number of positions of a point.
+     *
+     * @param point The dense point index.
+     * @return The number of positions; the point starts in position 0.
+     */
+    public int pointPositionCount(int point) {
+        return pointPositionCounts[point];
+    }
+
+    /**
+     * Gets the point a transition crosses.
+     *
+     * @param transition The transition index.
+     * @return The dense point index, or -1 if no point guards the transition.
+     */
+    public int transitionPoint(int transition) {
+        return transitionPoints[transition];
+    }
+
+    /**
+     * Gets the position the point a transition crosses must be set to for a train to pass.
+     *
+     * @param transition The transition index, which must be guarded by a point.
+     * @return The position index.
+     */
+    public int transitionPosition(int transition) {
+        return transitionPositions[transition];
+    }
+
+    /**
+     * Gets the offset of a route's first lock mask word in {@link #lockMaskWord(int)} and {@link #lockMaskBits(int)}.
+     * Together the words at offsets lockMaskStart(r) to lockMaskStart(r + 1) - 1 are the nonzero words of a bitset
+     * over section indexes holding every section of route r, so whether a route is clear of a set of locked sections
+     * takes one AND per word rather than one test per section.
+     *
+     * @param route The route index, or routeCount() for the end of the table.
+     * @return The offset.
+     */
+    public int lockMaskStart(int route) {
+        return lockMaskStart[route];
+    }
+
+    /**
+     * Gets which word of a section bitset a lock mask entry covers.
+     *
+     * @param offset The lock mask offset.
+     * @return The word index, holding section indexes 64 * word to 64 * word + 63.
+     */
+    public int lockMaskWord(int offset) {
+        return lockMaskWords[offset];
+    }
+
+    /**
+     * Gets the bits of a lock mask entry.
+     *
+     * @param offset The lock mask offset.
+     * @return The route's sections within the entry's word.
+     */
+    public long lockMaskBits(int offset) {
+        return lockMaskBits[offset];
+    }
+
+    /**
+     * Checks if two routes conflict, that is share a section, so that only one of them can be locked at a time.
+     *
+     * @param route The first route index.
+     * @param other The second route index.
+     * @return True if the routes share a section.
+     */
+    public boolean routesConflict(int route, int other) {
+        for (int i = lockMaskStart[route]; i < lockMaskStart[route + 1]; i++) {
+            for (int j = lockMaskStart[other]; j < lockMaskStart[other + 1]; j++) {
+                if (lockMaskWords[i] == lockMaskWords[j] && (lockMaskBits[i] & lockMaskBits[j]) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int requireSection(int sectionId, int line) {
+        int index = sectionIndex(sectionId);
+        if (index == -1) {
+            throw new IllegalArgumentException("Line " + line + ": unknown section " + sectionId);
+        }
+        return index;
+    }
+
+    private int requireTransition(int fromSection, int toSection, int line) {
+        int t = transition(fromSection, toSection);
+        if (t == -1) {
+            throw new IllegalArgumentException("Line " + line + ": no route moves from " + fromSection
+                    + " to " + toSection);
+        }
+        return t;
+    }
+
+    /**
+     * Compiles the corridor on first use, without locking on later calls.
+     */
+    private static final class CorridorHolder {
+        static final Topology CORRIDOR_TOPOLOGY = parse(CORRIDOR);
+    }
+
+    /**
+     * A growable array of ints.
+     */
+    private static final class IntBuffer {
+        private int[] data = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int get(int index) {
+            return data[index];
+        }
+
+        int[] slice(int from, int to) {
+            return Arrays.copyOfRange(data, from, to);
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * A single-pass reader for the topology text format. It scans characters directly rather than splitting lines,
+     * so descriptions with many thousands of sections load without creating a string per token.
+     */
+    private static final class Parser {
+        private final CharSequence text;
+        private int pos;
+        private int line = 1;
+
+        final IntBuffer sections = new IntBuffer();
+        final IntBuffer routeSections = new IntBuffer();
+        final IntBuffer routeStart = new IntBuffer();
+        final IntBuffer routeLines = new IntBuffer();
+        final IntBuffer constraintKeys = new IntBuffer();
+        final IntBuffer constraintRules = new IntBuffer();
+        final IntBuffer constraintRuleStart = new IntBuffer();
+        final IntBuffer constraintLines = new IntBuffer();
+        final IntBuffer priorityKeys = new IntBuffer();
+        final IntBuffer priorityRules = new IntBuffer();
+        final IntBuffer priorityRuleStart = new IntBuffer();
+        final IntBuffer priorityLines = new IntBuffer();
+        final IntBuffer pointIds = new IntBuffer();
+        final IntBuffer pointThrowTimes = new IntBuffer();
+        final IntBuffer pointPositionStart = new IntBuffer();
+        final IntBuffer positionRules = new IntBuffer();
+        final IntBuffer positionRuleStart = new IntBuffer();
+        final IntBuffer pointLines = new IntBuffer();
+        final IntBuffer linkFrom = new IntBuffer();
+        final IntBuffer linkTo = new IntBuffer();
+        final IntBuffer linkLines = new IntBuffer();
+        final IntBuffer entries = new IntBuffer();
+        final IntBuffer entryLines = new IntBuffer();
+        final IntBuffer exits = new IntBuffer();
+        final IntBuffer exitLines = new IntBuffer();
+
+        Parser(CharSequence text) {
+            this.text = text;
+            routeStart.add(0);
+            constraintRuleStart.add(0);
+            priorityRuleStart.add(0);
+            pointPositionStart.add(0);
+            positionRuleStart.add(0);
+        }
+
+        void parse() {
+            while (skipBlank()) {
+                int keywordLine = line;
+                if (keyword("sections")) {
+                    do {
+                        int first = number();
+                        int last = first;
+                        if (peek() == '.') {
+                            expect('.');
+                            expect('.');
+                            last = number();
+                            if (last < first) {
+                                throw error("section range " + first + ".." + last + " is reversed");
+                            }
+                        }
+                        //Counted so a range ending at Integer.MAX_VALUE stops instead of overflowing
+                        for (int id = first, remaining = last - first; remaining >= 0; id++, remaining--) {
+                            sections.add(id);
+                        }
+                    } while (hasMoreOnLine());
+                } else if (keyword("route")) {
+                    do {
+                        routeSections.add(number());
+                    } while (hasMoreOnLine());
+                    routeStart.add(routeSections.size);
+                    routeLines.add(keywordLine);
+                } else if (keyword("link")) {
+                    int from = number();
+                    do {
+                        int to = number();
+                        linkFrom.add(from);
+                        linkTo.add(to);
+                        linkLines.add(keywordLine);
+                        from = to;
+                    } while (hasMoreOnLine());
+                } else if (keyword("entry")) {
+                    list(entries, entryLines, keywordLine);
+                } else if (keyword("exit")) {
+                    list(exits, exitLines, keywordLine);
+                } else if (keyword("constraint")) {
+                    rule(constraintKeys, constraintRules, constraintRuleStart);
+                    constraintLines.add(keywordLine);
+                } else if (keyword("priority")) {
+                    rule(priorityKeys, priorityRules, priorityRuleStart);
+                    priorityLines.add(keywordLine);
+                } else if (keyword("point")) {
+                    pointIds.add(number());
+                    pointThrowTimes.add(number());
+                    skipSpaces();
+                    expect(':');
+                    do {
+                        rules(positionRules);
+                        positionRuleStart.add(positionRules.size / 2);
+                        skipSpaces();
+                        if (peek() != '|') {
+                            break;
+                        }
+                        pos++;
+                    } while (true);
+                    pointPositionStart.add(positionRuleStart.size - 1);
+                    pointLines.add(keywordLine);
+                } else {
+                    throw error("unknown directive");
+                }
+                if (hasMoreOnLine()) {
+                    throw error("unexpected input");
+                }
+            }
+        }
+
+        private void list(IntBuffer values, IntBuffer lines, int keywordLine) {
+            do {
+                values.add(number());
+                lines.add(keywordLine);
+            } while (hasMoreOnLine());
+        }
+
+        private void rule(IntBuffer keys, IntBuffer rules, IntBuffer ruleStart) {
+            keys.add(number());
+            keys.add(number());
+            skipSpaces();
+            expect(':');
+            rules(rules);
+            ruleStart.add(rules.size / 2);
+        }
+
+        private void rules(IntBuffer rules) {
+            do {
+                rules.add(number());
+                rules.add(number());
+                skipSpaces();
+                if (peek() != ',') {
+                    break;
+                }
+                pos++;
+            } while (true);
+        }
+
+        private boolean keyword(String word) {
+            int end = pos + word.length();
+            if (end > text.length()) {
+                return false;
+            }
+            for (int i = 0; i < word.length(); i++) {
+                if (text.charAt(pos + i) != word.charAt(i)) {
+                    return false;
+                }
+            }
+            if (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+                return false;
+            }
+            pos = end;
+            return true;
+        }
+
+        private int number() {
+            skipSpaces();
+            int start = pos;
+            long value = 0;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                value = value * 10 + (text.charAt(pos++) - '0');
+                if (value > Integer.MAX_VALUE) {
+                    throw error("number out of range");
+                }
+            }
+            if (pos == start) {
+                throw error("expected a section id");
+            }
+            return (int) value;
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : '\n';
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '#') {
+                    while (pos < text.length() && text.charAt(pos) != '\n') {
+                        pos++;
+                    }
+                } else if (c == '\n' || !Character.isWhitespace(c)) {
+                    return;
+                } else {
+                    pos++;
+                }
+            }
+        }
+
+        private boolean hasMoreOnLine() {
+            skipSpaces();
+            return pos < text.length() && text.charAt(pos) != '\n';
+        }
+
+        private boolean skipBlank() {
+            while (true) {
+                skipSpaces();
+                if (pos >= text.length()) {
+                    return false;
+                }
+                if (text.charAt(pos) != '\n') {
+                    return true;
+                }
+                pos++;
+                line++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Line " + line + ": " + message);
+        }
+    }
+}
@@ -33,15 +33,23 @@ public class TrackSection {
      * @throws IllegalStateException If the track section is already occupied by a different train.
      */
     public void addTrain(Train train) throws IllegalStateException{
+        if (!tryAddTrain(train)) {
+            throw new IllegalStateException("Track " + sectionID + " is currently occupied.");
+        }
+    }
+
+    /**
+     * Adds a train to the track section unless another train occupies it.
+     *
+     * @param train The train to add to the track section.
+     * @return True if the train is now on the section; false if the section is occupied by a different train.
+     */
+    public boolean tryAddTrain(Train train) {
         if (!isOccupied()) {
             this.train = train;
             this.occupied = true;
-        } 
-        if(this.train == train){
-            return;
         }
-            throw new IllegalStateException("Track " + sectionID + " is currently occupied.");
-
+        return this.train == train;
     }
 
     /**
@@ -66,4 +74,12 @@ public class TrackSection {
             this.train = null;
         }
     }
+
+    /**
+     * Clears the track section without moving the occupying train along its journey.
+     */
+    public void removeTrain() {
+        this.occupied = false;
+        this.train = null;
+    }
 }
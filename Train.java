@@ -2,45 +2,101 @@ import java.util.*;
 
 /**
  * Represents a train with a specified path in a train interlocking system.
+ *
+ * A train is a view of its row in a {@link TrainTable}, which holds its route and position; trains created by an
+ * interlocking share its table, and a train created on its own gets a table of its own.
  */
 public class Train {
-    private static final Map<Pair<Integer, Integer>, List<Integer>> allPaths = new HashMap<>();
-    public static final Set<String> allTrains = new HashSet<>();
+    private String trainName;
+    private final TrainTable table;
+    private final TrainTable.Block block;
+    private final int slot;
+    final int row;
+    int journalId;
 
-    static {
-        allPaths.put(Pair.of(1, 8), List.of(1, 5, 8));
-        allPaths.put(Pair.of(1, 9), List.of(1, 5, 9));
-        allPaths.put(Pair.of(3, 4), List.of(3, 4));
-        allPaths.put(Pair.of(4, 3), List.of(4, 3));
-        allPaths.put(Pair.of(9, 2), List.of(9, 6, 2));
-        allPaths.put(Pair.of(10, 2), List.of(10, 6, 2));
-        allPaths.put(Pair.of(3, 11), List.of(3, 7, 11));
-        allPaths.put(Pair.of(11, 3), List.of(11, 7, 3));
+    /**
+     * Initializes a new train on the corridor described in the README.
+     *
+     * @param trainName The name of the train.
+     * @param start     The starting section for the train's journey.
+     * @param end       The destination section for the train's journey.
+     * @throws IllegalArgumentException If the train path is invalid.
+     */
+    public Train(String trainName, int start, int end) {
+        this(Topology.corridor(), trainName, start, end);
     }
 
-    public final String trainName;
-    private final int start;
-    private final int end;
-    private int journeyIndex;
+    /**
+     * Initializes a new train with a name, start section, and end section.
+     *
+     * @param topology  The network whose routes the train follows.
+     * @param trainName The name of the train.
+     * @param start     The starting section for the train's journey.
+     * @param end       The destination section for the train's journey.
+     * @throws IllegalArgumentException If the train path is invalid.
+     */
+    public Train(Topology topology, String trainName, int start, int end) {
+        this(new TrainTable(topology, 1), trainName, start, end);
+    }
 
     /**
-     * Initializes a new train with a unique name, start section, and end section.
+     * Initializes a new train in a row of a table.
      *
-     * @param trainName The unique name of the train.
+     * @param table     The table holding the train's state.
+     * @param trainName The name of the train.
      * @param start     The starting section for the train's journey.
      * @param end       The destination section for the train's journey.
-     * @throws IllegalArgumentException If the train path is invalid or the train name is already in use.
+     * @throws IllegalArgumentException If the train path is invalid.
      */
-    public Train(String trainName, int start, int end) {
-        if (!allPaths.containsKey(Pair.of(start, end)) || allTrains.contains(trainName)) {
-            throw new IllegalArgumentException("Invalid train path or train name already in use.");
-        }
+    Train(TrainTable table, String trainName, int start, int end) {
+        int route = route(table.getTopology(), start, end);
+        this.table = table;
+        row = table.allocate(this);
+        block = table.block(row);
+        slot = table.slot(row);
+        this.trainName = trainName;
+        table.start(row, route);
+    }
+
+    /**
+     * Turns the train into a new train at the start of its journey. Used to recycle trains that have left the rail
+     * corridor and are no longer referenced by any interlocking.
+     *
+     * @param trainName The name of the train.
+     * @param start     The starting section for the train's journey.
+     * @param end       The destination section for the train's journey.
+     * @throws IllegalArgumentException If the train path is invalid.
+     */
+    final void reuse(String trainName, int start, int end) {
+        int route = route(table.getTopology(), start, end);
+        setTrainName(trainName);
+        table.start(row, route);
+    }
 
+    /**
+     * Renames the train. Only used when the train is reused.
+     *
+     * @param trainName The new name.
+     */
+    void setTrainName(String trainName) {
         this.trainName = trainName;
-        this.start = start;
-        this.end = end;
-        this.journeyIndex = 0;
-        allTrains.add(trainName);
+    }
+
+    private static int route(Topology topology, int start, int end) {
+        int route = topology.route(start, end);
+        if (route == -1) {
+            throw new IllegalArgumentException("Invalid train path.");
+        }
+        return route;
+    }
+
+    /**
+     * Gets the table holding the train's state.
+     *
+     * @return The table.
+     */
+    TrainTable table() {
+        return table;
     }
 
     /**
@@ -58,7 +114,12 @@ public class Train {
      * @return The list of section IDs representing the train's path.
      */
     public List<Integer> getPath() {
-        return allPaths.get(Pair.of(this.start, this.end));
+        int[] path = table.getTopology().routePath(getRoute());
+        List<Integer> sections = new ArrayList<>(path.length);
+        for (int section : path) {
+            sections.add(section);
+        }
+        return sections;
     }
 
     /**
@@ -68,7 +129,7 @@ public class Train {
      * @return True if the train is in service at the given index; false otherwise.
      */
     public boolean isInService(int index) {
-        return index < this.getPath().size();
+        return index < table.getTopology().routePath(getRoute()).length;
     }
 
     /**
@@ -77,7 +138,7 @@ public class Train {
      * @return True if the train is in service at its current position; false otherwise.
      */
     public boolean isInService() {
-        return isInService(journeyIndex);
+        return block.sections[slot] != -1;
     }
 
     /**
@@ -86,7 +147,7 @@ public class Train {
      * @return The section ID where the train is currently located, or -1 if not in service.
      */
     public int getSection() {
-        return isInService() ? getPath().get(journeyIndex) : -1;
+        return block.sections[slot];
     }
 
     /**
@@ -95,7 +156,37 @@ public class Train {
      * @return The section ID of the train's next position, or -1 if not in service at the next index.
      */
     public int getNextSection() {
-        return isInService(journeyIndex + 1) ? getPath().get(journeyIndex + 1) : -1;
+        int index = block.journeyIndexes[slot] + 1;
+        int[] path = table.getTopology().routePath(block.routes[slot]);
+        return index < path.length ? path[index] : -1;
+    }
+
+    /**
+     * Gets the topology transition the train takes on its next move. Safe to call without holding the locks that
+     * guard the train's moves: a train moved out concurrently reads as out of service rather than failing.
+     *
+     * @return The transition index, or -1 if not in service.
+     */
+    public int getTransition() {
+        return block.transitions[slot];
+    }
+
+    /**
+     * Gets the topology route the train follows.
+     *
+     * @return The route index.
+     */
+    public int getRoute() {
+        return block.routes[slot];
+    }
+
+    /**
+     * Gets how many sections of its route the train has already left.
+     *
+     * @return The index of the current section in the train's path.
+     */
+    public int getJourneyIndex() {
+        return block.journeyIndexes[slot];
     }
 
     /**
@@ -104,7 +195,7 @@ public class Train {
      * @return The section ID of the train's destination.
      */
     public int getDestination() {
-        return end;
+        return table.getTopology().routeDestination(getRoute());
     }
 
     /**
@@ -114,21 +205,9 @@ public class Train {
      */
     public void move() {
         if (isInService()) {
-            journeyIndex++;
-            if (journeyIndex >= getPath().size()) {
-                allTrains.remove(trainName);
-            }
+            table.advance(block, slot);
         } else {
             throw new IllegalArgumentException("Train is not in service.");
         }
     }
-
-    /**
-     * Removes a train with the specified name from the list of all trains.
-     *
-     * @param trainName The name of the train to remove.
-     */
-    public static void removeTrain(String trainName) {
-        allTrains.remove(trainName);
-    }
 }
@@ -0,0 +1,243 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the trains known to one interlocking, by name.
+ * Every interlocking owns its own registry, so independent corridors never see each other's trains.
+ * The registry is backed by a concurrent map and may be read and updated from several threads.
+ *
+ * Trains that have left the rail corridor are kept for a while so that their names still resolve: the registry
+ * remembers a bounded number of the most recent exits, and when a newer exit pushes a train out of that history the
+ * train is forgotten. The registry therefore holds at most the trains in service plus the history, however long it
+ * runs. A registry may also recycle forgotten trains through a free list, so that a steady flow of trains allocates
+ * no new ones; this is only safe when a single thread drives the interlocking, since a train from an earlier lookup
+ * could otherwise be reused under another thread's feet.
+ *
+ * The trains the registry creates keep their state in one {@link TrainTable}. A forgotten train that is not recycled
+ * gives its row back to the table, so it must no longer be used once the registry has forgotten it.
+ */
+public class TrainRegistry {
+    /**
+     * The number of exited trains remembered by default.
+     */
+    public static final int DEFAULT_HISTORY = 1024;
+
+    private final ConcurrentHashMap<String, Train> trains = new ConcurrentHashMap<>();
+    private final Train[] history;
+    private int historyStart;
+    private int historySize;
+    private final Train[] free;
+    private int freeSize;
+    private TrainTable table;
+
+    /**
+     * Creates a registry that remembers the default number of exits and does not recycle trains.
+     */
+    public TrainRegistry() {
+        this(DEFAULT_HISTORY, false);
+    }
+
+    /**
+     * Creates a registry.
+     *
+     * @param history The number of exited trains to remember; zero forgets a train as soon as it leaves.
+     * @param recycle True to reuse forgotten trains for new ones; only for registries used by a single thread.
+     */
+    public TrainRegistry(int history, boolean recycle) {
+        if (history < 0) {
+            throw new IllegalArgumentException("History size cannot be negative");
+        }
+        this.history = new Train[history];
+        this.free = new Train[recycle ? Math.max(history, 1) : 0];
+    }
+
+    /**
+     * Creates a train, reusing a forgotten one if the registry recycles trains. The train is not registered.
+     *
+     * @param topology  The network whose routes the train follows.
+     * @param trainName The name of the train.
+     * @param start     The starting section for the train's journey.
+     * @param end       The destination section for the train's journey.
+     * @return A train at the start of its journey.
+     * @throws IllegalArgumentException If the train path is invalid.
+     */
+    public Train create(Topology topology, String trainName, int start, int end) throws IllegalArgumentException {
+        TrainTable table = table(topology);
+        if (free.length > 0) {
+            synchronized (this) {
+                if (freeSize > 0) {
+                    Train train = free[freeSize - 1];
+                    train.reuse(trainName, start, end);
+                    free[--freeSize] = null;
+                    return train;
+                }
+            }
+        }
+        return new Train(table, trainName, start, end);
+    }
+
+    /**
+     * Gets the table holding the state of the trains the registry creates, creating it on first use.
+     *
+     * @param topology The network whose routes the trains follow.
+     * @return The table.
+     * @throws IllegalArgumentException If the registry's trains already follow another topology.
+     */
+    synchronized TrainTable table(Topology topology) throws IllegalArgumentException {
+        if (table == null) {
+            table = new TrainTable(topology, history.length + topology.sectionCount());
+        } else if (table.getTopology() != topology) {
+            throw new IllegalArgumentException("The trains of a registry must follow one topology");
+        }
+        return table;
+    }
+
+    /**
+     * Lets go of a train that was created but never registered, such as one whose entry was refused.
+     *
+     * @param train The train.
+     */
+    public synchronized void discard(Train train) {
+        forget(train);
+    }
+
+    /**
+     * Records that a train has left the rail corridor. The train stays known by name until enough later exits push
+     * it out of the history.
+     *
+     * @param train The train that has just left.
+     * @return The name of the train this pushed out of the history, or null if none was or a newer train has since
+     * taken its name. The name is then no longer known to the registry.
+     */
+    public synchronized String retire(Train train) {
+        Train forgotten;
+        if (history.length == 0) {
+            forgotten = train;
+        } else if (historySize == history.length) {
+            forgotten = history[historyStart];
+            history[historyStart] = train;
+            historyStart = (historyStart + 1) % history.length;
+        } else {
+            history[(historyStart + historySize) % history.length] = train;
+            historySize++;
+            return null;
+        }
+        String trainName = forgotten.getTrainName();
+        return forget(forgotten) ? trainName : null;
+    }
+
+    /**
+     * Gets the remembered exits.
+     *
+     * @return The exited trains still remembered, oldest first.
+     */
+    public synchronized Train[] exits() {
+        Train[] exits = new Train[historySize];
+        for (int i = 0; i < historySize; i++) {
+            exits[i] = history[(historyStart + i) % history.length];
+        }
+        return exits;
+    }
+
+    /**
+     * Forgets every train, in service or remembered, recycling them if the registry recycles trains.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < historySize; i++) {
+            int slot = (historyStart + i) % history.length;
+            forget(history[slot]);
+            history[slot] = null;
+        }
+        historyStart = 0;
+        historySize = 0;
+        for (Train train : trains.values()) {
+            forget(train);
+        }
+        trains.clear();
+    }
+
+    private boolean forget(Train train) {
+        //The name may already belong to a newer train
+        boolean removed = trains.remove(train.getTrainName(), train);
+        if (freeSize < free.length) {
+            train.table().retire(train.row);
+            free[freeSize++] = train;
+        } else {
+            train.table().release(train.row);
+        }
+        return removed;
+    }
+
+    /**
+     * Registers a train under its name. A name may be reused once the train previously holding it has left the
+     * rail corridor.
+     *
+     * @param train The train to register.
+     * @throws IllegalArgumentException If a train with the same name is still in service.
+     */
+    public void register(Train train) throws IllegalArgumentException {
+        if (!tryRegister(train)) {
+            throw new IllegalArgumentException("Train name already in use.");
+        }
+    }
+
+    /**
+     * Registers a train under its name unless the name belongs to a train still in service.
+     *
+     * @param train The train to register.
+     * @return True if the train was registered; false if a train with the same name is still in service.
+     */
+    public boolean tryRegister(Train train) {
+        while (true) {
+            Train existing = trains.putIfAbsent(train.getTrainName(), train);
+            if (existing == null) {
+                return true;
+            }
+            if (existing.isInService()) {
+                return false;
+            }
+            if (trains.replace(train.getTrainName(), existing, train)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gets a train by name, whether or not it is still in service.
+     *
+     * @param trainName The name of the train.
+     * @return The train, or null if no train with that name has been registered.
+     */
+    public Train get(String trainName) {
+        return trains.get(trainName);
+    }
+
+    /**
+     * Gets a train by name if it is still in the rail corridor.
+     *
+     * @param trainName The name of the train.
+     * @return The train, or null if it is unknown or has left the rail corridor.
+     */
+    public Train getInService(String trainName) {
+        Train train = trains.get(trainName);
+        return train != null && train.isInService() ? train : null;
+    }
+
+    /**
+     * Forgets a train.
+     *
+     * @param trainName The name of the train to remove.
+     * @return The removed train, or null if it was not registered.
+     */
+    public Train remove(String trainName) {
+        return trains.remove(trainName);
+    }
+
+    /**
+     * Gets the number of registered trains.
+     *
+     * @return The number of trains, including those that have left the rail corridor and are still remembered.
+     */
+    public int size() {
+        return trains.size();
+    }
+}
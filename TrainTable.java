@@ -0,0 +1,298 @@
+import java.util.Arrays;
+
+/**
+ * The state of a set of trains, stored as parallel primitive arrays, and the int handles that address them.
+ *
+ * Every train owns a row of the table, which holds its route, the index of its section along the route, the section
+ * itself and the transition it takes next; a {@link Train} is a view of its row. Moves update the row in place, so a
+ * pass over many trains reads a few dense int arrays instead of one heap object per train. Rows are kept in blocks
+ * of fixed size that are never reallocated, so the table can grow while other threads read and write the rows it
+ * already has. Rows of trains that are no longer needed go on a free list and are reused.
+ *
+ * A handle combines a row with a generation number that changes every time the row is given a new train or its
+ * train is let go, so a handle kept after its train has left never refers to the row's next train. Resolving a handle
+ * is a mask and a few array reads, with no hashing.
+ */
+public final class TrainTable {
+    /**
+     * The number of bits of a handle that hold the row; the rest hold the generation.
+     */
+    static final int ROW_BITS = 20;
+    private static final int ROW_MASK = (1 << ROW_BITS) - 1;
+    private static final int GENERATION_MASK = Integer.MAX_VALUE >>> ROW_BITS;
+    private static final int MAX_BLOCK_BITS = 10;
+
+    private final Topology topology;
+    private final int blockBits;
+    private final int blockMask;
+    private Block[] blocks = new Block[0];
+    private int rows;
+    private int[] free = new int[0];
+    private int freeCount;
+
+    /**
+     * Creates an empty table that grows as trains are added.
+     *
+     * @param topology     The network whose routes the trains follow.
+     * @param expectedRows The number of trains the table is expected to hold at once, which sets the block size.
+     */
+    public TrainTable(Topology topology, int expectedRows) {
+        this.topology = topology;
+        blockBits = Math.min(MAX_BLOCK_BITS, 32 - Integer.numberOfLeadingZeros(Math.max(1, expectedRows) - 1));
+        blockMask = (1 << blockBits) - 1;
+    }
+
+    /**
+     * Gets the topology whose routes the trains follow.
+     *
+     * @return The topology.
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Gives a train a row, reusing a free one if there is any. The row holds no journey until {@link #start} is
+     * called.
+     *
+     * @param train The train that will view the row.
+     * @return The row.
+     * @throws IllegalStateException If the table already holds as many trains as handles can address.
+     */
+    synchronized int allocate(Train train) throws IllegalStateException {
+        int row;
+        if (freeCount > 0) {
+            row = free[--freeCount];
+        } else {
+            if (rows > ROW_MASK) {
+                throw new IllegalStateException("Train table is full");
+            }
+            row = rows++;
+            if ((row >>> blockBits) == blocks.length) {
+                Block[] grown = Arrays.copyOf(blocks, blocks.length + 1);
+                grown[blocks.length] = new Block(1 << blockBits);
+                blocks = grown;
+            }
+        }
+        Block block = block(row);
+        block.trains[row & blockMask] = train;
+        block.sections[row & blockMask] = -1;
+        block.transitions[row & blockMask] = -1;
+        return row;
+    }
+
+    /**
+     * Lets a row go. Its handle stops being valid and the row is reused for a later train; the train that viewed it
+     * must no longer be used.
+     *
+     * @param row The row.
+     */
+    synchronized void release(int row) {
+        retire(row);
+        block(row).trains[row & blockMask] = null;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, Math.max(16, free.length * 2));
+        }
+        free[freeCount++] = row;
+    }
+
+    /**
+     * Takes a row's train out of service and invalidates its handle, keeping the row for the train to be reused.
+     *
+     * @param row The row.
+     */
+    void retire(int row) {
+        Block block = block(row);
+        int slot = row & blockMask;
+        block.sections[slot] = -1;
+        block.transitions[slot] = -1;
+        block.generations[slot] = (block.generations[slot] + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Puts a row's train at the start of a route, under a new handle.
+     *
+     * @param row   The row.
+     * @param route The route index.
+     */
+    void start(int row, int route) {
+        Block block = block(row);
+        int slot = row & blockMask;
+        block.routes[slot] = route;
+        block.journeyIndexes[slot] = 0;
+        block.generations[slot] = (block.generations[slot] + 1) & GENERATION_MASK;
+        block.transitions[slot] = topology.routeTransitions(route)[0];
+        block.sections[slot] = topology.routePath(route)[0];
+    }
+
+    /**
+     * Moves a row's train to the next section of its route, or out of service after the last one.
+     *
+     * @param block The block holding the row.
+     * @param slot  The row's index within the block.
+     */
+    void advance(Block block, int slot) {
+        int[] path = topology.routePath(block.routes[slot]);
+        int index = ++block.journeyIndexes[slot];
+        //The section is written last, since concurrent readers check it before the rest of the row
+        if (index < path.length) {
+            block.transitions[slot] = topology.routeTransitions(block.routes[slot])[index];
+            block.sections[slot] = path[index];
+        } else {
+            block.transitions[slot] = -1;
+            block.sections[slot] = -1;
+        }
+    }
+
+    /**
+     * Gets the block holding a row.
+     *
+     * @param row The row.
+     * @return The block.
+     */
+    Block block(int row) {
+        return blocks[row >>> blockBits];
+    }
+
+    /**
+     * Gets a row's index within its block.
+     *
+     * @param row The row.
+     * @return The index.
+     */
+    int slot(int row) {
+        return row & blockMask;
+    }
+
+    /**
+     * Gets the row of a handle, whether or not the handle is still valid.
+     *
+     * @param handle The handle.
+     * @return The row.
+     */
+    public int row(int handle) {
+        return handle & ROW_MASK;
+    }
+
+    /**
+     * Checks whether a handle still refers to a train in service.
+     *
+     * @param handle The handle.
+     * @return True if the handle's train is in service; false if it has left or the handle is malformed.
+     */
+    public boolean isLive(int handle) {
+        return live(handle) != null;
+    }
+
+    /**
+     * Resolves a handle to its train.
+     *
+     * @param handle The handle.
+     * @return The handle's train, or null if it has left or the handle is malformed.
+     */
+    public Train live(int handle) {
+        if (handle < 0) {
+            return null;
+        }
+        int row = handle & ROW_MASK;
+        Block[] blocks = this.blocks;
+        if (row >>> blockBits >= blocks.length) {
+            return null;
+        }
+        Block block = blocks[row >>> blockBits];
+        int slot = row & blockMask;
+        Train train = block.trains[slot];
+        return train != null && block.sections[slot] != -1 && block.generations[slot] == handle >>> ROW_BITS ? train
+                : null;
+    }
+
+    /**
+     * Gets the handle of the train in a row.
+     *
+     * @param row The row.
+     * @return The handle.
+     */
+    public int handle(int row) {
+        return block(row).generations[row & blockMask] << ROW_BITS | row;
+    }
+
+    /**
+     * Gets the train viewing a row.
+     *
+     * @param row The row.
+     * @return The train, or null if the row is free.
+     */
+    public Train train(int row) {
+        return block(row).trains[row & blockMask];
+    }
+
+    /**
+     * Gets the route of the train in a row.
+     *
+     * @param row The row.
+     * @return The route index.
+     */
+    public int route(int row) {
+        return block(row).routes[row & blockMask];
+    }
+
+    /**
+     * Gets how many sections of its route the train in a row has left.
+     *
+     * @param row The row.
+     * @return The index of the train's section in its route's path.
+     */
+    public int journeyIndex(int row) {
+        return block(row).journeyIndexes[row & blockMask];
+    }
+
+    /**
+     * Gets the section of the train in a row.
+     *
+     * @param row The row.
+     * @return The section id, or -1 if the train is not in service.
+     */
+    public int section(int row) {
+        return block(row).sections[row & blockMask];
+    }
+
+    /**
+     * Gets the transition the train in a row takes next.
+     *
+     * @param row The row.
+     * @return The transition index, or -1 if the train is not in service.
+     */
+    public int transition(int row) {
+        return block(row).transitions[row & blockMask];
+    }
+
+    /**
+     * Gets the number of rows held by trains.
+     *
+     * @return The number of trains with a row, in service or not.
+     */
+    public synchronized int size() {
+        return rows - freeCount;
+    }
+
+    /**
+     * A fixed run of rows. The arrays are read and written in place and never replaced.
+     */
+    static final class Block {
+        final int[] routes;
+        final int[] journeyIndexes;
+        final int[] sections;
+        final int[] transitions;
+        final int[] generations;
+        final Train[] trains;
+
+        Block(int size) {
+            routes = new int[size];
+            journeyIndexes = new int[size];
+            sections = new int[size];
+            transitions = new int[size];
+            generations = new int[size];
+            trains = new Train[size];
+        }
+    }
+}
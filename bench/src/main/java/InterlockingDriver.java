@@ -0,0 +1,77 @@
+import bench.Driver;
+
+/**
+ * Adapts an {@link Interlocking} to the benchmarks' {@link Driver} interface. This class has to stay in the default
+ * package, next to the classes it drives.
+ */
+public final class InterlockingDriver implements Driver {
+    private final Interlocking interlocking;
+
+    /**
+     * Creates an interlocking of the given kind on a topology.
+     *
+     * @param implementation One of "impl", "concurrent", "petri" or "table".
+     * @param topology       The topology description.
+     * @throws IllegalArgumentException If the implementation is unknown or the topology is malformed.
+     */
+    public InterlockingDriver(String implementation, String topology) {
+        Topology compiled = Topology.parse(topology);
+        switch (implementation) {
+            case "impl":
+                interlocking = new InterlockingImpl(compiled);
+                break;
+            case "concurrent":
+                interlocking = new ConcurrentInterlocking(compiled);
+                break;
+            case "petri":
+                interlocking = new PetriNetInterlocking(compiled);
+                break;
+            case "table":
+                interlocking = new HandleInterlocking(compiled);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown implementation " + implementation);
+        }
+    }
+
+    @Override
+    public void addTrain(String trainName, int entry, int destination) {
+        interlocking.addTrain(trainName, entry, destination);
+    }
+
+    @Override
+    public int moveTrains(String[] trainNames) {
+        return interlocking.moveTrains(trainNames);
+    }
+
+    @Override
+    public int[] handles(String[] trainNames) {
+        int[] handles = new int[trainNames.length];
+        for (int i = 0; i < trainNames.length; i++) {
+            handles[i] = table().handle(trainNames[i]);
+        }
+        return handles;
+    }
+
+    @Override
+    public int moveTrains(int[] trainHandles) {
+        return table().moveTrains(trainHandles);
+    }
+
+    private HandleInterlocking table() {
+        if (!(interlocking instanceof HandleInterlocking)) {
+            throw new UnsupportedOperationException("Trains cannot be moved by handle");
+        }
+        return (HandleInterlocking) interlocking;
+    }
+
+    @Override
+    public String getSection(int trackSection) {
+        return interlocking.getSection(trackSection);
+    }
+
+    @Override
+    public int getTrain(String trainName) {
+        return interlocking.getTrain(trainName);
+    }
+}
@@ -0,0 +1,62 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * addTrain on the 11-section corridor, both accepted and rejected.
+ *
+ * An accepted entry cannot be repeated without clearing the entry section, so the accepted case adds a train on the
+ * two-section route 3-4 and moves it out again, reusing its name; the moves are measured on their own by
+ * {@link MoveBenchmark} and {@link CycleBenchmark}. The rejected case adds a train onto an occupied entry section.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AddTrainBenchmark {
+    private static final String[] SHUTTLE = {"shuttle"};
+
+    @Param({"impl", "concurrent", "petri", "table"})
+    public String implementation;
+
+    private Driver free;
+    private Driver occupied;
+
+    @Setup
+    public void setUp() {
+        String corridor = Drivers.corridor();
+        free = Drivers.create(implementation, corridor);
+        occupied = Drivers.create(implementation, corridor);
+        occupied.addTrain("waiting", 1, 8);
+    }
+
+    @Benchmark
+    public int addAndLeave() {
+        free.addTrain(SHUTTLE[0], 3, 4);
+        return free.moveTrains(SHUTTLE) + free.moveTrains(SHUTTLE);
+    }
+
+    @Benchmark
+    public Object addOccupied() {
+        try {
+            occupied.addTrain("late", 1, 9);
+            throw new AssertionError("Entry section was free");
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package bench;
+
+import java.util.Map;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the steady-state move benchmark under the GC profiler and fails if a call to moveTrains allocates.
+ *
+ * A blocked move changes nothing, so its normalised allocation rate (gc.alloc.rate.norm, bytes per call) should be
+ * zero for every implementation; the limit leaves a little room for profiler noise. Usage:
+ * <pre>
+ * java -cp target/benchmarks.jar bench.AllocationCheck [limit in bytes per call, default 16]
+ * </pre>
+ */
+public final class AllocationCheck {
+    private AllocationCheck() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        double limit = args.length > 0 ? Double.parseDouble(args[0]) : 16;
+        Options options = new OptionsBuilder()
+                .include(MoveBenchmark.class.getName() + ".blocked")
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.seconds(1))
+                .forks(1)
+                .build();
+        boolean failed = false;
+        for (RunResult run : new Runner(options).run()) {
+            double bytes = Double.NaN;
+            for (Map.Entry<String, Result> result : run.getSecondaryResults().entrySet()) {
+                if (result.getKey().endsWith("gc.alloc.rate.norm")) {
+                    bytes = result.getValue().getScore();
+                }
+            }
+            String label = run.getParams().getBenchmark() + " " + run.getParams().getParam("implementation")
+                    + " trains=" + run.getParams().getParam("trains");
+            if (!(bytes <= limit)) {
+                System.err.println("Allocation regression: " + label + " allocates " + bytes + " bytes per call");
+                failed = true;
+            } else {
+                System.out.println(label + ": " + bytes + " bytes per call");
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full "enter, traverse, exit" cycles: a batch of trains is added and moved together until every train has left.
+ *
+ * With the disjoint pattern each train runs 1-8 on a corridor copy of its own, so no move ever waits. With the
+ * contended pattern four trains share each copy on routes 1-8, 3-4, 10-2 and 11-3, which meet at the junctions and
+ * exercise the priority rules. One disjoint train, or up to four contended ones, run on the 11-section corridor
+ * itself; larger batches run on generated networks of as many copies as they need.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CycleBenchmark {
+    private static final int[][] DISJOINT = {{1, 8}};
+    private static final int[][] CONTENDED = {{1, 8}, {3, 4}, {10, 2}, {11, 3}};
+
+    @Param({"impl", "concurrent", "petri", "table"})
+    public String implementation;
+
+    @Param({"1", "8", "64"})
+    public int trains;
+
+    @Param({"disjoint", "contended"})
+    public String pattern;
+
+    private Driver driver;
+    private Traffic traffic;
+
+    @Setup
+    public void setUp() {
+        int[][] routes = "disjoint".equals(pattern) ? DISJOINT : CONTENDED;
+        Network network = Network.corridors((trains + routes.length - 1) / routes.length);
+        driver = Drivers.create(implementation, network.text());
+        traffic = new Traffic(network, trains, routes);
+    }
+
+    @Benchmark
+    public int cycle() {
+        return traffic.run(driver);
+    }
+}
@@ -0,0 +1,62 @@
+package bench;
+
+/**
+ * The operations of an interlocking, as seen by the benchmarks.
+ *
+ * JMH only accepts benchmark classes in a named package, while the interlocking lives in the default package and
+ * cannot be imported from one. The benchmarks therefore drive it through this interface, which is implemented by a
+ * small default-package adapter and loaded once per trial by {@link Drivers}. The extra interface call is the same
+ * for every implementation under test.
+ */
+public interface Driver {
+    /**
+     * Adds a train.
+     *
+     * @param trainName   The name of the train.
+     * @param entry       The entry track section.
+     * @param destination The destination track section.
+     */
+    void addTrain(String trainName, int entry, int destination);
+
+    /**
+     * Moves a list of trains.
+     *
+     * @param trainNames The trains to move.
+     * @return The number of trains moved.
+     */
+    int moveTrains(String[] trainNames);
+
+    /**
+     * Looks up the handles of trains, for implementations that can move trains by handle.
+     *
+     * @param trainNames The names of trains in service.
+     * @return The handles, in the same order.
+     * @throws UnsupportedOperationException If the implementation has no handles.
+     */
+    int[] handles(String[] trainNames);
+
+    /**
+     * Moves a list of trains by handle.
+     *
+     * @param trainHandles The handles of the trains to move.
+     * @return The number of trains moved.
+     * @throws UnsupportedOperationException If the implementation has no handles.
+     */
+    int moveTrains(int[] trainHandles);
+
+    /**
+     * Gets the occupant of a track section.
+     *
+     * @param trackSection The track section.
+     * @return The name of the occupying train, or null.
+     */
+    String getSection(int trackSection);
+
+    /**
+     * Gets the track section of a train.
+     *
+     * @param trainName The name of the train.
+     * @return The track section, or -1 if the train has left the network.
+     */
+    int getTrain(String trainName);
+}
@@ -0,0 +1,45 @@
+package bench;
+
+/**
+ * Creates {@link Driver}s for the interlocking implementations through the default-package adapter.
+ */
+public final class Drivers {
+    private static final String ADAPTER = "InterlockingDriver";
+
+    private Drivers() {
+    }
+
+    /**
+     * Creates a driver on a fresh interlocking.
+     *
+     * @param implementation One of "impl", "concurrent", "petri" or "table".
+     * @param topology       The topology description the interlocking runs on.
+     * @return The driver.
+     * @throws IllegalArgumentException If the implementation is unknown or the topology is malformed.
+     */
+    public static Driver create(String implementation, String topology) {
+        try {
+            return (Driver) Class.forName(ADAPTER)
+                    .getConstructor(String.class, String.class)
+                    .newInstance(implementation, topology);
+        } catch (ReflectiveOperationException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Cannot load " + ADAPTER, e);
+        }
+    }
+
+    /**
+     * Gets the description of the 11-section corridor.
+     *
+     * @return The corridor's topology text.
+     */
+    public static String corridor() {
+        try {
+            return (String) Class.forName("Topology").getField("CORRIDOR").get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load the corridor description", e);
+        }
+    }
+}
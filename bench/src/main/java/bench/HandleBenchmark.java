@@ -0,0 +1,52 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The blocked moves of {@link MoveBenchmark} on the handle-based interlocking, listed by name and by handle, to
+ * show what resolving names costs on the move path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandleBenchmark {
+    @Param({"1", "64", "1024"})
+    public int trains;
+
+    private Driver driver;
+    private String[] names;
+    private int[] handles;
+
+    @Setup
+    public void setUp() {
+        Network network = Network.corridors((trains + 1) / 2);
+        driver = Drivers.create("table", network.text());
+        names = MoveBenchmark.blockedTrains(driver, network, trains);
+        handles = driver.handles(names);
+    }
+
+    @Benchmark
+    public int byName() {
+        return driver.moveTrains(names);
+    }
+
+    @Benchmark
+    public int byHandle() {
+        return driver.moveTrains(handles);
+    }
+}
@@ -0,0 +1,74 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * getSection over every section of a network and getTrain over every train in it. Each corridor copy holds trains on
+ * 1, 3, 5 and 10, so about a third of the sections are occupied.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LookupBenchmark {
+    @Param({"impl", "concurrent", "petri", "table"})
+    public String implementation;
+
+    @Param({"1", "64"})
+    public int copies;
+
+    private Driver driver;
+    private int[] sections;
+    private String[] names;
+
+    @Setup
+    public void setUp() {
+        Network network = Network.corridors(copies);
+        driver = Drivers.create(implementation, network.text());
+        sections = new int[network.sectionCount()];
+        for (int s = 0; s < sections.length; s++) {
+            sections[s] = s + 1;
+        }
+        names = new String[4 * copies];
+        for (int c = 0; c < copies; c++) {
+            names[4 * c] = "p" + c;
+            names[4 * c + 1] = "a" + c;
+            names[4 * c + 2] = "b" + c;
+            names[4 * c + 3] = "f" + c;
+            driver.addTrain(names[4 * c], network.section(c, 1), network.section(c, 8));
+            driver.moveTrains(new String[]{names[4 * c]});
+            driver.addTrain(names[4 * c + 1], network.section(c, 1), network.section(c, 8));
+            driver.addTrain(names[4 * c + 2], network.section(c, 3), network.section(c, 4));
+            driver.addTrain(names[4 * c + 3], network.section(c, 10), network.section(c, 2));
+        }
+    }
+
+    @Benchmark
+    public void getSection(Blackhole blackhole) {
+        for (int section : sections) {
+            blackhole.consume(driver.getSection(section));
+        }
+    }
+
+    @Benchmark
+    public void getTrain(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(driver.getTrain(name));
+        }
+    }
+}
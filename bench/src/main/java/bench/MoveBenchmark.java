@@ -0,0 +1,75 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Steady-state calls to moveTrains in which every train is checked and none can move.
+ *
+ * Each corridor copy holds a train parked on 5, a train on 1 heading for 8 that is blocked behind it, and a train on
+ * 3 heading for 4 that yields to the one on 1. The batch alternates the two blocked trains across as many copies as
+ * it needs. Since the state never changes, each call repeats the full lookup, priority and occupancy checks, and any
+ * allocation reported by the GC profiler is per-move overhead of the interlocking.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveBenchmark {
+    @Param({"impl", "concurrent", "petri", "table"})
+    public String implementation;
+
+    @Param({"1", "8", "64"})
+    public int trains;
+
+    private Driver driver;
+    private String[] names;
+
+    @Setup
+    public void setUp() {
+        Network network = Network.corridors((trains + 1) / 2);
+        driver = Drivers.create(implementation, network.text());
+        names = blockedTrains(driver, network, trains);
+    }
+
+    /**
+     * Fills every copy of a network with a parked train and two trains blocked by it.
+     *
+     * @param driver  The interlocking, empty.
+     * @param network The network, with at least half as many copies as trains.
+     * @param trains  The number of blocked trains to list.
+     * @return The names of the blocked trains, alternating between the two kinds.
+     */
+    static String[] blockedTrains(Driver driver, Network network, int trains) {
+        for (int c = 0; c < network.copies(); c++) {
+            String parked = "p" + c;
+            driver.addTrain(parked, network.section(c, 1), network.section(c, 8));
+            driver.moveTrains(new String[]{parked});
+            driver.addTrain("a" + c, network.section(c, 1), network.section(c, 8));
+            driver.addTrain("b" + c, network.section(c, 3), network.section(c, 4));
+        }
+        String[] names = new String[trains];
+        for (int i = 0; i < trains; i++) {
+            names[i] = (i % 2 == 0 ? "a" : "b") + (i / 2);
+        }
+        return names;
+    }
+
+    @Benchmark
+    public int blocked() {
+        return driver.moveTrains(names);
+    }
+}
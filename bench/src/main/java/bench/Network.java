@@ -0,0 +1,100 @@
+package bench;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A generated network made of side-by-side copies of the 11-section corridor. Copy c renumbers every section id s of
+ * the corridor to s + 11c, so copies share no sections and the network grows linearly with the number of copies while
+ * the per-move work stays that of the corridor.
+ */
+public final class Network {
+    private static final Pattern SECTIONS = Pattern.compile("sections\\s+1\\.\\.(\\d+)");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+
+    private final int copies;
+    private final int corridorSections;
+    private final String text;
+
+    private Network(int copies, int corridorSections, String text) {
+        this.copies = copies;
+        this.corridorSections = corridorSections;
+        this.text = text;
+    }
+
+    /**
+     * Builds a network of corridor copies.
+     *
+     * @param copies The number of copies; one gives the corridor itself.
+     * @return The network.
+     */
+    public static Network corridors(int copies) {
+        if (copies < 1) {
+            throw new IllegalArgumentException("At least one copy is needed");
+        }
+        String corridor = Drivers.corridor();
+        Matcher header = SECTIONS.matcher(corridor);
+        if (!header.find()) {
+            throw new IllegalStateException("Corridor sections are not a single range");
+        }
+        int size = Integer.parseInt(header.group(1));
+
+        StringBuilder text = new StringBuilder();
+        text.append("sections 1..").append(size * copies).append('\n');
+        for (int c = 0; c < copies; c++) {
+            for (String line : corridor.split("\n")) {
+                int comment = line.indexOf('#');
+                String body = (comment == -1 ? line : line.substring(0, comment)).trim();
+                if (body.isEmpty() || body.startsWith("sections")) {
+                    continue;
+                }
+                Matcher number = NUMBER.matcher(body);
+                StringBuilder shifted = new StringBuilder();
+                while (number.find()) {
+                    number.appendReplacement(shifted, Integer.toString(Integer.parseInt(number.group()) + size * c));
+                }
+                number.appendTail(shifted);
+                text.append(shifted).append('\n');
+            }
+        }
+        return new Network(copies, size, text.toString());
+    }
+
+    /**
+     * Gets the number of corridor copies.
+     *
+     * @return The number of copies.
+     */
+    public int copies() {
+        return copies;
+    }
+
+    /**
+     * Gets the number of track sections.
+     *
+     * @return The number of sections.
+     */
+    public int sectionCount() {
+        return copies * corridorSections;
+    }
+
+    /**
+     * Gets the id of a corridor section in one of the copies.
+     *
+     * @param copy    The copy.
+     * @param section The section id in the corridor.
+     * @return The section id in the network.
+     */
+    public int section(int copy, int section) {
+        return section + corridorSections * copy;
+    }
+
+    /**
+     * Gets the topology description.
+     *
+     * @return The topology text.
+     */
+    public String text() {
+        return text;
+    }
+}
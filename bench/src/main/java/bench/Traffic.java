@@ -0,0 +1,71 @@
+package bench;
+
+/**
+ * A fixed set of trains that is repeatedly run through a network: every train is added, then all trains still in
+ * the network are moved together until each has left. The buffers for every round are allocated up front, so a run
+ * allocates only what the interlocking itself allocates.
+ */
+final class Traffic {
+    private final String[] names;
+    private final int[] entries;
+    private final int[] destinations;
+    private final String[] live;
+    private final String[][] rounds;
+
+    /**
+     * Spreads trains over the copies of a network, filling each copy with routes in turn.
+     *
+     * @param network The network.
+     * @param trains  The number of trains.
+     * @param routes  The corridor routes used in every copy, as entry/destination pairs.
+     */
+    Traffic(Network network, int trains, int[][] routes) {
+        names = new String[trains];
+        entries = new int[trains];
+        destinations = new int[trains];
+        for (int i = 0; i < trains; i++) {
+            int copy = i / routes.length;
+            int[] route = routes[i % routes.length];
+            names[i] = "t" + i;
+            entries[i] = network.section(copy, route[0]);
+            destinations[i] = network.section(copy, route[1]);
+        }
+        live = new String[trains];
+        rounds = new String[trains + 1][];
+        for (int k = 0; k <= trains; k++) {
+            rounds[k] = new String[k];
+        }
+    }
+
+    /**
+     * Adds every train and moves the trains until all have left.
+     *
+     * @param driver The interlocking, with no trains of this traffic in it.
+     * @return The total number of moves.
+     * @throws IllegalStateException If the trains stop moving before all have left.
+     */
+    int run(Driver driver) {
+        for (int i = 0; i < names.length; i++) {
+            driver.addTrain(names[i], entries[i], destinations[i]);
+            live[i] = names[i];
+        }
+        int active = names.length;
+        int moves = 0;
+        while (active > 0) {
+            String[] batch = rounds[active];
+            System.arraycopy(live, 0, batch, 0, active);
+            int moved = driver.moveTrains(batch);
+            if (moved == 0) {
+                throw new IllegalStateException("Traffic is stuck with " + active + " trains left");
+            }
+            moves += moved;
+            active = 0;
+            for (String name : batch) {
+                if (driver.getTrain(name) != -1) {
+                    live[active++] = name;
+                }
+            }
+        }
+        return moves;
+    }
+}